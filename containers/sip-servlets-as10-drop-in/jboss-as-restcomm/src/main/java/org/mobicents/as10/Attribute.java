@@ -55,6 +55,7 @@ enum Attribute {
     DEVELOPMENT(Constants.DEVELOPMENT),
     GATHER_STATISTICS(Constants.GATHER_STATISTICS),
     DIALOG_PENDING_REQUEST_CHECKING(Constants.DIALOG_PENDING_REQUEST_CHECKING),
+    DISPATCHER_EXECUTOR_MODE(Constants.DISPATCHER_EXECUTOR_MODE),
     DNS_SERVER_LOCATOR_CLASS(Constants.DNS_SERVER_LOCATOR_CLASS),
     DNS_TIMEOUT(Constants.DNS_TIMEOUT),
     DNS_RESOLVER_CLASS(Constants.DNS_RESOLVER_CLASS),
@@ -57,6 +57,7 @@ public interface Constants {
     String DEFAULT_WEB_MODULE = "default-web-module";
     String DEVELOPMENT = "development";
     String DIALOG_PENDING_REQUEST_CHECKING = "dialog-pending-request-checking";
+    String DISPATCHER_EXECUTOR_MODE = "dispatcher-executor-mode";
     String DNS_SERVER_LOCATOR_CLASS = "dns-server-locator-class";
     String DNS_TIMEOUT = "dns-timeout";
     String DNS_RESOLVER_CLASS = "dns-resolver-class";
@@ -99,6 +100,7 @@ public interface Constants {
     String PASSWORD = "password";
     String PATH = "path";
     String PATTERN = "pattern";
+    String PLATFORM = "Platform";
     String PREFIX = "prefix";
     String PROTOCOL = "protocol";
     String PROXY_NAME = "proxy-name";
@@ -153,9 +155,11 @@ public interface Constants {
     String VALUE = "value";
     String VERIFY_CLIENT = "verify-client";
     String VERIFY_DEPTH = "verify-depth";
+    String VIRTUAL = "Virtual";
     String VIRTUAL_SERVER = "virtual-server";
     String WEBDAV = "webdav";
     String WELCOME_FILE = "welcome-file";
+    String WHEEL = "wheel";
     String X_POWERED_BY = "x-powered-by";
 
     /* Connect stats attributes */
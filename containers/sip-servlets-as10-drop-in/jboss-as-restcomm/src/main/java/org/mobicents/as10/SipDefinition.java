@@ -247,6 +247,13 @@ public class SipDefinition extends SimpleResourceDefinition {
                     .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
                     .setDefaultValue(null)
                     .build();
+    protected static final SimpleAttributeDefinition DISPATCHER_EXECUTOR_MODE =
+            new SimpleAttributeDefinitionBuilder(Constants.DISPATCHER_EXECUTOR_MODE, ModelType.STRING, true)
+                    .setAllowExpression(true)
+                    .setXmlName(Constants.DISPATCHER_EXECUTOR_MODE)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode("Platform"))
+                    .build();
 
     private SipDefinition() {
         super(PathElement.pathElement(ModelDescriptionConstants.SUBSYSTEM, SipExtension.SUBSYSTEM_NAME), SipExtension
@@ -304,6 +311,8 @@ public class SipDefinition extends SimpleResourceDefinition {
         registration.registerReadWriteAttribute(BACK_TO_NORMAL_MEMORY_THRESHOLD, null, new ReloadRequiredWriteAttributeHandler(
                 BACK_TO_NORMAL_MEMORY_THRESHOLD));
         registration.registerReadWriteAttribute(OUTBOUND_PROXY, null, new ReloadRequiredWriteAttributeHandler(OUTBOUND_PROXY));
+        registration.registerReadWriteAttribute(DISPATCHER_EXECUTOR_MODE, null, new ReloadRequiredWriteAttributeHandler(
+                DISPATCHER_EXECUTOR_MODE));
         for (SipStackStat stat : SipStackStat.values()) {
             registration.registerMetric(stat.definition, SipStackStatsHandler.getInstance());
         }
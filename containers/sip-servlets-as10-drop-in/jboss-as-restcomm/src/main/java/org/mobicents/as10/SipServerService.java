@@ -78,6 +78,7 @@ class SipServerService implements SipServer, Service<SipServer> {
     final int memoryThreshold;
     final int backToNormalMemoryThreshold;
     final String outboundProxy;
+    final String dispatcherExecutorMode;
 
     private final String instanceId;
 
@@ -120,6 +121,7 @@ class SipServerService implements SipServer, Service<SipServer> {
             int memoryThreshold,
             int backToNormalMemoryThreshold,
             String outboundProxy,
+            String dispatcherExecutorMode,
             String instanceId) {
 
         // FIXME: kakonyii
@@ -152,6 +154,7 @@ class SipServerService implements SipServer, Service<SipServer> {
         this.memoryThreshold = memoryThreshold;
         this.backToNormalMemoryThreshold = backToNormalMemoryThreshold;
         this.outboundProxy = outboundProxy;
+        this.dispatcherExecutorMode = dispatcherExecutorMode;
     }
 
     /** {@inheritDoc} */
@@ -251,6 +254,9 @@ class SipServerService implements SipServer, Service<SipServer> {
         sipService.setBackToNormalMemoryThreshold(backToNormalMemoryThreshold);
         sipService.setCongestionControlPolicy(congestionControlPolicy);
         sipService.setOutboundProxy(outboundProxy);
+        if (dispatcherExecutorMode != null) {
+            sipService.setDispatcherExecutorMode(dispatcherExecutorMode);
+        }
         sipService.setName(JBOSS_SIP);
 
         // FIXME: kakonyii
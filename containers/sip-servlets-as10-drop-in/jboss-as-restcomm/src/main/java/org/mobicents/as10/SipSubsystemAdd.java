@@ -121,6 +121,7 @@ class SipSubsystemAdd extends AbstractBoottimeAddStepHandler {
         SipDefinition.MEMORY_THRESHOLD.validateAndSet(operation, model);
         SipDefinition.BACK_TO_NORMAL_MEMORY_THRESHOLD.validateAndSet(operation, model);
         SipDefinition.OUTBOUND_PROXY.validateAndSet(operation, model);
+        SipDefinition.DISPATCHER_EXECUTOR_MODE.validateAndSet(operation, model);
     }
 
     @Override
@@ -234,6 +235,11 @@ class SipSubsystemAdd extends AbstractBoottimeAddStepHandler {
         final ModelNode outboundProxyModel = SipDefinition.OUTBOUND_PROXY.resolveModelAttribute(context, fullModel);
         final String outboundProxy = outboundProxyModel.isDefined() ? outboundProxyModel.asString() : null;
 
+        final ModelNode dispatcherExecutorModeModel = SipDefinition.DISPATCHER_EXECUTOR_MODE.resolveModelAttribute(context,
+                fullModel);
+        final String dispatcherExecutorMode = dispatcherExecutorModeModel.isDefined() ? dispatcherExecutorModeModel.asString()
+                : null;
+
         // final String instanceId = operation.hasDefined(Constants.INSTANCE_ID) ?
         // operation.get(Constants.INSTANCE_ID).asString() : null;
         // final String sipAppRouterFile = operation.hasDefined(Constants.APPLICATION_ROUTER) ?
@@ -252,12 +258,18 @@ class SipSubsystemAdd extends AbstractBoottimeAddStepHandler {
         // operation.get(Constants.USE_PRETTY_ENCODING).asBoolean() : true;
 
         if(sasTimerServiceImplementationType!=null &&
-                !Constants.DEFAULT.equalsIgnoreCase(sasTimerServiceImplementationType) && !Constants.STANDARD.equalsIgnoreCase(sasTimerServiceImplementationType)) {
-            throw new OperationFailedException("Invalid value is set for "+Constants.SAS_TIMER_SERVICE_IMPEMENTATION_TYPE+" property: "+sasTimerServiceImplementationType+"! Valid values are: "+Constants.DEFAULT +", "+Constants.STANDARD+".");
+                !Constants.DEFAULT.equalsIgnoreCase(sasTimerServiceImplementationType) && !Constants.STANDARD.equalsIgnoreCase(sasTimerServiceImplementationType) && !Constants.WHEEL.equalsIgnoreCase(sasTimerServiceImplementationType)) {
+            throw new OperationFailedException("Invalid value is set for "+Constants.SAS_TIMER_SERVICE_IMPEMENTATION_TYPE+" property: "+sasTimerServiceImplementationType+"! Valid values are: "+Constants.DEFAULT +", "+Constants.STANDARD+", "+Constants.WHEEL+".");
         }
         if(sasTimerServiceImplementationType!=null &&
-                !Constants.DEFAULT.equalsIgnoreCase(proxyTimerServiceImplementationType) && !Constants.STANDARD.equalsIgnoreCase(proxyTimerServiceImplementationType)) {
-            throw new OperationFailedException("Invalid value is set for "+Constants.PROXY_TIMER_SERVICE_IMPEMENTATION_TYPE+" property: "+proxyTimerServiceImplementationType+"! Valid values are: "+Constants.DEFAULT +", "+Constants.STANDARD+".");
+                !Constants.DEFAULT.equalsIgnoreCase(proxyTimerServiceImplementationType) && !Constants.STANDARD.equalsIgnoreCase(proxyTimerServiceImplementationType) && !Constants.WHEEL.equalsIgnoreCase(proxyTimerServiceImplementationType)) {
+            throw new OperationFailedException("Invalid value is set for "+Constants.PROXY_TIMER_SERVICE_IMPEMENTATION_TYPE+" property: "+proxyTimerServiceImplementationType+"! Valid values are: "+Constants.DEFAULT +", "+Constants.STANDARD+", "+Constants.WHEEL+".");
+        }
+
+        if (dispatcherExecutorMode != null && !Constants.PLATFORM.equalsIgnoreCase(dispatcherExecutorMode)
+                && !Constants.VIRTUAL.equalsIgnoreCase(dispatcherExecutorMode)) {
+            throw new OperationFailedException("Invalid value is set for " + Constants.DISPATCHER_EXECUTOR_MODE + " property: "
+                    + dispatcherExecutorMode + "! Valid values are: " + Constants.PLATFORM + ", " + Constants.VIRTUAL + ".");
         }
 
         final SipServerService service = new SipServerService(sipAppRouterFile, sipStackPropertiesFile, sipPathName,
@@ -265,7 +277,7 @@ class SipSubsystemAdd extends AbstractBoottimeAddStepHandler {
                 sipConcurrencyControlMode, usePrettyEncoding, baseTimerInterval, t2Interval, t4Interval, timerDInterval,
                 dialogPendingRequestChecking, dnsServerLocatorClass, dnsTimeout, dnsResolverClass, callIdMaxLength,
                 tagHashMaxLength, canceledTimerTasksPurgePeriod, memoryThreshold, backToNormalMemoryThreshold, outboundProxy,
-                instanceId);
+                dispatcherExecutorMode, instanceId);
         newControllers.add(context
                 .getServiceTarget()
                 .addService(SipSubsystemServices.JBOSS_SIP, service)
@@ -103,6 +103,7 @@ class SipSubsystemParser implements XMLStreamConstants, XMLElementReader<List<Mo
         SipDefinition.MEMORY_THRESHOLD.marshallAsAttribute(node, false, writer);
         SipDefinition.BACK_TO_NORMAL_MEMORY_THRESHOLD.marshallAsAttribute(node, false, writer);
         SipDefinition.OUTBOUND_PROXY.marshallAsAttribute(node, false, writer);
+        SipDefinition.DISPATCHER_EXECUTOR_MODE.marshallAsAttribute(node, false, writer);
         if (node.hasDefined(CONNECTOR)) {
             for (final Property connector : node.get(CONNECTOR).asPropertyList()) {
                 final ModelNode config = connector.getValue();
@@ -156,6 +157,7 @@ class SipSubsystemParser implements XMLStreamConstants, XMLElementReader<List<Mo
                 case MEMORY_THRESHOLD:
                 case BACK_TO_NORMAL_MEMORY_THRESHOLD:
                 case OUTBOUND_PROXY:
+                case DISPATCHER_EXECUTOR_MODE:
                 case CONCURRENCY_CONTROL_MODE:
                 case USE_PRETTY_ENCODING:
                     subsystem.get(attribute.getLocalName()).set(value);
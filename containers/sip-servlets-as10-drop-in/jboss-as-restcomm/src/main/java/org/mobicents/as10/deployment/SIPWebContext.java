@@ -150,6 +150,8 @@ public class SIPWebContext extends SipContextImpl {
             super.proxyTimerServiceType = SipContextImpl.TimerServiceType.DEFAULT;
         }else if (Constants.STANDARD.equalsIgnoreCase(sipServer.getService().getProxyTimerServiceImplementationType())){
             super.proxyTimerServiceType = SipContextImpl.TimerServiceType.STANDARD;
+        }else if (Constants.WHEEL.equalsIgnoreCase(sipServer.getService().getProxyTimerServiceImplementationType())){
+            super.proxyTimerServiceType = SipContextImpl.TimerServiceType.WHEEL;
         }else{
             super.proxyTimerServiceType = SipContextImpl.TimerServiceType.STANDARD;
         }
@@ -158,6 +160,8 @@ public class SIPWebContext extends SipContextImpl {
             super.sasTimerServiceType = SipContextImpl.TimerServiceType.DEFAULT;
         }else if (Constants.STANDARD.equalsIgnoreCase(sipServer.getService().getSasTimerServiceImplementationType())){
             super.sasTimerServiceType = SipContextImpl.TimerServiceType.STANDARD;
+        }else if (Constants.WHEEL.equalsIgnoreCase(sipServer.getService().getSasTimerServiceImplementationType())){
+            super.sasTimerServiceType = SipContextImpl.TimerServiceType.WHEEL;
         }else{
             super.sasTimerServiceType = SipContextImpl.TimerServiceType.STANDARD;
         }
@@ -38,6 +38,7 @@ import org.jboss.as.server.deployment.AttachmentKey;
 import org.mobicents.servlet.sip.annotation.ConcurrencyControlMode;
 import org.mobicents.servlet.sip.core.MobicentsSipServlet;
 import org.mobicents.servlet.sip.core.descriptor.MobicentsSipServletMapping;
+import org.mobicents.servlet.sip.core.descriptor.SipServletMappingIndex;
 import org.mobicents.servlet.sip.core.security.MobicentsSipLoginConfig;
 import org.mobicents.servlet.sip.ruby.SipRubyController;
 
@@ -72,6 +73,7 @@ public class DeploymentInfoFacade implements Cloneable {
     protected ConcurrencyControlMode concurrencyControlMode;
     protected transient List<String> sipApplicationListeners = new CopyOnWriteArrayList<String>();
     protected transient List<MobicentsSipServletMapping> sipServletMappings = new ArrayList<MobicentsSipServletMapping>();
+    protected transient SipServletMappingIndex sipServletMappingIndex = new SipServletMappingIndex();
     private transient SipRubyController rubyController;
     protected transient Map<String, MobicentsSipServlet> childrenMap;
     protected transient Map<String, MobicentsSipServlet> childrenMapByClassName;
@@ -190,6 +192,7 @@ public class DeploymentInfoFacade implements Cloneable {
 
     public void addSipServletMapping(MobicentsSipServletMapping sipServletMapping) {
         sipServletMappings.add(sipServletMapping);
+        sipServletMappingIndex.invalidate();
         isMainServlet = false;
         if (servletHandler == null) {
             servletHandler = sipServletMapping.getServletName();
@@ -204,15 +207,7 @@ public class DeploymentInfoFacade implements Cloneable {
         if (logger.isDebugEnabled()) {
             logger.debug("Checking sip Servlet Mapping for following request : " + sipServletRequest);
         }
-        for (MobicentsSipServletMapping sipServletMapping : sipServletMappings) {
-            if (sipServletMapping.getMatchingRule().matches(sipServletRequest)) {
-                return sipServletMapping;
-            } else {
-                logger.debug("Following mapping rule didn't match : servletName => " + sipServletMapping.getServletName()
-                        + " | expression = " + sipServletMapping.getMatchingRule().getExpression());
-            }
-        }
-        return null;
+        return sipServletMappingIndex.find(sipServletMappings, sipServletRequest);
     }
 
     /**
@@ -220,6 +215,7 @@ public class DeploymentInfoFacade implements Cloneable {
      */
     public void removeSipServletMapping(MobicentsSipServletMapping sipServletMapping) {
         sipServletMappings.remove(sipServletMapping);
+        sipServletMappingIndex.invalidate();
     }
 
     public String[] findSipApplicationListeners() {
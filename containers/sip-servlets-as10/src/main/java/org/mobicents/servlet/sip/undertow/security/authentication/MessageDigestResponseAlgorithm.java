@@ -18,10 +18,8 @@
  */
 package org.mobicents.servlet.sip.undertow.security.authentication;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-
 import org.apache.log4j.Logger;
+import org.mobicents.servlet.sip.security.DigestHelper;
 
 /**
  * The class takes standard Http Authentication details and returns a response according to the MD5 algorithm
@@ -157,15 +155,7 @@ public class MessageDigestResponseAlgorithm {
      * @return MD5(data)
      */
     public static String H(String data) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("MD5");
-
-            return toHexString(digest.digest(data.getBytes()));
-        } catch (NoSuchAlgorithmException ex) {
-            // shouldn't happen
-            logger.error("Failed to instantiate an MD5 algorithm", ex);
-            return null;
-        }
+        return DigestHelper.md5Hex(data);
     }
 
     /**
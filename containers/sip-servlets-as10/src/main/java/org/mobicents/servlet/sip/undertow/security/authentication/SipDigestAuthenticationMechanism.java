@@ -54,6 +54,9 @@ import org.mobicents.servlet.sip.core.security.MobicentsSipLoginConfig;
 import org.mobicents.servlet.sip.core.security.SipDigestAuthenticator;
 import org.mobicents.servlet.sip.core.security.SipPrincipal;
 import org.mobicents.servlet.sip.core.session.MobicentsSipSession;
+import org.mobicents.servlet.sip.security.DigestCredentialCache;
+import org.mobicents.servlet.sip.security.DigestHelper;
+import org.mobicents.servlet.sip.security.DigestNonceTable;
 import org.mobicents.servlet.sip.security.SIPSecurityConstants;
 import org.mobicents.servlet.sip.security.SecurityActions;
 import org.mobicents.servlet.sip.undertow.SipLoginConfig;
@@ -86,17 +89,14 @@ public class SipDigestAuthenticationMechanism implements SipDigestAuthenticator
     private static final String DIGEST_AUTH_PASSWORD_IS_A1HASH = "org.mobicents.servlet.sip.DIGEST_AUTH_PASSWORD_IS_A1HASH";
 
     /**
-     * MD5 message digest provider.
+     * Nonces issued by this node, shared by all the mechanism instances.
      */
-    protected static volatile MessageDigest md5Helper;
-
-    static {
-        try {
-            md5Helper = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException(e);
-        }
-    }
+    protected static final DigestNonceTable nonces = new DigestNonceTable();
+    /**
+     * Stored passwords of the recently authenticated users, so that the users properties file is not read again for each
+     * request. Disabled unless a credential cache TTL is configured.
+     */
+    protected static final DigestCredentialCache<String> credentials = new DigestCredentialCache<String>();
     /**
      * Private key.
      */
@@ -303,12 +303,17 @@ public class SipDigestAuthenticationMechanism implements SipDigestAuthenticator
         String a2 = method + ":" + uri;
         // System.out.println("A2:" + a2);
 
-        byte[] buffer = null;
-        synchronized (md5Helper) {
-            buffer = md5Helper.digest(a2.getBytes());
-        }
+        byte[] buffer = DigestHelper.md5(a2.getBytes());
         String md5a2 = MD5_ENCODER.encode(buffer);
 
+        DigestNonceTable.NonceState nonceState = nonces.check(nOnce, nc);
+        if (nonceState != DigestNonceTable.NonceState.Valid) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rejecting digest credentials of '" + userName + "', nonce " + nOnce + " is " + nonceState);
+            }
+            return null;
+        }
+
         // taken from
         // https://github.com/jbossas/jboss-as/blob/7.1.2.Final/web/src/main/java/org/jboss/as/web/security/SecurityContextAssociationValve.java#L86
         SecurityContext sc = SecurityActions.getSecurityContext();
@@ -330,41 +335,71 @@ public class SipDigestAuthenticationMechanism implements SipDigestAuthenticator
         }
 
         try {
-            Properties users = new Properties();
-            String dir = System.getProperty("jboss.server.config.dir");
-            String fileName = "sip-servlets-users.properties";
             boolean storedPasswordIsA1Hash = true;
 
             if (sipStack instanceof SipStackImpl) {
                 Properties stackProperties = ((SipStackImpl) sipStack).getConfigurationProperties();
-                fileName = stackProperties.getProperty(SipDigestAuthenticationMechanism.DIGEST_AUTH_USERS_PROPERTIES,
-                        "sip-servlets-users.properties");
                 storedPasswordIsA1Hash = Boolean.parseBoolean(stackProperties.getProperty(
                         SipDigestAuthenticationMechanism.DIGEST_AUTH_PASSWORD_IS_A1HASH, "true"));
             }
 
-            try {
-                users = SipDigestAuthenticationMechanism.loadProperties(dir + "/" + fileName, dir + "/" + fileName);
-            } catch (IOException e) {
-                log.warn("Failed to load user properties file from location " + dir + "/" + fileName
-                        + ", please check digest security config in standalone and mss sip stack property files!");
+            String storedPassword = credentials.get(userName, realmName);
+            boolean cached = storedPassword != null;
+            if (!cached) {
+                storedPassword = loadStoredPassword(userName, sipStack);
             }
-
-            String storedPassword = users.getProperty(userName, "");
             Account account = SipDigestAuthenticationMechanism.authenticate(userName, storedPassword, response, nOnce, nc,
                     cnonce, method, uri, qop, realmName, md5a2, deployment, storedPasswordIsA1Hash);
+            if (account == null && cached) {
+                // the password may have changed since it was cached
+                credentials.invalidate(userName, realmName);
+                storedPassword = loadStoredPassword(userName, sipStack);
+                account = SipDigestAuthenticationMechanism.authenticate(userName, storedPassword, response, nOnce, nc,
+                        cnonce, method, uri, qop, realmName, md5a2, deployment, storedPasswordIsA1Hash);
+            }
 
             if (account == null) {
                 return null;
-            } else {
-                return (new UndertowSipPrincipal(account, deployment, servletInfo));
             }
+            if (!nonces.accept(nOnce, nc)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Rejecting replayed digest credentials of '" + userName + "', nonce " + nOnce + " nc " + nc);
+                }
+                return null;
+            }
+            credentials.put(userName, realmName, storedPassword);
+            return (new UndertowSipPrincipal(account, deployment, servletInfo));
         } finally {
             SecurityActions.clearSecurityContext();
             SecurityRolesAssociation.setSecurityRoles(null);
         }
     }
 
+    /*
+     * Return the password stored for the given user in the users properties file configured on the sip stack, or an empty
+     * string if the user or the file is not found.
+     */
+    private static String loadStoredPassword(String userName, SipStack sipStack) {
+        Properties users = new Properties();
+        String dir = System.getProperty("jboss.server.config.dir");
+        String fileName = "sip-servlets-users.properties";
+
+        if (sipStack instanceof SipStackImpl) {
+            Properties stackProperties = ((SipStackImpl) sipStack).getConfigurationProperties();
+            fileName = stackProperties.getProperty(SipDigestAuthenticationMechanism.DIGEST_AUTH_USERS_PROPERTIES,
+                    "sip-servlets-users.properties");
+        }
+
+        try {
+            users = SipDigestAuthenticationMechanism.loadProperties(dir + "/" + fileName, dir + "/" + fileName);
+        } catch (IOException e) {
+            log.warn("Failed to load user properties file from location " + dir + "/" + fileName
+                    + ", please check digest security config in standalone and mss sip stack property files!");
+        }
+
+        return users.getProperty(userName, "");
+    }
+
     /*
      * Return the Account associated with the specified username, which matches the digest calculated using the given parameters
      * using the method described in rfc2617; otherwise return null.
@@ -405,10 +440,10 @@ public class SipDigestAuthenticationMechanism implements SipDigestAuthenticator
         String serverDigest = "";
         if (storedPasswordIsA1Hash) {
             // storedPassword is HA1 in this case
-            serverDigest = MessageDigestResponseAlgorithm.calculateResponse(md5Helper.getAlgorithm(), storedPassword, nOnce,
+            serverDigest = MessageDigestResponseAlgorithm.calculateResponse(DEFAULT_ALGORITHM, storedPassword, nOnce,
                     nc, cnonce, method, uri, "", qop);
         } else {
-            serverDigest = MessageDigestResponseAlgorithm.calculateResponse(md5Helper.getAlgorithm(), userName, realmName,
+            serverDigest = MessageDigestResponseAlgorithm.calculateResponse(DEFAULT_ALGORITHM, userName, realmName,
                     storedPassword, nOnce, nc, cnonce, method, uri, "", qop);
         }
 
@@ -575,11 +610,9 @@ public class SipDigestAuthenticationMechanism implements SipDigestAuthenticator
 
         String nOnceValue = request.getRemoteAddr() + ":" + currentTime + ":" + key;
 
-        byte[] buffer = null;
-        synchronized (md5Helper) {
-            buffer = md5Helper.digest(nOnceValue.getBytes());
-        }
+        byte[] buffer = DigestHelper.md5(nOnceValue.getBytes());
         nOnceValue = MD5_ENCODER.encode(buffer);
+        nonces.issued(nOnceValue);
 
         return nOnceValue;
     }
@@ -618,10 +651,7 @@ public class SipDigestAuthenticationMechanism implements SipDigestAuthenticator
         if (realmName == null)
             realmName = request.getServerName() + ":" + request.getServerPort();
 
-        byte[] buffer = null;
-        synchronized (md5Helper) {
-            buffer = md5Helper.digest(nOnce.getBytes());
-        }
+        byte[] buffer = DigestHelper.md5(nOnce.getBytes());
 
         String authenticateHeader = "Digest realm=\"" + realmName + "\", " + "qop=\"auth\", nonce=\"" + nOnce + "\", "
                 + "opaque=\"" + MD5_ENCODER.encode(buffer) + "\"";
@@ -702,10 +732,7 @@ public class SipDigestAuthenticationMechanism implements SipDigestAuthenticator
         // String cnonce = "xyz";
         long currentTime = System.currentTimeMillis();
         String nOnceValue = currentTime + ":" + "mobicents" + response;
-        byte[] buffer = null;
-        synchronized (md5Helper) {
-            buffer = md5Helper.digest(nOnceValue.getBytes());
-        }
+        byte[] buffer = DigestHelper.md5(nOnceValue.getBytes());
         String cnonce = MD5_ENCODER.encode(buffer);
 
         try {
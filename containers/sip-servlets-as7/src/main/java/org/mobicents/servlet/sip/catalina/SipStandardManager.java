@@ -247,6 +247,20 @@ public class SipStandardManager extends StandardManager implements CatalinaSipMa
 		return sipManagerDelegate.findSipApplicationSession(httpSession);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void addHttpSessionMapping(String httpSessionId, MobicentsSipApplicationSessionKey key) {
+		sipManagerDelegate.addHttpSessionMapping(httpSessionId, key);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void removeHttpSessionMapping(String httpSessionId, MobicentsSipApplicationSessionKey key) {
+		sipManagerDelegate.removeHttpSessionMapping(httpSessionId, key);
+	}
+
 	/**
 	 * 
 	 */
@@ -556,6 +570,22 @@ public class SipStandardManager extends StandardManager implements CatalinaSipMa
         return sb.toString();
     }
 
+	public void sipSessionExpired(int timeAlive) {
+		sipManagerDelegate.sipSessionExpired(timeAlive);
+	}
+
+	public void sipApplicationSessionExpired(int timeAlive) {
+		sipManagerDelegate.sipApplicationSessionExpired(timeAlive);
+	}
+
+	public int getSipSessionAliveTimePercentile(double percentile) {
+		return sipManagerDelegate.getSipSessionAliveTimePercentile(percentile);
+	}
+
+	public int getSipApplicationSessionAliveTimePercentile(double percentile) {
+		return sipManagerDelegate.getSipApplicationSessionAliveTimePercentile(percentile);
+	}
+
 	public double getNumberOfSipApplicationSessionCreationPerSecond() {
 		return sipManagerDelegate.getNumberOfSipApplicationSessionCreationPerSecond();
 	}
@@ -27,12 +27,13 @@ import java.util.List;
 
 import javax.servlet.sip.SipServletRequest;
 
+import org.mobicents.servlet.sip.core.descriptor.AndMatchingRule;
 import org.mobicents.servlet.sip.core.descriptor.MatchingRule;
 
 /**
  * @author Thomas Leseney
  */
-public class AndRule implements MatchingRule {
+public class AndRule implements AndMatchingRule {
 	
     private List<MatchingRule> criteria = new ArrayList<MatchingRule>();
     
@@ -42,6 +43,10 @@ public class AndRule implements MatchingRule {
        criteria.add(c); 
     }
     
+    public List<MatchingRule> getCriteria() {
+        return criteria;
+    }
+
     public boolean matches(SipServletRequest request) {
         for (MatchingRule rule : criteria) {
             if (!rule.matches(request)) 
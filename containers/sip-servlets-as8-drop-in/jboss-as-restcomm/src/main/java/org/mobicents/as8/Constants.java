@@ -156,6 +156,7 @@ public interface Constants {
     String VIRTUAL_SERVER = "virtual-server";
     String WEBDAV = "webdav";
     String WELCOME_FILE = "welcome-file";
+    String WHEEL = "wheel";
     String X_POWERED_BY = "x-powered-by";
 
     /* Connect stats attributes */
@@ -26,6 +26,7 @@ import io.undertow.servlet.core.Lifecycle;
 import io.undertow.servlet.core.ManagedFilter;
 import io.undertow.servlet.core.ManagedServlet;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -77,6 +78,7 @@ import org.mobicents.servlet.sip.core.timers.SipApplicationSessionTimerService;
 import org.mobicents.servlet.sip.core.timers.SipServletTimerService;
 import org.mobicents.servlet.sip.core.timers.StandardSipApplicationSessionTimerService;
 import org.mobicents.servlet.sip.core.timers.TimerServiceImpl;
+import org.mobicents.servlet.sip.core.timers.TimingWheelTimerService;
 import org.mobicents.servlet.sip.dns.MobicentsDNSResolver;
 import org.mobicents.servlet.sip.listener.SipConnectorListener;
 import org.mobicents.servlet.sip.message.SipFactoryFacade;
@@ -106,6 +108,7 @@ public class SipContextImpl implements SipContext {
     private Deployment deployment;
 
     protected DeploymentInfoFacade deploymentInfoFacade;
+    protected transient volatile MethodHandle sipApplicationKeyMethodHandle;
     protected transient SipApplicationDispatcher sipApplicationDispatcher = null;
 
     protected boolean hasDistributableManager;
@@ -381,13 +384,19 @@ public class SipContextImpl implements SipContext {
             // } else {
             // timerService = new TimerServiceImpl();
             // }
-            timerService = new TimerServiceImpl(sipApplicationDispatcher.getSipService(), getApplicationName());
+            if (sasTimerServiceType == TimerServiceType.WHEEL) {
+                timerService = new TimingWheelTimerService(sipApplicationDispatcher, getApplicationName());
+            } else {
+                timerService = new TimerServiceImpl(sipApplicationDispatcher.getSipService(), getApplicationName());
+            }
         }
         if (proxyTimerService == null) {
             if(proxyTimerServiceType != null && proxyTimerServiceType == TimerServiceType.STANDARD) {
                 proxyTimerService = new ProxyTimerServiceImpl(getApplicationName());
             } else if(proxyTimerServiceType != null && proxyTimerServiceType == TimerServiceType.DEFAULT) {
                 proxyTimerService = new DefaultProxyTimerService(getApplicationName());
+            } else if(proxyTimerServiceType != null && proxyTimerServiceType == TimerServiceType.WHEEL) {
+                proxyTimerService = new TimingWheelTimerService(sipApplicationDispatcher, getApplicationName());
             } else {
                 proxyTimerService = new ProxyTimerServiceImpl(getApplicationName());
             }
@@ -403,6 +412,8 @@ public class SipContextImpl implements SipContext {
                 sasTimerService = new StandardSipApplicationSessionTimerService(getApplicationName());
             }else if (sasTimerServiceType != null && sasTimerServiceType == TimerServiceType.DEFAULT){
                 sasTimerService = new DefaultSipApplicationSessionTimerService(getApplicationName());
+            }else if (sasTimerServiceType != null && sasTimerServiceType == TimerServiceType.WHEEL){
+                sasTimerService = new TimingWheelTimerService(sipApplicationDispatcher, getApplicationName());
             }else{
                 sasTimerService = new StandardSipApplicationSessionTimerService(getApplicationName());
             }
@@ -654,7 +665,18 @@ public class SipContextImpl implements SipContext {
     @Override
     public void setSipApplicationKeyMethod(Method sipApplicationKeyMethod) {
         this.deploymentInfoFacade.setSipApplicationKeyMethod(sipApplicationKeyMethod);
+        // resolved again from the new method on the next initial request
+        this.sipApplicationKeyMethodHandle = null;
+    }
 
+    @Override
+    public MethodHandle getSipApplicationKeyMethodHandle() {
+        return sipApplicationKeyMethodHandle;
+    }
+
+    @Override
+    public void setSipApplicationKeyMethodHandle(MethodHandle sipApplicationKeyMethodHandle) {
+        this.sipApplicationKeyMethodHandle = sipApplicationKeyMethodHandle;
     }
 
     @Override
@@ -1160,7 +1182,8 @@ public class SipContextImpl implements SipContext {
 
     public enum TimerServiceType{
         STANDARD,
-        DEFAULT;
+        DEFAULT,
+        WHEEL;
     }
 
     @Override
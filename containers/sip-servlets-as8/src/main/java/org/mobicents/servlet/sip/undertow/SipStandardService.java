@@ -67,6 +67,7 @@ import org.mobicents.servlet.sip.core.MobicentsExtendedListeningPoint;
 import org.mobicents.servlet.sip.core.SipApplicationDispatcher;
 import org.mobicents.servlet.sip.core.SipContext;
 import org.mobicents.servlet.sip.core.SipService;
+import org.mobicents.servlet.sip.core.dispatchers.DispatcherExecutorMode;
 import org.mobicents.servlet.sip.core.message.OutboundProxy;
 import org.mobicents.servlet.sip.dns.MobicentsDNSResolver;
 import org.mobicents.servlet.sip.message.Servlet3SipServletMessageFactory;
@@ -114,6 +115,7 @@ public class SipStandardService implements SipService {
     private int t4Interval = 5000;
     private int timerDInterval = 32000;
     protected int dispatcherThreadPoolSize = 15;
+    protected String dispatcherExecutorMode = DispatcherExecutorMode.Platform.toString();
     private boolean md5ContactUserPart = false;
 
     protected String concurrencyControlMode = ConcurrencyControlMode.SipApplicationSession.toString();
@@ -778,6 +780,18 @@ public class SipStandardService implements SipService {
         this.dispatcherThreadPoolSize = dispatcherThreadPoolSize;
     }
 
+    public String getDispatcherExecutorMode() {
+        return dispatcherExecutorMode;
+    }
+
+    /**
+     * @param dispatcherExecutorMode Platform to run the dispatcher on a fixed number of platform threads, case insensitive,
+     * Virtual to run it on virtual threads on the JVMs supporting them
+     */
+    public void setDispatcherExecutorMode(String dispatcherExecutorMode) {
+        this.dispatcherExecutorMode = DispatcherExecutorMode.fromString(dispatcherExecutorMode).toString();
+    }
+
     @Override
     public String getJvmRoute() {
         return jvmRoute;
@@ -117,6 +117,16 @@ public class UndertowSipManager extends ConvergedInMemorySessionManager implemen
         return sipManagerDelegate.findSipApplicationSession(httpSession);
     }
 
+    @Override
+    public void addHttpSessionMapping(String httpSessionId, MobicentsSipApplicationSessionKey key) {
+        sipManagerDelegate.addHttpSessionMapping(httpSessionId, key);
+    }
+
+    @Override
+    public void removeHttpSessionMapping(String httpSessionId, MobicentsSipApplicationSessionKey key) {
+        sipManagerDelegate.removeHttpSessionMapping(httpSessionId, key);
+    }
+
     @Override
     public void removeAllSessions() {
         sipManagerDelegate.removeAllSessions();
@@ -305,6 +315,26 @@ public class UndertowSipManager extends ConvergedInMemorySessionManager implemen
 
     }
 
+    @Override
+    public void sipSessionExpired(int timeAlive) {
+        sipManagerDelegate.sipSessionExpired(timeAlive);
+    }
+
+    @Override
+    public void sipApplicationSessionExpired(int timeAlive) {
+        sipManagerDelegate.sipApplicationSessionExpired(timeAlive);
+    }
+
+    @Override
+    public int getSipSessionAliveTimePercentile(double percentile) {
+        return sipManagerDelegate.getSipSessionAliveTimePercentile(percentile);
+    }
+
+    @Override
+    public int getSipApplicationSessionAliveTimePercentile(double percentile) {
+        return sipManagerDelegate.getSipApplicationSessionAliveTimePercentile(percentile);
+    }
+
     @Override
     public double getNumberOfSipApplicationSessionCreationPerSecond() {
         return sipManagerDelegate.getNumberOfSipApplicationSessionCreationPerSecond();
@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.servlet.sip.SipServletRequest;
 
+import org.mobicents.servlet.sip.core.descriptor.AndMatchingRule;
 import org.mobicents.servlet.sip.core.descriptor.MatchingRule;
 
 /**
@@ -33,7 +34,7 @@ import org.mobicents.servlet.sip.core.descriptor.MatchingRule;
  *         re-implemented for jboss as8 (wildfly) by:
  * @author kakonyi.istvan@alerant.hu
  */
-public class AndRule implements MatchingRule {
+public class AndRule implements AndMatchingRule {
 
     private List<MatchingRule> criteria = new ArrayList<MatchingRule>();
 
@@ -44,6 +45,10 @@ public class AndRule implements MatchingRule {
         criteria.add(c);
     }
 
+    public List<MatchingRule> getCriteria() {
+        return criteria;
+    }
+
     public boolean matches(SipServletRequest request) {
         for (MatchingRule rule : criteria) {
             if (!rule.matches(request))
@@ -20,6 +20,7 @@ package org.mobicents.servlet.sip.undertow.rules;
 
 import javax.servlet.sip.SipServletRequest;
 
+import org.mobicents.servlet.sip.core.descriptor.EqualsMatchingRule;
 import org.mobicents.servlet.sip.core.descriptor.MatchingRule;
 
 /**
@@ -29,7 +30,7 @@ import org.mobicents.servlet.sip.core.descriptor.MatchingRule;
  *         re-implemented for jboss as8 (wildfly) by:
  * @author kakonyi.istvan@alerant.hu
  */
-public class EqualsRule extends RequestRule implements MatchingRule {
+public class EqualsRule extends RequestRule implements EqualsMatchingRule {
     private String value;
     private boolean ignoreCase;
 
@@ -46,6 +47,14 @@ public class EqualsRule extends RequestRule implements MatchingRule {
         return value.equalsIgnoreCase(getValue(request));
     }
 
+    public String getExpectedValue() {
+        return value;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
     public String getExpression() {
         return "(" + getVarName() + " == " + value + ")";
     }
@@ -24,12 +24,13 @@ package org.mobicents.servlet.sip.catalina.rules;
 
 import javax.servlet.sip.SipServletRequest;
 
+import org.mobicents.servlet.sip.core.descriptor.EqualsMatchingRule;
 import org.mobicents.servlet.sip.core.descriptor.MatchingRule;
 
 /**
  * @author Thomas Leseney
  */
-public class EqualsRule extends RequestRule implements MatchingRule {
+public class EqualsRule extends RequestRule implements EqualsMatchingRule {
 	private String value;
 	private boolean ignoreCase;
 	
@@ -46,6 +47,14 @@ public class EqualsRule extends RequestRule implements MatchingRule {
 		return value.equalsIgnoreCase(getValue(request));
 	}
 
+	public String getExpectedValue() {
+		return value;
+	}
+
+	public boolean isIgnoreCase() {
+		return ignoreCase;
+	}
+
 	public String getExpression() {
 		return "(" + getVarName() + " == " + value + ")";
 	}
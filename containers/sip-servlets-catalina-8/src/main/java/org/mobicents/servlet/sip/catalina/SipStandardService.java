@@ -75,6 +75,7 @@ import org.mobicents.servlet.sip.core.ExtendedListeningPoint;
 import org.mobicents.servlet.sip.core.MobicentsExtendedListeningPoint;
 import org.mobicents.servlet.sip.core.SipApplicationDispatcher;
 import org.mobicents.servlet.sip.core.SipContext;
+import org.mobicents.servlet.sip.core.dispatchers.DispatcherExecutorMode;
 import org.mobicents.servlet.sip.core.message.OutboundProxy;
 import org.mobicents.servlet.sip.dns.MobicentsDNSResolver;
 import org.mobicents.servlet.sip.message.Servlet3SipServletMessageFactory;
@@ -129,6 +130,7 @@ public class SipStandardService extends StandardService implements CatalinaSipSe
 	private int t4Interval = 5000;
 	private int timerDInterval = 32000;
 	protected int dispatcherThreadPoolSize = 15;
+	protected String dispatcherExecutorMode = DispatcherExecutorMode.Platform.toString();
 	private boolean md5ContactUserPart = false;
 	
 	protected String concurrencyControlMode = ConcurrencyControlMode.SipApplicationSession.toString();
@@ -945,6 +947,18 @@ public class SipStandardService extends StandardService implements CatalinaSipSe
 	public void setDispatcherThreadPoolSize(int dispatcherThreadPoolSize) {
 		this.dispatcherThreadPoolSize = dispatcherThreadPoolSize;
 	}
+
+	public String getDispatcherExecutorMode() {
+		return dispatcherExecutorMode;
+	}
+
+	/**
+	 * @param dispatcherExecutorMode Platform to run the dispatcher on a fixed number of platform threads, case insensitive,
+	 * Virtual to run it on virtual threads on the JVMs supporting them
+	 */
+	public void setDispatcherExecutorMode(String dispatcherExecutorMode) {
+		this.dispatcherExecutorMode = DispatcherExecutorMode.fromString(dispatcherExecutorMode).toString();
+	}
 	
 	public int getCanceledTimerTasksPurgePeriod() {
 		return canceledTimerTasksPurgePeriod;
@@ -23,8 +23,8 @@
 package org.mobicents.servlet.sip.catalina.security.authentication;
 
 import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.lang.reflect.Method;
+import java.security.Principal;
 import java.text.ParseException;
 import java.util.StringTokenizer;
 
@@ -41,6 +41,7 @@ import javax.sip.header.WWWAuthenticateHeader;
 import org.apache.catalina.Realm;
 import org.apache.catalina.authenticator.Constants;
 import org.apache.catalina.connector.Request;
+import org.apache.catalina.realm.RealmBase;
 import org.apache.log4j.Logger;
 import org.apache.tomcat.util.descriptor.web.LoginConfig;
 import org.apache.tomcat.util.security.MD5Encoder;
@@ -51,6 +52,9 @@ import org.mobicents.servlet.sip.core.message.MobicentsSipServletResponse;
 import org.mobicents.servlet.sip.core.security.MobicentsSipLoginConfig;
 import org.mobicents.servlet.sip.core.security.SipDigestAuthenticator;
 import org.mobicents.servlet.sip.core.security.SipPrincipal;
+import org.mobicents.servlet.sip.security.DigestCredentialCache;
+import org.mobicents.servlet.sip.security.DigestHelper;
+import org.mobicents.servlet.sip.security.DigestNonceTable;
 
 /**
  * An <b>Authenticator</b> and <b>Valve</b> implementation of HTTP DIGEST
@@ -91,17 +95,23 @@ public class DigestAuthenticator
 
 
     /**
-     * MD5 message digest provider.
+     * Nonces issued by this node, shared by all the authenticator instances
+     * since one is created per request.
      */
-    protected volatile static MessageDigest md5Helper;
+    protected static final DigestNonceTable nonces = new DigestNonceTable();
 
-    static {
-    	try {            
-             md5Helper = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {            
-            throw new IllegalStateException(e);
-        }
-    }
+    /**
+     * HA1 and principal of the recently authenticated users, disabled unless
+     * a credential cache TTL is configured.
+     */
+    protected static final DigestCredentialCache<CachedCredential> credentials =
+        new DigestCredentialCache<CachedCredential>();
+
+    /**
+     * RealmBase method giving the HA1 of a user, null if this Tomcat version
+     * doesn't have one, in which case the credential cache isn't fed.
+     */
+    private static final Method GET_DIGEST_METHOD = findGetDigestMethod();
 
     /**
      * Private key.
@@ -267,18 +277,104 @@ public class DigestAuthenticator
         String a2 = method + ":" + uri;
         //System.out.println("A2:" + a2);
 
-        byte[] buffer = null;
-        synchronized (md5Helper) {
-            buffer = md5Helper.digest(a2.getBytes());
-        }
+        byte[] buffer = DigestHelper.md5(a2.getBytes());
         String md5a2 = MD5Encoder.encode(buffer);
 
-        return (new CatalinaSipPrincipal(realm.authenticate(userName, response, nOnce, nc, cnonce, qop,
-                                   realmName, md5a2)));
+        DigestNonceTable.NonceState nonceState = nonces.check(nOnce, nc);
+        if (nonceState != DigestNonceTable.NonceState.Valid) {
+            if (log.isDebugEnabled())
+                log.debug("Rejecting digest credentials of '" + userName + "', nonce " + nOnce + " is " + nonceState);
+            return null;
+        }
+
+        Principal authenticated = null;
+        CachedCredential credential = credentials.get(userName, realmName);
+        if (credential != null) {
+            String serverDigest;
+            if (qop == null) {
+                serverDigest = credential.ha1 + ":" + nOnce + ":" + md5a2;
+            } else {
+                serverDigest = credential.ha1 + ":" + nOnce + ":" + nc + ":" +
+                    cnonce + ":" + qop + ":" + md5a2;
+            }
+            if (DigestHelper.md5Hex(serverDigest).equals(response)) {
+                authenticated = credential.principal;
+            } else {
+                // the password may have changed, let the realm decide
+                credentials.invalidate(userName, realmName);
+            }
+        }
+        if (authenticated == null) {
+            authenticated = realm.authenticate(userName, response, nOnce, nc, cnonce, qop,
+                                   realmName, md5a2);
+            if (authenticated != null && credentials.isEnabled()) {
+                String ha1 = getDigest(realm, userName, realmName);
+                if (ha1 != null) {
+                    credentials.put(userName, realmName, new CachedCredential(ha1, authenticated));
+                }
+            }
+        }
+
+        if (authenticated != null && !nonces.accept(nOnce, nc)) {
+            if (log.isDebugEnabled())
+                log.debug("Rejecting replayed digest credentials of '" + userName + "', nonce " + nOnce + " nc " + nc);
+            return null;
+        }
+
+        return (new CatalinaSipPrincipal(authenticated));
 
     }
 
 
+    /**
+     * Return the HA1 the realm stores for the given user, or <code>null</code>
+     * if the realm does not expose it. RealmBase only offers it to subclasses
+     * so it is looked up by reflection, the same way principals are
+     * impersonated.
+     */
+    protected static String getDigest(Realm realm, String userName, String realmName) {
+        if (GET_DIGEST_METHOD == null || !(realm instanceof RealmBase))
+            return null;
+        try {
+            if (GET_DIGEST_METHOD.getParameterTypes().length == 3)
+                return (String) GET_DIGEST_METHOD.invoke(realm, userName, realmName, "MD5");
+            return (String) GET_DIGEST_METHOD.invoke(realm, userName, realmName);
+        } catch (Exception e) {
+            if (log.isDebugEnabled())
+                log.debug("Could not get the digest of user " + userName + " from realm " + realm, e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Look up RealmBase.getDigest(username, realmName), or the
+     * getDigest(username, realmName, algorithm) variant of later Tomcat
+     * versions. Without any of them the users are authenticated by the realm
+     * on every request.
+     */
+    private static Method findGetDigestMethod() {
+        Method getDigestMethod;
+        try {
+            getDigestMethod = RealmBase.class.getDeclaredMethod("getDigest", String.class, String.class);
+        } catch (NoSuchMethodException e) {
+            try {
+                getDigestMethod = RealmBase.class.getDeclaredMethod("getDigest", String.class, String.class, String.class);
+            } catch (NoSuchMethodException e2) {
+                log.warn("RealmBase.getDigest not found, the digest credential cache is not used");
+                return null;
+            }
+        }
+        try {
+            getDigestMethod.setAccessible(true);
+        } catch (SecurityException e) {
+            log.warn("RealmBase.getDigest is not accessible, the digest credential cache is not used", e);
+            return null;
+        }
+        return getDigestMethod;
+    }
+
+
     /**
      * Parse the username from the specified authorization string.  If none
      * can be identified, return <code>null</code>
@@ -354,11 +450,9 @@ public class DigestAuthenticator
         String nOnceValue = request.getRemoteAddr() + ":" +
             currentTime + ":" + key;
 
-        byte[] buffer = null;
-        synchronized (md5Helper) {
-            buffer = md5Helper.digest(nOnceValue.getBytes());
-        }
+        byte[] buffer = DigestHelper.md5(nOnceValue.getBytes());
         nOnceValue = MD5Encoder.encode(buffer);
+        nonces.issued(nOnceValue);
 
         return nOnceValue;
     }
@@ -402,10 +496,7 @@ public class DigestAuthenticator
             realmName = request.getServerName() + ":"
                 + request.getServerPort();
 
-        byte[] buffer = null;
-        synchronized (md5Helper) {
-            buffer = md5Helper.digest(nOnce.getBytes());
-        }
+        byte[] buffer = DigestHelper.md5(nOnce.getBytes());
 
         String authenticateHeader = "Digest realm=\"" + realmName + "\", "
             +  "qop=\"auth\", nonce=\"" + nOnce + "\", " + "opaque=\""
@@ -495,10 +586,7 @@ public class DigestAuthenticator
         //String cnonce = "xyz";
         long currentTime = System.currentTimeMillis();
         String nOnceValue = currentTime + ":" + "mobicents" + response;
-        byte[] buffer = null;
-        synchronized (md5Helper) {
-            buffer = md5Helper.digest(nOnceValue.getBytes());
-        }
+        byte[] buffer = DigestHelper.md5(nOnceValue.getBytes());
         String cnonce = MD5Encoder.encode(buffer);
 
         try {
@@ -562,6 +650,19 @@ public class DigestAuthenticator
 		return principal;
 	}
 
+    /**
+     * HA1 and principal kept by the credential cache.
+     */
+    protected static final class CachedCredential {
+        final String ha1;
+        final Principal principal;
+
+        CachedCredential(String ha1, Principal principal) {
+            this.ha1 = ha1;
+            this.principal = principal;
+        }
+    }
+
 //	@Override
 //	public boolean authenticate(Request arg0, HttpServletResponse arg1,
 //			LoginConfig arg2) throws IOException {
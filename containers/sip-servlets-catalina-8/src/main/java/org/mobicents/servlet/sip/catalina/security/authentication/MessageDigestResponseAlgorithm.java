@@ -22,9 +22,8 @@
 
 package org.mobicents.servlet.sip.catalina.security.authentication;
 
-import java.security.*;
-
 import org.apache.log4j.Logger;
+import org.mobicents.servlet.sip.security.DigestHelper;
 
 /**
  * The class takes standard Http Authentication details and returns a response
@@ -161,18 +160,7 @@ public class MessageDigestResponseAlgorithm
      */
     private static String H(String data)
     {
-        try
-        {
-            MessageDigest digest = MessageDigest.getInstance("MD5");
-
-            return toHexString(digest.digest(data.getBytes()));
-        }
-        catch (NoSuchAlgorithmException ex)
-        {
-            //shouldn't happen
-            logger.error("Failed to instantiate an MD5 algorithm", ex);
-            return null;
-        }
+        return DigestHelper.md5Hex(data);
     }
 
     /**
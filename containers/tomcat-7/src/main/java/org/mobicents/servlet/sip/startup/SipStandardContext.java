@@ -19,6 +19,7 @@
 package org.mobicents.servlet.sip.startup;
 
 import java.io.File;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -88,6 +89,7 @@ import org.mobicents.servlet.sip.core.SipListeners;
 import org.mobicents.servlet.sip.core.SipManager;
 import org.mobicents.servlet.sip.core.SipService;
 import org.mobicents.servlet.sip.core.descriptor.MobicentsSipServletMapping;
+import org.mobicents.servlet.sip.core.descriptor.SipServletMappingIndex;
 import org.mobicents.servlet.sip.core.message.MobicentsSipServletRequest;
 import org.mobicents.servlet.sip.core.message.MobicentsSipServletResponse;
 import org.mobicents.servlet.sip.core.security.MobicentsSipLoginConfig;
@@ -105,6 +107,7 @@ import org.mobicents.servlet.sip.core.timers.SipApplicationSessionTimerService;
 import org.mobicents.servlet.sip.core.timers.SipServletTimerService;
 import org.mobicents.servlet.sip.core.timers.StandardSipApplicationSessionTimerService;
 import org.mobicents.servlet.sip.core.timers.TimerServiceImpl;
+import org.mobicents.servlet.sip.core.timers.TimingWheelTimerService;
 import org.mobicents.servlet.sip.listener.SipConnectorListener;
 import org.mobicents.servlet.sip.message.SipFactoryFacade;
 import org.mobicents.servlet.sip.message.SipFactoryImpl;
@@ -159,6 +162,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
     protected String namingContextName;
     
     protected transient Method sipApplicationKeyMethod;
+    protected transient volatile MethodHandle sipApplicationKeyMethodHandle;
     protected ConcurrencyControlMode concurrencyControlMode;
 	/**
      * The set of sip application listener class names configured for this
@@ -176,6 +180,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
      * application.
      */
     protected transient List<MobicentsSipServletMapping> sipServletMappings = new ArrayList<MobicentsSipServletMapping>();
+    protected transient SipServletMappingIndex sipServletMappingIndex = new SipServletMappingIndex();
     
     protected transient SipApplicationDispatcher sipApplicationDispatcher = null;
     
@@ -254,7 +259,11 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
             sipSessionsUtil = new SipSessionsUtilImpl(this);
         }
         if(timerService == null) {          
-            timerService = new TimerServiceImpl(sipApplicationDispatcher.getSipService(), applicationName);         
+            if(TimingWheelTimerService.IMPLEMENTATION_TYPE.equalsIgnoreCase(sipApplicationDispatcher.getSipService().getSasTimerServiceImplementationType())) {
+                timerService = new TimingWheelTimerService(sipApplicationDispatcher, applicationName);
+            } else {
+                timerService = new TimerServiceImpl(sipApplicationDispatcher.getSipService(), applicationName);
+            }
         }
         if(sasTimerService == null || !sasTimerService.isStarted()) {
             String sasTimerServiceType = sipApplicationDispatcher.getSipService().getSasTimerServiceImplementationType();
@@ -262,6 +271,8 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
                 sasTimerService = new StandardSipApplicationSessionTimerService(applicationName);
             } else if (sasTimerServiceType != null && sasTimerServiceType.equalsIgnoreCase("Default")) {
                 sasTimerService = new DefaultSipApplicationSessionTimerService(applicationName);
+            } else if (sasTimerServiceType != null && sasTimerServiceType.equalsIgnoreCase(TimingWheelTimerService.IMPLEMENTATION_TYPE)) {
+                sasTimerService = new TimingWheelTimerService(sipApplicationDispatcher, applicationName);
             } else {
                 sasTimerService = new StandardSipApplicationSessionTimerService(applicationName);
             }
@@ -306,6 +317,8 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
                 } else {
                     proxyTimerService = new DefaultProxyTimerService(applicationName);
                 }
+            } else if(proxyTimerServiceType != null && proxyTimerServiceType.equalsIgnoreCase(TimingWheelTimerService.IMPLEMENTATION_TYPE)) {
+                proxyTimerService = new TimingWheelTimerService(sipApplicationDispatcher, applicationName);
             } else {
                 proxyTimerService = new ProxyTimerServiceImpl(applicationName);
             }		
@@ -671,6 +684,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 		sipListeners.deallocateServletsActingAsListeners();
 		sipApplicationListeners.clear();
 		sipServletMappings.clear();
+		sipServletMappingIndex.invalidate();
 		childrenMap.clear();
 		childrenMapByClassName.clear();
 		if(sipApplicationDispatcher != null) {
@@ -1116,6 +1130,16 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 
 	public void setSipApplicationKeyMethod(Method sipApplicationKeyMethod) {
 		this.sipApplicationKeyMethod = sipApplicationKeyMethod;
+		// resolved again from the new method on the next initial request
+		this.sipApplicationKeyMethodHandle = null;
+	}
+
+	public MethodHandle getSipApplicationKeyMethodHandle() {
+		return sipApplicationKeyMethodHandle;
+	}
+
+	public void setSipApplicationKeyMethodHandle(MethodHandle sipApplicationKeyMethodHandle) {
+		this.sipApplicationKeyMethodHandle = sipApplicationKeyMethodHandle;
 	}
 	
 	public String getJbossBasePath() {
@@ -1127,6 +1151,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 	 */
 	public void addSipServletMapping(MobicentsSipServletMapping sipServletMapping) {
 		sipServletMappings.add(sipServletMapping);
+		sipServletMappingIndex.invalidate();
 		isMainServlet = false;
 		if(servletHandler == null) {
 			servletHandler = sipServletMapping.getServletName();
@@ -1146,16 +1171,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 		if(logger.isDebugEnabled()) {
 			logger.debug("Checking sip Servlet Mapping for following request : " + sipServletRequest);
 		}
-		for (MobicentsSipServletMapping sipServletMapping : sipServletMappings) {
-			if(sipServletMapping.getMatchingRule().matches(sipServletRequest)) {
-				return sipServletMapping;
-			} else {
-				logger.debug("Following mapping rule didn't match : servletName => " + 
-						sipServletMapping.getServletName() + " | expression = "+ 
-						sipServletMapping.getMatchingRule().getExpression());
-			}
-		}
-		return null;
+		return sipServletMappingIndex.find(sipServletMappings, sipServletRequest);
 	}
 	
 	/**
@@ -1163,6 +1179,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 	 */
 	public void removeSipServletMapping(MobicentsSipServletMapping sipServletMapping) {
 		sipServletMappings.remove(sipServletMapping);
+		sipServletMappingIndex.invalidate();
 	}
 
 	/**
@@ -19,15 +19,18 @@
 
 package org.mobicents.servlet.sip.annotations;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
-import java.util.Enumeration;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import javax.servlet.ServletContext;
 import javax.servlet.sip.SipServletRequest;
 import javax.servlet.sip.annotation.SipApplication;
 import javax.servlet.sip.annotation.SipApplicationKey;
@@ -47,6 +50,10 @@ import org.mobicents.servlet.sip.catalina.SipServletImpl;
  * party libs in WEB-INF/jar, and system libs. Parsing all these would be slow, so for
  * now we will only look in WEB-INF/classes since it works.
  * 
+ * The class files are read without loading the classes, only the classes carrying sip annotations 
+ * (or inheriting them) are loaded to be processed. The annotations found in the jars are indexed 
+ * by jar digest in the work directory of the application, see {@link JarAnnotationIndex}.
+ * 
  * General TODO: Validation
  * 
  * @author Vladimir Ralev
@@ -66,6 +73,11 @@ public class ClassFileScanner {
 	
 	private Method sipAppKey = null;
 	
+	// classes found in the application, in scanning order, by class name
+	private Map<String, ClassFileAnnotations> scannedClasses = new LinkedHashMap<String, ClassFileAnnotations>();
+	
+	private File jarIndexDirectory;
+	
 	private ClassLoader classLoader;
 	
 	public ClassFileScanner(String docbase, CatalinaSipContext ctx) {
@@ -114,7 +126,10 @@ public class ClassFileScanner {
 //		}
 		// TODO: Add META-INF classpath
 			
+		this.jarIndexDirectory = JarAnnotationIndex.getIndexDirectory(
+				(File) this.sipContext.getServletContext().getAttribute(ServletContext.TEMPDIR));
 		_scan(new File(this.docbase));
+		processScannedClasses();
 	}
 	
 	protected void _scan(File folder) throws AnnotationVerificationException {    	
@@ -137,26 +152,8 @@ public class ClassFileScanner {
     		logger.debug("scanning jar " + path + " for annotations");
     	}
 		try {
-			JarFile jar =new JarFile(path);
-			Enumeration<JarEntry> jarEntries = jar.entries();
-			while (jarEntries.hasMoreElements()) {
-				JarEntry jarEntry = jarEntries.nextElement();
-				String entryName = jarEntry.getName();
-								
-				if(entryName.endsWith(".class")) {
-					String className =  entryName.substring(0, entryName.indexOf(".class"));
-					className = className.replace('/', '.');
-					className = className.replace('\\', '.');
-					try {
-		    	    	Class clazz = Class.forName(className, false, this.classLoader);
-		    	    	processAnnotations(clazz);
-		    		} catch (Throwable e) {
-		    			logger.debug("Failed to parse annotations for class " + className);
-		    			if(logger.isDebugEnabled()) {
-		    				logger.debug("Failed to parse annotations for class " + className, e);
-		    			}
-		    		}
-				}
+			for (ClassFileAnnotations classFileAnnotations : JarAnnotationIndex.getClasses(new File(path), jarIndexDirectory)) {
+				addScannedClass(classFileAnnotations);
 			}
 		} catch (IOException e) {
 			throw new AnnotationVerificationException("couldn't read the following jar file for parsing annotations " + path, e);
@@ -164,19 +161,43 @@ public class ClassFileScanner {
 	}
     
     protected void analyzeClass(String path) throws AnnotationVerificationException {
+    	if(!path.endsWith(".class")) {
+    		return;
+    	}
     	if(logger.isDebugEnabled()) {
     		logger.debug("analyzing class " + path + " for annotations");
     	}
-    	// TODO: must check if there are extra /// or \\\ or /./ in the path after classes/
-    	int classesIndex = path.toLowerCase().lastIndexOf("classes/");
-    	if(classesIndex < 0) classesIndex = path.toLowerCase().lastIndexOf("classes\\");
-    	classesIndex += "classes/".length();
-    	String classpath = path.substring(classesIndex);
-    	classpath = classpath.replace('/', '.').replace('\\', '.');
-    	if(classpath.endsWith(".class")) {
-    		classpath = classpath.substring(0, classpath.length() - 6);
-    		if(classpath.startsWith(".")) classpath = classpath.substring(1);
-    		String className = classpath;
+    	try {
+    		InputStream inputStream = new BufferedInputStream(new FileInputStream(path));
+    		try {
+    			addScannedClass(ClassFileAnnotations.read(inputStream));
+    		} finally {
+    			inputStream.close();
+    		}
+    	} catch (IOException e) {
+    		logger.debug("Failed to parse annotations for class file " + path);
+    		if(logger.isDebugEnabled()) {
+    			logger.debug("Failed to parse annotations for class file " + path, e);
+    		}
+    	}
+    }
+    
+    private void addScannedClass(ClassFileAnnotations classFileAnnotations) {
+    	if(!scannedClasses.containsKey(classFileAnnotations.getClassName())) {
+    		scannedClasses.put(classFileAnnotations.getClassName(), classFileAnnotations);
+    	}
+    }
+    
+    /**
+     * Loads and processes the classes carrying sip annotations, either declared or inherited 
+     * from an annotated super class of the application
+     */
+    protected void processScannedClasses() throws AnnotationVerificationException {
+    	for (ClassFileAnnotations classFileAnnotations : scannedClasses.values()) {
+    		if(getEffectiveFlags(classFileAnnotations) == 0) {
+    			continue;
+    		}
+    		String className = classFileAnnotations.getClassName();
     		try {
     	    	Class clazz = Class.forName(className, false, this.classLoader);
     	    	processAnnotations(clazz);
@@ -186,7 +207,23 @@ public class ClassFileScanner {
     				logger.debug("Failed to parse annotations for class " + className, e);
     			}
     		}
-    	} 
+    	}
+    	scannedClasses.clear();
+    }
+    
+    private int getEffectiveFlags(ClassFileAnnotations classFileAnnotations) {
+    	int flags = classFileAnnotations.getFlags();
+    	String superClassName = classFileAnnotations.getSuperClassName();
+    	// the depth is bounded to protect against inconsistent hierarchies
+    	for (int depth = 0; superClassName != null && depth < 64; depth++) {
+    		ClassFileAnnotations superClass = scannedClasses.get(superClassName);
+    		if(superClass == null) {
+    			break;
+    		}
+    		flags |= superClass.getFlags() & ClassFileAnnotations.INHERITED;
+    		superClassName = superClass.getSuperClassName();
+    	}
+    	return flags;
     }
     
     protected void processAnnotations(Class clazz) throws AnnotationVerificationException {
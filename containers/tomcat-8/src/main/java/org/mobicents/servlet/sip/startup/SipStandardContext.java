@@ -21,6 +21,7 @@ package org.mobicents.servlet.sip.startup;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -94,6 +95,7 @@ import org.mobicents.servlet.sip.core.SipListeners;
 import org.mobicents.servlet.sip.core.SipManager;
 import org.mobicents.servlet.sip.core.SipService;
 import org.mobicents.servlet.sip.core.descriptor.MobicentsSipServletMapping;
+import org.mobicents.servlet.sip.core.descriptor.SipServletMappingIndex;
 import org.mobicents.servlet.sip.core.message.MobicentsSipServletRequest;
 import org.mobicents.servlet.sip.core.message.MobicentsSipServletResponse;
 import org.mobicents.servlet.sip.core.security.MobicentsSipLoginConfig;
@@ -111,6 +113,7 @@ import org.mobicents.servlet.sip.core.timers.SipApplicationSessionTimerService;
 import org.mobicents.servlet.sip.core.timers.SipServletTimerService;
 import org.mobicents.servlet.sip.core.timers.StandardSipApplicationSessionTimerService;
 import org.mobicents.servlet.sip.core.timers.TimerServiceImpl;
+import org.mobicents.servlet.sip.core.timers.TimingWheelTimerService;
 import org.mobicents.servlet.sip.listener.SipConnectorListener;
 import org.mobicents.servlet.sip.message.SipFactoryFacade;
 import org.mobicents.servlet.sip.message.SipFactoryImpl;
@@ -165,6 +168,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 	protected String namingContextName;
 
 	protected transient Method sipApplicationKeyMethod;
+	protected transient volatile MethodHandle sipApplicationKeyMethodHandle;
 	protected ConcurrencyControlMode concurrencyControlMode;
 	/**
 	 * The set of sip application listener class names configured for this
@@ -182,6 +186,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 	 * application.
 	 */
 	protected transient List<MobicentsSipServletMapping> sipServletMappings = new ArrayList<MobicentsSipServletMapping>();
+	protected transient SipServletMappingIndex sipServletMappingIndex = new SipServletMappingIndex();
 
 	protected transient SipApplicationDispatcher sipApplicationDispatcher = null;
 
@@ -259,7 +264,11 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
             sipSessionsUtil = new SipSessionsUtilImpl(this);
         }
         if(timerService == null) {          
-            timerService = new TimerServiceImpl(sipApplicationDispatcher.getSipService(), applicationName);         
+            if(TimingWheelTimerService.IMPLEMENTATION_TYPE.equalsIgnoreCase(sipApplicationDispatcher.getSipService().getSasTimerServiceImplementationType())) {
+                timerService = new TimingWheelTimerService(sipApplicationDispatcher, applicationName);
+            } else {
+                timerService = new TimerServiceImpl(sipApplicationDispatcher.getSipService(), applicationName);
+            }
         }
         if(sasTimerService == null || !sasTimerService.isStarted()) {
             String sasTimerServiceType = sipApplicationDispatcher.getSipService().getSasTimerServiceImplementationType();
@@ -267,6 +276,8 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
                 sasTimerService = new StandardSipApplicationSessionTimerService(applicationName);
             } else if (sasTimerServiceType != null && sasTimerServiceType.equalsIgnoreCase("Default")) {
                 sasTimerService = new DefaultSipApplicationSessionTimerService(applicationName);
+            } else if (sasTimerServiceType != null && sasTimerServiceType.equalsIgnoreCase(TimingWheelTimerService.IMPLEMENTATION_TYPE)) {
+                sasTimerService = new TimingWheelTimerService(sipApplicationDispatcher, applicationName);
             } else {
                 sasTimerService = new StandardSipApplicationSessionTimerService(applicationName);
             }
@@ -311,6 +322,8 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
                 } else {
                     proxyTimerService = new DefaultProxyTimerService(applicationName);
                 }
+            } else if(proxyTimerServiceType != null && proxyTimerServiceType.equalsIgnoreCase(TimingWheelTimerService.IMPLEMENTATION_TYPE)) {
+                proxyTimerService = new TimingWheelTimerService(sipApplicationDispatcher, applicationName);
             } else {
                 proxyTimerService = new ProxyTimerServiceImpl(applicationName);
             }
@@ -791,6 +804,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 		sipListeners.deallocateServletsActingAsListeners();
 		sipApplicationListeners.clear();
 		sipServletMappings.clear();
+		sipServletMappingIndex.invalidate();
 		childrenMap.clear();
 		childrenMapByClassName.clear();
 		if(sipApplicationDispatcher != null) {
@@ -1237,6 +1251,16 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 
 	public void setSipApplicationKeyMethod(Method sipApplicationKeyMethod) {
 		this.sipApplicationKeyMethod = sipApplicationKeyMethod;
+		// resolved again from the new method on the next initial request
+		this.sipApplicationKeyMethodHandle = null;
+	}
+
+	public MethodHandle getSipApplicationKeyMethodHandle() {
+		return sipApplicationKeyMethodHandle;
+	}
+
+	public void setSipApplicationKeyMethodHandle(MethodHandle sipApplicationKeyMethodHandle) {
+		this.sipApplicationKeyMethodHandle = sipApplicationKeyMethodHandle;
 	}
 
 	/**
@@ -1244,6 +1268,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 	 */
 	public void addSipServletMapping(MobicentsSipServletMapping sipServletMapping) {
 		sipServletMappings.add(sipServletMapping);
+		sipServletMappingIndex.invalidate();
 		isMainServlet = false;
 		if(servletHandler == null) {
 			servletHandler = sipServletMapping.getServletName();
@@ -1263,16 +1288,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 		if(logger.isDebugEnabled()) {
 			logger.debug("Checking sip Servlet Mapping for following request : " + sipServletRequest);
 		}
-		for (MobicentsSipServletMapping sipServletMapping : sipServletMappings) {
-			if(sipServletMapping.getMatchingRule().matches(sipServletRequest)) {
-				return sipServletMapping;
-			} else {
-				logger.debug("Following mapping rule didn't match : servletName => " + 
-						sipServletMapping.getServletName() + " | expression = "+ 
-						sipServletMapping.getMatchingRule().getExpression());
-			}
-		}
-		return null;
+		return sipServletMappingIndex.find(sipServletMappings, sipServletRequest);
 	}
 
 	/**
@@ -1280,6 +1296,7 @@ public class SipStandardContext extends StandardContext implements CatalinaSipCo
 	 */
 	public void removeSipServletMapping(MobicentsSipServletMapping sipServletMapping) {
 		sipServletMappings.remove(sipServletMapping);
+		sipServletMappingIndex.invalidate();
 	}
 
 	/**
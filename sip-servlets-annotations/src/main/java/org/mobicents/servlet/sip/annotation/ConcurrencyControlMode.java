@@ -31,5 +31,11 @@ public enum ConcurrencyControlMode {
 	Transaction,
 	SipSession,
 	SipApplicationSession,
+	/**
+	 * Messages, servlet timers and asynchronous work targeting the same sip application session
+	 * are queued on a per sip application session serial lane drained by the shared dispatcher pool,
+	 * so they run in order without the container ever blocking a thread on a session lock.
+	 */
+	SipApplicationSessionLane,
 	None
 }
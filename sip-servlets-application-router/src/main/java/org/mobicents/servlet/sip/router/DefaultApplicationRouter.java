@@ -26,12 +26,19 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.io.StringReader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -147,9 +154,6 @@ import org.apache.log4j.Logger;
  * </p>
  */
 public class DefaultApplicationRouter implements SipApplicationRouter, ManageableApplicationRouter {
-    private static final String DIRECTION_PARAMETER = "DIRECTION";
-    private static final String REGEX_PARAMETER = "REGEX";
-    private static final String REGEX_POPPED_ROUTE_PARAMETER = "REGEX_POPPED_ROUTE";
     private static final String DIRECTION_OUTBOUND = "OUTBOUND";
     private static final String DIRECTION_INBOUND = "INBOUND";
     private static final String DIRECTION_UAC_ROUTE_BACK = "UAC_ROUTE_BACK";
@@ -162,22 +166,35 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
     private static final String TO = "To";
     private static final int DAR_SUSCRIBER_PREFIX_LENGTH = DAR_SUSCRIBER_PREFIX.length();
     private static final String METHOD_WILDCARD = "ALL";
+    /**
+     * System property enabling the hot reload of the DAR configuration file, when set to true the file is watched for changes
+     * and reloaded in the background, deploying or undeploying an application doesn't read it anymore.
+     */
+    public static final String DAR_WATCH_PROPERTY = "org.mobicents.servlet.sip.router.dar.watch";
+    // delay to let the writer of the DAR configuration file finish before reloading it
+    private static final long DAR_WATCH_SETTLE_DELAY = 200;
     // the parser for the properties file
     private DefaultApplicationRouterParser defaultApplicationRouterParser;
     // Applications deployed within the container
     Set<String> containerDeployedApplicationNames = null;
     // List of applications defined in the defautl application router properties file
-    Map<String, List<? extends SipApplicationRouterInfo>> defaultSipApplicationRouterInfos;
+    volatile Map<String, List<? extends SipApplicationRouterInfo>> defaultSipApplicationRouterInfos;
+    // routing tables compiled from the above, swapped as a whole every time the configuration is reloaded
+    private volatile Map<String, RoutingTable> routingTables;
 
     List<AppRouterCondition> conditions;
 
+    // serializes the configuration loads, routing never takes it
+    private final Object configurationLock = new Object();
+    private DarConfigurationWatcher darConfigurationWatcher;
+
     /**
      * Default Constructor
      */
     public DefaultApplicationRouter() {
         containerDeployedApplicationNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
         defaultApplicationRouterParser = new DefaultApplicationRouterParser();
-        defaultSipApplicationRouterInfos = new ConcurrentHashMap<String, List<? extends SipApplicationRouterInfo>>();
+        setConfiguration(new ConcurrentHashMap<String, List<? extends SipApplicationRouterInfo>>());
         conditions = new ArrayList();
         conditions.add(new HeaderRegexCondition());
     }
@@ -186,7 +203,7 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
      * {@inheritDoc}
      */
     public void applicationDeployed(List<String> newlyDeployedApplicationNames) {
-        init();
+        reloadIfNotWatched();
         containerDeployedApplicationNames.addAll(newlyDeployedApplicationNames);
     }
 
@@ -194,7 +211,7 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
      * {@inheritDoc}
      */
     public void applicationUndeployed(List<String> undeployedApplicationNames) {
-        init();
+        reloadIfNotWatched();
         containerDeployedApplicationNames.removeAll(undeployedApplicationNames);
     }
 
@@ -202,9 +219,27 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
      * {@inheritDoc}
      */
     public void destroy() {
+        synchronized (configurationLock) {
+            if (darConfigurationWatcher != null) {
+                darConfigurationWatcher.stop();
+                darConfigurationWatcher = null;
+            }
+        }
         containerDeployedApplicationNames.clear();
     }
 
+    /*
+     * the DAR configuration file is refreshed on deploy and undeploy as per JSR 289 Appendix C, unless it is watched in which
+     * case the watcher already reloaded it if needed and the deployment doesn't have to wait for any I/O
+     */
+    private void reloadIfNotWatched() {
+        synchronized (configurationLock) {
+            if (darConfigurationWatcher == null) {
+                loadConfiguration();
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -219,12 +254,14 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
                         + " , directive=" + directive + ", targetedRequestInfo=" + targetedRequestInfo + ", stateinfo="
                         + stateInfo + " with following dar " + defaultApplicationRouterParser.getProperties());
             }
-            List<? extends SipApplicationRouterInfo> defaultSipApplicationRouterInfoList = defaultSipApplicationRouterInfos
-                    .get(initialRequest.getMethod());
-            sipApplicationRouterInfo = getNextApplication(initialRequest, stateInfo, defaultSipApplicationRouterInfoList);
+            // the request is serialized at most once, and only if a REGEX condition has to be evaluated
+            RequestText requestText = new RequestText(initialRequest);
+            Map<String, RoutingTable> currentRoutingTables = routingTables;
+            sipApplicationRouterInfo = getNextApplication(initialRequest, stateInfo,
+                    currentRoutingTables.get(initialRequest.getMethod()), requestText);
             if (sipApplicationRouterInfo == null) {
-                defaultSipApplicationRouterInfoList = defaultSipApplicationRouterInfos.get(METHOD_WILDCARD);
-                sipApplicationRouterInfo = getNextApplication(initialRequest, stateInfo, defaultSipApplicationRouterInfoList);
+                sipApplicationRouterInfo = getNextApplication(initialRequest, stateInfo,
+                        currentRoutingTables.get(METHOD_WILDCARD), requestText);
             }
             if (sipApplicationRouterInfo != null) {
                 return sipApplicationRouterInfo;
@@ -237,25 +274,19 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
      * This method is checking if the application that initiated the request is currently configured to be called for this
      * method. Apps that initiate request may not be in the list.
      */
-    private DefaultSipApplicationRouterInfo getFirstRequestApplicationEntry(
-            List<? extends SipApplicationRouterInfo> defaultSipApplicationRouterInfoList, SipServletRequest initialRequest) {
+    private DefaultSipApplicationRouterInfo getFirstRequestApplicationEntry(RoutingTable routingTable,
+            SipServletRequest initialRequest) {
         SipSession sipSession = initialRequest.getSession(false);
         if (sipSession != null) {
-            String appName = sipSession.getApplicationSession().getApplicationName();
-            Iterator<? extends SipApplicationRouterInfo> iterator = defaultSipApplicationRouterInfoList.iterator();
-            while (iterator.hasNext()) {
-                DefaultSipApplicationRouterInfo next = (DefaultSipApplicationRouterInfo) iterator.next();
-                if (next.getApplicationName().equals(appName))
-                    return next;
-            }
+            return routingTable.getFirstEntry(sipSession.getApplicationSession().getApplicationName());
         }
         return null;
     }
 
     private SipApplicationRouterInfo getNextApplication(SipServletRequest initialRequest, Serializable stateInfo,
-            List<? extends SipApplicationRouterInfo> defaultSipApplicationRouterInfoList) {
+            RoutingTable routingTable, RequestText requestText) {
 
-        if (defaultSipApplicationRouterInfoList != null && defaultSipApplicationRouterInfoList.size() > 0) {
+        if (routingTable != null && routingTable.size() > 0) {
             int previousAppOrder = 0;
             if (stateInfo != null) {
                 previousAppOrder = (Integer) stateInfo;
@@ -263,45 +294,46 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
                     log.debug("The previous app order was : " + previousAppOrder);
                 }
             }
-            ListIterator<? extends SipApplicationRouterInfo> defaultSipApplicationRouterInfoIt = defaultSipApplicationRouterInfoList
-                    .listIterator(previousAppOrder++);
-            while (defaultSipApplicationRouterInfoIt.hasNext()) {
-
-                /*
-                 * Fix for http://code.google.com/p/mobicents/issues/detail?id=987 Issue 987
-                 * 
-                 * INBOUND and OUTBOUND request routing logic is as follows: Determine if the request was initiated by the
-                 * previous application by either see the application missing in the DAR or by looking at the DIRECTION hint in
-                 * the optional parameters. If the request was initiated by the app then we will call only applications without
-                 * INBOUND direction. All applications without hint will be called to keep backward compatibility.
-                 */
-                DefaultSipApplicationRouterInfo defaultSipApplicationRouterInfo = (DefaultSipApplicationRouterInfo) defaultSipApplicationRouterInfoIt
-                        .next();
-
-                /*
-                 * This method is checking if the application that initiated the request is currently configured to be called
-                 * for this method. Apps that initiate request may not be in the list thus params must be assumed for them.
-                 */
-                DefaultSipApplicationRouterInfo requestSipApplicationRouterInfo = (DefaultSipApplicationRouterInfo) getFirstRequestApplicationEntry(
-                        defaultSipApplicationRouterInfoList, initialRequest);
-
-                String currentDirection = defaultSipApplicationRouterInfo.getOptionalParameters().get(DIRECTION_PARAMETER);
-                String requestDirection = null;
-                if (requestSipApplicationRouterInfo != null) {
-                    requestDirection = requestSipApplicationRouterInfo.getOptionalParameters().get(DIRECTION_PARAMETER);
-                } else {
-                    if (initialRequest.getSession(false) != null) {
-                        // If this request comes from outside (was not initiated by some app) the session will be null,
-                        // thus if it's not null we can assume the request already has a session and was initiated by
-                        // the application...
-                        requestDirection = DIRECTION_OUTBOUND;
-                    }
+            int index = previousAppOrder++;
+            if (index < 0 || index > routingTable.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+
+            /*
+             * Fix for http://code.google.com/p/mobicents/issues/detail?id=987 Issue 987
+             * 
+             * INBOUND and OUTBOUND request routing logic is as follows: Determine if the request was initiated by the previous
+             * application by either see the application missing in the DAR or by looking at the DIRECTION hint in the optional
+             * parameters. If the request was initiated by the app then we will call only applications without INBOUND
+             * direction. All applications without hint will be called to keep backward compatibility.
+             * 
+             * This method is checking if the application that initiated the request is currently configured to be called for
+             * this method. Apps that initiate request may not be in the list thus params must be assumed for them. It doesn't
+             * depend on the current entry so it is evaluated once for the whole table.
+             */
+            DefaultSipApplicationRouterInfo requestSipApplicationRouterInfo = getFirstRequestApplicationEntry(routingTable,
+                    initialRequest);
+            String requestDirection = null;
+            if (requestSipApplicationRouterInfo != null) {
+                requestDirection = requestSipApplicationRouterInfo.getDirection();
+            } else {
+                if (initialRequest.getSession(false) != null) {
+                    // If this request comes from outside (was not initiated by some app) the session will be null,
+                    // thus if it's not null we can assume the request already has a session and was initiated by
+                    // the application...
+                    requestDirection = DIRECTION_OUTBOUND;
                 }
+            }
 
-                if (DIRECTION_OUTBOUND.equalsIgnoreCase(requestDirection)) { // If the request was initiated by the previous app
-                                                                             // or the previous app has out marker
-                    if (DIRECTION_INBOUND.equalsIgnoreCase(currentDirection)) { // but the new application is handling only
-                                                                                // INBOUND request
+            // conditions are evaluated from the cheapest to the most expensive one, the REGEX condition
+            // requiring the whole request to be serialized is evaluated last
+            for (; index < routingTable.size(); index++) {
+                DefaultSipApplicationRouterInfo defaultSipApplicationRouterInfo = routingTable.get(index);
+
+                // If the request was initiated by the previous app or the previous app has out marker
+                // but the new application is handling only INBOUND request
+                if (DIRECTION_OUTBOUND.equalsIgnoreCase(requestDirection)) {
+                    if (DIRECTION_INBOUND.equalsIgnoreCase(defaultSipApplicationRouterInfo.getDirection())) {
                         if (log.isDebugEnabled()) {
                             log.debug(defaultSipApplicationRouterInfo.getApplicationName()
                                     + " will not be called because we are routing the request out and the application has 'DIRECTION=INBOUND' hint.");
@@ -310,41 +342,39 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
                     }
                 }
 
-                String regEx = defaultSipApplicationRouterInfo.getOptionalParameters().get(REGEX_PARAMETER);
-                if (regEx != null) {
-                    Pattern pattern = Pattern.compile(regEx);
-                    Matcher matcher = pattern.matcher(initialRequest.toString());
-                    if (matcher.find()) {
-                        if (log.isDebugEnabled()) {
-                            log.debug("initialRequest " + initialRequest + " matching regex pattern " + regEx + "begin index "
-                                    + matcher.start() + " and ending at index " + matcher.end() + " for application "
-                                    + defaultSipApplicationRouterInfo.getApplicationName());
-                        }
-                    } else {
-                        if (log.isDebugEnabled()) {
-                            log.debug("initialRequest " + initialRequest + " not matching regex pattern " + regEx
-                                    + " skipping application " + defaultSipApplicationRouterInfo.getApplicationName());
-                        }
-                        continue; // pattern not matching, just don't call the application
+                boolean isApplicationPresentInContainer = false;
+                if (containerDeployedApplicationNames.contains(defaultSipApplicationRouterInfo.getApplicationName())) {
+                    isApplicationPresentInContainer = true;
+                    if (log.isDebugEnabled()) {
+                        log.debug(defaultSipApplicationRouterInfo.getApplicationName() + " is present in the container.");
+                    }
+                } else {
+                    if (log.isDebugEnabled()) {
+                        log.debug("this " + this + " " + defaultSipApplicationRouterInfo.getApplicationName() + " is NOT present in the container.");
                     }
                 }
+                // if application is not deployed in the container and the intention is not to route outside
+                // there is no need to evaluate the other conditions
+                if (!isApplicationPresentInContainer
+                        && SipRouteModifier.NO_ROUTE.equals(defaultSipApplicationRouterInfo.getRouteModifier())) {
+                    continue;
+                }
+
                 // https://code.google.com/p/sipservlets/issues/detail?id=43
-                String regExPoppedRoute = defaultSipApplicationRouterInfo.getOptionalParameters().get(
-                        REGEX_POPPED_ROUTE_PARAMETER);
-                if (regExPoppedRoute != null) {
-                    Pattern pattern = Pattern.compile(regExPoppedRoute);
-                    Matcher matcher = pattern.matcher(initialRequest.getPoppedRoute().toString());
+                Pattern poppedRoutePattern = defaultSipApplicationRouterInfo.getPoppedRouteRegexPattern();
+                if (poppedRoutePattern != null) {
+                    Matcher matcher = poppedRoutePattern.matcher(initialRequest.getPoppedRoute().toString());
                     if (matcher.find()) {
                         if (log.isDebugEnabled()) {
                             log.debug("initialRequest Popped Route" + initialRequest.getPoppedRoute()
-                                    + " matching regex pattern " + regExPoppedRoute + "begin index " + matcher.start()
+                                    + " matching regex pattern " + poppedRoutePattern + "begin index " + matcher.start()
                                     + " and ending at index " + matcher.end() + " for application "
                                     + defaultSipApplicationRouterInfo.getApplicationName());
                         }
                     } else {
                         if (log.isDebugEnabled()) {
                             log.debug("initialRequest Popped Route" + initialRequest.getPoppedRoute()
-                                    + " matching regex pattern " + regExPoppedRoute + " skipping application "
+                                    + " matching regex pattern " + poppedRoutePattern + " skipping application "
                                     + defaultSipApplicationRouterInfo.getApplicationName());
                         }
                         continue; // pattern not matching, just don't call the application
@@ -355,71 +385,67 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
                     continue;
                 }
 
-                boolean isApplicationPresentInContainer = false;
-                if (containerDeployedApplicationNames.contains(defaultSipApplicationRouterInfo.getApplicationName())) {
-                    isApplicationPresentInContainer = true;
-                    if (log.isDebugEnabled()) {
-                        log.debug(defaultSipApplicationRouterInfo.getApplicationName() + " is present in the container.");
+                Pattern pattern = defaultSipApplicationRouterInfo.getRegexPattern();
+                if (pattern != null) {
+                    Matcher matcher = pattern.matcher(requestText.get());
+                    if (matcher.find()) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("initialRequest " + initialRequest + " matching regex pattern " + pattern + "begin index "
+                                    + matcher.start() + " and ending at index " + matcher.end() + " for application "
+                                    + defaultSipApplicationRouterInfo.getApplicationName());
+                        }
+                    } else {
+                        if (log.isDebugEnabled()) {
+                            log.debug("initialRequest " + initialRequest + " not matching regex pattern " + pattern
+                                    + " skipping application " + defaultSipApplicationRouterInfo.getApplicationName());
+                        }
+                        continue; // pattern not matching, just don't call the application
                     }
-			    } else {
-					if(log.isDebugEnabled()) {
-					    log.debug("this " + this + " " + defaultSipApplicationRouterInfo.getApplicationName() + " is NOT present in the container.");
-					}
-			    }
+                }
+
                 if (log.isDebugEnabled()) {
                     log.debug("Route Modifier : " + defaultSipApplicationRouterInfo.getRouteModifier());
-                    log.debug("Previous App Name : "
-                            + ((SipApplicationRouterInfo) defaultSipApplicationRouterInfoList.listIterator(previousAppOrder)
-                                    .previous()).getNextApplicationName());
-                    log.debug("Previous App Route Region : "
-                            + ((SipApplicationRouterInfo) defaultSipApplicationRouterInfoList.listIterator(previousAppOrder)
-                                    .previous()).getRoutingRegion());
+                    log.debug("Previous App Name : " + routingTable.get(previousAppOrder - 1).getNextApplicationName());
+                    log.debug("Previous App Route Region : " + routingTable.get(previousAppOrder - 1).getRoutingRegion());
                     log.debug("Current App Name : " + defaultSipApplicationRouterInfo.getNextApplicationName());
                     log.debug("Current App Route Region : " + defaultSipApplicationRouterInfo.getRoutingRegion());
                 }
-                // if application is deployed in the container or if the intention is to route outside even if the application
-                // is not deployed
-                if (isApplicationPresentInContainer
-                        || !SipRouteModifier.NO_ROUTE.equals(defaultSipApplicationRouterInfo.getRouteModifier())) {
-                    // prevents to route twice in a row to the same application with the same routing region
-                    SipSession initialSession = initialRequest.getSession(false);
-                    String initialAppName = null;
-                    String initialRoutingRegion = null;
-                    String defaultSipApplicationRouterAppName = null;
-                    String defaultSipApplicationRouterRoutingRegion = null;
-
-                    if (initialSession != null) {
-                        initialAppName = initialRequest.getSession(false).getApplicationSession().getApplicationName();
-                        initialRoutingRegion = ((SipApplicationRouterInfo) defaultSipApplicationRouterInfoList.listIterator(
-                                previousAppOrder).previous()).getRoutingRegion().toString();
-                        defaultSipApplicationRouterAppName = defaultSipApplicationRouterInfo.getApplicationName();
-                        defaultSipApplicationRouterRoutingRegion = defaultSipApplicationRouterInfo.getRoutingRegion()
-                                .toString();
-                    }
-                    if (initialSession == null || !defaultSipApplicationRouterAppName.equals(initialAppName) ||
-                    // https://code.google.com/p/sipservlets/issues/detail?id=273 allowing to route to the same app with
-                    // different routing regions
-                            ((defaultSipApplicationRouterAppName.equals(initialAppName) && !(initialRoutingRegion
-                                    .equals(defaultSipApplicationRouterRoutingRegion)))) || 
-                            // https://github.com/Mobicents/sip-servlets/issues/94
-                            ((requestDirection != null &&  defaultSipApplicationRouterAppName.equals(initialAppName) && 
-                            		DIRECTION_UAC_ROUTE_BACK.equals(requestDirection) && stateInfo == null))) {
-                        String subscriberIdentity = defaultSipApplicationRouterInfo.getSubscriberIdentity();
-                        if (subscriberIdentity.indexOf(DAR_SUSCRIBER_PREFIX) != -1) {
-                            String headerName = subscriberIdentity.substring(DAR_SUSCRIBER_PREFIX_LENGTH);
-                            if (FROM.equalsIgnoreCase(headerName)) {
-                                subscriberIdentity = initialRequest.getFrom().getURI().toString();
-                            } else if (TO.equalsIgnoreCase(headerName)) {
-                                subscriberIdentity = initialRequest.getTo().getURI().toString();
-                            } else {
-                                subscriberIdentity = initialRequest.getHeader(headerName);
-                            }
+                // prevents to route twice in a row to the same application with the same routing region
+                SipSession initialSession = initialRequest.getSession(false);
+                String initialAppName = null;
+                String initialRoutingRegion = null;
+                String defaultSipApplicationRouterAppName = null;
+                String defaultSipApplicationRouterRoutingRegion = null;
+
+                if (initialSession != null) {
+                    initialAppName = initialSession.getApplicationSession().getApplicationName();
+                    initialRoutingRegion = routingTable.get(previousAppOrder - 1).getRoutingRegion().toString();
+                    defaultSipApplicationRouterAppName = defaultSipApplicationRouterInfo.getApplicationName();
+                    defaultSipApplicationRouterRoutingRegion = defaultSipApplicationRouterInfo.getRoutingRegion().toString();
+                }
+                if (initialSession == null || !defaultSipApplicationRouterAppName.equals(initialAppName) ||
+                // https://code.google.com/p/sipservlets/issues/detail?id=273 allowing to route to the same app with
+                // different routing regions
+                        ((defaultSipApplicationRouterAppName.equals(initialAppName) && !(initialRoutingRegion
+                                .equals(defaultSipApplicationRouterRoutingRegion)))) || 
+                        // https://github.com/Mobicents/sip-servlets/issues/94
+                        ((requestDirection != null &&  defaultSipApplicationRouterAppName.equals(initialAppName) && 
+                        		DIRECTION_UAC_ROUTE_BACK.equals(requestDirection) && stateInfo == null))) {
+                    String subscriberIdentity = defaultSipApplicationRouterInfo.getSubscriberIdentity();
+                    if (subscriberIdentity.indexOf(DAR_SUSCRIBER_PREFIX) != -1) {
+                        String headerName = subscriberIdentity.substring(DAR_SUSCRIBER_PREFIX_LENGTH);
+                        if (FROM.equalsIgnoreCase(headerName)) {
+                            subscriberIdentity = initialRequest.getFrom().getURI().toString();
+                        } else if (TO.equalsIgnoreCase(headerName)) {
+                            subscriberIdentity = initialRequest.getTo().getURI().toString();
+                        } else {
+                            subscriberIdentity = initialRequest.getHeader(headerName);
                         }
-                        return new SipApplicationRouterInfo(defaultSipApplicationRouterInfo.getApplicationName(),
-                                defaultSipApplicationRouterInfo.getRoutingRegion(), subscriberIdentity,
-                                defaultSipApplicationRouterInfo.getRoutes(),
-                                defaultSipApplicationRouterInfo.getRouteModifier(), defaultSipApplicationRouterInfo.getOrder());
                     }
+                    return new SipApplicationRouterInfo(defaultSipApplicationRouterInfo.getApplicationName(),
+                            defaultSipApplicationRouterInfo.getRoutingRegion(), subscriberIdentity,
+                            defaultSipApplicationRouterInfo.getRoutes(),
+                            defaultSipApplicationRouterInfo.getRouteModifier(), defaultSipApplicationRouterInfo.getOrder());
                 }
             }
         }
@@ -440,9 +466,31 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
      * load the configuration file as defined in appendix C of JSR289
      */
     public void init() {
-        defaultApplicationRouterParser.init();
+        synchronized (configurationLock) {
+            loadConfiguration();
+            if (darConfigurationWatcher == null && Boolean.parseBoolean(System.getProperty(DAR_WATCH_PROPERTY))) {
+                try {
+                    darConfigurationWatcher = new DarConfigurationWatcher(defaultApplicationRouterParser
+                            .getDarConfigurationFile());
+                    darConfigurationWatcher.start();
+                } catch (IOException e) {
+                    log.error("Impossible to watch the default application router configuration file "
+                            + defaultApplicationRouterParser.getDarConfigurationFileLocation()
+                            + ", it will be reloaded on application deployment", e);
+                    darConfigurationWatcher = null;
+                }
+            }
+        }
+    }
+
+    /*
+     * Load and parse the DAR configuration file and publish the new routing tables, getNextApplication keeps using the
+     * previous ones until they are swapped. Must be called with the configurationLock held.
+     */
+    private void loadConfiguration() {
+        Properties properties = defaultApplicationRouterParser.loadProperties();
         try {
-            defaultSipApplicationRouterInfos = defaultApplicationRouterParser.parse();
+            setConfiguration(defaultApplicationRouterParser.parse(properties));
         } catch (ParseException e) {
             log.fatal("Impossible to parse the default application router configuration file", e);
             throw new IllegalArgumentException("Impossible to parse the default application router configuration file", e);
@@ -455,12 +503,14 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
      * @see javax.servlet.sip.ar.SipApplicationRouter#init(java.util.Properties)
      */
     public void init(Properties properties) {
-        defaultApplicationRouterParser.init(properties);
-        try {
-            defaultSipApplicationRouterInfos = defaultApplicationRouterParser.parse();
-        } catch (ParseException e) {
-            log.fatal("Impossible to parse the default application router configuration file", e);
-            throw new IllegalArgumentException("Impossible to parse the default application router configuration file", e);
+        synchronized (configurationLock) {
+            defaultApplicationRouterParser.init(properties);
+            try {
+                setConfiguration(defaultApplicationRouterParser.parse());
+            } catch (ParseException e) {
+                log.fatal("Impossible to parse the default application router configuration file", e);
+                throw new IllegalArgumentException("Impossible to parse the default application router configuration file", e);
+            }
         }
     }
 
@@ -485,10 +535,12 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
         } else if (configuration instanceof Properties) {
             properties = (Properties) configuration;
         }
-        try {
-            defaultSipApplicationRouterInfos = this.defaultApplicationRouterParser.parse(properties);
-        } catch (ParseException e1) {
-            throw new IllegalArgumentException("Failed to parse the new DAR properties", e1);
+        synchronized (configurationLock) {
+            try {
+                setConfiguration(this.defaultApplicationRouterParser.parse(properties));
+            } catch (ParseException e1) {
+                throw new IllegalArgumentException("Failed to parse the new DAR properties", e1);
+            }
         }
 
         String configFileLocation = defaultApplicationRouterParser.getDarConfigurationFileLocation();
@@ -546,4 +598,156 @@ public class DefaultApplicationRouter implements SipApplicationRouter, Manageabl
         return defaultSipApplicationRouterInfos;
     }
 
+    /**
+     * Sets the parsed DAR configuration and compiles it into one routing table per method.
+     */
+    private void setConfiguration(Map<String, List<? extends SipApplicationRouterInfo>> configuration) {
+        Map<String, RoutingTable> newRoutingTables = new HashMap<String, RoutingTable>();
+        for (Map.Entry<String, List<? extends SipApplicationRouterInfo>> entry : configuration.entrySet()) {
+            newRoutingTables.put(entry.getKey(), new RoutingTable(entry.getValue()));
+        }
+        defaultSipApplicationRouterInfos = configuration;
+        routingTables = newRoutingTables;
+    }
+
+    /**
+     * Watches the directory of the DAR configuration file and reloads it in the background every time it is modified. A
+     * configuration that fails to load or parse is logged and ignored, the previous routing tables stay in use.
+     */
+    private final class DarConfigurationWatcher implements Runnable {
+        private final Path darConfigurationFile;
+        private final WatchService watchService;
+        private final Thread thread;
+        private volatile boolean stopped;
+
+        DarConfigurationWatcher(File darConfigurationFile) throws IOException {
+            this.darConfigurationFile = darConfigurationFile.getAbsoluteFile().toPath();
+            watchService = FileSystems.getDefault().newWatchService();
+            this.darConfigurationFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            thread = new Thread(this, "MSS-DAR-Watcher");
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+            if (log.isInfoEnabled()) {
+                log.info("Watching default application router configuration file " + darConfigurationFile
+                        + " for changes");
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.error("fail to close the watch service of " + darConfigurationFile, e);
+            }
+        }
+
+        public void run() {
+            while (!stopped) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (InterruptedException e) {
+                    break;
+                } catch (ClosedWatchServiceException e) {
+                    break;
+                }
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || darConfigurationFile.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    try {
+                        // let the writer finish and coalesce the burst of events most editors generate
+                        Thread.sleep(DAR_WATCH_SETTLE_DELAY);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    reload();
+                }
+            }
+            if (log.isInfoEnabled()) {
+                log.info("Stopped watching default application router configuration file " + darConfigurationFile);
+            }
+        }
+
+        private void reload() {
+            synchronized (configurationLock) {
+                if (stopped) {
+                    return;
+                }
+                try {
+                    loadConfiguration();
+                    if (log.isInfoEnabled()) {
+                        log.info("Default application router configuration reloaded from " + darConfigurationFile);
+                    }
+                } catch (Exception e) {
+                    log.error("Impossible to reload the default application router configuration file "
+                            + darConfigurationFile + ", keeping the previous configuration", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiled form of the DAR entries of a given method : the entries in order plus an index of the first entry of each
+     * application, so that finding the entry of the application that initiated a request doesn't require a scan.
+     */
+    private static final class RoutingTable {
+        private final DefaultSipApplicationRouterInfo[] entries;
+        private final Map<String, DefaultSipApplicationRouterInfo> firstEntries;
+
+        RoutingTable(List<? extends SipApplicationRouterInfo> sipApplicationRouterInfos) {
+            entries = new DefaultSipApplicationRouterInfo[sipApplicationRouterInfos.size()];
+            firstEntries = new HashMap<String, DefaultSipApplicationRouterInfo>();
+            int i = 0;
+            for (SipApplicationRouterInfo sipApplicationRouterInfo : sipApplicationRouterInfos) {
+                DefaultSipApplicationRouterInfo info = (DefaultSipApplicationRouterInfo) sipApplicationRouterInfo;
+                entries[i++] = info;
+                if (info.getApplicationName() != null && !firstEntries.containsKey(info.getApplicationName())) {
+                    firstEntries.put(info.getApplicationName(), info);
+                }
+            }
+        }
+
+        int size() {
+            return entries.length;
+        }
+
+        DefaultSipApplicationRouterInfo get(int index) {
+            return entries[index];
+        }
+
+        DefaultSipApplicationRouterInfo getFirstEntry(String applicationName) {
+            return firstEntries.get(applicationName);
+        }
+    }
+
+    /**
+     * Serializes the initial request the first time it is needed and caches the result for the rest of the routing decision.
+     */
+    private static final class RequestText {
+        private final SipServletRequest request;
+        private String text;
+
+        RequestText(SipServletRequest request) {
+            this.request = request;
+        }
+
+        String get() {
+            if (text == null) {
+                text = request.toString();
+            }
+            return text;
+        }
+    }
+
 }
@@ -74,32 +74,24 @@ public class DefaultApplicationRouterParser {
      * @throws IllegalArgumentException if anything goes wrong when trying to load the configuration file
      */
     public void init() {
-        // load the configuration file
+        properties = loadProperties();
+    }
+
+    /**
+     * Load the configuration file as defined in JSR289 Appendix C ie as a system property "javax.servlet.sip.dar" into a new
+     * Properties object, without changing the properties currently used by this parser
+     * 
+     * @return the properties loaded from the configuration file
+     * @throws IllegalArgumentException if anything goes wrong when trying to load the configuration file
+     */
+    public Properties loadProperties() {
         String darConfigurationFileLocation = getDarConfigurationFileLocation();
-        if (log.isDebugEnabled()) {
-            log.debug("Default Application Router file Location : " + darConfigurationFileLocation);
-        }
-        File darConfigurationFile = null;
-        // hack to get around space char in path see http://weblogs.java.net/blog/kohsuke/archive/2007/04/how_to_convert.html,
-        // we create a URL since it's permissive enough
-        URL url = null;
-        try {
-            url = new URL(darConfigurationFileLocation);
-        } catch (MalformedURLException e) {
-            log.fatal("Cannot find the default application router file ! ", e);
-            throw new IllegalArgumentException("The Default Application Router file Location : " + darConfigurationFileLocation
-                    + " is not valid ! ", e);
-        }
-        try {
-            darConfigurationFile = new File(new URI(darConfigurationFileLocation));
-        } catch (URISyntaxException e) {
-            // if the uri contains space this will fail, so getting the path will work
-            darConfigurationFile = new File(url.getPath());
-        }
+        File darConfigurationFile = getDarConfigurationFile();
+        Properties loadedProperties = new Properties();
         FileInputStream fis = null;
         try {
             fis = new FileInputStream(darConfigurationFile);
-            properties.load(fis);
+            loadedProperties.load(fis);
         } catch (FileNotFoundException e) {
             log.fatal("Cannot find the default application router file ! ", e);
             throw new IllegalArgumentException("The Default Application Router file Location : " + darConfigurationFileLocation
@@ -117,6 +109,36 @@ public class DefaultApplicationRouterParser {
                 }
             }
         }
+        return loadedProperties;
+    }
+
+    /**
+     * Resolve the configuration file from the location given by the system property "javax.servlet.sip.dar"
+     * 
+     * @return the configuration file
+     * @throws IllegalArgumentException if the location is not valid
+     */
+    public File getDarConfigurationFile() {
+        String darConfigurationFileLocation = getDarConfigurationFileLocation();
+        if (log.isDebugEnabled()) {
+            log.debug("Default Application Router file Location : " + darConfigurationFileLocation);
+        }
+        // hack to get around space char in path see http://weblogs.java.net/blog/kohsuke/archive/2007/04/how_to_convert.html,
+        // we create a URL since it's permissive enough
+        URL url = null;
+        try {
+            url = new URL(darConfigurationFileLocation);
+        } catch (MalformedURLException e) {
+            log.fatal("Cannot find the default application router file ! ", e);
+            throw new IllegalArgumentException("The Default Application Router file Location : " + darConfigurationFileLocation
+                    + " is not valid ! ", e);
+        }
+        try {
+            return new File(new URI(darConfigurationFileLocation));
+        } catch (URISyntaxException e) {
+            // if the uri contains space this will fail, so getting the path will work
+            return new File(url.getPath());
+        }
     }
 
     /**
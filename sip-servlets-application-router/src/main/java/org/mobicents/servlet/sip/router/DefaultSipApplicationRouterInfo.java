@@ -43,6 +43,9 @@ import javax.servlet.sip.ar.SipRouteModifier;
 public class DefaultSipApplicationRouterInfo extends SipApplicationRouterInfo {
     private static final String HEADER_REGEX_PREFIX = "HEADER";
     private static final String HEADER_REGEX_SEPARATOR = "_";
+    static final String DIRECTION_PARAMETER = "DIRECTION";
+    static final String REGEX_PARAMETER = "REGEX";
+    static final String REGEX_POPPED_ROUTE_PARAMETER = "REGEX_POPPED_ROUTE";
 
     // private String applicationName;
     // private SipApplicationRoutingRegion routingRegion;
@@ -53,6 +56,10 @@ public class DefaultSipApplicationRouterInfo extends SipApplicationRouterInfo {
     private Map<String, String> optionalParameters;
 
     private Map<String, Pattern> headerPatternMap = new HashMap();
+    // optional parameters compiled once when the DAR is parsed instead of on every initial request
+    private String direction;
+    private Pattern regexPattern;
+    private Pattern poppedRouteRegexPattern;
 
     /**
      * @param applicationName
@@ -74,13 +81,23 @@ public class DefaultSipApplicationRouterInfo extends SipApplicationRouterInfo {
         this.order = order;
         try {
             this.optionalParameters = stringToMap(optionalParameters);
-            scanForHeaderRegex();
+            compileOptionalParameters();
         } catch (ParseException e) {
             throw new RuntimeException("Error", e);
         }
 
     }
 
+    private void compileOptionalParameters() {
+        direction = optionalParameters.get(DIRECTION_PARAMETER);
+        String regex = optionalParameters.get(REGEX_PARAMETER);
+        regexPattern = regex != null ? Pattern.compile(regex) : null;
+        String poppedRouteRegex = optionalParameters.get(REGEX_POPPED_ROUTE_PARAMETER);
+        poppedRouteRegexPattern = poppedRouteRegex != null ? Pattern.compile(poppedRouteRegex) : null;
+        headerPatternMap = new HashMap<String, Pattern>();
+        scanForHeaderRegex();
+    }
+
     private void scanForHeaderRegex() {
         for (String optParamName : optionalParameters.keySet()) {
 
@@ -166,9 +183,34 @@ public class DefaultSipApplicationRouterInfo extends SipApplicationRouterInfo {
      */
     public void setOptionalParameters(HashMap<String, String> optionalParameters) {
         this.optionalParameters = optionalParameters;
+        compileOptionalParameters();
     }
 
     public Map<String, Pattern> getHeaderPatternMap() {
         return headerPatternMap;
     }
+
+    /**
+     * 
+     * @return the value of the DIRECTION optional parameter or null if not set
+     */
+    public String getDirection() {
+        return direction;
+    }
+
+    /**
+     * 
+     * @return the compiled REGEX optional parameter, matched against the whole initial request, or null if not set
+     */
+    public Pattern getRegexPattern() {
+        return regexPattern;
+    }
+
+    /**
+     * 
+     * @return the compiled REGEX_POPPED_ROUTE optional parameter, matched against the popped route, or null if not set
+     */
+    public Pattern getPoppedRouteRegexPattern() {
+        return poppedRouteRegexPattern;
+    }
 }
@@ -1,14 +1,60 @@
 package org.mobicents.servlet.sip.router;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Properties;
 import junit.framework.TestCase;
 
 public class DefaultApplicationRouterTest extends TestCase {
 
+    private static final String DAR_PROPERTY = "javax.servlet.sip.dar";
+
+    private File darConfigurationFile;
+    private DefaultApplicationRouter router;
+
     public DefaultApplicationRouterTest(String testName) {
         super(testName);
     }
 
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // in its own directory, the watcher watches the whole directory of the file
+        File darDirectory = File.createTempFile("dar", "");
+        darDirectory.delete();
+        darDirectory.mkdir();
+        darConfigurationFile = new File(darDirectory, "dar.properties");
+        System.setProperty(DAR_PROPERTY, darConfigurationFile.toURI().toString());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (router != null) {
+            router.destroy();
+        }
+        System.clearProperty(DAR_PROPERTY);
+        System.clearProperty(DefaultApplicationRouter.DAR_WATCH_PROPERTY);
+        darConfigurationFile.delete();
+        darConfigurationFile.getParentFile().delete();
+        super.tearDown();
+    }
+
+    private void writeDarConfiguration(String applicationName) throws IOException {
+        FileOutputStream fos = new FileOutputStream(darConfigurationFile);
+        try {
+            fos.write(("INVITE: (\"" + applicationName + "\", \"DAR:From\", \"ORIGINATING\", \"\", \"NO_ROUTE\", \"0\")\n")
+                    .getBytes("UTF-8"));
+        } finally {
+            fos.close();
+        }
+    }
+
+    private String getInviteApplicationName() {
+        return ((DefaultSipApplicationRouterInfo) router.getConfiguration().get("INVITE").get(0)).getApplicationName();
+    }
+
     public void testInitWithProperties() {
         DefaultApplicationRouter router = new DefaultApplicationRouter();
         Properties properties = new Properties();
@@ -18,4 +64,66 @@ public class DefaultApplicationRouterTest extends TestCase {
         router.init(properties);
     }
 
+    public void testDeploymentReloadsTheUnwatchedConfigurationEvenIfItLooksUnchanged() throws Exception {
+        writeDarConfiguration("AppA");
+        router = new DefaultApplicationRouter();
+        router.init();
+        assertEquals("AppA", getInviteApplicationName());
+
+        // same length and same modification time as the loaded file
+        long lastModified = darConfigurationFile.lastModified();
+        writeDarConfiguration("AppB");
+        darConfigurationFile.setLastModified(lastModified);
+        router.applicationDeployed(Collections.singletonList("AppB"));
+        assertEquals("AppB", getInviteApplicationName());
+
+        writeDarConfiguration("AppC");
+        darConfigurationFile.setLastModified(lastModified);
+        router.applicationUndeployed(Collections.singletonList("AppB"));
+        assertEquals("AppC", getInviteApplicationName());
+    }
+
+    public void testWatcherSwapsTheRoutingTablesWhenTheFileChanges() throws Exception {
+        System.setProperty(DefaultApplicationRouter.DAR_WATCH_PROPERTY, "true");
+        writeDarConfiguration("AppA");
+        router = new DefaultApplicationRouter();
+        router.init();
+        assertEquals("AppA", getInviteApplicationName());
+
+        writeDarConfiguration("AppB");
+        long deadline = System.currentTimeMillis() + 20000;
+        while (!"AppB".equals(getInviteApplicationName()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals("AppB", getInviteApplicationName());
+
+        // deployments don't read the watched file
+        darConfigurationFile.delete();
+        router.applicationDeployed(Collections.singletonList("AppB"));
+        assertEquals("AppB", getInviteApplicationName());
+    }
+
+    public void testWatcherKeepsThePreviousConfigurationIfTheNewOneIsInvalid() throws Exception {
+        System.setProperty(DefaultApplicationRouter.DAR_WATCH_PROPERTY, "true");
+        writeDarConfiguration("AppA");
+        router = new DefaultApplicationRouter();
+        router.init();
+
+        FileOutputStream fos = new FileOutputStream(darConfigurationFile);
+        try {
+            fos.write("INVITE: (\"AppB\", \"DAR:From\")\n".getBytes("UTF-8"));
+        } finally {
+            fos.close();
+        }
+        Thread.sleep(1000);
+        assertEquals("AppA", getInviteApplicationName());
+
+        writeDarConfiguration("AppC");
+        long deadline = System.currentTimeMillis() + 20000;
+        while (!"AppC".equals(getInviteApplicationName()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals("AppC", getInviteApplicationName());
+    }
+
 }
@@ -31,4 +31,20 @@ public class DefaultSipApplicationRouterInfoTest extends TestCase {
         Assert.assertEquals(2, info.getHeaderPatternMap().size());
     }
 
+    public void testCompiledOptionalParameters() {
+        String optionalParams = "DIRECTION=INBOUND REGEX=From:.*sip:.*@sip-servlets\\.com REGEX_POPPED_ROUTE=.*mobicents.*";
+        DefaultSipApplicationRouterInfo info = new DefaultSipApplicationRouterInfo(null, null, null, null, null, 0,
+                optionalParams);
+        Assert.assertEquals("INBOUND", info.getDirection());
+        Assert.assertTrue(info.getRegexPattern().matcher("From: sip:alice@sip-servlets.com").find());
+        Assert.assertTrue(info.getPoppedRouteRegexPattern().matcher("sip:mobicents.org").find());
+    }
+
+    public void testCompiledOptionalParameters_NotSet() {
+        DefaultSipApplicationRouterInfo info = new DefaultSipApplicationRouterInfo(null, null, null, null, null, 0, "");
+        Assert.assertNull(info.getDirection());
+        Assert.assertNull(info.getRegexPattern());
+        Assert.assertNull(info.getPoppedRouteRegexPattern());
+    }
+
 }
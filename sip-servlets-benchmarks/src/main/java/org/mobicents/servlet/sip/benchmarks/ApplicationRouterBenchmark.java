@@ -0,0 +1,124 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.benchmarks;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.sip.Address;
+import javax.servlet.sip.SipServletRequest;
+import javax.servlet.sip.URI;
+import javax.servlet.sip.ar.SipApplicationRouterInfo;
+import javax.servlet.sip.ar.SipApplicationRoutingDirective;
+import javax.servlet.sip.ar.SipApplicationRoutingRegion;
+
+import org.mobicents.servlet.sip.router.DefaultApplicationRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Routing hot path : the default application router picking the next application of an initial request. 
+ * The INVITE table holds header conditions that don't match before the application that gets selected, 
+ * the MESSAGE requests fall back to the wildcard table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplicationRouterBenchmark {
+
+	private DefaultApplicationRouter applicationRouter;
+	private SipServletRequest inviteRequest;
+	private SipServletRequest messageRequest;
+
+	@Setup
+	public void setup() {
+		applicationRouter = new DefaultApplicationRouter();
+		Properties properties = new Properties();
+		properties.setProperty("INVITE", 
+				"(\"CallBlocking\", \"DAR:From\", \"TERMINATING\", \"\", \"NO_ROUTE\", \"0\", \"HEADER_From=.*blocked\\.com.*\"), " +
+				"(\"CallForwarding\", \"DAR:To\", \"TERMINATING\", \"\", \"NO_ROUTE\", \"1\", \"HEADER_To=.*forward\\.com.*\"), " +
+				"(\"PlayMyBand\", \"DAR:From\", \"ORIGINATING\", \"\", \"NO_ROUTE\", \"2\")");
+		properties.setProperty("ALL", 
+				"(\"Presence\", \"DAR:From\", \"NEUTRAL\", \"\", \"NO_ROUTE\", \"0\")");
+		applicationRouter.init(properties);
+		applicationRouter.applicationDeployed(Arrays.asList("CallBlocking", "CallForwarding", "PlayMyBand", "Presence"));
+
+		inviteRequest = createRequest("INVITE");
+		messageRequest = createRequest("MESSAGE");
+	}
+
+	@TearDown
+	public void tearDown() {
+		applicationRouter.destroy();
+	}
+
+	private static SipServletRequest createRequest(String method) {
+		URI fromURI = Stubs.of(URI.class).answer("toString", "sip:alice@atlanta.com").build();
+		Address from = Stubs.of(Address.class)
+				.answer("getURI", fromURI)
+				.answer("toString", "<sip:alice@atlanta.com>;tag=1928301774").build();
+		URI toURI = Stubs.of(URI.class).answer("toString", "sip:bob@biloxi.com").build();
+		Address to = Stubs.of(Address.class)
+				.answer("getURI", toURI)
+				.answer("toString", "<sip:bob@biloxi.com>").build();
+		return Stubs.of(SipServletRequest.class)
+				.answer("getMethod", method)
+				.answer("getFrom", from)
+				.answer("getTo", to)
+				.answer("getHeader", "<sip:alice@atlanta.com>;tag=1928301774")
+				.answer("toString", method + " sip:bob@biloxi.com SIP/2.0\r\n" +
+						"From: <sip:alice@atlanta.com>;tag=1928301774\r\n" + 
+						"To: <sip:bob@biloxi.com>\r\n" + 
+						"Call-ID: a84b4c76e66710@pc33.atlanta.com\r\n" +
+						"CSeq: 314159 " + method + "\r\n\r\n").build();
+	}
+
+	@Benchmark
+	public SipApplicationRouterInfo invite() {
+		return applicationRouter.getNextApplication(inviteRequest, SipApplicationRoutingRegion.NEUTRAL_REGION, 
+				SipApplicationRoutingDirective.NEW, null, null);
+	}
+
+	@Benchmark
+	public SipApplicationRouterInfo inviteContinue() {
+		// the request coming back to the container after the first application
+		return applicationRouter.getNextApplication(inviteRequest, SipApplicationRoutingRegion.TERMINATING_REGION, 
+				SipApplicationRoutingDirective.CONTINUE, null, Integer.valueOf(1));
+	}
+
+	@Benchmark
+	public SipApplicationRouterInfo wildcard() {
+		return applicationRouter.getNextApplication(messageRequest, SipApplicationRoutingRegion.NEUTRAL_REGION, 
+				SipApplicationRoutingDirective.NEW, null, null);
+	}
+}
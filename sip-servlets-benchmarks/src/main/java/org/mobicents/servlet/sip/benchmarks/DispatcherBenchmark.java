@@ -0,0 +1,165 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sip.PeerUnavailableException;
+import javax.sip.SipFactory;
+import javax.sip.address.Hop;
+
+import org.mobicents.ext.javax.sip.dns.DNSLookupPerformer;
+import org.mobicents.ext.javax.sip.dns.DNSServerLocator;
+import org.mobicents.servlet.sip.SipConnector;
+import org.mobicents.servlet.sip.core.MobicentsExtendedListeningPoint;
+import org.mobicents.servlet.sip.core.SipApplicationDispatcher;
+import org.mobicents.servlet.sip.core.SipContext;
+import org.mobicents.servlet.sip.core.SipNetworkInterfaceManagerImpl;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedDispatcherExecutor;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedTask;
+import org.mobicents.servlet.sip.message.SipFactoryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dispatch hot path : the hand off of the incoming messages to the sharded dispatcher executor 
+ * and the resolution of the listening point a message has to go out through.
+ * 
+ * The full SipApplicationDispatcherImpl.processRequest path needs a started sip stack and deployed 
+ * applications, it is exercised by the test suite instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatcherBenchmark {
+
+	private static final int BATCH_SIZE = 1024;
+	private static final String[] CALL_IDS = new String[BATCH_SIZE];
+	static {
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			CALL_IDS[i] = i + "a84b4c76e66710@pc33.atlanta.com";
+		}
+	}
+
+	@Param({"4"})
+	public int shards;
+
+	private ShardedDispatcherExecutor dispatcherExecutor;
+	private SipNetworkInterfaceManagerImpl sipNetworkInterfaceManager;
+
+	@Setup
+	public void setup() throws PeerUnavailableException {
+		dispatcherExecutor = new ShardedDispatcherExecutor("MSS-Benchmark-Dispatcher", shards, 1, BATCH_SIZE, Thread.NORM_PRIORITY);
+
+		if(SipFactoryImpl.addressFactory == null) {
+			SipFactory sipFactory = SipFactory.getInstance();
+			sipFactory.setPathName("gov.nist");
+			SipFactoryImpl.addressFactory = sipFactory.createAddressFactory();
+		}
+		// no hostname resolves to any of the hops of our listening points
+		DNSLookupPerformer dnsLookupPerformer = Stubs.of(DNSLookupPerformer.class)
+				.answer("locateHopsForNonNumericAddressWithPort", new ArrayDeque<Hop>()).build();
+		DNSServerLocator dnsServerLocator = Stubs.of(DNSServerLocator.class)
+				.answer("getDnsLookupPerformer", dnsLookupPerformer).build();
+		SipApplicationDispatcher sipApplicationDispatcher = Stubs.of(SipApplicationDispatcher.class)
+				.answer("findSipApplications", Collections.<SipContext>emptyIterator())
+				.answer("getDNSServerLocator", dnsServerLocator).build();
+		sipNetworkInterfaceManager = new SipNetworkInterfaceManagerImpl(sipApplicationDispatcher);
+		SipConnector sipConnector = new SipConnector();
+		sipConnector.setHostNames("sip.atlanta.com");
+		sipNetworkInterfaceManager.addExtendedListeningPoint(createListeningPoint(sipConnector, "udp"));
+		sipNetworkInterfaceManager.addExtendedListeningPoint(createListeningPoint(sipConnector, "tcp"));
+	}
+
+	private static MobicentsExtendedListeningPoint createListeningPoint(SipConnector sipConnector, String transport) {
+		return Stubs.of(MobicentsExtendedListeningPoint.class)
+				.answer("getIpAddresses", Arrays.asList("192.168.0.10", "10.0.0.10"))
+				.answer("getPort", Integer.valueOf(5080))
+				.answer("getTransport", transport)
+				.answer("getSipConnector", sipConnector).build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		dispatcherExecutor.shutdownNow();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void dispatch() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			dispatcherExecutor.execute(new DispatchTask(CALL_IDS[i], latch));
+		}
+		latch.await();
+	}
+
+	@Benchmark
+	public MobicentsExtendedListeningPoint findListeningPointByIpAddress() {
+		return sipNetworkInterfaceManager.findMatchingListeningPoint("10.0.0.10", 5080, "udp");
+	}
+
+	@Benchmark
+	public MobicentsExtendedListeningPoint findListeningPointByHostName() {
+		return sipNetworkInterfaceManager.findMatchingListeningPoint("sip.atlanta.com", 5080, "tcp");
+	}
+
+	@Benchmark
+	public MobicentsExtendedListeningPoint findUnknownListeningPoint() {
+		// only the first lookup goes to the stubbed dns lookup performer, the next ones are served by the resolution cache
+		return sipNetworkInterfaceManager.findMatchingListeningPoint("sip.biloxi.com", 5060, "udp");
+	}
+
+	private static final class DispatchTask implements ShardedTask {
+		private final String callId;
+		private final CountDownLatch latch;
+
+		DispatchTask(String callId, CountDownLatch latch) {
+			this.callId = callId;
+			this.latch = latch;
+		}
+
+		public Object getShardKey() {
+			return callId;
+		}
+
+		public void run() {
+			latch.countDown();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mobicents.servlet.sip.core.ApplicationRoutingHeaderComposer;
+import org.mobicents.servlet.sip.core.DefaultIdentifierGenerator;
+import org.mobicents.servlet.sip.core.SipApplicationDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tags and branches hot path : every dialog creating request gets a tag generated by the 
+ * ApplicationRoutingHeaderComposer and every subsequent request has its tag decoded back 
+ * to find the application it belongs to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingHeaderBenchmark {
+
+	private static final String APPLICATION_NAME = "PlayMyBand";
+	private static final String APPLICATION_SESSION_ID = "5c2ef1a6-3b64-4d2a-9f0e-7e4c9a1d2b3f";
+
+	private SipApplicationDispatcher sipApplicationDispatcher;
+	private String tag;
+
+	@Setup
+	public void setup() {
+		sipApplicationDispatcher = Stubs.of(SipApplicationDispatcher.class)
+				.answer("getIdentifierGenerator", new DefaultIdentifierGenerator())
+				.answer("getApplicationServerIdHash", "24e5c8d9")
+				.answer("getHashFromApplicationName", "1f3a4b2c")
+				.answer("getApplicationNameFromHash", APPLICATION_NAME)
+				.answer("getTagHashMaxLength", Integer.valueOf(8)).build();
+		tag = ApplicationRoutingHeaderComposer.getHash(sipApplicationDispatcher, APPLICATION_NAME, APPLICATION_SESSION_ID);
+	}
+
+	@Benchmark
+	public String randomString() {
+		return ApplicationRoutingHeaderComposer.randomString(8);
+	}
+
+	@Benchmark
+	public String composeTag() {
+		return ApplicationRoutingHeaderComposer.getHash(sipApplicationDispatcher, APPLICATION_NAME, APPLICATION_SESSION_ID);
+	}
+
+	@Benchmark
+	public String[] decomposeTag() {
+		return ApplicationRoutingHeaderComposer.getAppNameAndSessionId(sipApplicationDispatcher, tag);
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.mobicents.servlet.sip.core.session.SessionManagerUtil;
+import org.mobicents.servlet.sip.core.session.SipApplicationSessionKey;
+import org.mobicents.servlet.sip.core.session.SipSessionKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Session lookup hot path : the stringified session keys carried in encoded urls and in the 
+ * replicated state are parsed back into keys, and keys are rebuilt from their binary form 
+ * when sessions are loaded from the distributed cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionKeyBenchmark {
+
+	private String sipSessionKeyString;
+	private String sipApplicationSessionKeyString;
+	private SipSessionKey sipSessionKey;
+	private SipApplicationSessionKey sipApplicationSessionKey;
+	private byte[] sipSessionKeyBytes;
+	private byte[] sipApplicationSessionKeyBytes;
+
+	@Setup
+	public void setup() throws IOException {
+		sipApplicationSessionKey = new SipApplicationSessionKey("5c2ef1a6-3b64-4d2a-9f0e-7e4c9a1d2b3f", "PlayMyBand", null);
+		sipSessionKey = new SipSessionKey("3423465_1234_PlayMyBand", "9874562", 
+				"a84b4c76e66710@pc33.atlanta.com", sipApplicationSessionKey.getId(), "PlayMyBand");
+		sipSessionKeyString = sipSessionKey.toString();
+		sipApplicationSessionKeyString = sipApplicationSessionKey.toString();
+
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		sipSessionKey.writeTo(new DataOutputStream(byteArrayOutputStream));
+		sipSessionKeyBytes = byteArrayOutputStream.toByteArray();
+		byteArrayOutputStream = new ByteArrayOutputStream();
+		sipApplicationSessionKey.writeTo(new DataOutputStream(byteArrayOutputStream));
+		sipApplicationSessionKeyBytes = byteArrayOutputStream.toByteArray();
+	}
+
+	@Benchmark
+	public SipSessionKey parseSipSessionKey() throws ParseException {
+		return SessionManagerUtil.parseSipSessionKey(sipSessionKeyString);
+	}
+
+	@Benchmark
+	public SipApplicationSessionKey parseSipApplicationSessionKey() throws ParseException {
+		return SessionManagerUtil.parseSipApplicationSessionKey(sipApplicationSessionKeyString);
+	}
+
+	@Benchmark
+	public SipSessionKey readSipSessionKey() throws IOException {
+		return SipSessionKey.readFrom(new DataInputStream(new ByteArrayInputStream(sipSessionKeyBytes)));
+	}
+
+	@Benchmark
+	public SipApplicationSessionKey readSipApplicationSessionKey() throws IOException {
+		return SipApplicationSessionKey.readFrom(new DataInputStream(new ByteArrayInputStream(sipApplicationSessionKeyBytes)));
+	}
+
+	@Benchmark
+	public int sipSessionKeyHashCode() {
+		// keys are looked up in the session maps right after being parsed
+		return new SipSessionKey(sipSessionKey.getFromTag(), sipSessionKey.getToTag(), sipSessionKey.getCallId(), 
+				sipSessionKey.getApplicationSessionId(), sipSessionKey.getApplicationName()).hashCode();
+	}
+}
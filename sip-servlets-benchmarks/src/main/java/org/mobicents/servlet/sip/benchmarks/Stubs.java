@@ -0,0 +1,107 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds in-process stand-ins for the container interfaces (SipContext, SipApplicationDispatcher, 
+ * listening points, requests...) the benchmarked code paths depend on, so that they can be driven 
+ * without starting a sip stack or a servlet container.
+ * Methods return the value registered for their name, or the default value of their return type.
+ */
+public final class Stubs {
+
+	private Stubs() {
+	}
+
+	public static <T> Builder<T> of(Class<T> type) {
+		return new Builder<T>(type);
+	}
+
+	public static final class Builder<T> {
+		private final Class<T> type;
+		private final Map<String, Object> answers = new HashMap<String, Object>();
+
+		private Builder(Class<T> type) {
+			this.type = type;
+		}
+
+		public Builder<T> answer(String methodName, Object value) {
+			answers.put(methodName, value);
+			return this;
+		}
+
+		public T build() {
+			final Map<String, Object> methodAnswers = new HashMap<String, Object>(answers);
+			final String name = "Stub(" + type.getSimpleName() + ")";
+			return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					final String methodName = method.getName();
+					if(methodAnswers.containsKey(methodName)) {
+						return methodAnswers.get(methodName);
+					}
+					if("toString".equals(methodName) && method.getParameterTypes().length == 0) {
+						return name;
+					}
+					if("hashCode".equals(methodName) && method.getParameterTypes().length == 0) {
+						return System.identityHashCode(proxy);
+					}
+					if("equals".equals(methodName) && method.getParameterTypes().length == 1) {
+						return proxy == args[0];
+					}
+					return defaultValue(method.getReturnType());
+				}
+			}));
+		}
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if(!type.isPrimitive() || type == Void.TYPE) {
+			return null;
+		}
+		if(type == Boolean.TYPE) {
+			return Boolean.FALSE;
+		}
+		if(type == Character.TYPE) {
+			return Character.valueOf((char) 0);
+		}
+		if(type == Long.TYPE) {
+			return Long.valueOf(0L);
+		}
+		if(type == Double.TYPE) {
+			return Double.valueOf(0d);
+		}
+		if(type == Float.TYPE) {
+			return Float.valueOf(0f);
+		}
+		if(type == Byte.TYPE) {
+			return Byte.valueOf((byte) 0);
+		}
+		if(type == Short.TYPE) {
+			return Short.valueOf((short) 0);
+		}
+		return Integer.valueOf(0);
+	}
+}
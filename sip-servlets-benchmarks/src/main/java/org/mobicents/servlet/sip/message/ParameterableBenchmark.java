@@ -0,0 +1,85 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.message;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.sip.Parameterable;
+import javax.servlet.sip.ServletParseException;
+import javax.sip.PeerUnavailableException;
+import javax.sip.SipFactory;
+import javax.sip.header.Header;
+import javax.sip.header.HeaderFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Message parsing hot path : the conversion of the jain sip headers to the Parameterable 
+ * and Address views handed to the applications. 
+ * Lives in the package of SipServletMessageImpl to reach the protected createParameterable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterableBenchmark {
+
+	private Header fromHeader;
+	private Header contactHeader;
+	private Header acceptHeader;
+
+	@Setup
+	public void setup() throws PeerUnavailableException, ParseException {
+		SipFactory sipFactory = SipFactory.getInstance();
+		sipFactory.setPathName("gov.nist");
+		HeaderFactory headerFactory = sipFactory.createHeaderFactory();
+		fromHeader = headerFactory.createHeader("From", "\"Alice\" <sip:alice@atlanta.com>;tag=1928301774");
+		contactHeader = headerFactory.createHeader("Contact", 
+				"<sip:alice@192.168.0.10:5080;transport=udp;ob>;expires=3600;+sip.instance=\"<urn:uuid:00000000-0000-1000-8000-000A95A0E128>\";reg-id=1");
+		acceptHeader = headerFactory.createHeader("Accept", "application/sdp;level=1");
+	}
+
+	@Benchmark
+	public Parameterable from() throws ServletParseException {
+		return SipServletMessageImpl.createParameterable(fromHeader, fromHeader.getName(), true);
+	}
+
+	@Benchmark
+	public Parameterable contact() throws ServletParseException {
+		return SipServletMessageImpl.createParameterable(contactHeader, contactHeader.getName(), true);
+	}
+
+	@Benchmark
+	public Parameterable accept() throws ServletParseException {
+		return SipServletMessageImpl.createParameterable(acceptHeader, acceptHeader.getName(), true);
+	}
+}
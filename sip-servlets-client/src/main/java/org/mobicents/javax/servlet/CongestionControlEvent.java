@@ -31,17 +31,23 @@ package org.mobicents.javax.servlet;
  */
 public class CongestionControlEvent {
 	public enum Reason {
-		Memory, Queue //, TODO add CPU Usage congestion control
+		Memory, Queue, Latency //, TODO add CPU Usage congestion control
 	}
 
 	Reason reason;
 	String message;
+	double sheddingRatio;
 	
 	public CongestionControlEvent(Reason reason, String message) {
 		this.reason = reason;
 		this.message = message;
 	}
 	
+	public CongestionControlEvent(Reason reason, String message, double sheddingRatio) {
+		this(reason, message);
+		this.sheddingRatio = sheddingRatio;
+	}
+	
 	/**
 	 * Gives the reason on whether the memory usage or CPU usage or any other condition in the future has triggered the callback
 	 * @return the reason on whether the memory usage or CPU usage or any other condition in the future has triggered the callback
@@ -57,4 +63,13 @@ public class CongestionControlEvent {
 	public String getMessage() {
 		return message;
 	}
+	
+	/**
+	 * Gives the share of the new INVITE and REGISTER requests the container rejects, other initial requests being rejected half as often.
+	 * Only meaningful for the {@link Reason#Latency} reason, the other reasons making the container reject all initial requests.
+	 * @return the share, between 0 and 1, of the new INVITE and REGISTER requests the container rejects
+	 */
+	public double getSheddingRatio() {
+		return sheddingRatio;
+	}
 }
@@ -30,11 +30,14 @@ package org.mobicents.javax.servlet;
  * <ul>
  * <li>DropMessage - drop any incoming message</li>
  * <li>ErrorResponse - send a 503 - Service Unavailable response to any incoming request (Default).</li>
+ * <li>Adaptive - send a 503 - Service Unavailable response to a growing share of the incoming initial requests while the time messages 
+ * wait to be dispatched stays above its target, new INVITEs and REGISTERs first. The memory threshold still applies but the queue size ones don't.</li>
  * </ul>
  * @author jean.deruelle@gmail.com
  *
  */
 public enum CongestionControlPolicy {
 	ErrorResponse,
-	DropMessage
+	DropMessage,
+	Adaptive
 }
@@ -82,4 +82,19 @@ public interface SipServletRequestExt extends SipServletRequest {
 	 * @return
 	 */
 	void setOrphan(boolean orphan);
+	
+	/**
+	 * Sends this request without blocking the calling thread on the RFC 3263 DNS lookups needed to find where to send it.<br/>
+	 * The lookups, when their result is not already cached, are done by a dedicated pool of threads and the request is then sent 
+	 * from a task scheduled against the SipSession of this request, as with {@link SipSessionExt#scheduleAsynchronousWork(SipSessionAsynchronousWork)}.
+	 * The hops resolved are kept for failover exactly as with {@link #send()}.<br/>
+	 * The request can't be modified nor sent again by the application until the callback has been notified. 
+	 * The callback is always notified, of a failure if the SipSession is invalidated before the request could be sent.
+	 * 
+	 * @param callback notified once the request has been sent or couldn't be sent
+	 * @throws IllegalStateException if the request cannot be sent, for the same reasons as {@link #send()}, 
+	 * or if it is already being sent asynchronously
+	 * @since 3.0
+	 */
+	void sendAsynchronously(SipServletRequestSendCallback callback);
 }
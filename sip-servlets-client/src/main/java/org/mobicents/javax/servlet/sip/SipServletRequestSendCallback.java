@@ -0,0 +1,44 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.javax.servlet.sip;
+
+import javax.servlet.sip.SipServletRequest;
+
+/**
+ * Callback notified of the outcome of a request sent through {@link SipServletRequestExt#sendAsynchronously(SipServletRequestSendCallback)}.<br/>
+ * It is invoked in a thread safe manner against the SipSession of the request, the same way as a {@link SipSessionAsynchronousWork}.
+ */
+public interface SipServletRequestSendCallback {
+	/**
+	 * Called once the request has been handed over to the SIP stack
+	 * 
+	 * @param request the request sent
+	 */
+	void onSent(SipServletRequest request);
+	
+	/**
+	 * Called if the request couldn't be sent, either because no hop could be resolved for it, because the SIP stack failed to send it 
+	 * or because its SipSession was invalidated in the meantime
+	 * 
+	 * @param request the request that couldn't be sent
+	 * @param exception the reason of the failure
+	 */
+	void onSendFailure(SipServletRequest request, Exception exception);
+}
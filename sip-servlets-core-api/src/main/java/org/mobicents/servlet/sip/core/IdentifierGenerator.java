@@ -0,0 +1,43 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core;
+
+/**
+ * Generates the random parts of the tags and branches created by the container.
+ * A custom implementation can be set on the {@link SipApplicationDispatcher} or named by the
+ * org.mobicents.servlet.sip.IdentifierGenerator system property.
+ * Implementations are called concurrently from all the threads processing messages.
+ */
+public interface IdentifierGenerator {
+
+	/**
+	 * Returns the unique value placed in front of the application routing information of a tag.
+	 * It must not contain the '_' separator.
+	 *
+	 * @param maxLength the maximum number of characters of the value
+	 */
+	String generateTagValue(int maxLength);
+
+	/**
+	 * Returns the value making a via branch unique across the nodes of the cluster and over time.
+	 * It must only contain token characters and not contain the '_' separator.
+	 */
+	String generateBranchValue();
+}
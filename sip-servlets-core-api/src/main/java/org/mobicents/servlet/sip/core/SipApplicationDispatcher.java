@@ -195,6 +195,14 @@ public interface SipApplicationDispatcher extends SipListenerExt {
 	void setCongestionControlPolicyByName(String congestionControlPolicy);
 	
 	int getNumberOfMessagesInQueue();
+	/**
+	 * @return the number of messages waiting in the queue of each shard of the dispatcher executor
+	 */
+	int[] getDispatcherShardQueueDepths();
+	/**
+	 * @return the moving average (in milliseconds) of the time messages waited in the queue of each shard of the dispatcher executor
+	 */
+	long[] getDispatcherShardWaitTimes();
 	double getPercentageOfMemoryUsed();
 	
 	void setBypassRequestExecutor(boolean bypassRequestExecutor);
@@ -277,5 +285,7 @@ public interface SipApplicationDispatcher extends SipListenerExt {
 	String getApplicationServerIdHash();
 
 	int getTagHashMaxLength();
+	IdentifierGenerator getIdentifierGenerator();
+	void setIdentifierGenerator(IdentifierGenerator identifierGenerator);
 	CallIdHeader getCallId(MobicentsExtendedListeningPoint extendedListeningPoint, String callId) throws ParseException;
 }
@@ -19,6 +19,7 @@
 
 package org.mobicents.servlet.sip.core;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
@@ -107,6 +108,17 @@ public interface SipContext {
 	
 	void setSipApplicationKeyMethod(Method sipApplicationKeyMethod);
 	
+	/**
+	 * @return the method handle resolved from the @SipApplicationKey annotated method, of type (SipServletRequest)String, 
+	 * null if it hasn't been resolved yet or if the application doesn't declare such a method
+	 */
+	MethodHandle getSipApplicationKeyMethodHandle();
+	
+	/**
+	 * @param sipApplicationKeyMethodHandle the method handle resolved from the @SipApplicationKey annotated method
+	 */
+	void setSipApplicationKeyMethodHandle(MethodHandle sipApplicationKeyMethodHandle);
+	
 	void setSipLoginConfig(MobicentsSipLoginConfig config);
 	
 	MobicentsSipLoginConfig getSipLoginConfig();
@@ -93,6 +93,19 @@ public interface SipManager {
 	 * @return the sip application session holding a reference to it or null if none references it
 	 */
 	public MobicentsSipApplicationSession findSipApplicationSession(HttpSession httpSession);
+	/**
+	 * Index the converged http session so that the sip application session holding it can be retrieved
+	 * by {@link #findSipApplicationSession(HttpSession)} without looking through all the sip application sessions
+	 * @param httpSessionId the id of the http session added to the sip application session
+	 * @param key the key of the sip application session holding it
+	 */
+	public void addHttpSessionMapping(String httpSessionId, MobicentsSipApplicationSessionKey key);
+	/**
+	 * Remove the converged http session from the index used by {@link #findSipApplicationSession(HttpSession)}
+	 * @param httpSessionId the id of the http session removed from the sip application session
+	 * @param key the key of the sip application session that was holding it
+	 */
+	public void removeHttpSessionMapping(String httpSessionId, MobicentsSipApplicationSessionKey key);
 	/**
 	 * Remove the sip sessions and sip application sessions 
 	 */
@@ -291,6 +304,40 @@ public interface SipManager {
    */
   public void setExpiredSipApplicationSessions(int expiredSipApplicationSessions);
   
+  /**
+   * Records, without locking the manager, the time (in seconds) that a sip session
+   * had been alive when it got invalidated.
+   *
+   * @param timeAlive time (in seconds) the sip session had been alive
+   */
+  public void sipSessionExpired(int timeAlive);
+
+  /**
+   * Records, without locking the manager, the time (in seconds) that a sip application session
+   * had been alive when it got invalidated.
+   *
+   * @param timeAlive time (in seconds) the sip application session had been alive
+   */
+  public void sipApplicationSessionExpired(int timeAlive);
+
+  /**
+   * Gets the time (in seconds) under which the given percentage of expired sessions had been
+   * alive.
+   *
+   * @param percentile percentage between 0 and 100
+   * @return alive time (in seconds) of the given percentile
+   */
+  public int getSipSessionAliveTimePercentile(double percentile);
+
+  /**
+   * Gets the time (in seconds) under which the given percentage of expired sessions had been
+   * alive.
+   *
+   * @param percentile percentage between 0 and 100
+   * @return alive time (in seconds) of the given percentile
+   */
+  public int getSipApplicationSessionAliveTimePercentile(double percentile);
+  
   /**
    * Gets the number of sip application sessions per seconds that have been created.
    *
@@ -63,6 +63,10 @@ public interface SipService {
 	public String getJvmRoute();
 	public OutboundProxy getOutboundProxy();
 	public int getDispatcherThreadPoolSize();
+	/**
+	 * @return the kind of threads the dispatcher executor runs on, Platform or Virtual
+	 */
+	public String getDispatcherExecutorMode();
 	public int getCanceledTimerTasksPurgePeriod();
 	public SipConnector[] findSipConnectors();
 	public boolean isDialogPendingRequestChecking();
@@ -0,0 +1,47 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.descriptor;
+
+import javax.servlet.sip.SipServletRequest;
+
+/**
+ * Matching rule testing the equality of a request variable (such as request.method or request.uri.user) 
+ * with a constant value. Exposing its variable and value allows the container to index the servlet mappings on them.
+ */
+public interface EqualsMatchingRule extends MatchingRule {
+	/**
+	 * @return the name of the tested variable, such as request.from.uri.host
+	 */
+	String getVarName();
+	/**
+	 * @return the value the variable is compared to
+	 */
+	String getExpectedValue();
+	/**
+	 * @return true if the comparison ignores the case
+	 */
+	boolean isIgnoreCase();
+	/**
+	 * Extract the value of the tested variable from the request
+	 * @param request the request to extract the value from
+	 * @return the value of the variable for this request, null if it doesn't exist
+	 */
+	String getValue(SipServletRequest request);
+}
@@ -22,6 +22,7 @@
 package org.mobicents.servlet.sip.core.session;
 
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javax.servlet.http.HttpSession;
 import javax.servlet.sip.ServletTimer;
@@ -77,7 +78,21 @@ public interface MobicentsSipApplicationSession extends SipApplicationSession, S
 	void tryToInvalidate();
 	
 	void acquire();
+	/**
+	 * Acquires the session semaphore only if it is available at the time of the call
+	 * @return true if the semaphore was acquired or if there is no semaphore for this session
+	 */
+	boolean tryAcquire();
+	/**
+	 * Runs the callback once the session semaphore is released, right away if it is available or if there is no semaphore for this session
+	 * @param callback the callback, run by the thread releasing the semaphore so it should only hand work over to an executor
+	 */
+	void runOnRelease(Runnable callback);
 	void release();
+	/**
+	 * @return the serial execution lane of this session if its application uses the SipApplicationSessionLane concurrency control mode, null otherwise
+	 */
+	Executor getExecutionLane();
 	
 	MobicentsSipApplicationSession getFacade();
 	
@@ -146,6 +146,16 @@ public interface MobicentsSipSession extends SipSession, SipSessionExt {
 	SipApplicationRoutingRegion getRegionInternal();
 	
 	void acquire();
+	/**
+	 * Acquires the session semaphore only if it is available at the time of the call
+	 * @return true if the semaphore was acquired or if there is no semaphore for this session
+	 */
+	boolean tryAcquire();
+	/**
+	 * Runs the callback once the session semaphore is released, right away if it is available or if there is no semaphore for this session
+	 * @param callback the callback, run by the thread releasing the semaphore so it should only hand work over to an executor
+	 */
+	void runOnRelease(Runnable callback);
 	void release();
 	
 	//RFC 3265
@@ -38,6 +38,20 @@ import org.apache.log4j.Priority;
  */
 public class GenericUtils {
 	
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	
+	// MessageDigest instances are not thread safe, each thread keeps its own
+	private static final ThreadLocal<MessageDigest> SHA = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalArgumentException("The SHA Algorithm could not be found", e);
+			}
+		}
+	};
+	
 	/**
 	 * Convert byte array to string
 	 * 
@@ -45,19 +59,18 @@ public class GenericUtils {
 	 * @return
 	 */
 	public static String convertToHex(byte[] data) {
-		StringBuffer buf = new StringBuffer();
-		for (int i = 0; i < data.length; i++) {
-			int halfbyte = (data[i] >>> 4) & 0x0F;
-			int two_halfs = 0;
-			do {
-				if ((0 <= halfbyte) && (halfbyte <= 9))
-					buf.append((char) ('0' + halfbyte));
-				else
-					buf.append((char) ('a' + (halfbyte - 10)));
-				halfbyte = data[i] & 0x0F;
-			} while(two_halfs++ < 1);
+		return convertToHex(data, data.length * 2);
+	}
+	
+	// converts only the bytes needed to produce maxChars hex characters
+	private static String convertToHex(byte[] data, int maxChars) {
+		final int length = Math.min(maxChars, data.length * 2);
+		final char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			int halfbyte = (i & 1) == 0 ? (data[i >> 1] >>> 4) & 0x0F : data[i >> 1] & 0x0F;
+			chars[i] = HEX[halfbyte];
 		}
-		return buf.toString();
+		return new String(chars);
 	}
 	
 	public static String reduceHash(String hash, int maxChars) {
@@ -75,17 +88,11 @@ public class GenericUtils {
 	 * @return
 	 */
 	public static String hashString(String input, int length) {
-		MessageDigest md;
-		try {
-			md = MessageDigest.getInstance("SHA");
-		} catch (NoSuchAlgorithmException e) {
-			throw new IllegalArgumentException("The SHA Algorithm could not be found", e);
-		}
+		MessageDigest md = SHA.get();
+		md.reset();
 		byte[] bytes = input.getBytes();
 		md.update(bytes);
-		String hashed =  convertToHex(md.digest());
-		hashed = reduceHash(hashed, length);
-		return hashed;
+		return convertToHex(md.digest(), length);
 	}
 	
 	public static String makeStackTrace() {
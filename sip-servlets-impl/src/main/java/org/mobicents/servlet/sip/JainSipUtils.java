@@ -34,7 +34,11 @@ import gov.nist.javax.sip.header.ims.SecurityClientHeader;
 import gov.nist.javax.sip.header.ims.SecurityServerHeader;
 import gov.nist.javax.sip.header.ims.SecurityVerifyHeader;
 import gov.nist.javax.sip.header.ims.ServiceRouteHeader;
+import gov.nist.javax.sip.header.RequestLine;
+import gov.nist.javax.sip.header.SIPHeader;
+import gov.nist.javax.sip.message.SIPDuplicateHeaderException;
 import gov.nist.javax.sip.message.SIPMessage;
+import gov.nist.javax.sip.message.SIPRequest;
 import gov.nist.javax.sip.stack.SIPClientTransaction;
 
 import java.security.MessageDigest;
@@ -42,11 +46,11 @@ import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.UUID;
 
 import javax.sip.InvalidArgumentException;
 import javax.sip.ListeningPoint;
@@ -534,9 +538,9 @@ public final class JainSipUtils {
 	 * @param branch
 	 * @return
 	 */
-	public static String createBranch(String appSessionId, String appname) {
+	public static String createBranch(SipApplicationDispatcher sipApplicationDispatcher, String appSessionId, String appname) {
 	    // https://code.google.com/p/sipservlets/issues/detail?id=269
-		return createBranch(appSessionId, appname, UUID.randomUUID().toString());
+		return createBranch(appSessionId, appname, sipApplicationDispatcher.getIdentifierGenerator().generateBranchValue());
     }
 	
 	public static String createBranch(String appSessionId, String appname, String random) {
@@ -758,6 +762,58 @@ public final class JainSipUtils {
 		return false;
 	}
 
+	/**
+	 * Copies a request to be used as a proxy branch or a B2BUA leg. Unlike Request.clone() the body is
+	 * shared with the original request instead of being copied, so the caller has to mark the body of both the
+	 * original and the copy as shared through 
+	 * {@link org.mobicents.servlet.sip.message.SipServletMessageImpl#setContentShared()}, the first side 
+	 * handing it out for writing then gets its own copy. The request line and the headers are still copied
+	 * since the branch or leg modifies them, except for the excluded headers that the caller would strip from the
+	 * copy right away. The transport state that clone() carries over (local, remote and peer packet source
+	 * address and port) is copied as well, but not the application data which holds the cached transport
+	 * of the original request.
+	 * 
+	 * @param request the request to copy
+	 * @param excludedHeaders names of the headers not to copy
+	 * @return the copy
+	 */
+	public static Request cloneRequest(Request request, String... excludedHeaders) {
+		final SIPRequest originalRequest = (SIPRequest) request;
+		final SIPRequest clonedRequest = new SIPRequest();
+		clonedRequest.setRequestLine((RequestLine) originalRequest.getRequestLine().clone());
+		final Iterator<SIPHeader> headers = originalRequest.getHeaders();
+		while (headers.hasNext()) {
+			final SIPHeader header = headers.next();
+			if(!isExcludedHeader(header.getName(), excludedHeaders)) {
+				try {
+					clonedRequest.attachHeader((SIPHeader) header.clone(), false);
+				} catch (SIPDuplicateHeaderException e) {
+					throw new IllegalArgumentException("Couldn't copy the header " + header.getName() + " of the request", e);
+				}
+			}
+		}
+		clonedRequest.setLocalAddress(originalRequest.getLocalAddress());
+		clonedRequest.setLocalPort(originalRequest.getLocalPort());
+		clonedRequest.setRemoteAddress(originalRequest.getRemoteAddress());
+		clonedRequest.setRemotePort(originalRequest.getRemotePort());
+		clonedRequest.setPeerPacketSourceAddress(originalRequest.getPeerPacketSourceAddress());
+		clonedRequest.setPeerPacketSourcePort(originalRequest.getPeerPacketSourcePort());
+		final byte[] content = originalRequest.getRawContent();
+		if(content != null) {
+			clonedRequest.setMessageContent(content);
+		}
+		return clonedRequest;
+	}
+
+	private static boolean isExcludedHeader(String headerName, String[] excludedHeaders) {
+		for (String excludedHeader : excludedHeaders) {
+			if(excludedHeader.equalsIgnoreCase(headerName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public static void terminateTransaction(Transaction transaction) {
 		// Issue 2130 (http://code.google.com/p/mobicents/issues/detail?id=2130) : Memory leak in Sip stack when INFO message is used 
 		// fail before the ctx is created to avoid mem leaks
@@ -212,6 +212,13 @@ public abstract class ParameterableImpl implements Parameterable ,Cloneable, Ser
 	public Map<String, String> getInternalParameters() {
 		return parameters;
 	}
+	
+	/**
+	 * @return the rule telling which parts of this parameterable the application is allowed to modify
+	 */
+	public ModifiableRule getModifiableRule() {
+		return isModifiable;
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -0,0 +1,271 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.annotations;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The sip annotations carried by a class, read directly from its class file bytes 
+ * (constant pool and RuntimeVisibleAnnotations attributes) so that the class doesn't 
+ * need to be loaded to know if it is of any interest for the annotation processing.
+ */
+public final class ClassFileAnnotations {
+	public static final int SIP_SERVLET = 1;
+	public static final int SIP_LISTENER = 1 << 1;
+	public static final int SIP_APPLICATION = 1 << 2;
+	public static final int CONCURRENCY_CONTROL = 1 << 3;
+	public static final int SIP_APPLICATION_KEY = 1 << 4;
+	/**
+	 * @SipServlet and @SipListener are @Inherited, subclasses of annotated classes are annotated as well
+	 */
+	public static final int INHERITED = SIP_SERVLET | SIP_LISTENER;
+	
+	private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+	private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+	private static final String SIP_SERVLET_DESCRIPTOR = "Ljavax/servlet/sip/annotation/SipServlet;";
+	private static final String SIP_LISTENER_DESCRIPTOR = "Ljavax/servlet/sip/annotation/SipListener;";
+	private static final String SIP_APPLICATION_DESCRIPTOR = "Ljavax/servlet/sip/annotation/SipApplication;";
+	private static final String CONCURRENCY_CONTROL_DESCRIPTOR = "Lorg/mobicents/servlet/sip/annotation/ConcurrencyControl;";
+	private static final String SIP_APPLICATION_KEY_DESCRIPTOR = "Ljavax/servlet/sip/annotation/SipApplicationKey;";
+	
+	private final String className;
+	private final String superClassName;
+	private final int flags;
+	
+	public ClassFileAnnotations(String className, String superClassName, int flags) {
+		this.className = className;
+		this.superClassName = superClassName;
+		this.flags = flags;
+	}
+	
+	/**
+	 * @return the binary name of the class
+	 */
+	public String getClassName() {
+		return className;
+	}
+	
+	/**
+	 * @return the binary name of the super class, null for java.lang.Object
+	 */
+	public String getSuperClassName() {
+		return superClassName;
+	}
+	
+	/**
+	 * @return the sip annotations declared by the class itself
+	 */
+	public int getFlags() {
+		return flags;
+	}
+	
+	/**
+	 * Reads the sip annotations of a class from its class file
+	 * @param inputStream the class file
+	 * @return the sip annotations of the class
+	 * @throws IOException if the stream is not a valid class file
+	 */
+	public static ClassFileAnnotations read(InputStream inputStream) throws IOException {
+		DataInputStream in = new DataInputStream(inputStream);
+		if(in.readInt() != CLASS_FILE_MAGIC) {
+			throw new IOException("Not a class file");
+		}
+		// minor and major versions
+		skipFully(in, 4);
+		
+		int constantPoolCount = in.readUnsignedShort();
+		String[] utf8s = new String[constantPoolCount];
+		int[] classNameIndexes = new int[constantPoolCount];
+		boolean sipAnnotationReferenced = false;
+		for (int i = 1; i < constantPoolCount; i++) {
+			int tag = in.readUnsignedByte();
+			switch (tag) {
+				case 1: // Utf8
+					String utf8 = in.readUTF();
+					utf8s[i] = utf8;
+					if(!sipAnnotationReferenced && annotationFlag(utf8) != 0) {
+						sipAnnotationReferenced = true;
+					}
+					break;
+				case 7: // Class
+					classNameIndexes[i] = in.readUnsignedShort();
+					break;
+				case 8: // String
+				case 16: // MethodType
+				case 19: // Module
+				case 20: // Package
+					skipFully(in, 2);
+					break;
+				case 15: // MethodHandle
+					skipFully(in, 3);
+					break;
+				case 3: // Integer
+				case 4: // Float
+				case 9: // Fieldref
+				case 10: // Methodref
+				case 11: // InterfaceMethodref
+				case 12: // NameAndType
+				case 17: // Dynamic
+				case 18: // InvokeDynamic
+					skipFully(in, 4);
+					break;
+				case 5: // Long
+				case 6: // Double
+					skipFully(in, 8);
+					// 8 bytes constants take two entries of the constant pool
+					i++;
+					break;
+				default:
+					throw new IOException("Unknown constant pool tag " + tag);
+			}
+		}
+		// access flags
+		skipFully(in, 2);
+		String className = toBinaryName(utf8s[classNameIndexes[in.readUnsignedShort()]]);
+		int superClassIndex = in.readUnsignedShort();
+		String superClassName = superClassIndex == 0 ? null : toBinaryName(utf8s[classNameIndexes[superClassIndex]]);
+		if("java.lang.Object".equals(superClassName)) {
+			superClassName = null;
+		}
+		if(!sipAnnotationReferenced) {
+			// none of the annotation types appears in the constant pool, no need to go through the attributes
+			return new ClassFileAnnotations(className, superClassName, 0);
+		}
+		
+		int flags = 0;
+		int interfacesCount = in.readUnsignedShort();
+		skipFully(in, 2 * interfacesCount);
+		// fields
+		int fieldsCount = in.readUnsignedShort();
+		for (int i = 0; i < fieldsCount; i++) {
+			skipFully(in, 6);
+			skipAttributes(in);
+		}
+		// methods, only @SipApplicationKey is of interest on them
+		int methodsCount = in.readUnsignedShort();
+		for (int i = 0; i < methodsCount; i++) {
+			skipFully(in, 6);
+			flags |= readAnnotationsAttributes(in, utf8s) & SIP_APPLICATION_KEY;
+		}
+		// class
+		flags |= readAnnotationsAttributes(in, utf8s) & ~SIP_APPLICATION_KEY;
+		return new ClassFileAnnotations(className, superClassName, flags);
+	}
+	
+	private static int annotationFlag(String descriptor) {
+		if(descriptor.length() < 40 || descriptor.charAt(0) != 'L') {
+			return 0;
+		}
+		if(SIP_SERVLET_DESCRIPTOR.equals(descriptor)) {
+			return SIP_SERVLET;
+		}
+		if(SIP_LISTENER_DESCRIPTOR.equals(descriptor)) {
+			return SIP_LISTENER;
+		}
+		if(SIP_APPLICATION_DESCRIPTOR.equals(descriptor)) {
+			return SIP_APPLICATION;
+		}
+		if(CONCURRENCY_CONTROL_DESCRIPTOR.equals(descriptor)) {
+			return CONCURRENCY_CONTROL;
+		}
+		if(SIP_APPLICATION_KEY_DESCRIPTOR.equals(descriptor)) {
+			return SIP_APPLICATION_KEY;
+		}
+		return 0;
+	}
+	
+	private static int readAnnotationsAttributes(DataInput in, String[] utf8s) throws IOException {
+		int flags = 0;
+		int attributesCount = in.readUnsignedShort();
+		for (int i = 0; i < attributesCount; i++) {
+			String attributeName = utf8s[in.readUnsignedShort()];
+			int length = in.readInt();
+			if(RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
+				int annotationsCount = in.readUnsignedShort();
+				for (int j = 0; j < annotationsCount; j++) {
+					flags |= annotationFlag(utf8s[in.readUnsignedShort()]);
+					skipElementValuePairs(in);
+				}
+			} else {
+				skipFully(in, length);
+			}
+		}
+		return flags;
+	}
+	
+	private static void skipAttributes(DataInput in) throws IOException {
+		int attributesCount = in.readUnsignedShort();
+		for (int i = 0; i < attributesCount; i++) {
+			skipFully(in, 2);
+			skipFully(in, in.readInt());
+		}
+	}
+	
+	private static void skipElementValuePairs(DataInput in) throws IOException {
+		int pairsCount = in.readUnsignedShort();
+		for (int i = 0; i < pairsCount; i++) {
+			skipFully(in, 2);
+			skipElementValue(in);
+		}
+	}
+	
+	private static void skipElementValue(DataInput in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+			case 'e':
+				skipFully(in, 4);
+				break;
+			case '@':
+				skipFully(in, 2);
+				skipElementValuePairs(in);
+				break;
+			case '[':
+				int valuesCount = in.readUnsignedShort();
+				for (int i = 0; i < valuesCount; i++) {
+					skipElementValue(in);
+				}
+				break;
+			default:
+				// constants, strings and classes
+				skipFully(in, 2);
+				break;
+		}
+	}
+	
+	private static void skipFully(DataInput in, int length) throws IOException {
+		int remaining = length;
+		while (remaining > 0) {
+			int skipped = in.skipBytes(remaining);
+			if(skipped <= 0) {
+				// skipBytes may skip less than requested without having reached the end of the stream
+				in.readByte();
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+	
+	private static String toBinaryName(String internalName) {
+		return internalName == null ? null : internalName.replace('/', '.');
+	}
+}
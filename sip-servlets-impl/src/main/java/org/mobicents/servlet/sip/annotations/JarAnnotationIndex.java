@@ -0,0 +1,228 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.annotations;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Index of the sip annotations found in the classes of a jar. 
+ * As reading the class files of a big jar still takes time, the index is persisted under 
+ * the SHA-256 digest of the jar so that the jars that didn't change since the last deployment 
+ * don't need to be scanned again. The indexes are kept in the work directory of the application 
+ * rather than in a directory shared with other processes, and an index is only used if the 
+ * digest it was written for is the one of the jar.
+ * 
+ * Only the classes carrying sip annotations or extending another class than java.lang.Object 
+ * (which may inherit the @SipServlet or @SipListener annotations) are kept in the index.
+ */
+public final class JarAnnotationIndex {
+	private static final Logger logger = Logger.getLogger(JarAnnotationIndex.class);
+	
+	public static final String INDEX_DIRECTORY_PROPERTY = "org.mobicents.servlet.sip.annotations.indexDir";
+	
+	private static final String INDEX_DIRECTORY_NAME = "sip-annotations-index";
+	private static final String INDEX_HEADER = "# sip annotations index v2 ";
+	private static final String NO_SUPER_CLASS = "-";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private JarAnnotationIndex() {
+	}
+	
+	/**
+	 * @param workDirectory the work directory of the application, may be null
+	 * @return the directory to persist the indexes to, the one set through the {@link #INDEX_DIRECTORY_PROPERTY} 
+	 * system property or a directory of the work directory of the application, null if there is none
+	 */
+	public static File getIndexDirectory(File workDirectory) {
+		String indexDirectoryPath = System.getProperty(INDEX_DIRECTORY_PROPERTY);
+		if(indexDirectoryPath != null) {
+			return new File(indexDirectoryPath);
+		}
+		return workDirectory == null ? null : new File(workDirectory, INDEX_DIRECTORY_NAME);
+	}
+	
+	/**
+	 * Returns the classes of the jar of interest for the annotations processing, 
+	 * from the persisted index if the jar didn't change or by reading its class files otherwise.
+	 * @param jar the jar to index
+	 * @param indexDirectory the directory the indexes are persisted to, null for the jar to be read anyway
+	 * @return the classes carrying sip annotations or extending another class
+	 * @throws IOException if the jar can't be read
+	 */
+	public static List<ClassFileAnnotations> getClasses(File jar, File indexDirectory) throws IOException {
+		File indexFile = null;
+		String digest = null;
+		if(indexDirectory != null && (indexDirectory.isDirectory() || indexDirectory.mkdirs())) {
+			digest = digest(jar);
+			indexFile = new File(indexDirectory, digest + ".idx");
+			if(indexFile.isFile()) {
+				try {
+					List<ClassFileAnnotations> classes = load(indexFile, digest);
+					if(logger.isDebugEnabled()) {
+						logger.debug("jar " + jar + " unchanged, using annotations index " + indexFile);
+					}
+					return classes;
+				} catch (IOException e) {
+					logger.warn("couldn't read the annotations index " + indexFile + ", the jar " + jar + " will be scanned again", e);
+				}
+			}
+		} else if(indexDirectory != null) {
+			logger.warn("couldn't create the annotations index directory " + indexDirectory + ", jars will be scanned on each deployment");
+		}
+		List<ClassFileAnnotations> classes = index(jar);
+		if(indexFile != null) {
+			try {
+				store(indexFile, digest, classes);
+			} catch (IOException e) {
+				logger.warn("couldn't store the annotations index of the jar " + jar + " to " + indexFile, e);
+			}
+		}
+		return classes;
+	}
+	
+	private static List<ClassFileAnnotations> index(File jar) throws IOException {
+		if(logger.isDebugEnabled()) {
+			logger.debug("indexing annotations of jar " + jar);
+		}
+		List<ClassFileAnnotations> classes = new ArrayList<ClassFileAnnotations>();
+		JarFile jarFile = new JarFile(jar);
+		try {
+			Enumeration<JarEntry> jarEntries = jarFile.entries();
+			while (jarEntries.hasMoreElements()) {
+				JarEntry jarEntry = jarEntries.nextElement();
+				if(!jarEntry.getName().endsWith(".class")) {
+					continue;
+				}
+				InputStream inputStream = jarFile.getInputStream(jarEntry);
+				try {
+					ClassFileAnnotations classFileAnnotations = ClassFileAnnotations.read(inputStream);
+					if(classFileAnnotations.getFlags() != 0 || classFileAnnotations.getSuperClassName() != null) {
+						classes.add(classFileAnnotations);
+					}
+				} catch (IOException e) {
+					if(logger.isDebugEnabled()) {
+						logger.debug("Failed to read class file " + jarEntry.getName() + " from " + jar, e);
+					}
+				} finally {
+					inputStream.close();
+				}
+			}
+		} finally {
+			jarFile.close();
+		}
+		return classes;
+	}
+	
+	static String digest(File jar) throws IOException {
+		MessageDigest messageDigest;
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA-256 is not available to digest " + jar, e);
+		}
+		byte[] buffer = new byte[BUFFER_SIZE];
+		InputStream inputStream = new FileInputStream(jar);
+		try {
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) {
+				messageDigest.update(buffer, 0, read);
+			}
+		} finally {
+			inputStream.close();
+		}
+		StringBuilder digest = new StringBuilder();
+		for (byte b : messageDigest.digest()) {
+			digest.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return digest.toString();
+	}
+	
+	private static List<ClassFileAnnotations> load(File indexFile, String digest) throws IOException {
+		List<ClassFileAnnotations> classes = new ArrayList<ClassFileAnnotations>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8));
+		try {
+			if(!(INDEX_HEADER + digest).equals(reader.readLine())) {
+				throw new IOException("Unknown annotations index format or index of another jar");
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] tokens = line.split(" ");
+				if(tokens.length != 3) {
+					throw new IOException("Invalid annotations index line " + line);
+				}
+				try {
+					classes.add(new ClassFileAnnotations(tokens[1], 
+							NO_SUPER_CLASS.equals(tokens[2]) ? null : tokens[2], 
+							Integer.parseInt(tokens[0])));
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid annotations index line " + line, e);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return classes;
+	}
+	
+	private static void store(File indexFile, String digest, List<ClassFileAnnotations> classes) throws IOException {
+		// written to a temporary file first so that a concurrent deployment never reads a partial index
+		File tmpFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8));
+		try {
+			writer.write(INDEX_HEADER + digest);
+			writer.write('\n');
+			for (ClassFileAnnotations classFileAnnotations : classes) {
+				writer.write(Integer.toString(classFileAnnotations.getFlags()));
+				writer.write(' ');
+				writer.write(classFileAnnotations.getClassName());
+				writer.write(' ');
+				writer.write(classFileAnnotations.getSuperClassName() == null ? NO_SUPER_CLASS : classFileAnnotations.getSuperClassName());
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+		if(!tmpFile.renameTo(indexFile)) {
+			tmpFile.delete();
+			if(!indexFile.isFile()) {
+				throw new IOException("couldn't rename " + tmpFile + " to " + indexFile);
+			}
+		}
+	}
+}
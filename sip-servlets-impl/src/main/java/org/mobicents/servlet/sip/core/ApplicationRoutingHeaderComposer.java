@@ -19,7 +19,7 @@
 
 package org.mobicents.servlet.sip.core;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.log4j.Logger;
 
@@ -38,8 +38,8 @@ public class ApplicationRoutingHeaderComposer {
 	private static final Logger logger = Logger.getLogger(ApplicationRoutingHeaderComposer.class
 			.getCanonicalName());
 	
-	private static final Random RANDOM = new Random();
 	private static final String TOKEN_SEPARATOR = "_";
+	private static final char TOKEN_SEPARATOR_CHAR = '_';
 	
 	private final static String reduceRandomValue(String str, int maxChars) {
 		int len = str.length();
@@ -50,40 +50,57 @@ public class ApplicationRoutingHeaderComposer {
 		}
 	}
 	public final static String randomString(int length) {
-		long randValue = Math.abs(RANDOM.nextInt(1211111) ^ System.nanoTime());
+		long randValue = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
 		return reduceRandomValue(String.valueOf(randValue), length);
 	}
 
 	
 	public final static String[] getAppNameAndSessionId(SipApplicationDispatcher sipApplicationDispatcher, String text) {
 		String[] tuple = new String[3];
-		if(text != null) {					
-			final String[] tokens = text.split(TOKEN_SEPARATOR);
+		if(text != null) {
+			// tokens are uniqueValue_serverIdHash_hashedAppName[_appSessionId], located without splitting the tag
+			final int serverIdStart = text.indexOf(TOKEN_SEPARATOR_CHAR) + 1;
+			final int serverIdEnd = serverIdStart > 0 ? text.indexOf(TOKEN_SEPARATOR_CHAR, serverIdStart) : -1;
 		
 			// If there is no AR in the string, generate a uniqueValue for the tag
 			// and it will be stored for later.
-			if(tokens.length > 2) {				
+			if(serverIdEnd >= 0 && hasToken(text, serverIdEnd + 1)) {				
 				// Otherwise extract the uniqueValue from the tag string, it's the first token.
-				final String hashedAppName = tokens[2];
-				if(sipApplicationDispatcher.getApplicationServerIdHash().equalsIgnoreCase(tokens[1])) {
+				final String serverIdHash = text.substring(serverIdStart, serverIdEnd);
+				if(sipApplicationDispatcher.getApplicationServerIdHash().equalsIgnoreCase(serverIdHash)) {
+					final int hashedAppNameEnd = text.indexOf(TOKEN_SEPARATOR_CHAR, serverIdEnd + 1);
+					final String hashedAppName = text.substring(serverIdEnd + 1, hashedAppNameEnd < 0 ? text.length() : hashedAppNameEnd);
 					String appName = sipApplicationDispatcher.getApplicationNameFromHash(hashedAppName);
 					if(appName == null) 
 						throw new IllegalArgumentException("The hash doesn't correspond to any app name: " + hashedAppName);
-					tuple[0] = tokens[1];
-					tuple[1] = appName;				
-					tuple[2] = tokens[3];
+					tuple[0] = serverIdHash;
+					tuple[1] = appName;
+					if(hashedAppNameEnd >= 0) {
+						final int appSessionIdEnd = text.indexOf(TOKEN_SEPARATOR_CHAR, hashedAppNameEnd + 1);
+						tuple[2] = text.substring(hashedAppNameEnd + 1, appSessionIdEnd < 0 ? text.length() : appSessionIdEnd);
+					}
 				} else {
-					tuple[0] = tokens[1];
+					tuple[0] = serverIdHash;
 					tuple[1] = null;				
 					tuple[2] = null;
 				}
 			}
 		}		
 		return tuple;
+	}
+	
+	// whether there is anything else than separators from the given index, as String.split drops trailing empty tokens
+	private static boolean hasToken(String text, int fromIndex) {
+		for(int i = fromIndex; i < text.length(); i++) {
+			if(text.charAt(i) != TOKEN_SEPARATOR_CHAR) {
+				return true;
+			}
+		}
+		return false;
 	}		
 	
 	public final static String getHash(SipApplicationDispatcher sipApplicationDispatcher, String  applicationName,  String applicationId) {
-		String text = randomString(sipApplicationDispatcher.getTagHashMaxLength()) + TOKEN_SEPARATOR;
+		String text = sipApplicationDispatcher.getIdentifierGenerator().generateTagValue(sipApplicationDispatcher.getTagHashMaxLength()) + TOKEN_SEPARATOR;
 		// https://code.google.com/p/sipservlets/issues/detail?id=237
 		text += sipApplicationDispatcher.getApplicationServerIdHash() + TOKEN_SEPARATOR;
 		text += sipApplicationDispatcher.getHashFromApplicationName(applicationName);
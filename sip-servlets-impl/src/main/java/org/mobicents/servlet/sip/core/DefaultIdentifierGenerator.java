@@ -0,0 +1,67 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link IdentifierGenerator}.
+ * <p>
+ * Tag values come from {@link java.util.concurrent.ThreadLocalRandom}, the tag already carries the hash of the
+ * application server id to tell nodes apart. Branch values are made of a random prefix drawn once per node, an id
+ * given to each thread the first time it creates a branch and a per-thread counter, so they are unique without any
+ * shared state on the per-request path.
+ */
+public class DefaultIdentifierGenerator implements IdentifierGenerator {
+
+	private final String nodePrefix;
+	private final AtomicLong threadIds = new AtomicLong();
+	private final ThreadLocal<BranchSequence> branchSequences = new ThreadLocal<BranchSequence>() {
+		@Override
+		protected BranchSequence initialValue() {
+			return new BranchSequence(nodePrefix + Long.toString(threadIds.incrementAndGet(), 36) + ".");
+		}
+	};
+
+	public DefaultIdentifierGenerator() {
+		nodePrefix = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36) + ".";
+	}
+
+	@Override
+	public String generateTagValue(int maxLength) {
+		return ApplicationRoutingHeaderComposer.randomString(maxLength);
+	}
+
+	@Override
+	public String generateBranchValue() {
+		BranchSequence branchSequence = branchSequences.get();
+		return branchSequence.prefix + Long.toString(++branchSequence.counter, 36);
+	}
+
+	private static final class BranchSequence {
+		final String prefix;
+		long counter;
+
+		BranchSequence(String prefix) {
+			this.prefix = prefix;
+		}
+	}
+}
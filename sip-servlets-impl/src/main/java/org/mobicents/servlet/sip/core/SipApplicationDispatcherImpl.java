@@ -40,11 +40,8 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -110,14 +107,21 @@ import org.mobicents.servlet.sip.address.AddressImpl;
 import org.mobicents.servlet.sip.address.AddressImpl.ModifiableRule;
 import org.mobicents.servlet.sip.annotation.ConcurrencyControlMode;
 import org.mobicents.servlet.sip.core.b2bua.MobicentsB2BUAHelper;
+import org.mobicents.servlet.sip.core.dispatchers.DispatcherExecutorMode;
 import org.mobicents.servlet.sip.core.dispatchers.MessageDispatcher;
 import org.mobicents.servlet.sip.core.dispatchers.MessageDispatcherFactory;
+import org.mobicents.servlet.sip.core.dispatchers.QueueCongestionControl;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedDispatcherExecutor;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedTask;
+import org.mobicents.servlet.sip.core.dispatchers.SojournTimeCongestionControl;
 import org.mobicents.servlet.sip.core.message.MobicentsSipServletRequest;
 import org.mobicents.servlet.sip.core.proxy.MobicentsProxy;
+import org.mobicents.servlet.sip.core.session.ConcurrencyControlUtils;
 import org.mobicents.servlet.sip.core.session.DistributableSipManager;
 import org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSession;
 import org.mobicents.servlet.sip.core.session.MobicentsSipSession;
 import org.mobicents.servlet.sip.core.session.MobicentsSipSessionKey;
+import org.mobicents.servlet.sip.core.session.SessionExecutionLane;
 import org.mobicents.servlet.sip.core.session.SessionManagerUtil;
 import org.mobicents.servlet.sip.core.session.SipApplicationSessionKey;
 import org.mobicents.servlet.sip.dns.MobicentsDNSResolver;
@@ -131,6 +135,7 @@ import org.mobicents.servlet.sip.proxy.ProxyBranchImpl;
 import org.mobicents.servlet.sip.proxy.ProxyImpl;
 import org.mobicents.servlet.sip.router.ManageableApplicationRouter;
 import org.mobicents.servlet.sip.utils.NamingThreadFactory;
+import org.mobicents.servlet.sip.utils.VirtualThreads;
 import org.restcomm.commons.statistics.reporter.RestcommStatsReporter;
 
 import com.codahale.metrics.Counter;
@@ -172,7 +177,10 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 			if(logger.isDebugEnabled()) {
 				logger.debug("CongestionControlTimerTask now running ");
 			}
-			analyzeQueueCongestionState();
+			// the adaptive policy replaces the queue size thresholds by the time messages wait in the queues
+			if(!CongestionControlPolicy.Adaptive.equals(congestionControlPolicy)) {
+				analyzeQueueCongestionState();
+			}
 			analyzeMemory();
 			if(gatherStatistics) {
 				for (SipContext sipContext : applicationDeployed.values()) {
@@ -246,6 +254,8 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 	@Deprecated
 	protected transient ScheduledFuture congestionControlTimerFuture;
 	private CongestionControlPolicy congestionControlPolicy;
+	private SojournTimeCongestionControl sojournTimeCongestionControl;
+	private QueueCongestionControl queueCongestionControl;
 	@Deprecated
 	private int numberOfMessagesInQueue;
 	@Deprecated
@@ -254,6 +264,8 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 	private int queueSize;
 	@Deprecated
 	private int backToNormalQueueSize;
+	// number of dispatcher executor shards standing for one dispatcher thread, the queue sizes are split across them
+	private int shardsPerDispatcherThread = 1;
 	//used for graceful stops and congestion control mechanism (which is now deprecated)
 	private ScheduledThreadPoolExecutor asynchronousScheduledThreadPoolExecutor = null;
 	
@@ -266,13 +278,19 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 	private int timerDInterval = 32000; // timer D interval for jain sip tx
 	private ConcurrencyControlMode concurrencyControlMode;
 	public static int APP_ID_HASHING_MAX_LENGTH = 8;
+	// capacity of each dispatcher executor shard queue when no sip message queue size is configured
+	public static final int DEFAULT_SHARD_QUEUE_SIZE = 1500;
+	// number of dispatcher executor shards per dispatcher thread in the virtual thread executor mode, each shard running a single virtual thread
+	public static final int VIRTUAL_SHARDS_PER_DISPATCHER_THREAD = Integer.getInteger("org.mobicents.servlet.sip.dispatcher.virtualShardsPerThread", 64);
 	private static final int NUMBER_OF_TAG_SEPARATORS = 3;
 	private int tagHashMaxLength = 8;
 	private int callIdMaxLength = -1;
+	// generates the random parts of tags and branches
+	private IdentifierGenerator identifierGenerator = new DefaultIdentifierGenerator();
 	
 	// This executor is used for async things that don't need to wait on session executors, like CANCEL requests
 	// or when the container is configured to execute every request ASAP without waiting on locks (no concurrency control)
-	private ThreadPoolExecutor asynchronousExecutor = null;
+	private ShardedDispatcherExecutor asynchronousExecutor = null;
 	
 	// fatcory for dispatching SIP messages
 	private MessageDispatcherFactory messageDispatcherFactory;
@@ -364,6 +382,25 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 		sipApplicationRouter.init();
 		sipApplicationRouter.applicationDeployed(new ArrayList<String>(applicationDeployed.keySet()));
 		
+		//load the identifier generator from the org.mobicents.servlet.sip.IdentifierGenerator system property if present
+		String identifierGeneratorClassName = System.getProperty("org.mobicents.servlet.sip.IdentifierGenerator");
+		if(identifierGeneratorClassName != null && identifierGeneratorClassName.length() > 0) {
+			if(logger.isInfoEnabled()) {
+				logger.info("SipApplicationDispatcher will be using " + identifierGeneratorClassName + " as IdentifierGenerator");
+			}
+			try {
+				identifierGenerator = (IdentifierGenerator) Class.forName(identifierGeneratorClassName).newInstance();
+			} catch (InstantiationException e) {
+				throw new IllegalArgumentException("Impossible to load the Identifier Generator",e);
+			} catch (IllegalAccessException e) {
+				throw new IllegalArgumentException("Impossible to load the Identifier Generator",e);
+			} catch (ClassNotFoundException e) {
+				throw new IllegalArgumentException("Impossible to load the Identifier Generator",e);
+			} catch (ClassCastException e) {
+				throw new IllegalArgumentException("Identifier Generator defined does not implement " + IdentifierGenerator.class.getName(),e);
+			}
+		}
+		
 		// set the DNSServerLocator allowing to support RFC 3263 and do DNS lookups to resolve uris
 		if(sipService.getDnsResolverClass() != null && sipService.getDnsResolverClass().trim().length() > 0) {
 			if(logger.isInfoEnabled()) {
@@ -428,26 +465,19 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 				new ThreadPoolExecutor.CallerRunsPolicy());
 		asynchronousScheduledThreadPoolExecutor.prestartAllCoreThreads();	
 		logger.info("AsynchronousThreadPoolExecutor size is " + sipService.getDispatcherThreadPoolSize());		
-		asynchronousExecutor = new ThreadPoolExecutor(sipService.getDispatcherThreadPoolSize(), 64, 90, TimeUnit.SECONDS,
-				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
-		            private int threadCount = 0;
-		
-		            public Thread newThread(Runnable pRunnable) {
-		            	Thread thread = new Thread(pRunnable, String.format("%s-%d",
-		                                "MSS-Executor-Thread", threadCount++));
-		            	thread.setPriority(((SipStackImpl)sipStack).getThreadPriority());
-		            	return thread;
-		            }
-        });		
-		asynchronousExecutor.setRejectedExecutionHandler(new RejectedExecutionHandler(){
-
-			public void rejectedExecution(Runnable r,
-					ThreadPoolExecutor executor) {
-				logger.warn("Executor job was rejected " + r.toString());
-				
-			}
-			
-		});
+		DispatcherExecutorMode dispatcherExecutorMode = DispatcherExecutorMode.fromString(sipService.getDispatcherExecutorMode());
+		if(DispatcherExecutorMode.Virtual.equals(dispatcherExecutorMode) && !VirtualThreads.isSupported()) {
+			logger.warn("Virtual threads are not supported by this JVM, the dispatcher executor falls back to platform threads");
+			dispatcherExecutorMode = DispatcherExecutorMode.Platform;
+		}
+		// one single threaded shard per dispatcher thread, or many virtual thread ones, so that the tasks of a session never run concurrently,
+		// each dispatcher thread worth of shards being bounded by the sip message queue size
+		shardsPerDispatcherThread = DispatcherExecutorMode.Virtual.equals(dispatcherExecutorMode) ? VIRTUAL_SHARDS_PER_DISPATCHER_THREAD : 1;
+		asynchronousExecutor = new ShardedDispatcherExecutor("MSS-Executor-Thread", 
+				sipService.getDispatcherThreadPoolSize() * shardsPerDispatcherThread, 
+				1, getShardQueueSize(queueSize > 0 ? queueSize : DEFAULT_SHARD_QUEUE_SIZE), ((SipStackImpl)sipStack).getThreadPriority(), dispatcherExecutorMode);
+		sojournTimeCongestionControl = new SojournTimeCongestionControl(asynchronousExecutor);
+		queueCongestionControl = new QueueCongestionControl(asynchronousExecutor, backToNormalQueueSize / shardsPerDispatcherThread);
 		
 		String statisticsServer = Version.getVersionProperty(Version.STATISTICS_SERVER);
 		if(statisticsServer == null || !statisticsServer.contains("http")) {
@@ -489,6 +519,20 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 		 		logger.info("No Congestion control background task started since the checking interval is equals to " + congestionControlCheckingInterval + " milliseconds.");
 		 	}
 		}
+		asynchronousScheduledThreadPoolExecutor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					if(CongestionControlPolicy.Adaptive.equals(congestionControlPolicy)) {
+						final CongestionControlEvent congestionControlEvent = sojournTimeCongestionControl.sample();
+						if(congestionControlEvent != null) {
+							callbackCongestionControlListener(sojournTimeCongestionControl.isShedding(), congestionControlEvent);
+						}
+					}
+				} catch (Exception e) {
+					logger.error("failed to sample the time messages wait to be dispatched", e);
+				}
+			}
+		}, SojournTimeCongestionControl.INTERVAL, SojournTimeCongestionControl.INTERVAL, TimeUnit.MILLISECONDS);
 		//define periodicy - default to once a day
         statsReporter.start(86400, TimeUnit.SECONDS);
 
@@ -703,7 +747,7 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 	 * Gives the number of pending messages in all queues for all concurrency control modes.
 	 */
 	public int getNumberOfPendingMessages() {
-		return this.asynchronousExecutor.getQueue().size();
+		return this.asynchronousExecutor.getPendingTasks();
 //		int size = 0;
 //		Iterator<SipContext> applicationsIterator = this.applicationDeployed
 //				.values().iterator();
@@ -739,25 +783,12 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 	}
 	
 	private void analyzeQueueCongestionState() {
+		// the queue sizes are per shard so they are compared against the depth of the most congested shard
 		this.numberOfMessagesInQueue = getNumberOfPendingMessages();
-		if(rejectSipMessages) {
-			if(numberOfMessagesInQueue  < backToNormalQueueSize) {
-				String message = "Number of pending messages in the queues : " + numberOfMessagesInQueue + " < to the back to normal queue Size : " + backToNormalQueueSize;
-				logger.warn(message + " => stopping to reject requests");
-				rejectSipMessages = false;
-				final CongestionControlEvent congestionControlEvent = new CongestionControlEvent(
-						org.mobicents.javax.servlet.CongestionControlEvent.Reason.Queue, message);		
-				callbackCongestionControlListener(rejectSipMessages, congestionControlEvent);
-			}
-		} else {
-			if(numberOfMessagesInQueue > queueSize) {
-				String message = "Number of pending messages in the queues : " + numberOfMessagesInQueue + " > to the queue Size : " + queueSize;
-				logger.warn(message + " => starting to reject requests");
-				rejectSipMessages = true;
-				final CongestionControlEvent congestionControlEvent = new CongestionControlEvent(
-						org.mobicents.javax.servlet.CongestionControlEvent.Reason.Queue, message);		
-				callbackCongestionControlListener(rejectSipMessages, congestionControlEvent);
-			}
+		final CongestionControlEvent congestionControlEvent = queueCongestionControl.sample();
+		if(congestionControlEvent != null) {
+			rejectSipMessages = queueCongestionControl.isRejecting();
+			callbackCongestionControlListener(rejectSipMessages, congestionControlEvent);
 		}
 	}
 	
@@ -949,7 +980,8 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 	}
 
 	private boolean controlCongestion(Request request, SipServletRequestImpl sipServletRequest, Dialog dialog, RouteHeader routeHeader, SipProvider sipProvider) {
-		if(rejectSipMessages || memoryToHigh) {
+		final boolean shedding = CongestionControlPolicy.Adaptive.equals(congestionControlPolicy) && sojournTimeCongestionControl.isShedding();
+		if(rejectSipMessages || memoryToHigh || shedding) {
 			String method = request.getMethod();
 			boolean goodMethod = method.equals(Request.ACK) || method.equals(Request.PRACK) || method.equals(Request.BYE) || method.equals(Request.CANCEL) || method.equals(Request.UPDATE) || method.equals(Request.INFO);
 			if(logger.isDebugEnabled()) {
@@ -957,19 +989,29 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 			}
 			if(!goodMethod) {
 				if(dialog == null && (routeHeader == null || ((Parameters)routeHeader.getAddress().getURI()).getParameter(MessageDispatcher.RR_PARAM_PROXY_APP) == null)) {
+					if(!rejectSipMessages && !memoryToHigh && !sojournTimeCongestionControl.shed(method)) {
+						return false;
+					}
 					if(CongestionControlPolicy.DropMessage.equals(congestionControlPolicy)) {
 						logger.error("dropping request, memory is too high or too many messages present in queues");
 						return true;
 					}
 					SipServletResponse sipServletResponse = null;
 					String message = null;
+					CongestionControlEvent congestionControlEvent = null;
 					if(rejectSipMessages) {
 						message = "Number of pending messages in the queues : " + numberOfMessagesInQueue + " > to the queue Size : " + queueSize;
 					} else if (memoryToHigh) {
 						message = "Memory used: " + percentageOfMemoryUsed + "% > to the memory threshold : " + memoryThreshold + "%";
 					}
-					final CongestionControlEvent congestionControlEvent = new CongestionControlEvent(
-							org.mobicents.javax.servlet.CongestionControlEvent.Reason.Memory, message);
+					if(message != null) {
+						congestionControlEvent = new CongestionControlEvent(
+								org.mobicents.javax.servlet.CongestionControlEvent.Reason.Memory, message);
+					} else {
+						congestionControlEvent = new CongestionControlEvent(
+								org.mobicents.javax.servlet.CongestionControlEvent.Reason.Latency, sojournTimeCongestionControl.getMessage(), 
+								sojournTimeCongestionControl.getSheddingRatio());
+					}
 					
 					for (SipContext sipContext : applicationDeployed.values()) {
 						final ContainerListener containerListener = 
@@ -1186,9 +1228,13 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 			logger.debug("Dialog Terminated => dialog Id : " + dialogTerminatedEvent.getDialog().getDialogId());
 		}
 		
-		getAsynchronousExecutor().execute(new Runnable() {
+		getAsynchronousExecutor().execute(new ShardedTask() {
 			// https://github.com/RestComm/sip-servlets/issues/107 guard against NPEon concurrent cleanup
 			final TransactionApplicationData dialogAppData = (TransactionApplicationData) dialog.getApplicationData();
+			public Object getShardKey() {
+				final MobicentsSipSessionKey sipSessionKey = dialogAppData != null ? dialogAppData.getSipSessionKey() : null;
+				return sipSessionKey != null ? sipSessionKey.getApplicationSessionId() : null;
+			}
 			public void run() {			
 				try {
 					boolean appDataFound = false;
@@ -1219,6 +1265,20 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 
 	}
 
+	/**
+	 * Runs the session invalidation again on the dispatcher executor, behind the task currently holding the session 
+	 */
+	private ShardedTask sessionInvalidation(final MobicentsSipSessionKey sipSessionKey, final boolean invalidateProxySession) {
+		return new ShardedTask() {
+			public Object getShardKey() {
+				return sipSessionKey.getApplicationSessionId();
+			}
+			public void run() {
+				tryToInvalidateSession(sipSessionKey, invalidateProxySession);
+			}
+		};
+	}
+	
 	/**
 	 * @param sipSessionImpl
 	 */
@@ -1274,9 +1334,12 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 							}
 							return;
 						} 
+						if(!ConcurrencyControlUtils.enterSipApp(sipContext, sipApplicationSession, sipSessionImpl, 
+								sessionInvalidation(sipSessionKey, invalidateProxySession))) {
+							return;
+						}
 						boolean batchStarted = false;
 						try {
-							sipContext.enterSipApp(sipApplicationSession, sipSessionImpl, false, true);
 							batchStarted = sipContext.enterSipAppHa(true);
 							if(logger.isDebugEnabled()) {
 								logger.debug("sip session " + sipSessionKey + " is valid ? :" + sipSessionImpl.isValidInternal());
@@ -1300,8 +1363,11 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 						}
 					}															
 					if(sipApplicationSession != null) {												
+						if(!ConcurrencyControlUtils.enterSipApp(sipContext, sipApplicationSession, null, 
+								sessionInvalidation(sipSessionKey, invalidateProxySession))) {
+							return;
+						}
 						try {
-							sipContext.enterSipApp(sipApplicationSession, null, false, true);
 							if(logger.isDebugEnabled()) {
 								logger.debug("sip app session " + sipApplicationSession.getKey() + " is valid ? :" + sipApplicationSession.isValidInternal());
 								if(sipApplicationSession.isValidInternal()) {
@@ -1339,7 +1405,10 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 				final SipServletMessageImpl sipServletMessage = tad.getSipServletMessage();
 				final MobicentsSipSessionKey sipSessionKey = sipServletMessage.getSipSessionKey();
 				final MobicentsSipSession sipSession = sipServletMessage.getSipSession();
-				getAsynchronousExecutor().execute(new Runnable() {
+				SessionExecutionLane.getExecutor(sipSession != null ? sipSession.getSipApplicationSession() : null, getAsynchronousExecutor()).execute(new ShardedTask() {
+					public Object getShardKey() {
+						return sipSessionKey != null ? sipSessionKey.getApplicationSessionId() : null;
+					}
 					public void run() {			
 						if(logger.isDebugEnabled()) {
 							logger.info("Running process dialog timeout " + dialog + " reason => " + timeoutEvent.getReason());
@@ -1350,8 +1419,11 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 								//the context can be null if the server is being shutdown
 								if(sipContext != null) {
 									MobicentsSipApplicationSession sipApplicationSession = sipSession.getSipApplicationSession();
+									if(!ConcurrencyControlUtils.enterSipApp(sipContext, sipApplicationSession, sipSession, this)) {
+										// the session is held by another task, run again once it is released
+										return;
+									}
 									try {
-										sipContext.enterSipApp(sipApplicationSession, sipSession, false, true);
 										checkForAckNotReceived(sipServletMessage);
 										checkForPrackNotReceived(sipServletMessage);
 									} finally {
@@ -1408,7 +1480,10 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 			final SipServletMessageImpl sipServletMessage = tad.getSipServletMessage();
 			final MobicentsSipSessionKey sipSessionKey = sipServletMessage.getSipSessionKey();
 			final MobicentsSipSession sipSession = sipServletMessage.getSipSession();
-			getAsynchronousExecutor().execute(new Runnable() {
+			SessionExecutionLane.getExecutor(sipSession != null ? sipSession.getSipApplicationSession() : null, getAsynchronousExecutor()).execute(new ShardedTask() {
+				public Object getShardKey() {
+					return sipSessionKey != null ? sipSessionKey.getApplicationSessionId() : null;
+				}
 				public void run() {
 					try {
 						if(logger.isDebugEnabled()) {
@@ -1425,8 +1500,11 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 							//the context can be null if the server is being shutdown
 							if(sipContext != null) {
 								MobicentsSipApplicationSession sipApplicationSession = sipSession.getSipApplicationSession();
+								if(!ConcurrencyControlUtils.enterSipApp(sipContext, sipApplicationSession, sipSession, this)) {
+									// the session is held by another task, run again once it is released
+									return;
+								}
 								try {
-									sipContext.enterSipApp(sipApplicationSession, sipSession, false, true);
 									MobicentsB2BUAHelper b2buaHelperImpl = sipSession.getB2buaHelper();
 
 									if(b2buaHelperImpl != null && tad.getSipServletMessage() instanceof SipServletRequestImpl) {
@@ -1615,7 +1693,10 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 			final SipServletMessageImpl sipServletMessageImpl = tad.getSipServletMessage();
 			final MobicentsSipSessionKey sipSessionKey = sipServletMessageImpl.getSipSessionKey();
 			final MobicentsSipSession sipSession = sipServletMessageImpl.getSipSession();
-			getAsynchronousExecutor().execute(new Runnable() {
+			SessionExecutionLane.getExecutor(sipSession != null ? sipSession.getSipApplicationSession() : null, getAsynchronousExecutor()).execute(new ShardedTask() {
+				public Object getShardKey() {
+					return sipSessionKey != null ? sipSessionKey.getApplicationSessionId() : null;
+				}
 				public void run() {
 					try {
 						if(logger.isDebugEnabled()) {
@@ -1649,8 +1730,11 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 							//the context can be null if the server is being shutdown
 							if(sipContext != null) {
 								MobicentsSipApplicationSession sipApplicationSession = sipSession.getSipApplicationSession();
+								if(!ConcurrencyControlUtils.enterSipApp(sipContext, sipApplicationSession, sipSession, this)) {
+									// the session is held by another task, run again once it is released
+									return;
+								}
 								try {
-									sipContext.enterSipApp(sipApplicationSession, sipSession, false, true);
 									if(b2buaHelperImpl != null && tad.getSipServletMessage() instanceof SipServletRequestImpl) {
 										b2buaHelperImpl.unlinkOriginalRequestInternal((SipServletRequestImpl)tad.getSipServletMessage(), false);
 									}
@@ -1724,6 +1808,16 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 		return tagHashMaxLength;
 	}
 	
+	@Override
+	public IdentifierGenerator getIdentifierGenerator() {
+		return identifierGenerator;
+	}
+	
+	@Override
+	public void setIdentifierGenerator(IdentifierGenerator identifierGenerator) {
+		this.identifierGenerator = identifierGenerator;
+	}
+	
 	@Override
 	public CallIdHeader getCallId(
 			MobicentsExtendedListeningPoint extendedListeningPoint, String callId) throws ParseException {
@@ -1946,7 +2040,7 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 		return applicationRouterInfo;
 	}
 
-	public ThreadPoolExecutor getAsynchronousExecutor() {
+	public ShardedDispatcherExecutor getAsynchronousExecutor() {
 		return asynchronousExecutor;
 	}
 	
@@ -2167,6 +2261,20 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 		if(logger.isInfoEnabled()) {
 			logger.info("Queue Size set to " + queueSize);
 		}
+		if(asynchronousExecutor != null) {
+			asynchronousExecutor.setShardQueueSize(getShardQueueSize(queueSize > 0 ? queueSize : DEFAULT_SHARD_QUEUE_SIZE));
+		}
+	}
+	
+	/**
+	 * In the virtual thread executor mode a dispatcher thread is replaced by many shards, 
+	 * the size in parameter is split across them so that the queued messages are bounded the same way in both modes
+	 * 
+	 * @param size a size of the sip message queue of a dispatcher thread
+	 * @return the same size for a single dispatcher executor shard
+	 */
+	int getShardQueueSize(int size) {
+		return Math.max(1, size / shardsPerDispatcherThread);
 	}
 	
 	public void setConcurrencyControlModeByName(String concurrencyControlMode) {
@@ -2317,6 +2425,7 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 	 */
 	public void setCongestionControlPolicy(CongestionControlPolicy congestionControlPolicy) {
 		this.congestionControlPolicy = congestionControlPolicy;
+		resetCongestionState();
 		if(logger.isInfoEnabled()) {
 			logger.info("Congestion Control policy set to " + this.congestionControlPolicy.toString());
 		}
@@ -2325,11 +2434,26 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 	
 	public void setCongestionControlPolicyByName(String congestionControlPolicy) {
 		this.congestionControlPolicy = CongestionControlPolicy.valueOf(congestionControlPolicy);
+		resetCongestionState();
 		if(logger.isInfoEnabled()) {
 			logger.info("Congestion Control policy set to " + this.congestionControlPolicy.toString());
 		}
 	}	
 	
+	/**
+	 * Clears the congestion state of the policies not in use anymore
+	 */
+	private void resetCongestionState() {
+		if(CongestionControlPolicy.Adaptive.equals(congestionControlPolicy)) {
+			rejectSipMessages = false;
+			if(queueCongestionControl != null) {
+				queueCongestionControl.reset();
+			}
+		} else if(sojournTimeCongestionControl != null) {
+			sojournTimeCongestionControl.reset();
+		}
+	}
+	
 	/**
 	 * @return the congestionControlPolicy
 	 */
@@ -2367,6 +2491,28 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 	public int getNumberOfMessagesInQueue() {
 		return numberOfMessagesInQueue;
 	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.SipApplicationDispatcher#getDispatcherShardQueueDepths()
+	 */
+	public int[] getDispatcherShardQueueDepths() {
+		if(asynchronousExecutor == null) {
+			return new int[0];
+		}
+		return asynchronousExecutor.getQueueDepths();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.SipApplicationDispatcher#getDispatcherShardWaitTimes()
+	 */
+	public long[] getDispatcherShardWaitTimes() {
+		if(asynchronousExecutor == null) {
+			return new long[0];
+		}
+		return asynchronousExecutor.getWaitTimes();
+	}
 
 	/**
 	 * @return the percentageOfMemoryUsed
@@ -2627,6 +2773,9 @@ public class SipApplicationDispatcherImpl implements SipApplicationDispatcher, S
 		if(logger.isInfoEnabled()) {
 			logger.info("Back To Normal Queue Size set to " + backToNormalQueueSize);
 		}
+		if(queueCongestionControl != null) {
+			queueCongestionControl.setBackToNormalQueueSize(backToNormalQueueSize / shardsPerDispatcherThread);
+		}
 	}
 
 	/**
@@ -36,6 +36,7 @@ import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -80,6 +81,24 @@ public class SipNetworkInterfaceManagerImpl implements SipNetworkInterfaceManage
      */
     public static final int MIN_PORT_NUMBER = 1024;    
     
+    /**
+     * Time to live (in milliseconds) of the hostname to listening point resolutions, be they positive or negative
+     */
+    public static final long RESOLUTION_CACHE_TTL = Long.getLong("org.mobicents.servlet.sip.listeningPoint.resolutionCacheTtl", 60000L);
+    
+    /**
+     * Maximum number of hostname to listening point resolutions cached
+     */
+    public static final int RESOLUTION_CACHE_MAX_SIZE = Integer.getInteger("org.mobicents.servlet.sip.listeningPoint.resolutionCacheMaxSize", 1024);
+    
+    // reused by each thread to look up the listening point maps without allocating a key per lookup
+    private static final ThreadLocal<ListeningPointKey> LOOKUP_KEYS = new ThreadLocal<ListeningPointKey>() {
+    	@Override
+    	protected ListeningPointKey initialValue() {
+    		return new ListeningPointKey(null, 0, null);
+    	}
+    };
+    
 	Set<MobicentsExtendedListeningPoint> extendedListeningPointList = null;
 	List<SipURI> outboundInterfaces = null;
 	//related to google code issue 563, will be used to check if a request is aimed at a local network or outside
@@ -90,7 +109,12 @@ public class SipNetworkInterfaceManagerImpl implements SipNetworkInterfaceManage
 	//those maps are present to improve the performance of finding a listening point either from a transport
 	// or from a triplet ipaddress, port and transport
 	Map<String, Set<MobicentsExtendedListeningPoint>> transportMappingCacheMap = null;	
-	Map<String, MobicentsExtendedListeningPoint> extendedListeningPointsCacheMap = null;
+	Map<ListeningPointKey, MobicentsExtendedListeningPoint> extendedListeningPointsCacheMap = null;
+	// caches the outcome, positive or negative, of resolving a hostname not directly mapped to a listening point
+	// so that an unknown FQDN doesn't trigger a DNS lookup for each message
+	Map<ListeningPointKey, ResolvedListeningPoint> resolvedListeningPointsCacheMap = null;
+	// bumped each time the listening points change, resolutions made against a previous generation are neither cached nor used
+	final AtomicLong listeningPointsGeneration = new AtomicLong();
 	
 	Lock lock = null;
 	
@@ -112,7 +136,8 @@ public class SipNetworkInterfaceManagerImpl implements SipNetworkInterfaceManage
 		transportMappingCacheMap.put(ListeningPointExt.WS.toLowerCase(), new CopyOnWriteArraySet<MobicentsExtendedListeningPoint>());
 		transportMappingCacheMap.put(ListeningPointExt.WSS.toLowerCase(), new CopyOnWriteArraySet<MobicentsExtendedListeningPoint>());
 		// creating the ipaddress/port/transport cache map
-		extendedListeningPointsCacheMap = new ConcurrentHashMap<String, MobicentsExtendedListeningPoint>();
+		extendedListeningPointsCacheMap = new ConcurrentHashMap<ListeningPointKey, MobicentsExtendedListeningPoint>();
+		resolvedListeningPointsCacheMap = new ConcurrentHashMap<ListeningPointKey, ResolvedListeningPoint>();
 		lock = new ReentrantLock();
 	}
 	
@@ -141,25 +166,27 @@ public class SipNetworkInterfaceManagerImpl implements SipNetworkInterfaceManage
 	    	}
 		    // Adding private ipaddress to the triplet cache map
 		    for(String ipAddress : extendedListeningPoint.getIpAddresses()) {
-		    	extendedListeningPointsCacheMap.put(ipAddress + "/" + extendedListeningPoint.getPort() + ":" + extendedListeningPoint.getTransport().toLowerCase(), extendedListeningPoint);
+		    	extendedListeningPointsCacheMap.put(new ListeningPointKey(ipAddress, extendedListeningPoint.getPort(), extendedListeningPoint.getTransport()), extendedListeningPoint);
 		    }
 		    // Adding public address if any to the triplet cache map
 		    if(extendedListeningPoint.getGlobalIpAddress() != null) {
-		    	extendedListeningPointsCacheMap.put(extendedListeningPoint.getGlobalIpAddress() + "/" + extendedListeningPoint.getPort() + ":" + extendedListeningPoint.getTransport().toLowerCase(), extendedListeningPoint);
-		    	extendedListeningPointsCacheMap.put(extendedListeningPoint.getGlobalIpAddress() + "/" + extendedListeningPoint.getGlobalPort() + ":" + extendedListeningPoint.getTransport().toLowerCase(), extendedListeningPoint);
+		    	extendedListeningPointsCacheMap.put(new ListeningPointKey(extendedListeningPoint.getGlobalIpAddress(), extendedListeningPoint.getPort(), extendedListeningPoint.getTransport()), extendedListeningPoint);
+		    	extendedListeningPointsCacheMap.put(new ListeningPointKey(extendedListeningPoint.getGlobalIpAddress(), extendedListeningPoint.getGlobalPort(), extendedListeningPoint.getTransport()), extendedListeningPoint);
 		    }
 		    // Adding local hostnames if any to the triplet cache map
 		    if(extendedListeningPoint.getSipConnector().getHostNames() != null) {
 		    	StringTokenizer tokenizer = new StringTokenizer(extendedListeningPoint.getSipConnector().getHostNames(), ",");
 		    	while(tokenizer.hasMoreTokens()) {
 		    		String localHostName = tokenizer.nextToken();
-		    		extendedListeningPointsCacheMap.put(localHostName + "/" + extendedListeningPoint.getPort() + ":" + extendedListeningPoint.getTransport().toLowerCase(), extendedListeningPoint);
+		    		extendedListeningPointsCacheMap.put(new ListeningPointKey(localHostName, extendedListeningPoint.getPort(), extendedListeningPoint.getTransport()), extendedListeningPoint);
 		    		if(sipApplicationDispatcher.getDNSServerLocator() != null) {
 		    			sipApplicationDispatcher.getDNSServerLocator().mapLocalHostNameToIP(localHostName, new CopyOnWriteArraySet<String>(extendedListeningPoint.getIpAddresses()));
 			    	}
 				}
 		    }
-		    
+	    }
+	    listeningPointsChanged();
+	    if(added) {
 		    Iterator<SipContext> sipContextIterator = sipApplicationDispatcher.findSipApplications();
 		    while (sipContextIterator.hasNext()) {
 				SipContext sipContext = (SipContext) sipContextIterator.next();
@@ -191,26 +218,37 @@ public class SipNetworkInterfaceManagerImpl implements SipNetworkInterfaceManage
 		    }
 		    // Removing private ipaddress from the triplet cache map for listening point
 		    for(String ipAddress : extendedListeningPoint.getIpAddresses()) {
-		    	extendedListeningPointsCacheMap.remove(ipAddress + "/" + extendedListeningPoint.getPort() + ":" + extendedListeningPoint.getTransport().toLowerCase());
+		    	extendedListeningPointsCacheMap.remove(new ListeningPointKey(ipAddress, extendedListeningPoint.getPort(), extendedListeningPoint.getTransport()));
 		    }
 		    // Removing public address if any from the triplet cache map
 		    if(extendedListeningPoint.getGlobalIpAddress() != null) {
-		    	extendedListeningPointsCacheMap.remove(extendedListeningPoint.getGlobalIpAddress() + "/" + extendedListeningPoint.getPort() + ":" + extendedListeningPoint.getTransport().toLowerCase());
-		    	extendedListeningPointsCacheMap.remove(extendedListeningPoint.getGlobalIpAddress() + "/" + extendedListeningPoint.getGlobalPort() + ":" + extendedListeningPoint.getTransport().toLowerCase());
+		    	extendedListeningPointsCacheMap.remove(new ListeningPointKey(extendedListeningPoint.getGlobalIpAddress(), extendedListeningPoint.getPort(), extendedListeningPoint.getTransport()));
+		    	extendedListeningPointsCacheMap.remove(new ListeningPointKey(extendedListeningPoint.getGlobalIpAddress(), extendedListeningPoint.getGlobalPort(), extendedListeningPoint.getTransport()));
 		    }	
 		    if(extendedListeningPoint.getSipConnector().getHostNames() != null) {
 		    	StringTokenizer tokenizer = new StringTokenizer(extendedListeningPoint.getSipConnector().getHostNames(), ",");
 		    	while(tokenizer.hasMoreTokens()) {
 		    		String localHostName = tokenizer.nextToken();
-		    		extendedListeningPointsCacheMap.remove(localHostName + "/" + extendedListeningPoint.getPort() + ":" + extendedListeningPoint.getTransport().toLowerCase());
+		    		extendedListeningPointsCacheMap.remove(new ListeningPointKey(localHostName, extendedListeningPoint.getPort(), extendedListeningPoint.getTransport()));
 		    		if(sipApplicationDispatcher.getDNSServerLocator() != null) {
 		    			sipApplicationDispatcher.getDNSServerLocator().unmapLocalHostNameToIP(localHostName);
 		    		}
 				}
 		    }
+		    listeningPointsChanged();
 		}
 	}
 	
+	/**
+	 * Invalidates the cached hostname resolutions, to be called once all the maps are up to date.
+	 * A lookup running concurrently started against the previous generation so it will neither
+	 * cache its resolution nor have it used if it is cached after the map has been cleared.
+	 */
+	void listeningPointsChanged() {
+		listeningPointsGeneration.incrementAndGet();
+		resolvedListeningPointsCacheMap.clear();
+	}
+	
 	/**
 	 * Retrieve the first matching listening point corresponding to the transport.
 	 * @param transport the transport
@@ -320,13 +358,24 @@ public class SipNetworkInterfaceManagerImpl implements SipNetworkInterfaceManage
 			tmpTransport = ListeningPoint.UDP;
 		}	
 		
+		// read before the maps so that a change of the listening points during the resolution is detected
+		final long generation = listeningPointsGeneration.get();
 		// we check first if a listening point can be found (we only do the host resolving if not found to have better perf )
-		MobicentsExtendedListeningPoint listeningPoint = extendedListeningPointsCacheMap.get(ipAddress + "/" + portChecked + ":" + tmpTransport.toLowerCase());
+		ListeningPointKey lookupKey = LOOKUP_KEYS.get().set(ipAddress, portChecked, tmpTransport);
+		MobicentsExtendedListeningPoint listeningPoint = extendedListeningPointsCacheMap.get(lookupKey);
 		if(logger.isDebugEnabled()) {
 			logger.debug("Checked Listening Point " + ipAddress + "/" + portChecked + ":" + tmpTransport.toLowerCase() + " against existing listening points, found " + listeningPoint);
 		}
 		if(listeningPoint == null && !Inet6Util.isValidIP6Address(ipAddress) 
 					&& !Inet6Util.isValidIPV4Address(ipAddress)) {
+			long now = System.currentTimeMillis();
+			ResolvedListeningPoint resolvedListeningPoint = resolvedListeningPointsCacheMap.get(lookupKey);
+			if(resolvedListeningPoint != null && resolvedListeningPoint.expirationTime > now && resolvedListeningPoint.generation == generation) {
+				if(logger.isDebugEnabled()) {
+					logger.debug("Hostname " + ipAddress + "/" + portChecked + ":" + tmpTransport.toLowerCase() + " already resolved to listening point " + resolvedListeningPoint.listeningPoint);
+				}
+				return resolvedListeningPoint.listeningPoint;
+			}
 			// if no listening point has been found and the ipaddress is not a valid IP6 address nor a valid IPV4 address 
 			// then we try to resolve it as a hostname
 			Queue<Hop> hops = null;
@@ -341,19 +390,39 @@ public class SipNetworkInterfaceManagerImpl implements SipNetworkInterfaceManage
 					if(logger.isDebugEnabled()) {
 						logger.debug("Checking Hop " + hop.getHost() + "/" + portChecked + ":" + tmpTransport.toLowerCase() + " against existing listening points");
 					}
-					listeningPoint = extendedListeningPointsCacheMap.get(hop.getHost() + "/" + portChecked + ":" + tmpTransport.toLowerCase());
+					listeningPoint = extendedListeningPointsCacheMap.get(new ListeningPointKey(hop.getHost(), portChecked, tmpTransport));
 					if(listeningPoint != null) {
 						if(logger.isDebugEnabled()) {
 							logger.debug("Found listening point " + listeningPoint);
 						}
-						return listeningPoint;
+						break;
 					}
 				}
 			}
+			cacheResolvedListeningPoint(new ListeningPointKey(ipAddress, portChecked, tmpTransport), listeningPoint, now, generation);
 		}
 		return listeningPoint;
 	}		
 	
+	void cacheResolvedListeningPoint(ListeningPointKey key, MobicentsExtendedListeningPoint listeningPoint, long now, long generation) {
+		if(listeningPointsGeneration.get() != generation) {
+			// resolved against listening points that changed since
+			return;
+		}
+		if(resolvedListeningPointsCacheMap.size() >= RESOLUTION_CACHE_MAX_SIZE) {
+			Iterator<ResolvedListeningPoint> resolvedListeningPoints = resolvedListeningPointsCacheMap.values().iterator();
+			while (resolvedListeningPoints.hasNext()) {
+				if(resolvedListeningPoints.next().expirationTime <= now) {
+					resolvedListeningPoints.remove();
+				}
+			}
+			if(resolvedListeningPointsCacheMap.size() >= RESOLUTION_CACHE_MAX_SIZE) {
+				resolvedListeningPointsCacheMap.clear();
+			}
+		}
+		resolvedListeningPointsCacheMap.put(key, new ResolvedListeningPoint(listeningPoint, now + RESOLUTION_CACHE_TTL, generation));
+	}
+	
 	/**
 	 * Checks if the port is in the UDP-TCP port numbers (0-65355) range 
 	 * otherwise defaulting to 5060 if UDP, TCP or SCTP or to 5061 if TLS
@@ -511,4 +580,75 @@ public class SipNetworkInterfaceManagerImpl implements SipNetworkInterfaceManage
 			return false;
 		}
 	}	
+	
+	/**
+	 * Key of the listening point maps, made of a host, a port and a transport compared without case.
+	 * A key is only mutated through {@link #set(String, int, String)} on the per thread lookup instances, 
+	 * which are never stored in a map. 
+	 */
+	static final class ListeningPointKey {
+		private String host;
+		private int port;
+		private String transport;
+		private int hash;
+		
+		ListeningPointKey(String host, int port, String transport) {
+			set(host, port, transport);
+		}
+		
+		ListeningPointKey set(String host, int port, String transport) {
+			this.host = host;
+			this.port = port;
+			this.transport = transport;
+			int result = host == null ? 0 : host.hashCode();
+			result = 31 * result + port;
+			if(transport != null) {
+				for (int i = 0; i < transport.length(); i++) {
+					result = 31 * result + Character.toLowerCase(transport.charAt(i));
+				}
+			}
+			this.hash = result;
+			return this;
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ListeningPointKey)) {
+				return false;
+			}
+			ListeningPointKey other = (ListeningPointKey) obj;
+			return hash == other.hash && port == other.port
+					&& (host == null ? other.host == null : host.equals(other.host))
+					&& (transport == null ? other.transport == null : transport.equalsIgnoreCase(other.transport));
+		}
+		
+		@Override
+		public String toString() {
+			return host + "/" + port + ":" + transport;
+		}
+	}
+	
+	/**
+	 * Outcome of resolving a hostname to one of our listening points, a null listening point meaning it didn't resolve to any
+	 */
+	static final class ResolvedListeningPoint {
+		final MobicentsExtendedListeningPoint listeningPoint;
+		final long expirationTime;
+		// generation of the listening points the resolution was made against
+		final long generation;
+		
+		ResolvedListeningPoint(MobicentsExtendedListeningPoint listeningPoint, long expirationTime, long generation) {
+			this.listeningPoint = listeningPoint;
+			this.expirationTime = expirationTime;
+			this.generation = generation;
+		}
+	}
 }
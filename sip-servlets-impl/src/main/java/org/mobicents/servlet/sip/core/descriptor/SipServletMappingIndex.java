@@ -0,0 +1,259 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.descriptor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.sip.SipServletRequest;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Decision index over the servlet mappings of a sip application, so that the servlet 
+ * handling an initial request can be found without evaluating every mapping rule.
+ * 
+ * At compile time, every mapping whose rule requires a request variable to be equal to a 
+ * constant (an equals rule, or an and rule holding one) is filed under that variable and value, 
+ * preferably under another variable than request.method as it is the most selective. 
+ * The other mappings are always candidates. 
+ * At lookup time, each indexed variable is extracted once from the request, and only the 
+ * candidate mappings of the matching buckets are evaluated, in their declaration order, 
+ * so that the first matching mapping is still the one returned. 
+ * While evaluating the candidates, the equals and and rules are evaluated by the index itself, 
+ * so that a variable is extracted at most once per lookup whatever the number of rules testing it. 
+ * This relies on an {@link EqualsMatchingRule} matching if and only if its value is equal to the one it expects, 
+ * ignoring the case as {@link String#equalsIgnoreCase(String)} does if it is case insensitive.
+ * 
+ * The index is rebuilt lazily after the mappings have been modified.
+ */
+public final class SipServletMappingIndex {
+	private static final Logger logger = Logger.getLogger(SipServletMappingIndex.class);
+	
+	private static final String METHOD_VAR_NAME = "request.method";
+	
+	private volatile CompiledIndex compiledIndex;
+	
+	/**
+	 * Invalidates the index, it is to be called whenever a mapping is added or removed.
+	 */
+	public void invalidate() {
+		compiledIndex = null;
+	}
+	
+	/**
+	 * Finds the first mapping, in declaration order, matching the request
+	 * @param sipServletMappings the mappings of the application in their declaration order
+	 * @param sipServletRequest the request to match
+	 * @return the first matching mapping or null if none matches
+	 */
+	public MobicentsSipServletMapping find(List<MobicentsSipServletMapping> sipServletMappings, SipServletRequest sipServletRequest) {
+		CompiledIndex index = compiledIndex;
+		if(index == null || index.mappings.length != sipServletMappings.size()) {
+			index = compile(sipServletMappings);
+			compiledIndex = index;
+		}
+		return index.find(sipServletRequest);
+	}
+	
+	private static CompiledIndex compile(List<MobicentsSipServletMapping> sipServletMappings) {
+		MobicentsSipServletMapping[] mappings = sipServletMappings.toArray(new MobicentsSipServletMapping[sipServletMappings.size()]);
+		Map<String, IndexedVariable> variables = new LinkedHashMap<String, IndexedVariable>();
+		BitSet alwaysCandidates = new BitSet(mappings.length);
+		for (int i = 0; i < mappings.length; i++) {
+			EqualsMatchingRule guard = selectGuard(mappings[i].getMatchingRule());
+			if(guard == null || guard.getExpectedValue() == null) {
+				alwaysCandidates.set(i);
+				continue;
+			}
+			IndexedVariable variable = variables.get(guard.getVarName());
+			if(variable == null) {
+				variable = new IndexedVariable(guard);
+				variables.put(guard.getVarName(), variable);
+			}
+			variable.add(guard, i);
+		}
+		if(logger.isDebugEnabled()) {
+			logger.debug("Servlet mappings indexed on " + variables.keySet() + ", " + 
+					alwaysCandidates.cardinality() + " out of " + mappings.length + " mapping(s) are not indexed");
+		}
+		return new CompiledIndex(mappings, variables.values().toArray(new IndexedVariable[variables.size()]), alwaysCandidates);
+	}
+	
+	/**
+	 * @return the equality condition required by the rule to match, favoring another variable than the method, 
+	 * null if the rule doesn't require any
+	 */
+	private static EqualsMatchingRule selectGuard(MatchingRule matchingRule) {
+		List<EqualsMatchingRule> guards = new ArrayList<EqualsMatchingRule>();
+		collectGuards(matchingRule, guards);
+		EqualsMatchingRule methodGuard = null;
+		for (EqualsMatchingRule guard : guards) {
+			if(!METHOD_VAR_NAME.equals(guard.getVarName())) {
+				return guard;
+			}
+			if(methodGuard == null) {
+				methodGuard = guard;
+			}
+		}
+		return methodGuard;
+	}
+	
+	private static void collectGuards(MatchingRule matchingRule, List<EqualsMatchingRule> guards) {
+		if(matchingRule instanceof EqualsMatchingRule) {
+			guards.add((EqualsMatchingRule) matchingRule);
+		} else if(matchingRule instanceof AndMatchingRule) {
+			for (MatchingRule criterion : ((AndMatchingRule) matchingRule).getCriteria()) {
+				collectGuards(criterion, guards);
+			}
+		}
+	}
+	
+	/**
+	 * Folds the case of the value so that two values have the same folded form if and only if 
+	 * {@link String#equalsIgnoreCase(String)} considers them equal, which {@link String#toLowerCase()} 
+	 * doesn't guarantee for non ASCII values (a dotted capital I for instance), nor does it preserve the length.
+	 */
+	static String foldCase(String value) {
+		char[] folded = new char[value.length()];
+		for (int i = 0; i < folded.length; i++) {
+			folded[i] = Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+		}
+		return new String(folded);
+	}
+	
+	// marks the variables extracted from the request that have no value
+	private static final String NO_VALUE = new String();
+	
+	private static String getValue(EqualsMatchingRule rule, SipServletRequest sipServletRequest, Map<String, String> values) {
+		String value = values.get(rule.getVarName());
+		if(value == null) {
+			value = rule.getValue(sipServletRequest);
+			values.put(rule.getVarName(), value == null ? NO_VALUE : value);
+			return value;
+		}
+		return value == NO_VALUE ? null : value;
+	}
+	
+	/**
+	 * Evaluates the rule, extracting the variables tested by its equals rules from the request only if they are not in the values already
+	 */
+	private static boolean matches(MatchingRule matchingRule, SipServletRequest sipServletRequest, Map<String, String> values) {
+		if(matchingRule instanceof EqualsMatchingRule) {
+			EqualsMatchingRule equalsMatchingRule = (EqualsMatchingRule) matchingRule;
+			String value = getValue(equalsMatchingRule, sipServletRequest, values);
+			if(value == null) {
+				return false;
+			}
+			if(equalsMatchingRule.isIgnoreCase()) {
+				return equalsMatchingRule.getExpectedValue().equalsIgnoreCase(value);
+			}
+			return equalsMatchingRule.getExpectedValue().equals(value);
+		}
+		if(matchingRule instanceof AndMatchingRule) {
+			for (MatchingRule criterion : ((AndMatchingRule) matchingRule).getCriteria()) {
+				if(!matches(criterion, sipServletRequest, values)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return matchingRule.matches(sipServletRequest);
+	}
+	
+	private static final class CompiledIndex {
+		private final MobicentsSipServletMapping[] mappings;
+		private final IndexedVariable[] variables;
+		private final BitSet alwaysCandidates;
+		
+		CompiledIndex(MobicentsSipServletMapping[] mappings, IndexedVariable[] variables, BitSet alwaysCandidates) {
+			this.mappings = mappings;
+			this.variables = variables;
+			this.alwaysCandidates = alwaysCandidates;
+		}
+		
+		MobicentsSipServletMapping find(SipServletRequest sipServletRequest) {
+			BitSet candidates = alwaysCandidates;
+			boolean copied = false;
+			// the variables are extracted from the request only once, whatever the number of rules testing them
+			Map<String, String> values = new HashMap<String, String>();
+			for (IndexedVariable variable : variables) {
+				String value = getValue(variable.extractor, sipServletRequest, values);
+				if(value == null) {
+					continue;
+				}
+				BitSet exactMatches = variable.exactValues.get(value);
+				BitSet ignoreCaseMatches = variable.ignoreCaseValues.isEmpty() ? null : variable.ignoreCaseValues.get(foldCase(value));
+				if(exactMatches != null || ignoreCaseMatches != null) {
+					if(!copied) {
+						candidates = (BitSet) alwaysCandidates.clone();
+						copied = true;
+					}
+					if(exactMatches != null) {
+						candidates.or(exactMatches);
+					}
+					if(ignoreCaseMatches != null) {
+						candidates.or(ignoreCaseMatches);
+					}
+				}
+			}
+			for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+				MobicentsSipServletMapping sipServletMapping = mappings[i];
+				if(matches(sipServletMapping.getMatchingRule(), sipServletRequest, values)) {
+					return sipServletMapping;
+				} else if(logger.isDebugEnabled()) {
+					logger.debug("Following mapping rule didn't match : servletName => " + 
+							sipServletMapping.getServletName() + " | expression = "+ 
+							sipServletMapping.getMatchingRule().getExpression());
+				}
+			}
+			return null;
+		}
+	}
+	
+	private static final class IndexedVariable {
+		private final EqualsMatchingRule extractor;
+		private final Map<String, BitSet> exactValues = new HashMap<String, BitSet>();
+		private final Map<String, BitSet> ignoreCaseValues = new HashMap<String, BitSet>();
+		
+		IndexedVariable(EqualsMatchingRule extractor) {
+			this.extractor = extractor;
+		}
+		
+		void add(EqualsMatchingRule guard, int position) {
+			Map<String, BitSet> values = exactValues;
+			String value = guard.getExpectedValue();
+			if(guard.isIgnoreCase()) {
+				values = ignoreCaseValues;
+				value = foldCase(value);
+			}
+			BitSet positions = values.get(value);
+			if(positions == null) {
+				positions = new BitSet();
+				values.put(value, positions);
+			}
+			positions.set(position);
+		}
+	}
+}
@@ -20,11 +20,15 @@
 package org.mobicents.servlet.sip.core.dispatchers;
 
 import javax.sip.SipProvider;
+import javax.sip.header.CallIdHeader;
 import javax.sip.message.Request;
 import javax.sip.message.Response;
 
 import org.apache.log4j.Logger;
 import org.mobicents.servlet.sip.core.DispatcherException;
+import org.mobicents.servlet.sip.core.SipContext;
+import org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSession;
+import org.mobicents.servlet.sip.core.session.MobicentsSipSession;
 import org.mobicents.servlet.sip.message.SipServletMessageImpl;
 import org.mobicents.servlet.sip.message.SipServletRequestImpl;
 
@@ -35,7 +39,7 @@ import org.mobicents.servlet.sip.message.SipServletRequestImpl;
  * @author Vladimir Ralev
  *
  */
-public abstract class DispatchTask implements Runnable {
+public abstract class DispatchTask implements ShardedTask {
 	
 	private static final Logger logger = Logger.getLogger(DispatchTask.class);
 	
@@ -48,10 +52,51 @@ public abstract class DispatchTask implements Runnable {
 	}
 
 	abstract public void dispatch() throws DispatcherException;
+	
+	/**
+	 * The session of the message is known by the time it is handed to the executor, so the message is dispatched on the shard
+	 * of its sip application session, together with the timers and asynchronous work of the same session.
+	 * Messages without session fall back on their Call-ID so that a dialog still stays on one shard.
+	 */
+	public Object getShardKey() {
+		final MobicentsSipSession sipSession = sipServletMessage.getSipSession();
+		if(sipSession != null) {
+			return sipSession.getKey().getApplicationSessionId();
+		}
+		final CallIdHeader callIdHeader = (CallIdHeader) sipServletMessage.getMessage().getHeader(CallIdHeader.NAME);
+		if(callIdHeader != null) {
+			return callIdHeader.getCallId();
+		}
+		return null;
+	}
 
 	public void run() {
 		dispatchAndHandleExceptions();
 	}
+	
+	/**
+	 * Called from the submitting thread when the executor is too congested to accept this task, which is then dropped.
+	 * The sip application entered by the submitting thread on behalf of this task is exited and requests are answered with a 503.
+	 */
+	public void onRejected() {
+		final MobicentsSipSession sipSession = sipServletMessage.getSipSession();
+		if(sipSession == null) {
+			logger.warn("Dropping message rejected by the dispatcher executor " + sipServletMessage);
+			return;
+		}
+		final MobicentsSipApplicationSession sipApplicationSession = sipSession.getSipApplicationSession();
+		final SipContext sipContext = sipApplicationSession.getSipContext();
+		sipContext.exitSipApp(sipApplicationSession, sipSession);
+		if(sipServletMessage instanceof SipServletRequestImpl) {
+			final SipServletRequestImpl sipServletRequest = (SipServletRequestImpl) sipServletMessage;
+			if(!Request.ACK.equalsIgnoreCase(sipServletRequest.getMethod()) &&
+					!Request.PRACK.equalsIgnoreCase(sipServletRequest.getMethod())) {
+				MessageDispatcher.sendErrorResponse(sipContext.getSipApplicationDispatcher(), Response.SERVICE_UNAVAILABLE, sipServletRequest, sipProvider);
+			}
+		} else if(logger.isDebugEnabled()) {
+			logger.debug("Dropping response rejected by the dispatcher executor, it will be retransmitted " + sipServletMessage);
+		}
+	}
 
 	public void dispatchAndHandleExceptions () {
 		try {
@@ -0,0 +1,56 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.dispatchers;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Kind of threads the dispatcher executor runs the SIP messages and container tasks on. <br/>
+ * 
+ * <ul>
+ * <li>Platform - a fixed number of platform threads per dispatcher shard (Default).</li>
+ * <li>Virtual - many more dispatcher shards, each one running a single virtual thread, so that servlet code blocking on I/O or locks 
+ * doesn't hold a platform thread nor the work of the sessions of other shards. Falls back to Platform on JVMs not supporting virtual threads.</li>
+ * </ul>
+ */
+public enum DispatcherExecutorMode {
+	Platform,
+	Virtual;
+	
+	private static final Logger logger = Logger.getLogger(DispatcherExecutorMode.class);
+	
+	/**
+	 * @param mode name of the mode, case insensitive, can be null
+	 * @return the mode with that name, {@link #Platform} if it is null or doesn't name any mode
+	 */
+	public static DispatcherExecutorMode fromString(String mode) {
+		if(mode == null) {
+			return Platform;
+		}
+		for (DispatcherExecutorMode dispatcherExecutorMode : values()) {
+			if(dispatcherExecutorMode.name().equalsIgnoreCase(mode.trim())) {
+				return dispatcherExecutorMode;
+			}
+		}
+		logger.warn("Unknown dispatcher executor mode " + mode + ", valid values are " + Platform + " and " + Virtual + 
+				", the dispatcher executor falls back to " + Platform);
+		return Platform;
+	}
+}
@@ -20,12 +20,17 @@
 package org.mobicents.servlet.sip.core.dispatchers;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.concurrent.ExecutorService;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.Executor;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
+import javax.servlet.sip.SipServletRequest;
 import javax.servlet.sip.SipServletResponse;
 import javax.sip.ObjectInUseException;
 import javax.sip.ServerTransaction;
@@ -44,6 +49,7 @@ import org.mobicents.servlet.sip.core.message.MobicentsSipServletRequest;
 import org.mobicents.servlet.sip.core.message.MobicentsSipServletResponse;
 import org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSession;
 import org.mobicents.servlet.sip.core.session.MobicentsSipSession;
+import org.mobicents.servlet.sip.core.session.SessionExecutionLane;
 import org.mobicents.servlet.sip.core.session.SessionManagerUtil;
 import org.mobicents.servlet.sip.core.session.SipApplicationSessionKey;
 import org.mobicents.servlet.sip.message.SipFactoryImpl;
@@ -113,6 +119,8 @@ public abstract class MessageDispatcher {
 	 */
 	public static final String SIP_OUTBOUND_PARAM_OB = "ob";
 	public static final String SIP_OUTBOUND_PARAM_REG_ID = "reg-id";	
+	// (SipServletRequest)String, the signature mandated for @SipApplicationKey annotated methods by JSR 289 Section 18.2.5
+	private static final MethodType SIP_APPLICATION_KEY_METHOD_TYPE = MethodType.methodType(String.class, SipServletRequest.class);
 		
 	public MessageDispatcher() {}
 	
@@ -166,54 +174,10 @@ public abstract class MessageDispatcher {
 				logger.debug("For request target to application " + sipContext.getApplicationName() + 
 						", using the following annotated method to generate the application key " + appKeyMethod);
 			}
-			sipServletRequestImpl.setReadOnly(true);
-			Servlet servlet = null;
-			// Set the Class Loader to the same that loaded the servlet class to avoid http://code.google.com/p/mobicents/issues/detail?id=700
-			ClassLoader oldLoader = java.lang.Thread.currentThread().getContextClassLoader();
-			java.lang.Thread.currentThread().setContextClassLoader(sipContext.getSipContextClassLoader());		
-			
-			Class methodDeclaringClass = appKeyMethod.getDeclaringClass();
-			MobicentsSipServlet sipServletImpl = sipContext.findSipServletByClassName(methodDeclaringClass.getCanonicalName());			
-			if(sipServletImpl != null) {				
-				try {
-					servlet = sipServletImpl.allocate();
-					// http://code.google.com/p/mobicents/issues/detail?id=700 : 
-					// we get the method from servlet class anew because the original method might have been loaded by a different class loader  
-					Method newMethod = servlet.getClass().getMethod(appKeyMethod.getName(), appKeyMethod.getParameterTypes());
-					appKeyMethod = newMethod;
-												
-					if(logger.isDebugEnabled()) {
-						logger.debug("Invoking the application key method " + appKeyMethod.getName() + 
-								", on the following servlet " + methodDeclaringClass.getCanonicalName());
-					}
-				} catch (ServletException e) {
-					throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't allocate the sip servlet to invoke the key annotated method !" ,e);
-				} catch (SecurityException e) {
-					throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't allocate the sip servlet to invoke the key annotated method !" ,e);
-				} catch (NoSuchMethodException e) {
-					throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't allocate the sip servlet to invoke the key annotated method !" ,e);
-				} finally {
-					java.lang.Thread.currentThread().setContextClassLoader(oldLoader);		
-				}
-			}
-			try {			
-				appGeneratedKey = (String) appKeyMethod.invoke(servlet, new Object[] {sipServletRequestImpl});
-			} catch (IllegalArgumentException e) {
-				throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't invoke the app session key annotated method !" ,e);		
-			} catch (IllegalAccessException e) {
-				throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't invoke the app session key annotated method !" ,e);
-			} catch (InvocationTargetException e) {
-				throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "A Problem occured while invoking the app session key annotated method !" ,e);
-			} finally {
-				sipServletRequestImpl.setReadOnly(false);
-				if(sipServletImpl != null) {
-					try {
-						sipServletImpl.deallocate(servlet);
-					} catch (ServletException e) {
-						throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't deallocate the sip servlet to invoke the key annotated method !" ,e);
-					}
-				}
-				java.lang.Thread.currentThread().setContextClassLoader(oldLoader);		
+			if(Modifier.isStatic(appKeyMethod.getModifiers())) {
+				appGeneratedKey = invokeSipApplicationKeyMethodHandle(sipContext, appKeyMethod, sipServletRequestImpl);
+			} else {
+				appGeneratedKey = invokeSipApplicationKeyMethod(sipContext, appKeyMethod, sipServletRequestImpl);
 			}
 //			if(appGeneratedKey == null) {
 				// JSR 289 Section 18.2.5 @SipApplicationKey Annotation , The container should treat a "null" return 
@@ -233,6 +197,125 @@ public abstract class MessageDispatcher {
 		return sipApplicationSessionKey;
 	}
 	
+	/**
+	 * Invokes the static @SipApplicationKey method through a method handle resolved once per context 
+	 * against the sip context class loader, so no servlet instance needs to be allocated on each initial request
+	 */
+	static String invokeSipApplicationKeyMethodHandle(SipContext sipContext, Method appKeyMethod, SipServletRequestImpl sipServletRequestImpl) throws DispatcherException {
+		// Set the Class Loader to the same that loaded the servlet class to avoid http://code.google.com/p/mobicents/issues/detail?id=700
+		ClassLoader oldLoader = java.lang.Thread.currentThread().getContextClassLoader();
+		java.lang.Thread.currentThread().setContextClassLoader(sipContext.getSipContextClassLoader());
+		try {
+			MethodHandle appKeyMethodHandle = sipContext.getSipApplicationKeyMethodHandle();
+			if(appKeyMethodHandle == null) {
+				try {
+					// http://code.google.com/p/mobicents/issues/detail?id=700 : 
+					// we get the method from the servlet class anew because the original method might have been loaded by a different class loader
+					Class<?> servletClass = Class.forName(appKeyMethod.getDeclaringClass().getName(), true, sipContext.getSipContextClassLoader());
+					Method newMethod = servletClass.getMethod(appKeyMethod.getName(), appKeyMethod.getParameterTypes());
+					appKeyMethodHandle = unreflectSipApplicationKeyMethod(newMethod);
+				} catch (SecurityException e) {
+					// the method of a non public servlet class can't be made accessible, fall back to reflection
+					if(logger.isDebugEnabled()) {
+						logger.debug("Couldn't get a method handle on " + appKeyMethod + ", invoking it through reflection", e);
+					}
+					return invokeSipApplicationKeyMethod(sipContext, appKeyMethod, sipServletRequestImpl);
+				} catch (ClassNotFoundException e) {
+					throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't resolve the app session key annotated method !" ,e);
+				} catch (NoSuchMethodException e) {
+					throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't resolve the app session key annotated method !" ,e);
+				} catch (IllegalAccessException e) {
+					throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't resolve the app session key annotated method !" ,e);
+				} catch (RuntimeException e) {
+					throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't resolve the app session key annotated method !" ,e);
+				}
+				sipContext.setSipApplicationKeyMethodHandle(appKeyMethodHandle);
+			}
+			sipServletRequestImpl.setReadOnly(true);
+			try {
+				return (String) appKeyMethodHandle.invokeExact((SipServletRequest) sipServletRequestImpl);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "A Problem occured while invoking the app session key annotated method !" ,e);
+			} finally {
+				sipServletRequestImpl.setReadOnly(false);
+			}
+		} finally {
+			java.lang.Thread.currentThread().setContextClassLoader(oldLoader);
+		}
+	}
+	
+	/**
+	 * The public lookup only resolves the methods of public classes, so the key method of a servlet class 
+	 * that isn't public is made accessible first
+	 */
+	private static MethodHandle unreflectSipApplicationKeyMethod(Method appKeyMethod) throws IllegalAccessException {
+		try {
+			return MethodHandles.publicLookup().unreflect(appKeyMethod).asType(SIP_APPLICATION_KEY_METHOD_TYPE);
+		} catch (IllegalAccessException e) {
+			if(logger.isDebugEnabled()) {
+				logger.debug("The app session key annotated method " + appKeyMethod + " isn't publicly accessible, making it accessible");
+			}
+			appKeyMethod.setAccessible(true);
+			return MethodHandles.publicLookup().unreflect(appKeyMethod).asType(SIP_APPLICATION_KEY_METHOD_TYPE);
+		}
+	}
+	
+	private static String invokeSipApplicationKeyMethod(SipContext sipContext, Method appKeyMethod, SipServletRequestImpl sipServletRequestImpl) throws DispatcherException {
+		String appGeneratedKey = null;
+		sipServletRequestImpl.setReadOnly(true);
+		Servlet servlet = null;
+		// Set the Class Loader to the same that loaded the servlet class to avoid http://code.google.com/p/mobicents/issues/detail?id=700
+		ClassLoader oldLoader = java.lang.Thread.currentThread().getContextClassLoader();
+		java.lang.Thread.currentThread().setContextClassLoader(sipContext.getSipContextClassLoader());		
+		
+		Class methodDeclaringClass = appKeyMethod.getDeclaringClass();
+		MobicentsSipServlet sipServletImpl = sipContext.findSipServletByClassName(methodDeclaringClass.getCanonicalName());			
+		if(sipServletImpl != null) {				
+			try {
+				servlet = sipServletImpl.allocate();
+				// http://code.google.com/p/mobicents/issues/detail?id=700 : 
+				// we get the method from servlet class anew because the original method might have been loaded by a different class loader  
+				Method newMethod = servlet.getClass().getMethod(appKeyMethod.getName(), appKeyMethod.getParameterTypes());
+				appKeyMethod = newMethod;
+											
+				if(logger.isDebugEnabled()) {
+					logger.debug("Invoking the application key method " + appKeyMethod.getName() + 
+							", on the following servlet " + methodDeclaringClass.getCanonicalName());
+				}
+			} catch (ServletException e) {
+				throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't allocate the sip servlet to invoke the key annotated method !" ,e);
+			} catch (SecurityException e) {
+				throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't allocate the sip servlet to invoke the key annotated method !" ,e);
+			} catch (NoSuchMethodException e) {
+				throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't allocate the sip servlet to invoke the key annotated method !" ,e);
+			} finally {
+				java.lang.Thread.currentThread().setContextClassLoader(oldLoader);		
+			}
+		}
+		try {			
+			appGeneratedKey = (String) appKeyMethod.invoke(servlet, new Object[] {sipServletRequestImpl});
+		} catch (IllegalArgumentException e) {
+			throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't invoke the app session key annotated method !" ,e);		
+		} catch (IllegalAccessException e) {
+			throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't invoke the app session key annotated method !" ,e);
+		} catch (InvocationTargetException e) {
+			throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "A Problem occured while invoking the app session key annotated method !" ,e);
+		} finally {
+			sipServletRequestImpl.setReadOnly(false);
+			if(sipServletImpl != null) {
+				try {
+					sipServletImpl.deallocate(servlet);
+				} catch (ServletException e) {
+					throw new DispatcherException(Response.SERVER_INTERNAL_ERROR, "Couldn't deallocate the sip servlet to invoke the key annotated method !" ,e);
+				}
+			}
+			java.lang.Thread.currentThread().setContextClassLoader(oldLoader);		
+		}
+		return appGeneratedKey;
+	}
+	
 	public static void callServletForOrphanRequest(SipContext sipContext, SipServletRequestImpl request) throws DispatcherException, ServletException, IOException {
 		String servletHandler = sipContext.getServletHandler();		
 		//Fix for Issue 1200 : if we are not in a main-servlet servlet selection type, the mapping discovery should always be performed 
@@ -491,16 +574,24 @@ public abstract class MessageDispatcher {
 	public abstract void dispatchMessage(SipProvider sipProvider, SipServletMessageImpl sipServletMessage) throws DispatcherException;
 	
 	/**
-	 * This method return an ExecutorService depending on the current concurrency strategy. It can return the
+	 * This method return an Executor depending on the current concurrency strategy. It can return the
 	 * executor of a sip session, app session or just threadpool executor which doesn't limit concurrent processing
 	 * of requests per app or sip session.
-	 * Since 0.8.1 it always return threadpool executor which doesn't limit concurrent processing since concurrency is achieved through semaphore
+	 * Since 0.8.1 it returns the threadpool executor which doesn't limit concurrent processing since concurrency is achieved through semaphore,
+	 * except for the SipApplicationSessionLane concurrency mode where the serial lane of the sip application session is returned
 	 * 
 	 * @param sipServletMessage the request you put here must have app and sip session associated
 	 * @return
 	 */
-	public final ExecutorService getConcurrencyModelExecutorService(
+	public final Executor getConcurrencyModelExecutorService(
 			SipContext sipContext, SipServletMessageImpl sipServletMessage) {
-			return this.sipApplicationDispatcher.getAsynchronousExecutor();
+		final Executor executor = this.sipApplicationDispatcher.getAsynchronousExecutor();
+		if(SessionExecutionLane.isLaneMode(sipContext)) {
+			final MobicentsSipSession sipSession = sipServletMessage.getSipSession();
+			if(sipSession != null) {
+				return SessionExecutionLane.getExecutor(sipSession.getSipApplicationSession(), executor);
+			}
+		}
+		return executor;
 	}
 }
@@ -0,0 +1,104 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.dispatchers;
+
+import org.apache.log4j.Logger;
+import org.mobicents.javax.servlet.CongestionControlEvent;
+
+/**
+ * <p>
+ * Queue size based congestion control, used by the policies other than {@link org.mobicents.javax.servlet.CongestionControlPolicy#Adaptive}.
+ * </p>
+ * 
+ * <p>
+ * The container starts rejecting new requests once the queue of a dispatcher executor shard is full, 
+ * since the tasks of the sessions hashed on that shard are being rejected already, 
+ * and stops once the queue of every shard is back under the back to normal queue size.
+ * </p>
+ */
+public class QueueCongestionControl {
+	private static final Logger logger = Logger.getLogger(QueueCongestionControl.class);
+	
+	private final ShardedDispatcherExecutor executor;
+	private volatile int backToNormalQueueSize;
+	private volatile boolean rejecting;
+	
+	/**
+	 * @param executor the executor whose shard queues are watched
+	 * @param backToNormalQueueSize depth of the most congested shard queue under which the container stops rejecting requests
+	 */
+	public QueueCongestionControl(ShardedDispatcherExecutor executor, int backToNormalQueueSize) {
+		this.executor = executor;
+		this.backToNormalQueueSize = backToNormalQueueSize;
+	}
+	
+	/**
+	 * Compares the depth of the most congested shard queue with the thresholds, to be called periodically
+	 * 
+	 * @return the event to notify the applications with if the container started or stopped rejecting requests, null otherwise
+	 */
+	public CongestionControlEvent sample() {
+		final ShardedDispatcherExecutor.Shard mostCongestedShard = executor.getMostCongestedShard();
+		final int mostCongestedShardDepth = mostCongestedShard.getQueueDepth();
+		final int shardQueueSize = executor.getShardQueueSize();
+		if(rejecting) {
+			// a back to normal queue size at or above the capacity would never let the shards drain before accepting requests again
+			final int backToNormal = Math.min(backToNormalQueueSize, shardQueueSize - 1);
+			if(mostCongestedShardDepth < backToNormal || mostCongestedShardDepth == 0) {
+				String message = "Number of pending messages in the most congested dispatcher queue : " + mostCongestedShardDepth + " < to the back to normal queue Size : " + backToNormal + 
+					", pending messages in all queues " + executor.getPendingTasks();
+				logger.warn(message + " => stopping to reject requests");
+				rejecting = false;
+				return new CongestionControlEvent(CongestionControlEvent.Reason.Queue, message);
+			}
+		} else {
+			if(mostCongestedShardDepth >= shardQueueSize) {
+				String message = "Number of pending messages in the most congested dispatcher queue : " + mostCongestedShardDepth + " >= to the queue Size : " + shardQueueSize + 
+					", pending messages in all queues " + executor.getPendingTasks() + ", most congested dispatcher " + mostCongestedShard;
+				logger.warn(message + " => starting to reject requests");
+				rejecting = true;
+				return new CongestionControlEvent(CongestionControlEvent.Reason.Queue, message);
+			}
+		}
+		return null;
+	}
+	
+	public boolean isRejecting() {
+		return rejecting;
+	}
+	
+	/**
+	 * Stops rejecting requests, used when the congestion control policy changes
+	 */
+	public void reset() {
+		rejecting = false;
+	}
+	
+	public int getBackToNormalQueueSize() {
+		return backToNormalQueueSize;
+	}
+	
+	/**
+	 * @param backToNormalQueueSize depth of the most congested shard queue under which the container stops rejecting requests
+	 */
+	public void setBackToNormalQueueSize(int backToNormalQueueSize) {
+		this.backToNormalQueueSize = backToNormalQueueSize;
+	}
+}
@@ -0,0 +1,532 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.dispatchers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.mobicents.servlet.sip.core.session.SessionExecutionLane;
+import org.mobicents.servlet.sip.utils.VirtualThreads;
+
+/**
+ * <p>
+ * Executor used by the sip application dispatcher to process SIP messages and container tasks asynchronously.
+ * </p>
+ * 
+ * <p>
+ * It is made of N shards, each one being a small thread pool with its own bounded queue. 
+ * {@link ShardedTask}s are routed to a shard by hashing their shard key (the sip application session id),
+ * so that the messages, timers and asynchronous work of a given sip application session stay on the same shard, 
+ * other tasks are spread in a round robin fashion.
+ * Spreading the load on several queues removes the contention on the single queue of a classic thread pool and 
+ * bounding them gives real backpressure : when a shard queue is full, the task is rejected, 
+ * SIP requests being answered with a 503 Service Unavailable, instead of running out of order on the submitting thread.
+ * </p>
+ * 
+ * <p>
+ * Work running on a shard must never block on a session semaphore, the task holding it may be queued behind on the same shard.
+ * See {@link #isDispatcherThread()}.
+ * </p>
+ * 
+ * <p>
+ * Each shard exports its queue depth and the time tasks waited in its queue before being executed, which 
+ * are used by the congestion control to decide whether the container is overloaded.
+ * </p>
+ * 
+ * <p>
+ * In {@link DispatcherExecutorMode#Virtual} mode, each shard runs a single virtual thread which is not kept when idle,
+ * so the executor can afford many more shards and servlet code blocking on semaphores or DNS only holds up the sessions 
+ * of its own shard. Shards stay single threaded so that the tasks of a session still run one at a time and in order.
+ * </p>
+ */
+public class ShardedDispatcherExecutor extends AbstractExecutorService {
+	private static final Logger logger = Logger.getLogger(ShardedDispatcherExecutor.class);
+	
+	private static final ThreadLocal<Boolean> DISPATCHER_THREAD = new ThreadLocal<Boolean>();
+	
+	private final Shard[] shards;
+	private final AtomicInteger roundRobin = new AtomicInteger(0);
+	
+	/**
+	 * @param name prefix of the threads name
+	 * @param numberOfShards number of shards
+	 * @param threadsPerShard number of threads of each shard
+	 * @param shardQueueSize capacity of the queue of each shard
+	 * @param threadPriority priority of the shard threads
+	 */
+	public ShardedDispatcherExecutor(String name, int numberOfShards, int threadsPerShard, int shardQueueSize, int threadPriority) {
+		this(name, numberOfShards, threadsPerShard, shardQueueSize, threadPriority, DispatcherExecutorMode.Platform);
+	}
+	
+	/**
+	 * @param name prefix of the threads name
+	 * @param numberOfShards number of shards
+	 * @param threadsPerShard number of threads of each shard, must be 1 in {@link DispatcherExecutorMode#Virtual} mode
+	 * @param shardQueueSize capacity of the queue of each shard
+	 * @param threadPriority priority of the shard threads, ignored for virtual threads
+	 * @param mode whether the shards run platform or virtual threads
+	 */
+	public ShardedDispatcherExecutor(String name, int numberOfShards, int threadsPerShard, int shardQueueSize, int threadPriority, 
+			DispatcherExecutorMode mode) {
+		if(numberOfShards < 1 || threadsPerShard < 1 || shardQueueSize < 1) {
+			throw new IllegalArgumentException("the number of shards, threads per shard and shard queue size should be positive : " + 
+					numberOfShards + ", " + threadsPerShard + ", " + shardQueueSize);
+		}
+		if(DispatcherExecutorMode.Virtual.equals(mode) && !VirtualThreads.isSupported()) {
+			throw new IllegalArgumentException("Virtual threads are not supported by this JVM");
+		}
+		if(DispatcherExecutorMode.Virtual.equals(mode) && threadsPerShard != 1) {
+			// several threads would run the tasks of a same session concurrently, scale with more shards instead
+			throw new IllegalArgumentException("virtual thread shards should run a single thread : " + threadsPerShard);
+		}
+		shards = new Shard[numberOfShards];
+		for (int i = 0; i < numberOfShards; i++) {
+			final ThreadFactory threadFactory = DispatcherExecutorMode.Virtual.equals(mode) ? 
+					VirtualThreads.newThreadFactory(name + "-" + i + "-") : null;
+			shards[i] = new Shard(name, i, threadsPerShard, shardQueueSize, threadPriority, threadFactory);
+		}
+		if(logger.isInfoEnabled()) {
+			logger.info("Dispatcher executor started with " + numberOfShards + " shards of " + threadsPerShard + 
+					" " + mode + " thread(s) and a queue size of " + shardQueueSize);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	public void execute(Runnable task) {
+		if(task == null) {
+			throw new NullPointerException("task can't be null");
+		}
+		shards[selectShard(task)].execute(task);
+	}
+	
+	/**
+	 * Executes a task that was already admitted by the executor and that has to be executed again, 
+	 * such as work that found its session busy and waited for it to be released. 
+	 * It is queued even if the shard queue is full, rejecting it would lose work the container already accepted.
+	 * 
+	 * @param task the task to execute
+	 */
+	public void executeAdmitted(Runnable task) {
+		if(task == null) {
+			throw new NullPointerException("task can't be null");
+		}
+		shards[selectShard(task)].executeAdmitted(task);
+	}
+	
+	/**
+	 * @return true if the current thread is a shard thread of a dispatcher executor, 
+	 * in which case it should hand its work over to a busy session instead of waiting for it, see {@link #executeAdmitted(Runnable)}
+	 */
+	public static boolean isDispatcherThread() {
+		return Boolean.TRUE.equals(DISPATCHER_THREAD.get());
+	}
+	
+	/**
+	 * @param task the task to execute
+	 * @return the index of the shard the task should run on
+	 */
+	protected int selectShard(Runnable task) {
+		if(task instanceof ShardedTask) {
+			final Object shardKey = ((ShardedTask) task).getShardKey();
+			if(shardKey != null) {
+				return indexFor(shardKey.hashCode());
+			}
+		}
+		return indexFor(roundRobin.getAndIncrement());
+	}
+	
+	private int indexFor(int hash) {
+		// spread the bits so that keys differing only in their high bits don't end up on the same shard
+		hash ^= (hash >>> 16);
+		return (hash & Integer.MAX_VALUE) % shards.length;
+	}
+	
+	public int getNumberOfShards() {
+		return shards.length;
+	}
+	
+	/**
+	 * @return the capacity of the queue of each shard
+	 */
+	public int getShardQueueSize() {
+		return shards[0].queue.capacity;
+	}
+	
+	/**
+	 * Changes the capacity of the queue of each shard, tasks already queued above the new capacity are kept
+	 * @param shardQueueSize the new capacity of the queue of each shard
+	 */
+	public void setShardQueueSize(int shardQueueSize) {
+		if(shardQueueSize < 1) {
+			throw new IllegalArgumentException("the shard queue size should be positive : " + shardQueueSize);
+		}
+		for (Shard shard : shards) {
+			shard.queue.capacity = shardQueueSize;
+		}
+		if(logger.isInfoEnabled()) {
+			logger.info("Dispatcher executor shard queue size set to " + shardQueueSize);
+		}
+	}
+	
+	/**
+	 * @return the number of tasks waiting in all the shard queues
+	 */
+	public int getPendingTasks() {
+		int pendingTasks = 0;
+		for (Shard shard : shards) {
+			pendingTasks += shard.getQueueDepth();
+		}
+		return pendingTasks;
+	}
+	
+	/**
+	 * @return the number of tasks waiting in each shard queue
+	 */
+	public int[] getQueueDepths() {
+		final int[] queueDepths = new int[shards.length];
+		for (int i = 0; i < shards.length; i++) {
+			queueDepths[i] = shards[i].getQueueDepth();
+		}
+		return queueDepths;
+	}
+	
+	/**
+	 * @return the moving average, in milliseconds, of the time tasks waited in each shard queue before being executed
+	 */
+	public long[] getWaitTimes() {
+		final long[] waitTimes = new long[shards.length];
+		for (int i = 0; i < shards.length; i++) {
+			waitTimes[i] = shards[i].getAverageWaitTime();
+		}
+		return waitTimes;
+	}
+	
+	/**
+	 * Gives the minimum time tasks waited in the queue of the most congested shard since the last call, 
+	 * which is the standing queue delay a burst can't explain.<br/>
+	 * A shard which didn't execute any task since the last call while having tasks queued is considered to have made them wait the whole period.
+	 * @param period time elapsed since the last call, in nanoseconds
+	 * @return the minimum wait time of the most congested shard, in nanoseconds, 0 if no task waited
+	 */
+	public long pollMinimumWaitTime(long period) {
+		long minimumWaitTime = 0;
+		for (Shard shard : shards) {
+			long shardMinimumWaitTime = shard.pollMinimumWaitTime();
+			if(shardMinimumWaitTime == Long.MAX_VALUE) {
+				shardMinimumWaitTime = shard.getQueueDepth() > 0 ? period : 0;
+			}
+			if(shardMinimumWaitTime > minimumWaitTime) {
+				minimumWaitTime = shardMinimumWaitTime;
+			}
+		}
+		return minimumWaitTime;
+	}
+	
+	/**
+	 * @return the shard with the deepest queue
+	 */
+	public Shard getMostCongestedShard() {
+		Shard mostCongestedShard = shards[0];
+		for (int i = 1; i < shards.length; i++) {
+			if(shards[i].getQueueDepth() > mostCongestedShard.getQueueDepth()) {
+				mostCongestedShard = shards[i];
+			}
+		}
+		return mostCongestedShard;
+	}
+	
+	public Shard getShard(int index) {
+		return shards[index];
+	}
+
+	public void shutdown() {
+		for (Shard shard : shards) {
+			shard.executor.shutdown();
+		}
+	}
+
+	public List<Runnable> shutdownNow() {
+		final List<Runnable> pendingTasks = new ArrayList<Runnable>();
+		for (Shard shard : shards) {
+			for (Runnable runnable : shard.executor.shutdownNow()) {
+				pendingTasks.add(((TimedTask)runnable).task);
+			}
+		}
+		return Collections.unmodifiableList(pendingTasks);
+	}
+
+	public boolean isShutdown() {
+		for (Shard shard : shards) {
+			if(!shard.executor.isShutdown()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean isTerminated() {
+		for (Shard shard : shards) {
+			if(!shard.executor.isTerminated()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Shard shard : shards) {
+			final long remaining = deadline - System.nanoTime();
+			if(remaining <= 0 || !shard.executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Wraps the submitted task to record when it was enqueued.
+	 */
+	static final class TimedTask implements Runnable {
+		final Runnable task;
+		final long enqueueTime;
+		final Shard shard;
+		
+		TimedTask(Runnable task, Shard shard) {
+			this.task = task;
+			this.shard = shard;
+			this.enqueueTime = System.nanoTime();
+		}
+		
+		public void run() {
+			shard.recordWaitTime(System.nanoTime() - enqueueTime);
+			task.run();
+		}
+		
+		@Override
+		public String toString() {
+			return task.toString();
+		}
+	}
+	
+	/**
+	 * Flags the shard threads so that work running on them can tell it must not block on a session semaphore.
+	 */
+	static final class DispatcherThreadRunnable implements Runnable {
+		private final Runnable runnable;
+		
+		DispatcherThreadRunnable(Runnable runnable) {
+			this.runnable = runnable;
+		}
+		
+		public void run() {
+			DISPATCHER_THREAD.set(Boolean.TRUE);
+			runnable.run();
+		}
+	}
+	
+	/**
+	 * Queue of a shard, bounded by a capacity that can be changed while the shard runs. 
+	 * The bound is checked before queuing so concurrent submitters can exceed it by a few tasks.
+	 */
+	static final class TaskQueue extends LinkedBlockingQueue<Runnable> {
+		private static final long serialVersionUID = 1L;
+		
+		volatile int capacity;
+		
+		TaskQueue(int capacity) {
+			this.capacity = capacity;
+		}
+		
+		@Override
+		public boolean offer(Runnable task) {
+			return size() < capacity && super.offer(task);
+		}
+		
+		@Override
+		public int remainingCapacity() {
+			return Math.max(0, capacity - size());
+		}
+		
+		boolean offerAboveCapacity(Runnable task) {
+			return super.offer(task);
+		}
+	}
+	
+	/**
+	 * One shard of the executor : a thread pool with a bounded queue and its congestion metrics.
+	 */
+	public static final class Shard implements RejectedExecutionHandler {
+		private final int index;
+		private final ThreadPoolExecutor executor;
+		private final TaskQueue queue;
+		// exponentially weighted moving average of the queue wait time, updated by the shard threads
+		private volatile long averageWaitTimeNanos;
+		private volatile long lastWaitTimeNanos;
+		// minimum queue wait time since the last poll, Long.MAX_VALUE if no task was executed
+		private final AtomicLong minimumWaitTimeNanos = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLong executedTasks = new AtomicLong(0);
+		private final AtomicLong rejectedTasks = new AtomicLong(0);
+		
+		Shard(final String name, final int index, int threads, int queueSize, final int threadPriority, final ThreadFactory virtualThreadFactory) {
+			this.index = index;
+			this.queue = new TaskQueue(queueSize);
+			if(virtualThreadFactory != null) {
+				this.executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, queue, new ThreadFactory() {
+					public Thread newThread(Runnable pRunnable) {
+						return virtualThreadFactory.newThread(new DispatcherThreadRunnable(pRunnable));
+					}
+				}, this);
+				// virtual threads are cheap to create, don't keep them around when the shard is idle
+				this.executor.allowCoreThreadTimeOut(true);
+			} else {
+				this.executor = new ThreadPoolExecutor(threads, threads, 90, TimeUnit.SECONDS, queue, new ThreadFactory() {
+					private int threadCount = 0;
+					
+					public Thread newThread(Runnable pRunnable) {
+						Thread thread = new Thread(new DispatcherThreadRunnable(pRunnable), String.format("%s-%d-%d", name, index, threadCount++));
+						thread.setPriority(threadPriority);
+						return thread;
+					}
+				}, this);
+			}
+		}
+		
+		void execute(Runnable task) {
+			executor.execute(new TimedTask(task, this));
+		}
+		
+		void executeAdmitted(Runnable task) {
+			if(executor.isShutdown()) {
+				logger.warn("Executor job was rejected " + task.toString());
+				return;
+			}
+			queue.offerAboveCapacity(new TimedTask(task, this));
+			// make sure a thread runs it, virtual thread shards don't keep theirs when idle 
+			// and platform ones are only started on the first submissions
+			executor.prestartCoreThread();
+		}
+		
+		void recordWaitTime(long waitTimeNanos) {
+			lastWaitTimeNanos = waitTimeNanos;
+			final long average = averageWaitTimeNanos;
+			averageWaitTimeNanos = average + ((waitTimeNanos - average) >> 3);
+			long minimum = minimumWaitTimeNanos.get();
+			while(waitTimeNanos < minimum && !minimumWaitTimeNanos.compareAndSet(minimum, waitTimeNanos)) {
+				minimum = minimumWaitTimeNanos.get();
+			}
+			executedTasks.incrementAndGet();
+		}
+		
+		long pollMinimumWaitTime() {
+			return minimumWaitTimeNanos.getAndSet(Long.MAX_VALUE);
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RejectedExecutionHandler#rejectedExecution(java.lang.Runnable, java.util.concurrent.ThreadPoolExecutor)
+		 */
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			final Runnable task = ((TimedTask) r).task;
+			if(executor.isShutdown()) {
+				logger.warn("Executor job was rejected " + task.toString());
+				if(task instanceof DispatchTask) {
+					((DispatchTask) task).onRejected();
+				} else if(task instanceof SessionExecutionLane) {
+					((SessionExecutionLane) task).onRejected();
+				}
+				return;
+			}
+			// the shard queue is full, running the task on the submitting thread would run it out of order 
+			// with the tasks already queued for the same session, so it is rejected as the congestion control would do
+			rejectedTasks.incrementAndGet();
+			if(logger.isDebugEnabled()) {
+				logger.debug("Queue of dispatcher shard " + index + " is full, rejecting " + task);
+			}
+			if(task instanceof DispatchTask) {
+				// requests are answered with a 503, responses are dropped and will be retransmitted
+				((DispatchTask) task).onRejected();
+				return;
+			}
+			if(task instanceof SessionExecutionLane) {
+				// the lane keeps its tasks, they will be handed over again on the next submission to the lane
+				((SessionExecutionLane) task).onRejected();
+				return;
+			}
+			throw new RejectedExecutionException("Queue of dispatcher shard " + index + " is full, rejecting " + task);
+		}
+		
+		public int getIndex() {
+			return index;
+		}
+		
+		public int getQueueDepth() {
+			return queue.size();
+		}
+		
+		public int getRemainingCapacity() {
+			return queue.remainingCapacity();
+		}
+		
+		/**
+		 * @return the moving average of the time tasks waited in the queue, in milliseconds
+		 */
+		public long getAverageWaitTime() {
+			return TimeUnit.NANOSECONDS.toMillis(averageWaitTimeNanos);
+		}
+		
+		/**
+		 * @return the time the last executed task waited in the queue, in milliseconds
+		 */
+		public long getLastWaitTime() {
+			return TimeUnit.NANOSECONDS.toMillis(lastWaitTimeNanos);
+		}
+		
+		public long getExecutedTasks() {
+			return executedTasks.get();
+		}
+		
+		/**
+		 * @return the number of tasks that were rejected because the queue was full
+		 */
+		public long getRejectedTasks() {
+			return rejectedTasks.get();
+		}
+		
+		@Override
+		public String toString() {
+			return "shard " + index + " (queue depth=" + getQueueDepth() + ", average wait time=" + getAverageWaitTime() + "ms)";
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.dispatchers;
+
+/**
+ * Task that can tell the {@link ShardedDispatcherExecutor} which shard it should run on.
+ * All tasks returning equal shard keys are executed by the same shard, in submission order.
+ */
+public interface ShardedTask extends Runnable {
+	/**
+	 * @return the key used to pick the shard, the sip application session id the task works on, or the Call-ID when there is no session yet, 
+	 * null if the task can run on any shard
+	 */
+	Object getShardKey();
+}
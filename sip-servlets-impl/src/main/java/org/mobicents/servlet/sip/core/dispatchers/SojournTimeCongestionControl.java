@@ -0,0 +1,160 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.dispatchers;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.sip.message.Request;
+
+import org.apache.log4j.Logger;
+import org.mobicents.javax.servlet.CongestionControlEvent;
+import org.mobicents.javax.servlet.CongestionControlPolicy;
+
+/**
+ * <p>
+ * Congestion control of the {@link CongestionControlPolicy#Adaptive} policy, driven by the time messages wait in the 
+ * dispatcher executor queues rather than by static queue size thresholds, in the spirit of CoDel.
+ * </p>
+ * 
+ * <p>
+ * Every {@link #INTERVAL} the minimum time tasks waited in the queue of the most congested shard is sampled. 
+ * A burst drains within the interval so only a standing queue keeps the minimum above the {@link #TARGET_SOJOURN_TIME}.
+ * Each interval above the target increases the share of new initial requests being rejected by {@link #SHEDDING_STEP}, 
+ * each interval below it decreases it by the same step, so the container degrades and recovers gradually 
+ * instead of flipping between accepting and rejecting everything.
+ * </p>
+ * 
+ * <p>
+ * New INVITEs and REGISTERs are shed first, other initial requests are shed half as often 
+ * and requests within a dialog are never shed by this policy.
+ * </p>
+ */
+public class SojournTimeCongestionControl {
+	private static final Logger logger = Logger.getLogger(SojournTimeCongestionControl.class);
+	
+	/**
+	 * Time, in milliseconds, messages can wait to be dispatched before the container starts shedding load
+	 */
+	public static final long TARGET_SOJOURN_TIME = Long.getLong("org.mobicents.servlet.sip.congestion.targetSojournTime", 20);
+	/**
+	 * Interval, in milliseconds, over which the minimum time messages wait to be dispatched is measured
+	 */
+	public static final long INTERVAL = Long.getLong("org.mobicents.servlet.sip.congestion.interval", 100);
+	/**
+	 * Change of the shedding ratio after each interval
+	 */
+	public static final double SHEDDING_STEP = 0.05;
+	private static final int MAX_STEPS = (int) Math.ceil(1 / SHEDDING_STEP);
+	
+	private final ShardedDispatcherExecutor executor;
+	private final long targetSojournTimeNanos;
+	private final long intervalNanos;
+	// number of steps of shedding, only modified by the sampling thread
+	private int steps;
+	private volatile double sheddingRatio;
+	private volatile long sojournTime;
+	
+	public SojournTimeCongestionControl(ShardedDispatcherExecutor executor) {
+		this.executor = executor;
+		this.targetSojournTimeNanos = TimeUnit.MILLISECONDS.toNanos(TARGET_SOJOURN_TIME);
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(INTERVAL);
+	}
+	
+	/**
+	 * Measures the time messages waited to be dispatched during the last interval and adapts the shedding ratio, 
+	 * to be called every {@link #INTERVAL}
+	 * 
+	 * @return the event to notify the applications with if the container started or stopped shedding load, null otherwise
+	 */
+	public CongestionControlEvent sample() {
+		final long minimumWaitTime = executor.pollMinimumWaitTime(intervalNanos);
+		sojournTime = TimeUnit.NANOSECONDS.toMillis(minimumWaitTime);
+		final int previousSteps = steps;
+		if(minimumWaitTime > targetSojournTimeNanos) {
+			steps = Math.min(MAX_STEPS, steps + 1);
+		} else if(steps > 0) {
+			steps--;
+		}
+		if(steps == previousSteps) {
+			return null;
+		}
+		sheddingRatio = Math.min(1d, steps * SHEDDING_STEP);
+		if(logger.isDebugEnabled()) {
+			logger.debug("minimum sojourn time " + sojournTime + "ms, shedding ratio now " + sheddingRatio);
+		}
+		if(previousSteps == 0) {
+			String message = "Minimum time messages waited to be dispatched : " + sojournTime + "ms > to the target : " + TARGET_SOJOURN_TIME + "ms";
+			logger.warn(message + " => starting to shed new requests");
+			return new CongestionControlEvent(CongestionControlEvent.Reason.Latency, message, sheddingRatio);
+		}
+		if(steps == 0) {
+			String message = "Minimum time messages waited to be dispatched : " + sojournTime + "ms back under the target : " + TARGET_SOJOURN_TIME + "ms";
+			logger.warn(message + " => stopping to shed new requests");
+			return new CongestionControlEvent(CongestionControlEvent.Reason.Latency, message, sheddingRatio);
+		}
+		return null;
+	}
+	
+	/**
+	 * Decides whether an initial request received out of any dialog should be rejected
+	 * 
+	 * @param method the method of the request
+	 * @return true if the request should be rejected
+	 */
+	public boolean shed(String method) {
+		final double ratio = sheddingRatio;
+		if(ratio <= 0) {
+			return false;
+		}
+		final boolean preferred = Request.INVITE.equals(method) || Request.REGISTER.equals(method);
+		return ThreadLocalRandom.current().nextDouble() < (preferred ? ratio : ratio / 2);
+	}
+	
+	public boolean isShedding() {
+		return sheddingRatio > 0;
+	}
+	
+	/**
+	 * Stops shedding load, used when the congestion control policy changes
+	 */
+	public void reset() {
+		steps = 0;
+		sheddingRatio = 0;
+	}
+	
+	/**
+	 * @return the share of the new INVITE and REGISTER requests being rejected
+	 */
+	public double getSheddingRatio() {
+		return sheddingRatio;
+	}
+	
+	/**
+	 * @return the minimum time messages waited to be dispatched during the last interval, in milliseconds
+	 */
+	public long getSojournTime() {
+		return sojournTime;
+	}
+	
+	public String getMessage() {
+		return "Minimum time messages waited to be dispatched : " + sojournTime + "ms, shedding " + Math.round(sheddingRatio * 100) + "% of the new requests";
+	}
+}
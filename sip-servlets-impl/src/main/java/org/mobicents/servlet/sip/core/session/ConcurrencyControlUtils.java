@@ -0,0 +1,100 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.session;
+
+import java.util.concurrent.Executor;
+
+import org.mobicents.servlet.sip.core.SipContext;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedDispatcherExecutor;
+
+/**
+ * Lets container managed work running on the dispatcher executor enter a sip application without blocking on the session semaphores.
+ * <br/>
+ * The semaphore of a session is taken by the JAIN SIP thread before it hands a message over to the dispatcher executor, 
+ * so the task that will release it can be queued behind the current one on the same shard. Waiting for the semaphore there
+ * would stall the shard until the acquisition times out, so the work waits on the session instead and is submitted again 
+ * by the thread releasing the semaphore, see {@link MobicentsSipSession#runOnRelease(Runnable)}.
+ */
+public final class ConcurrencyControlUtils {
+	
+	private ConcurrencyControlUtils() {}
+	
+	/**
+	 * Enters the sip application the way {@link SipContext#enterSipApp(MobicentsSipApplicationSession, MobicentsSipSession, boolean, boolean)} 
+	 * does for container managed work, except that on a dispatcher executor thread the session semaphore is only taken if it is free.
+	 * 
+	 * @param sipContext the context of the sip application
+	 * @param sipApplicationSession the sip application session the work targets
+	 * @param sipSession the sip session the work targets, can be null
+	 * @param retry the work to submit again to the dispatcher executor once the session is released if it is busy
+	 * @return true if the sip application was entered and {@link SipContext#exitSipApp(MobicentsSipApplicationSession, MobicentsSipSession)} 
+	 * has to be called once done, false if the session is busy, in which case nothing was entered and the retry will be submitted once the session is released
+	 */
+	public static boolean enterSipApp(SipContext sipContext, MobicentsSipApplicationSession sipApplicationSession, MobicentsSipSession sipSession, 
+			Runnable retry) {
+		if(!ShardedDispatcherExecutor.isDispatcherThread()) {
+			sipContext.enterSipApp(sipApplicationSession, sipSession, false, true);
+			return true;
+		}
+		switch (sipContext.getConcurrencyControlMode()) {
+		case SipSession:
+			if(sipSession != null && !sipSession.tryAcquire()) {
+				sipSession.runOnRelease(resubmission(sipContext, retry));
+				return false;
+			}
+			// the sip session semaphore is already held, exitSipApp will release it
+			sipContext.enterSipApp(sipApplicationSession, null, false, true);
+			return true;
+		case SipApplicationSession:
+			if(sipApplicationSession != null && !isAccessedByCurrentThread(sipApplicationSession) && !sipApplicationSession.tryAcquire()) {
+				sipApplicationSession.runOnRelease(resubmission(sipContext, retry));
+				return false;
+			}
+			// the sip application session semaphore is already held, it only has to be tracked as accessed by this thread for exitSipApp to release it
+			sipContext.enterSipApp(sipApplicationSession, sipSession, false, false);
+			return true;
+		default:
+			sipContext.enterSipApp(sipApplicationSession, sipSession, false, true);
+			return true;
+		}
+	}
+	
+	/**
+	 * The work was accepted by the dispatcher executor already, so it is queued again even if its shard is full, instead of being lost
+	 */
+	private static Runnable resubmission(final SipContext sipContext, final Runnable retry) {
+		return new Runnable() {
+			public void run() {
+				final Executor executor = sipContext.getSipApplicationDispatcher().getAsynchronousExecutor();
+				if(executor instanceof ShardedDispatcherExecutor) {
+					((ShardedDispatcherExecutor) executor).executeAdmitted(retry);
+				} else {
+					executor.execute(retry);
+				}
+			}
+		};
+	}
+	
+	private static boolean isAccessedByCurrentThread(MobicentsSipApplicationSession sipApplicationSession) {
+		final SipApplicationSessionCreationThreadLocal sipApplicationSessionCreationThreadLocal = SipApplicationSessionCreationThreadLocal.getTHRef().get();
+		return sipApplicationSessionCreationThreadLocal != null && 
+				sipApplicationSessionCreationThreadLocal.getSipApplicationSessions().contains(sipApplicationSession);
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.session;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Callbacks of the container work waiting for a session semaphore, run by the thread releasing it.
+ * <br/>
+ * A callback is checked in after it is added : if the semaphore was released in the meantime, nobody else would run it, 
+ * so the thread adding it runs the callbacks itself.
+ */
+public final class SemaphoreWaitList {
+	private static final Logger logger = Logger.getLogger(SemaphoreWaitList.class);
+	
+	private final Semaphore semaphore;
+	private final Queue<Runnable> callbacks = new ConcurrentLinkedQueue<Runnable>();
+	
+	public SemaphoreWaitList(Semaphore semaphore) {
+		this.semaphore = semaphore;
+	}
+	
+	/**
+	 * @param callback callback to run once the semaphore is released, it should only hand work over to an executor
+	 */
+	public void add(Runnable callback) {
+		callbacks.add(callback);
+		if(semaphore.availablePermits() > 0) {
+			onRelease();
+		}
+	}
+	
+	/**
+	 * Runs the callbacks waiting for the semaphore, to be called after it is released
+	 */
+	public void onRelease() {
+		// only the callbacks present now, the work they resubmit may find the semaphore taken again and wait for the next release
+		int waiting = callbacks.size();
+		Runnable callback;
+		while(waiting-- > 0 && (callback = callbacks.poll()) != null) {
+			try {
+				callback.run();
+			} catch (Throwable t) {
+				logger.error("Couldn't resume the work waiting for the session semaphore " + semaphore, t);
+			}
+		}
+	}
+	
+	public int size() {
+		return callbacks.size();
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.session;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free statistics about the time (in seconds) expired sessions had been alive.
+ * 
+ * Besides the number of expired sessions, the longest and the average alive time,
+ * alive times are recorded in a log-linear histogram (each power of two range split into
+ * {@link #SUB_BUCKETS} buckets, so values are kept with a relative error below 12.5%)
+ * from which percentiles can be read without ever blocking the invalidating threads.
+ */
+public class SessionAliveTimeStatistics {
+
+	static final int SUB_BUCKET_BITS = 3;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// values below this one are recorded in their own exact bucket
+	static final int LINEAR_LIMIT = SUB_BUCKETS << 1;
+	// bucket count needed to cover all positive int values
+	static final int BUCKET_COUNT = LINEAR_LIMIT + (Integer.SIZE - 1 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+	private final AtomicInteger count = new AtomicInteger();
+	private final AtomicLong totalAliveTime = new AtomicLong();
+	private final AtomicInteger maxAliveTime = new AtomicInteger();
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * Record the alive time of a session that just expired or was invalidated.
+	 * 
+	 * @param timeAlive time (in seconds) the session had been alive
+	 */
+	public void record(int timeAlive) {
+		if(timeAlive < 0) {
+			timeAlive = 0;
+		}
+		count.incrementAndGet();
+		totalAliveTime.addAndGet(timeAlive);
+		int max = maxAliveTime.get();
+		while(timeAlive > max && !maxAliveTime.compareAndSet(max, timeAlive)) {
+			max = maxAliveTime.get();
+		}
+		histogram.incrementAndGet(bucketIndex(timeAlive));
+	}
+
+	public int getCount() {
+		return count.get();
+	}
+
+	public void setCount(int expired) {
+		count.set(expired);
+	}
+
+	public int getMaxAliveTime() {
+		return maxAliveTime.get();
+	}
+
+	public void setMaxAliveTime(int maxAliveTime) {
+		this.maxAliveTime.set(maxAliveTime);
+	}
+
+	public int getAverageAliveTime() {
+		int expired = count.get();
+		if(expired <= 0) {
+			return 0;
+		}
+		return (int) (totalAliveTime.get() / expired);
+	}
+
+	/**
+	 * Overrides the average by adjusting the accumulated alive time to the current number of expired sessions.
+	 * 
+	 * @param averageAliveTime the new average alive time (in seconds)
+	 */
+	public void setAverageAliveTime(int averageAliveTime) {
+		totalAliveTime.set((long) averageAliveTime * Math.max(count.get(), 1));
+	}
+
+	/**
+	 * Gets the alive time (in seconds) under which the given percentage of the recorded sessions fall.
+	 * 
+	 * @param percentile percentage between 0 and 100
+	 * @return the alive time (in seconds) of the given percentile, or 0 if no session has been recorded
+	 */
+	public int getAliveTimePercentile(double percentile) {
+		if(percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile should be between 0 and 100, was " + percentile);
+		}
+		long[] snapshot = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = histogram.get(i);
+			total += snapshot[i];
+		}
+		if(total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if(seen >= rank) {
+				return Math.min(highestEquivalentValue(i), maxAliveTime.get());
+			}
+		}
+		return maxAliveTime.get();
+	}
+
+	public void reset() {
+		count.set(0);
+		totalAliveTime.set(0);
+		maxAliveTime.set(0);
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			histogram.set(i, 0);
+		}
+	}
+
+	static int bucketIndex(int value) {
+		if(value < LINEAR_LIMIT) {
+			return value;
+		}
+		int exponent = (Integer.SIZE - 1) - Integer.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (value >>> shift) & (SUB_BUCKETS - 1);
+		return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static int highestEquivalentValue(int index) {
+		if(index < LINEAR_LIMIT) {
+			return index;
+		}
+		int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+		int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+		long lowest = ((long) (SUB_BUCKETS + subBucket)) << shift;
+		return (int) Math.min(Integer.MAX_VALUE, lowest + (1L << shift) - 1);
+	}
+}
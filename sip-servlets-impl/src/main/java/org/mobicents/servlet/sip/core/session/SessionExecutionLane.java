@@ -0,0 +1,183 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.session;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+import org.mobicents.servlet.sip.annotation.ConcurrencyControlMode;
+import org.mobicents.servlet.sip.core.SipContext;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedTask;
+
+/**
+ * <p>
+ * Serial execution lane used for the {@link ConcurrencyControlMode#SipApplicationSessionLane} concurrency control mode.
+ * </p>
+ * 
+ * <p>
+ * Tasks submitted to a lane are appended to a lock free multi producer queue and drained, one at a time and in submission order,
+ * by a worker borrowed from the shared executor. At most one worker drains a given lane at any time, 
+ * so tasks of the same sip application session never run concurrently, but no thread ever blocks waiting for the session to be available.
+ * A worker gives the lane back to the shared executor after {@link #MAX_TASKS_PER_DRAIN} tasks so that a hot session can't starve the others.
+ * </p>
+ */
+public final class SessionExecutionLane implements Executor, ShardedTask {
+	private static final Logger logger = Logger.getLogger(SessionExecutionLane.class);
+	
+	public static final int MAX_TASKS_PER_DRAIN = 32;
+	
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private final Executor workerPool;
+	private final String name;
+	private final String shardKey;
+	
+	/**
+	 * @param name name of the lane, used for logging
+	 * @param shardKey id of the sip application session of the lane, so that the lane runs on the same dispatcher shard as the other tasks of the session
+	 * @param workerPool the executor draining the lane
+	 */
+	public SessionExecutionLane(String name, String shardKey, Executor workerPool) {
+		this.name = name;
+		this.shardKey = shardKey;
+		this.workerPool = workerPool;
+	}
+	
+	/**
+	 * Returns the executor on which the container should run work targeting the given sip application session : 
+	 * its serial lane if the application uses the {@link ConcurrencyControlMode#SipApplicationSessionLane} concurrency control mode, 
+	 * the default executor otherwise.
+	 * @param sipApplicationSession the sip application session targeted by the work, can be null
+	 * @param defaultExecutor the executor to use if the session doesn't have a lane
+	 * @return the executor to run the work on
+	 */
+	public static Executor getExecutor(MobicentsSipApplicationSession sipApplicationSession, Executor defaultExecutor) {
+		if(sipApplicationSession != null) {
+			final Executor lane = sipApplicationSession.getExecutionLane();
+			if(lane != null) {
+				return lane;
+			}
+		}
+		return defaultExecutor;
+	}
+	
+	/**
+	 * @param sipContext the sip context, can be null
+	 * @return true if the sip context uses the {@link ConcurrencyControlMode#SipApplicationSessionLane} concurrency control mode 
+	 */
+	public static boolean isLaneMode(SipContext sipContext) {
+		return sipContext != null && ConcurrencyControlMode.SipApplicationSessionLane.equals(sipContext.getConcurrencyControlMode());
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	public void execute(Runnable task) {
+		if(task == null) {
+			throw new NullPointerException("task can't be null");
+		}
+		tasks.offer(task);
+		schedule();
+	}
+	
+	/**
+	 * Hands the lane to the worker pool if no worker is currently draining it.
+	 */
+	private void schedule() {
+		if(scheduled.compareAndSet(false, true)) {
+			try {
+				workerPool.execute(this);
+			} catch (RejectedExecutionException e) {
+				scheduled.set(false);
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Called by the worker pool rejection handler when it couldn't accept this lane, 
+	 * so that the next submitted task reschedules it instead of leaving the pending tasks stranded.
+	 */
+	public void onRejected() {
+		scheduled.set(false);
+		logger.warn("Execution lane " + name + " was rejected by the worker pool, " + tasks.size() + " pending tasks will run on the next submission");
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		try {
+			int drained = 0;
+			Runnable task = null;
+			while(drained < MAX_TASKS_PER_DRAIN && (task = tasks.poll()) != null) {
+				drained++;
+				try {
+					task.run();
+				} catch (Throwable t) {
+					logger.error("An unexpected exception happened while running a task on execution lane " + name, t);
+				}
+			}
+			if(logger.isDebugEnabled()) {
+				logger.debug("Drained " + drained + " tasks from execution lane " + name);
+			}
+		} finally {
+			scheduled.set(false);
+			// a producer may have offered a task after our last poll but before the flag was reset,
+			// in which case its own schedule attempt failed and we have to pick it up 
+			if(!tasks.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.dispatchers.ShardedTask#getShardKey()
+	 */
+	public Object getShardKey() {
+		return shardKey;
+	}
+	
+	/**
+	 * @return true if no task is waiting on this lane
+	 */
+	public boolean isIdle() {
+		return tasks.isEmpty() && !scheduled.get();
+	}
+	
+	/**
+	 * @return the number of tasks waiting on this lane, this is O(n) and should be used for monitoring only
+	 */
+	public int getPendingTasks() {
+		return tasks.size();
+	}
+	
+	@Override
+	public String toString() {
+		return "SessionExecutionLane[" + name + "]";
+	}
+}
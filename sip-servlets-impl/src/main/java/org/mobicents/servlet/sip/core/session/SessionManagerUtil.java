@@ -183,7 +183,8 @@ public class SessionManagerUtil {
 		}
 		String callId = stringTokenizer.nextToken();
 		String applicationSessionId = stringTokenizer.nextToken();
-		String applicationName = stringTokenizer.nextToken();
+		// the application names are few and long lived, share them between the keys parsed from ids
+		String applicationName = stringTokenizer.nextToken().intern();
 		
 		return new SipSessionKey(fromTag, toTag, callId, applicationSessionId, applicationName);
 	}
@@ -210,8 +211,6 @@ public class SessionManagerUtil {
 	}
 
 	public static String getSipSessionHaKey(SipSessionKey key) {
-		StringBuilder stringBuilder = new StringBuilder();
-		stringBuilder.append(key.getFromTag()).append(SESSION_KEY_SEPARATOR).append(key.getCallId());
-		return stringBuilder.toString();
+		return key.getHaKey();
 	}
 }
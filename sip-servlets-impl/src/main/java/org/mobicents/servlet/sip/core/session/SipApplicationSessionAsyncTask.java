@@ -24,6 +24,7 @@ import org.mobicents.javax.servlet.sip.SipApplicationSessionAsynchronousWork;
 import org.mobicents.servlet.sip.core.MobicentsSipFactory;
 import org.mobicents.servlet.sip.core.SipContext;
 import org.mobicents.servlet.sip.core.SipManager;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedTask;
 
 /**
  * Wrapper around the SipApplicationSessionAsynchronousWork to make sure the work is done in a thread safe manner
@@ -31,7 +32,7 @@ import org.mobicents.servlet.sip.core.SipManager;
  * @author jean.deruelle@telestax.com
  *
  */
-public class SipApplicationSessionAsyncTask implements Runnable {
+public class SipApplicationSessionAsyncTask implements ShardedTask {
 	private static final Logger logger = Logger.getLogger(SipApplicationSessionAsyncTask.class);	
 	private SipApplicationSessionKey key;
 	private SipApplicationSessionAsynchronousWork work;
@@ -44,6 +45,13 @@ public class SipApplicationSessionAsyncTask implements Runnable {
 		this.sipFactoryImpl = sipFactory;
 	}
 
+	/* (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.dispatchers.ShardedTask#getShardKey()
+	 */
+	public Object getShardKey() {
+		return key.getId();
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Runnable#run()
 	 */
@@ -56,13 +64,20 @@ public class SipApplicationSessionAsyncTask implements Runnable {
 					
 			if(sipApplicationSession != null) {				
 				ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+				boolean entered = false;
 				boolean batchStarted = false;
 				try {
 					if(logger.isDebugEnabled()) {
 						logger.debug("Asynchronous work for sip app session " + key + " scheduled to run once the sipappsession lock is available.");
 					}
 					sipContext.enterSipContext();	
-					sipContext.enterSipApp(sipApplicationSession, null, false, true);
+					entered = ConcurrencyControlUtils.enterSipApp(sipContext, sipApplicationSession, null, this);
+					if(!entered) {
+						if(logger.isDebugEnabled()) {
+							logger.debug("sip app session " + key + " is busy, the asynchronous work will run once it is released");
+						}
+						return;
+					}
 					batchStarted = sipContext.enterSipAppHa(true);
 					if(logger.isDebugEnabled()) {
 						logger.debug("Starting Asynchronous work for sip app session " + key);
@@ -77,8 +92,10 @@ public class SipApplicationSessionAsyncTask implements Runnable {
 					if(logger.isDebugEnabled()) {
 						logger.debug("Exiting Asynchronous work for sip app session " + key);
 					}
-					sipContext.exitSipAppHa(null, null, batchStarted);
-					sipContext.exitSipApp(sipApplicationSession, null);
+					if(entered) {
+						sipContext.exitSipAppHa(null, null, batchStarted);
+						sipContext.exitSipApp(sipApplicationSession, null);
+					}
 					sipContext.exitSipContext(oldClassLoader);			
 				}
 			} else {
@@ -35,6 +35,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -120,6 +121,10 @@ public class SipApplicationSessionImpl implements MobicentsSipApplicationSession
 	protected String currentRequestHandler;
 	
 	protected transient Semaphore semaphore;
+	// container work waiting for the semaphore
+	protected transient SemaphoreWaitList semaphoreWaitList;
+	
+	protected transient volatile SessionExecutionLane executionLane;
 		
 	protected transient MobicentsSipApplicationSessionFacade facade = null;
 	
@@ -147,6 +152,7 @@ public class SipApplicationSessionImpl implements MobicentsSipApplicationSession
 			this.currentRequestHandler = sipContext.getServletHandler();
 			if(ConcurrencyControlMode.SipApplicationSession.equals(sipContext.getConcurrencyControlMode())) {
 				semaphore = new Semaphore(1);
+				semaphoreWaitList = new SemaphoreWaitList(semaphore);
 			}
 			//scheduling the timer for session expiration
 			final int sipContextTimeout = sipContext.getSipApplicationSessionTimeout();
@@ -274,6 +280,9 @@ public class SipApplicationSessionImpl implements MobicentsSipApplicationSession
 			httpSessions = new CopyOnWriteArraySet<String>();
 		}
 		boolean wasNotPresent = this.httpSessions.add(JvmRouteUtil.removeJvmRoute(httpSession.getId()));
+		if(wasNotPresent) {
+			sipContext.getSipManager().addHttpSessionMapping(httpSession.getId(), getKey());
+		}
 		if(logger.isDebugEnabled() && wasNotPresent) {
 			logger.debug("Added http session " + JvmRouteUtil.removeJvmRoute(httpSession.getId()) + " to sip app session " + getKey());
 		}
@@ -297,6 +306,9 @@ public class SipApplicationSessionImpl implements MobicentsSipApplicationSession
 				logger.debug("Trying to remove http session " + JvmRouteUtil.removeJvmRoute(httpSession.getId()));
 			}
 			boolean wasPresent = this.httpSessions.remove(JvmRouteUtil.removeJvmRoute(httpSession.getId()));
+			if(wasPresent) {
+				sipContext.getSipManager().removeHttpSessionMapping(httpSession.getId(), getKey());
+			}
 			if(logger.isDebugEnabled() && wasPresent) {
 				logger.debug("Removed http session " + JvmRouteUtil.removeJvmRoute(httpSession.getId()) + " from sip app session " + getKey());
 			}
@@ -709,17 +721,7 @@ public class SipApplicationSessionImpl implements MobicentsSipApplicationSession
         long timeNow = System.currentTimeMillis();
         int timeAlive = (int) ((timeNow - creationTime)/1000);
                 
-        synchronized (manager) {
-            if (timeAlive > manager.getSipApplicationSessionMaxAliveTime()) {
-                manager.setSipApplicationSessionMaxAliveTime(timeAlive);
-            }
-            int numExpired = manager.getExpiredSipApplicationSessions();
-            numExpired++;
-            manager.setExpiredSipApplicationSessions(numExpired);
-            int average = manager.getSipApplicationSessionAverageAliveTime();
-            average = ((average * (numExpired-1)) + timeAlive)/numExpired;
-            manager.setSipApplicationSessionAverageAliveTime(average);
-        }
+        manager.sipApplicationSessionExpired(timeAlive);
         
 		notifySipApplicationSessionListeners(SipApplicationSessionEventType.DELETION);				
 		
@@ -728,6 +730,9 @@ public class SipApplicationSessionImpl implements MobicentsSipApplicationSession
 		expirationTimerTask = null;
 //		expirationTimerFuture = null;
 		if(httpSessions != null) {
+			for(String httpSessionId : httpSessions) {
+				manager.removeHttpSessionMapping(httpSessionId, getKey());
+			}
 			httpSessions.clear();
 		}
 //		key = null;
@@ -1353,9 +1358,32 @@ public class SipApplicationSessionImpl implements MobicentsSipApplicationSession
 	 */
 	public void scheduleAsynchronousWork(
 			SipApplicationSessionAsynchronousWork work) {
-		sipContext.getSipApplicationDispatcher().getAsynchronousExecutor().execute(new SipApplicationSessionAsyncTask(key, work, (SipFactoryImpl)sipContext.getSipApplicationDispatcher().getSipFactory()));
+		SessionExecutionLane.getExecutor(this, sipContext.getSipApplicationDispatcher().getAsynchronousExecutor()).execute(
+				new SipApplicationSessionAsyncTask(key, work, (SipFactoryImpl)sipContext.getSipApplicationDispatcher().getSipFactory()));
 	}	
 	
+	/*
+	 * (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSession#getExecutionLane()
+	 */
+	public Executor getExecutionLane() {
+		if(!SessionExecutionLane.isLaneMode(sipContext)) {
+			return null;
+		}
+		// lazily created since the lane is transient and may be missing after the session got replicated or passivated
+		SessionExecutionLane lane = executionLane;
+		if(lane == null) {
+			synchronized (this) {
+				lane = executionLane;
+				if(lane == null) {
+					lane = new SessionExecutionLane(key.toString(), key.getId(), sipContext.getSipApplicationDispatcher().getAsynchronousExecutor());
+					executionLane = lane;
+				}
+			}
+		}
+		return lane;
+	}
+	
 	public void acquire() {
 		if(semaphore != null) {
 			if(logger.isDebugEnabled()) {
@@ -1380,6 +1408,17 @@ public class SipApplicationSessionImpl implements MobicentsSipApplicationSession
 		}
 	}
 	
+	public boolean tryAcquire() {
+		if(semaphore != null) {
+			final boolean acquired = semaphore.tryAcquire();
+			if(logger.isDebugEnabled()) {
+				logger.debug("Semaphore try acquire for sipApplicationSession=" + this + " semaphore=" + semaphore + " acquired=" + acquired);
+			}
+			return acquired;
+		}
+		return true;
+	}
+	
 	public void release() {
 		if(semaphore != null) {
 			if(logger.isDebugEnabled()) {
@@ -1411,6 +1450,17 @@ public class SipApplicationSessionImpl implements MobicentsSipApplicationSession
 			if(logger.isDebugEnabled()) {
 				logger.debug("After Semaphore released for sipApplicationSession=" + this + " semaphore=" + semaphore);
 			}
+			if(semaphoreWaitList != null) {
+				semaphoreWaitList.onRelease();
+			}
+		}
+	}
+	
+	public void runOnRelease(Runnable callback) {
+		if(semaphoreWaitList != null) {
+			semaphoreWaitList.add(callback);
+		} else {
+			callback.run();
 		}
 	}
 	
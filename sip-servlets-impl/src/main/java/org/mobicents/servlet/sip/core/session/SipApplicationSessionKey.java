@@ -22,12 +22,16 @@
 
 package org.mobicents.servlet.sip.core.session;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.UUID;
 
 import org.apache.log4j.Logger;
 import org.mobicents.servlet.sip.GenericUtils;
 import org.mobicents.servlet.sip.core.SipApplicationDispatcherImpl;
+import org.mobicents.servlet.sip.utils.ExternalizationUtils;
 
 /**
  * <p>
@@ -83,6 +87,42 @@ public final class SipApplicationSessionKey implements Serializable, MobicentsSi
 			toString = uuid + SessionManagerUtil.SESSION_KEY_SEPARATOR + applicationName;
 		}
 	}
+	
+	private SipApplicationSessionKey(String uuid, String applicationName, String appGeneratedKey, String toString) {
+		this.uuid = uuid;
+		this.applicationName = applicationName;
+		this.appGeneratedKey = appGeneratedKey;
+		this.toString = toString;
+	}
+	
+	/**
+	 * Writes this key field by field so that it can be read back through {@link #readFrom(DataInput)}
+	 * without having to reparse its String representation or to hash again its app generated key.
+	 * 
+	 * @param out the output to write the key to
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		ExternalizationUtils.writeString(out, uuid);
+		ExternalizationUtils.writeString(out, applicationName);
+		ExternalizationUtils.writeString(out, appGeneratedKey);
+	}
+	
+	/**
+	 * Reads a key previously written by {@link #writeTo(DataOutput)}
+	 * 
+	 * @param in the input to read the key from
+	 * @return the key read
+	 */
+	public static SipApplicationSessionKey readFrom(DataInput in) throws IOException {
+		String uuid = ExternalizationUtils.readString(in);
+		String applicationName = ExternalizationUtils.readString(in);
+		String appGeneratedKey = ExternalizationUtils.readString(in);
+		String toString = uuid + SessionManagerUtil.SESSION_KEY_SEPARATOR + applicationName;
+		if(appGeneratedKey != null) {
+			toString = appGeneratedKey + SessionManagerUtil.SESSION_KEY_SEPARATOR + toString;
+		}
+		return new SipApplicationSessionKey(uuid, applicationName, appGeneratedKey, toString);
+	}
 	/**
 	 * @return the Id
 	 */
@@ -28,6 +28,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpSession;
@@ -37,6 +38,7 @@ import org.apache.log4j.Logger;
 import org.mobicents.servlet.sip.core.SipContext;
 import org.mobicents.servlet.sip.core.timers.SipApplicationSessionTimerTask;
 import org.mobicents.servlet.sip.message.SipFactoryImpl;
+import org.mobicents.servlet.sip.utils.JvmRouteUtil;
 
 /**
  * This class handles the management of sip sessions and sip application sessions for a given container (context)
@@ -54,6 +56,9 @@ public abstract class SipManagerDelegate {
 
 	protected ConcurrentHashMap<String, MobicentsSipApplicationSession> sipApplicationSessionsByAppGeneratedKey = 
 		new ConcurrentHashMap<String, MobicentsSipApplicationSession>();
+	// index of the converged http session ids (without jvm route) to the key of the sip application session holding them
+	protected ConcurrentHashMap<String, SipApplicationSessionKey> sipApplicationSessionKeysByHttpSessionId = 
+		new ConcurrentHashMap<String, SipApplicationSessionKey>();
 	
 	//if it's never cleaned up a memory leak will occur
 	//Shall we have a thread scanning for invalid sessions and removing them accordingly ?
@@ -78,53 +83,28 @@ public abstract class SipManagerDelegate {
     /**
      * Number of sip session creations that failed due to maxActiveSipSessions.
      */
-    protected int rejectedSipSessions = 0;
+    protected final AtomicInteger rejectedSipSessions = new AtomicInteger();
 
     /**
      * Number of sip application session creations that failed due to maxActiveSipApplicationSessions.
      */
-    protected int rejectedSipApplicationSessions = 0;
+    protected final AtomicInteger rejectedSipApplicationSessions = new AtomicInteger();
 
-    
     /**
-     * The longest time (in seconds) that an expired sip session had been alive.
+     * Number, longest, average and percentiles of the time (in seconds) that expired sip sessions had been alive.
      */
-    private int sipSessionMaxAliveTime;
-
+    private final SessionAliveTimeStatistics sipSessionAliveTimeStatistics = new SessionAliveTimeStatistics();
 
     /**
-     * Average time (in seconds) that expired sip sessions had been alive.
+     * Number, longest, average and percentiles of the time (in seconds) that expired Sip Application sessions had been alive.
      */
-    private int sipSessionAverageAliveTime;
-
-
-    /**
-     * Number of sip sessions that have expired.
-     */
-    private int expiredSipSessions = 0;
-    
-    /**
-     * The longest time (in seconds) that an expired Sip Application session had been alive.
-     */
-    private int sipApplicationSessionMaxAliveTime;
-
-
-    /**
-     * Average time (in seconds) that expired Sip Application Sessions had been alive.
-     */
-    private int sipApplicationSessionAverageAliveTime;
-
-
-    /**
-     * Number of sip application sessions that have expired.
-     */
-    private int expiredSipApplicationSessions = 0;
+    private final SessionAliveTimeStatistics sipApplicationSessionAliveTimeStatistics = new SessionAliveTimeStatistics();
     
     // Number of sip sessions created by this manager
-    protected int sipSessionCounter=0;
+    protected final AtomicInteger sipSessionCounter = new AtomicInteger();
     
     // Number of sip Application sessions created by this manager
-    protected int sipApplicationSessionCounter=0;
+    protected final AtomicInteger sipApplicationSessionCounter = new AtomicInteger();
     
     private int lastUpdatedSasCreationCounter = 0;
     private long lastSipApplicationSessionUpdatedTime = 0;
@@ -451,13 +431,44 @@ public abstract class SipManagerDelegate {
 	 * @return the sip application session holding a reference to it or null if none references it
 	 */
 	public MobicentsSipApplicationSession findSipApplicationSession(HttpSession httpSession) {
-		for (MobicentsSipApplicationSession sipApplicationSessionImpl : sipApplicationSessions.values()) {			
+		final String httpSessionId = JvmRouteUtil.removeJvmRoute(httpSession.getId());
+		final SipApplicationSessionKey key = sipApplicationSessionKeysByHttpSessionId.get(httpSessionId);
+		if(key != null) {
+			final MobicentsSipApplicationSession sipApplicationSessionImpl = sipApplicationSessions.get(key);
+			if(sipApplicationSessionImpl != null && sipApplicationSessionImpl.findHttpSession(httpSessionId) != null) {
+				return sipApplicationSessionImpl;
+			}
+		}
+		// the index is only filled when the http session is added locally, sip application sessions
+		// replicated from another node or activated after passivation are not in it so fall back to the scan
+		// and index the result so that the next lookups for this http session are direct
+		for (MobicentsSipApplicationSession sipApplicationSessionImpl : sipApplicationSessions.values()) {
 			if(sipApplicationSessionImpl.findHttpSession(httpSession.getId()) != null) {
+				sipApplicationSessionKeysByHttpSessionId.put(httpSessionId, (SipApplicationSessionKey) sipApplicationSessionImpl.getKey());
 				return sipApplicationSessionImpl;
 			}
 		}
 		return null;
 	}
+	
+	/**
+	 * Index the converged http session in parameter so that it can be found from 
+	 * {@link #findSipApplicationSession(HttpSession)} without looking through all the sip application sessions
+	 * @param httpSessionId the id of the http session added to the sip application session
+	 * @param key the key of the sip application session
+	 */
+	public void addHttpSessionMapping(String httpSessionId, MobicentsSipApplicationSessionKey key) {
+		sipApplicationSessionKeysByHttpSessionId.put(JvmRouteUtil.removeJvmRoute(httpSessionId), (SipApplicationSessionKey) key);
+	}
+	
+	/**
+	 * Remove the converged http session in parameter from the index if it still maps to the sip application session in parameter 
+	 * @param httpSessionId the id of the http session removed from the sip application session
+	 * @param key the key of the sip application session
+	 */
+	public void removeHttpSessionMapping(String httpSessionId, MobicentsSipApplicationSessionKey key) {
+		sipApplicationSessionKeysByHttpSessionId.remove(JvmRouteUtil.removeJvmRoute(httpSessionId), key);
+	}
 
 	/**
 	 * 
@@ -506,7 +517,8 @@ public abstract class SipManagerDelegate {
 		}
 		for (SipApplicationSessionKey sipApplicationSessionKey : sipApplicationSessionsToRemove) {
 			removeSipApplicationSession(sipApplicationSessionKey);
-		}				
+		}
+		sipApplicationSessionKeysByHttpSessionId.clear();
 	}
 	
 	protected abstract MobicentsSipSession getNewMobicentsSipSession(SipSessionKey key, SipFactoryImpl sipFactoryImpl, MobicentsSipApplicationSession mobicentsSipApplicationSession);
@@ -556,11 +568,11 @@ public abstract class SipManagerDelegate {
 	 * @return The count
 	 */
 	public int getRejectedSipSessions() {
-		return rejectedSipSessions;
+		return rejectedSipSessions.get();
 	}
 
 	public void setRejectedSipSessions(int rejectedSipSessions) {
-		this.rejectedSipSessions = rejectedSipSessions;
+		this.rejectedSipSessions.set(rejectedSipSessions);
 	}
 
 	/**
@@ -569,16 +581,16 @@ public abstract class SipManagerDelegate {
 	 * @return The count
 	 */
 	public int getRejectedSipApplicationSessions() {
-		return rejectedSipApplicationSessions;
+		return rejectedSipApplicationSessions.get();
 	}
 
 	public void setRejectedSipApplicationSessions(
 			int rejectedSipApplicationSessions) {
-		this.rejectedSipApplicationSessions = rejectedSipApplicationSessions;
+		this.rejectedSipApplicationSessions.set(rejectedSipApplicationSessions);
 	}
 
 	public void setSipSessionCounter(int sipSessionCounter) {
-		this.sipSessionCounter = sipSessionCounter;
+		this.sipSessionCounter.set(sipSessionCounter);
 	}
 
 	/**
@@ -587,7 +599,7 @@ public abstract class SipManagerDelegate {
 	 * @return sessions created
 	 */
 	public int getSipSessionCounter() {
-		return sipSessionCounter;
+		return sipSessionCounter.get();
 	}
 
 	/**
@@ -606,7 +618,7 @@ public abstract class SipManagerDelegate {
 	 * @return Longest time (in seconds) that an expired session had been alive.
 	 */
 	public int getSipSessionMaxAliveTime() {
-		return sipSessionMaxAliveTime;
+		return sipSessionAliveTimeStatistics.getMaxAliveTime();
 	}
 
 	/**
@@ -618,7 +630,7 @@ public abstract class SipManagerDelegate {
 	 *            alive.
 	 */
 	public void setSipSessionMaxAliveTime(int sipSessionMaxAliveTime) {
-		this.sipSessionMaxAliveTime = sipSessionMaxAliveTime;
+		sipSessionAliveTimeStatistics.setMaxAliveTime(sipSessionMaxAliveTime);
 	}
 
 	/**
@@ -627,7 +639,7 @@ public abstract class SipManagerDelegate {
 	 * @return Average time (in seconds) that expired sessions had been alive.
 	 */
 	public int getSipSessionAverageAliveTime() {
-		return sipSessionAverageAliveTime;
+		return sipSessionAliveTimeStatistics.getAverageAliveTime();
 	}
 
 	/**
@@ -638,11 +650,11 @@ public abstract class SipManagerDelegate {
 	 *            alive.
 	 */
 	public void setSipSessionAverageAliveTime(int sipSessionAverageAliveTime) {
-		this.sipSessionAverageAliveTime = sipSessionAverageAliveTime;
+		sipSessionAliveTimeStatistics.setAverageAliveTime(sipSessionAverageAliveTime);
 	}
 
 	public void setSipApplicationSessionCounter(int sipApplicationSessionCounter) {
-		this.sipApplicationSessionCounter = sipApplicationSessionCounter;
+		this.sipApplicationSessionCounter.set(sipApplicationSessionCounter);
 	}
 
 	/**
@@ -651,7 +663,7 @@ public abstract class SipManagerDelegate {
 	 * @return sessions created
 	 */
 	public int getSipApplicationSessionCounter() {
-		return sipApplicationSessionCounter;
+		return sipApplicationSessionCounter.get();
 	}
 
 	/**
@@ -670,7 +682,7 @@ public abstract class SipManagerDelegate {
 	 * @return Longest time (in seconds) that an expired session had been alive.
 	 */
 	public int getSipApplicationSessionMaxAliveTime() {
-		return sipApplicationSessionMaxAliveTime;
+		return sipApplicationSessionAliveTimeStatistics.getMaxAliveTime();
 	}
 
 	/**
@@ -683,7 +695,7 @@ public abstract class SipManagerDelegate {
 	 */
 	public void setSipApplicationSessionMaxAliveTime(
 			int sipApplicationSessionMaxAliveTime) {
-		this.sipApplicationSessionMaxAliveTime = sipApplicationSessionMaxAliveTime;
+		sipApplicationSessionAliveTimeStatistics.setMaxAliveTime(sipApplicationSessionMaxAliveTime);
 	}
 
 	/**
@@ -692,7 +704,7 @@ public abstract class SipManagerDelegate {
 	 * @return Average time (in seconds) that expired sessions had been alive.
 	 */
 	public int getSipApplicationSessionAverageAliveTime() {
-		return sipApplicationSessionAverageAliveTime;
+		return sipApplicationSessionAliveTimeStatistics.getAverageAliveTime();
 	}
 
 	/**
@@ -704,7 +716,7 @@ public abstract class SipManagerDelegate {
 	 */
 	public void setSipApplicationSessionAverageAliveTime(
 			int sipApplicationSessionAverageAliveTime) {
-		this.sipApplicationSessionAverageAliveTime = sipApplicationSessionAverageAliveTime;
+		sipApplicationSessionAliveTimeStatistics.setAverageAliveTime(sipApplicationSessionAverageAliveTime);
 	}
 
 	/**
@@ -713,7 +725,7 @@ public abstract class SipManagerDelegate {
 	 * @return Number of sessions that have expired
 	 */
 	public int getExpiredSipSessions() {
-		return expiredSipSessions;
+		return sipSessionAliveTimeStatistics.getCount();
 	}
 
 	/**
@@ -723,7 +735,7 @@ public abstract class SipManagerDelegate {
 	 *            Number of sessions that have expired
 	 */
 	public void setExpiredSipSessions(int expiredSipSessions) {
-		this.expiredSipSessions = expiredSipSessions;
+		sipSessionAliveTimeStatistics.setCount(expiredSipSessions);
 	}
 
 	/**
@@ -732,7 +744,7 @@ public abstract class SipManagerDelegate {
 	 * @return Number of sessions that have expired
 	 */
 	public int getExpiredSipApplicationSessions() {
-		return expiredSipApplicationSessions;
+		return sipApplicationSessionAliveTimeStatistics.getCount();
 	}
 
 	/**
@@ -743,7 +755,49 @@ public abstract class SipManagerDelegate {
 	 */
 	public void setExpiredSipApplicationSessions(
 			int expiredSipApplicationSessions) {
-		this.expiredSipApplicationSessions = expiredSipApplicationSessions;
+		sipApplicationSessionAliveTimeStatistics.setCount(expiredSipApplicationSessions);
+	}
+
+	/**
+	 * Records, without taking any lock, the alive time of a sip session that has just been invalidated.
+	 * 
+	 * @param timeAlive
+	 *            time (in seconds) the sip session had been alive
+	 */
+	public void sipSessionExpired(int timeAlive) {
+		sipSessionAliveTimeStatistics.record(timeAlive);
+	}
+
+	/**
+	 * Records, without taking any lock, the alive time of a sip application session that has just been invalidated.
+	 * 
+	 * @param timeAlive
+	 *            time (in seconds) the sip application session had been alive
+	 */
+	public void sipApplicationSessionExpired(int timeAlive) {
+		sipApplicationSessionAliveTimeStatistics.record(timeAlive);
+	}
+
+	/**
+	 * Gets the time (in seconds) under which the given percentage of expired sip sessions had been alive.
+	 * 
+	 * @param percentile
+	 *            percentage between 0 and 100
+	 * @return alive time (in seconds) of the given percentile
+	 */
+	public int getSipSessionAliveTimePercentile(double percentile) {
+		return sipSessionAliveTimeStatistics.getAliveTimePercentile(percentile);
+	}
+
+	/**
+	 * Gets the time (in seconds) under which the given percentage of expired sip application sessions had been alive.
+	 * 
+	 * @param percentile
+	 *            percentage between 0 and 100
+	 * @return alive time (in seconds) of the given percentile
+	 */
+	public int getSipApplicationSessionAliveTimePercentile(double percentile) {
+		return sipApplicationSessionAliveTimeStatistics.getAliveTimePercentile(percentile);
 	}
 
 	public double getNumberOfSipApplicationSessionCreationPerSecond() {
@@ -760,13 +814,14 @@ public abstract class SipManagerDelegate {
 		}
 		long now = System.currentTimeMillis();
 		// Updating the number of Sip Application Session Creation Per Seconds
-		int elapsedNumberOfSasCreationCounter = sipApplicationSessionCounter - lastUpdatedSasCreationCounter;		
+		int currentSasCreationCounter = sipApplicationSessionCounter.get();
+		int elapsedNumberOfSasCreationCounter = currentSasCreationCounter - lastUpdatedSasCreationCounter;		
 		if(elapsedNumberOfSasCreationCounter > 0) {
 			double elapsedSasCreationUpdatedTimeInSeconds = (now - lastSipApplicationSessionUpdatedTime) / 1000;
 			double elapsedAverageSasCreationPerSecond = elapsedNumberOfSasCreationCounter  / elapsedSasCreationUpdatedTimeInSeconds;
 			lastAverageSasCreationPerSecond = (lastAverageSasCreationPerSecond + elapsedAverageSasCreationPerSecond) / 2;			
 		}
-		lastUpdatedSasCreationCounter = sipApplicationSessionCounter;
+		lastUpdatedSasCreationCounter = currentSasCreationCounter;
 		lastSipApplicationSessionUpdatedTime = now;
 		if(logger.isTraceEnabled()) {
 			logger.trace("elapsedNumberOfSasCreationCounter "+ elapsedNumberOfSasCreationCounter);
@@ -774,13 +829,14 @@ public abstract class SipManagerDelegate {
 			logger.trace("lastSipApplicationSessionUpdatedTime "+ lastSipApplicationSessionUpdatedTime);
 		}
 		// Updating the number of Sip Application Session Creation Per Seconds
-		int elapsedNumberOfSsCreationCounter = sipSessionCounter - lastUpdatedSsCreationCounter;
+		int currentSsCreationCounter = sipSessionCounter.get();
+		int elapsedNumberOfSsCreationCounter = currentSsCreationCounter - lastUpdatedSsCreationCounter;
 		if(elapsedNumberOfSsCreationCounter > 0) {
 			double elapsedSsCreationUpdatedTimeInSeconds = (now - lastSipSessionUpdatedTime) / 1000;
 			double elapsedAverageSsCreationPerSecond = elapsedNumberOfSsCreationCounter  / elapsedSsCreationUpdatedTimeInSeconds;
 			lastAverageSsCreationPerSecond = (lastAverageSsCreationPerSecond + elapsedAverageSsCreationPerSecond) / 2;			
 		}
-		lastUpdatedSsCreationCounter = sipSessionCounter;
+		lastUpdatedSsCreationCounter = currentSsCreationCounter;
 		lastSipSessionUpdatedTime = now;
 		if(logger.isTraceEnabled()) {
 			logger.trace("elapsedNumberOfSsCreationCounter "+ elapsedNumberOfSsCreationCounter);
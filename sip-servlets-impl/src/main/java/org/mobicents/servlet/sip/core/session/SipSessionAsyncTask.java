@@ -24,6 +24,7 @@ import org.mobicents.javax.servlet.sip.SipSessionAsynchronousWork;
 import org.mobicents.servlet.sip.core.MobicentsSipFactory;
 import org.mobicents.servlet.sip.core.SipContext;
 import org.mobicents.servlet.sip.core.SipManager;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedTask;
 
 /**
  * Wrapper around the AsynchronousWork to make sure the work is done in a thread safe manner
@@ -31,12 +32,19 @@ import org.mobicents.servlet.sip.core.SipManager;
  * @author jean.deruelle@gmail.com
  *
  */
-public class SipSessionAsyncTask implements Runnable {
+public class SipSessionAsyncTask implements ShardedTask {
 	private static final Logger logger = Logger.getLogger(SipSessionAsyncTask.class);	
 	private SipSessionKey key;
 	private SipSessionAsynchronousWork work;
 	private MobicentsSipFactory sipFactoryImpl;
 	
+	/**
+	 * Asynchronous work that has to be told when it won't be done because its sip session couldn't be found anymore
+	 */
+	public interface DiscardableWork extends SipSessionAsynchronousWork {
+		void discarded();
+	}
+	
 	public SipSessionAsyncTask(SipSessionKey key,
 			SipSessionAsynchronousWork work, MobicentsSipFactory sipFactory) {
 		this.key = key;
@@ -44,6 +52,13 @@ public class SipSessionAsyncTask implements Runnable {
 		this.sipFactoryImpl = sipFactory;
 	}
 
+	/* (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.dispatchers.ShardedTask#getShardKey()
+	 */
+	public Object getShardKey() {
+		return key.getApplicationSessionId();
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Runnable#run()
 	 */
@@ -59,25 +74,50 @@ public class SipSessionAsyncTask implements Runnable {
 			MobicentsSipSession sipSession = sipManager.getSipSession(key, false, sipFactoryImpl, sipApplicationSession);	
 					
 			if(sipSession != null) {				
+				boolean entered = false;
 				boolean batchStarted = false;
 				ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
 				try {
 					sipContext.enterSipContext();	
-					sipContext.enterSipApp(sipApplicationSession, sipSession, false, true);
+					entered = ConcurrencyControlUtils.enterSipApp(sipContext, sipApplicationSession, sipSession, this);
+					if(!entered) {
+						if(logger.isDebugEnabled()) {
+							logger.debug("SipSession " + key + " is busy, the asynchronous work will run once it is released");
+						}
+						return;
+					}
 					batchStarted = sipContext.enterSipAppHa(true);
 					
 					work.doAsynchronousWork(sipSession);
 				} catch(Throwable t) {
 					logger.error("An unexpected exception happened in the SipSessionAsynchronousWork callback on sip session " + key, t);
 				} finally {
-					sipContext.exitSipAppHa(null, null, batchStarted);
-					sipContext.exitSipApp(sipApplicationSession, sipSession);
+					if(entered) {
+						sipContext.exitSipAppHa(null, null, batchStarted);
+						sipContext.exitSipApp(sipApplicationSession, sipSession);
+					}
 					sipContext.exitSipContext(oldClassLoader);				
 				}
 			} else {
 				if(logger.isDebugEnabled()) {
 					logger.debug("SipSession " + key + " couldn't be found, it may have been already invalidated.");
 				}
+				discard();
+			}
+		} else {
+			if(logger.isDebugEnabled()) {
+				logger.debug("Application " + key.getApplicationName() + " of SipSession " + key + " couldn't be found, it may have been undeployed.");
+			}
+			discard();
+		}
+	}
+	
+	private void discard() {
+		if(work instanceof DiscardableWork) {
+			try {
+				((DiscardableWork) work).discarded();
+			} catch(Throwable t) {
+				logger.error("An unexpected exception happened while discarding the SipSessionAsynchronousWork of sip session " + key, t);
 			}
 		}
 	}
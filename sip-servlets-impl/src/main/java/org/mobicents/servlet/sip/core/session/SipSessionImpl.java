@@ -276,6 +276,8 @@ public class SipSessionImpl implements MobicentsSipSession {
 	protected transient boolean copyRecordRouteHeadersOnSubsequentResponses = false;
 	
 	protected transient Semaphore semaphore;
+	// container work waiting for the semaphore
+	protected transient SemaphoreWaitList semaphoreWaitList;
 	
 	protected transient MobicentsSipSessionFacade facade = null;
 	
@@ -315,6 +317,7 @@ public class SipSessionImpl implements MobicentsSipSession {
 		this.ongoingTransactions = new CopyOnWriteArraySet<Transaction>();
 		if(mobicentsSipApplicationSession.getSipContext() != null && ConcurrencyControlMode.SipSession.equals(mobicentsSipApplicationSession.getSipContext().getConcurrencyControlMode())) {
 			semaphore = new Semaphore(1);		
+			semaphoreWaitList = new SemaphoreWaitList(semaphore);
 		}		
 	}
 	/**
@@ -479,7 +482,7 @@ public class SipSessionImpl implements MobicentsSipSession {
 				
 				// cater to http://code.google.com/p/sipservlets/issues/detail?id=31 to be able to set the rport in applications
 				final SipApplicationDispatcher sipApplicationDispatcher = sipFactory.getSipApplicationDispatcher();
-				final String branch = JainSipUtils.createBranch(getSipApplicationSession().getKey().getId(),  sipApplicationDispatcher.getHashFromApplicationName(getKey().getApplicationName()));
+				final String branch = JainSipUtils.createBranch(sipApplicationDispatcher, getSipApplicationSession().getKey().getId(),  sipApplicationDispatcher.getHashFromApplicationName(getKey().getApplicationName()));
 				ViaHeader viaHeader = JainSipUtils.createViaHeader(
 	    				sipFactory.getSipNetworkInterfaceManager(), methodRequest, branch, outboundInterface);
 				methodRequest.addHeader(viaHeader);
@@ -544,7 +547,7 @@ public class SipSessionImpl implements MobicentsSipSession {
 					final SipProvider sipProvider = sipNetworkInterfaceManager.findMatchingListeningPoint(
 							JainSipUtils.findTransport(request), false).getSipProvider();
 					final SipApplicationDispatcher sipApplicationDispatcher = sipFactory.getSipApplicationDispatcher();				
-					final String branch = JainSipUtils.createBranch(getSipApplicationSession().getKey().getId(),  sipApplicationDispatcher.getHashFromApplicationName(getKey().getApplicationName()));
+					final String branch = JainSipUtils.createBranch(sipApplicationDispatcher, getSipApplicationSession().getKey().getId(),  sipApplicationDispatcher.getHashFromApplicationName(getKey().getApplicationName()));
 										
 					ViaHeader viaHeader = JainSipUtils.createViaHeader(
 		    				sipNetworkInterfaceManager, request, branch, outboundInterface);
@@ -1017,28 +1020,13 @@ public class SipSessionImpl implements MobicentsSipSession {
         		logger.debug("sip session " + key + " is a derived session, so not removing it from the manager, only from the parent session " + parentSipSession.getKey());
         	}
     		// Handle forking case to remove the session only if the parent session is not valid anymore otherwise remove only from the list of derived sessions
-    		MobicentsSipSession removedSession = null;
-			try {
-				removedSession = parentSipSession.removeDerivedSipSession(SessionManagerUtil.parseSipSessionKey(key.toString()).getToTag());
-			} catch (ParseException e) {
-				logger.error("couldn't parse " + key);
-			}
+    		MobicentsSipSession removedSession = parentSipSession.removeDerivedSipSession(key.getIdToTag());
 			if(logger.isDebugEnabled() && removedSession != null) {
 				logger.debug("removed derived sip session " + key + " from the list of derived sessions from the parent session " + parentSipSession.getKey());
 			}
         }
         
-		synchronized (manager) {
-            if (timeAlive > manager.getSipSessionMaxAliveTime()) {
-                manager.setSipSessionMaxAliveTime(timeAlive);
-            }
-            int numExpired = manager.getExpiredSipSessions();
-            numExpired++;
-            manager.setExpiredSipSessions(numExpired);
-            int average = manager.getSipSessionAverageAliveTime();
-            average = ((average * (numExpired-1)) + timeAlive)/numExpired;
-            manager.setSipSessionAverageAliveTime(average);
-        }
+		manager.sipSessionExpired(timeAlive);
         
 		notifySipSessionListeners(SipSessionEventType.DELETION);			
 		
@@ -2518,7 +2506,8 @@ public class SipSessionImpl implements MobicentsSipSession {
 	 * @see org.mobicents.javax.servlet.sip.SipSessionExt#scheduleAsynchronousWork(org.mobicents.javax.servlet.sip.SipSessionAsynchronousWork)
 	 */
 	public void scheduleAsynchronousWork(SipSessionAsynchronousWork work) {
-		sipFactory.getSipApplicationDispatcher().getAsynchronousExecutor().execute(new SipSessionAsyncTask(key, work, sipFactory));
+		SessionExecutionLane.getExecutor(getSipApplicationSession(), sipFactory.getSipApplicationDispatcher().getAsynchronousExecutor()).execute(
+				new SipSessionAsyncTask(key, work, sipFactory));
 	}
 	public int getRequestsPending() {
 		return requestsPending;
@@ -2585,6 +2574,17 @@ public class SipSessionImpl implements MobicentsSipSession {
 		}
 	}
 	
+	public boolean tryAcquire() {
+		if(semaphore != null) {
+			final boolean acquired = semaphore.tryAcquire();
+			if(logger.isDebugEnabled()) {
+				logger.debug("Semaphore try acquire for sipSession=" + this + " semaphore=" + semaphore + " acquired=" + acquired);
+			}
+			return acquired;
+		}
+		return true;
+	}
+	
 	public void release() {
 		if(semaphore != null) {
 			if(logger.isDebugEnabled()) {
@@ -2616,6 +2616,17 @@ public class SipSessionImpl implements MobicentsSipSession {
 			if(logger.isDebugEnabled()) {
 				logger.debug("After Semaphore released for sipSession=" + this + " semaphore=" + semaphore);
 			}
+			if(semaphoreWaitList != null) {
+				semaphoreWaitList.onRelease();
+			}
+		}
+	}
+	
+	public void runOnRelease(Runnable callback) {
+		if(semaphoreWaitList != null) {
+			semaphoreWaitList.add(callback);
+		} else {
+			callback.run();
 		}
 	}
 	
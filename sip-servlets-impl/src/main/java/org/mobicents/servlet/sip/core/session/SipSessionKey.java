@@ -22,8 +22,13 @@
 
 package org.mobicents.servlet.sip.core.session;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
+import org.mobicents.servlet.sip.utils.ExternalizationUtils;
+
 /**
  * <p>
  * Class representing the key (which will also be its id) for a sip session.<br/>
@@ -47,7 +52,13 @@ public final class SipSessionKey implements MobicentsSipSessionKey, Serializable
 	// Issue 790 : 1 SipSession should not be used in 2 different app session (http://code.google.com/p/mobicents/issues/detail?id=790)
 	// so we add the app session id in the key as well
 	private final String applicationSessionId;
-	private String toString;
+	// lazily computed and cached, see toString()
+	private volatile String toString;
+	// whether the to tag is part of the id of the session, only true for derived sessions, see setToTag
+	private boolean toTagInId;
+	// the to tag is not part of equals and hashCode so the hash can be cached for the lifetime of the key
+	private transient int cachedHashCode;
+	private transient String haKey;
 	/**
 	 * @param fromAddress
 	 * @param fromTag
@@ -64,8 +75,7 @@ public final class SipSessionKey implements MobicentsSipSessionKey, Serializable
 		this.callId = callId;
 		this.applicationName = applicationName;
 		this.applicationSessionId = applicationSessionId;
-		
-		computeToString();		
+		this.toTagInId = toTag != null;
 	}
 	/**
 	 * @return the fromTag
@@ -97,11 +107,44 @@ public final class SipSessionKey implements MobicentsSipSessionKey, Serializable
 	public String getApplicationName() {
 		return applicationName;
 	}
+	/**
+	 * @return true if the to tag is part of the id of the session this key identifies, 
+	 * which is the case for derived sessions created on forking 
+	 */
+	public boolean isToTagInId() {
+		return toTagInId;
+	}
+	/**
+	 * @return the to tag as it appears in the id of the session, null if the to tag is not part of it
+	 */
+	public String getIdToTag() {
+		return toTagInId ? toTag : null;
+	}
+	/**
+	 * @return the key under which the session is replicated, see SessionManagerUtil#getSipSessionHaKey
+	 */
+	public String getHaKey() {
+		String haKey = this.haKey;
+		if(haKey == null) {
+			haKey = fromTag + SessionManagerUtil.SESSION_KEY_SEPARATOR + callId;
+			this.haKey = haKey;
+		}
+		return haKey;
+	}
 	/* (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
 	 */
 	@Override
 	public int hashCode() {
+		int result = cachedHashCode;
+		if(result == 0) {
+			result = calculateHashCode();
+			cachedHashCode = result;
+		}
+		return result;
+	}
+	
+	private int calculateHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result
@@ -149,6 +192,11 @@ public final class SipSessionKey implements MobicentsSipSessionKey, Serializable
 	
 	@Override
 	public String toString() {
+		String toString = this.toString;
+		if(toString == null) {
+			computeToString();
+			toString = this.toString;
+		}
 		return toString;
 	}
 	/**
@@ -161,9 +209,14 @@ public final class SipSessionKey implements MobicentsSipSessionKey, Serializable
 	 * @param recomputeSessionId check if the sessionid need to be recomputed
 	 */
 	public void setToTag(String toTag, boolean recomputeSessionId) {
+		if(toTagInId && toString == null) {
+			// the id has to stay the one the key was created with
+			computeToString();
+		}
 		this.toTag = toTag;
 		if(toTag != null && recomputeSessionId) {
 			// Issue 2365 : to tag needed for getApplicationSession().getSipSession(<sessionId>) to return forked session and not the parent one
+			toTagInId = true;
 			computeToString();
 		}
 	}
@@ -178,7 +231,7 @@ public final class SipSessionKey implements MobicentsSipSessionKey, Serializable
 	 * @return the toString
 	 */
 	public void computeToString() {
-		if(toTag != null) {
+		if(toTagInId && toTag != null) {
 			// Issue 2365 : to tag needed for getApplicationSession().getSipSession(<sessionId>) to return forked session and not the parent one
 			toString = "(" + fromTag + SessionManagerUtil.SESSION_KEY_SEPARATOR + toTag + SessionManagerUtil.SESSION_KEY_SEPARATOR + callId + SessionManagerUtil.SESSION_KEY_SEPARATOR + applicationSessionId +SessionManagerUtil.SESSION_KEY_SEPARATOR + applicationName + ")";
 		} else {
@@ -186,4 +239,40 @@ public final class SipSessionKey implements MobicentsSipSessionKey, Serializable
 		}
 	}	
 	
+	/**
+	 * Writes this key field by field so that it can be read back through {@link #readFrom(DataInput)}
+	 * without having to reparse its String representation.
+	 * 
+	 * @param out the output to write the key to
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		ExternalizationUtils.writeString(out, fromTag);
+		ExternalizationUtils.writeString(out, toTag);
+		ExternalizationUtils.writeString(out, callId);
+		ExternalizationUtils.writeString(out, applicationSessionId);
+		ExternalizationUtils.writeString(out, applicationName);
+		// the to tag is only part of the id for derived sessions, see setToTag
+		out.writeBoolean(toTagInId && toTag != null);
+	}
+	
+	/**
+	 * Reads a key previously written by {@link #writeTo(DataOutput)}
+	 * 
+	 * @param in the input to read the key from
+	 * @return the key read
+	 */
+	public static SipSessionKey readFrom(DataInput in) throws IOException {
+		String fromTag = ExternalizationUtils.readString(in);
+		String toTag = ExternalizationUtils.readString(in);
+		String callId = ExternalizationUtils.readString(in);
+		String applicationSessionId = ExternalizationUtils.readString(in);
+		String applicationName = ExternalizationUtils.readString(in);
+		boolean toTagInId = in.readBoolean();
+		SipSessionKey sipSessionKey = new SipSessionKey(fromTag, toTagInId ? toTag : null, callId, applicationSessionId, applicationName);
+		if(!toTagInId) {
+			sipSessionKey.setToTag(toTag, false);
+		}
+		return sipSessionKey;
+	}
+	
 }
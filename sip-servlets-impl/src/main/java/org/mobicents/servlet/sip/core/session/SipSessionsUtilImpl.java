@@ -26,6 +26,7 @@ import java.io.Serializable;
 import java.text.ParseException;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import javax.servlet.sip.SipApplicationSession;
 import javax.servlet.sip.SipSession;
@@ -239,7 +240,12 @@ public class SipSessionsUtilImpl implements MobicentsSipSessionsUtil, Serializab
 			throw new IllegalArgumentException("the given application session id : " + sipSessionId + 
 					" couldn't be parsed correctly ",e);
 		}
-		sipContext.getSipApplicationDispatcher().getAsynchronousExecutor().execute(new SipSessionAsyncTask(sipSessionKey, work, sipContext.getSipApplicationDispatcher().getSipFactory()));
+		Executor executor = sipContext.getSipApplicationDispatcher().getAsynchronousExecutor();
+		if(SessionExecutionLane.isLaneMode(sipContext)) {
+			executor = SessionExecutionLane.getExecutor(sipContext.getSipManager().getSipApplicationSession(
+					new SipApplicationSessionKey(sipSessionKey.getApplicationSessionId(), sipSessionKey.getApplicationName(), null), false), executor);
+		}
+		executor.execute(new SipSessionAsyncTask(sipSessionKey, work, sipContext.getSipApplicationDispatcher().getSipFactory()));
 	}
 
 	@Override
@@ -252,6 +258,10 @@ public class SipSessionsUtilImpl implements MobicentsSipSessionsUtil, Serializab
 			throw new IllegalArgumentException("the given application session id : " + sipApplicationSessionId + 
 					" couldn't be parsed correctly ",e);
 		}
-		sipContext.getSipApplicationDispatcher().getAsynchronousExecutor().execute(new SipApplicationSessionAsyncTask(applicationSessionKey, work, sipContext.getSipApplicationDispatcher().getSipFactory()));
+		Executor executor = sipContext.getSipApplicationDispatcher().getAsynchronousExecutor();
+		if(SessionExecutionLane.isLaneMode(sipContext)) {
+			executor = SessionExecutionLane.getExecutor(sipContext.getSipManager().getSipApplicationSession(applicationSessionKey, false), executor);
+		}
+		executor.execute(new SipApplicationSessionAsyncTask(applicationSessionKey, work, sipContext.getSipApplicationDispatcher().getSipFactory()));
 	}
 }
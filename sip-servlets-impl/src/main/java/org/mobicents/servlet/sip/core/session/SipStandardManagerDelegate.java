@@ -37,11 +37,11 @@ public class SipStandardManagerDelegate extends SipManagerDelegate {
 	@Override
 	protected MobicentsSipSession getNewMobicentsSipSession(SipSessionKey key, SipFactoryImpl sipFactoryImpl, MobicentsSipApplicationSession mobicentsSipApplicationSession) {
 		if ((maxActiveSipSessions >= 0) && (sipSessions.size() >= maxActiveSipSessions)) {
-			rejectedSipSessions++;
+			rejectedSipSessions.incrementAndGet();
             throw new IllegalStateException
                 ("could not create a new sip session because there is currently too many active sip sessions");
 		}
-		sipSessionCounter++;		
+		sipSessionCounter.incrementAndGet();		
 		return new SipSessionImpl(key, sipFactoryImpl, mobicentsSipApplicationSession);
 	}
 
@@ -49,11 +49,11 @@ public class SipStandardManagerDelegate extends SipManagerDelegate {
 	protected MobicentsSipApplicationSession getNewMobicentsSipApplicationSession(
 			SipApplicationSessionKey key, SipContext sipContext) {
 		if ((maxActiveSipApplicationSessions >= 0) && (sipApplicationSessions.size() >= maxActiveSipApplicationSessions)) {
-			rejectedSipApplicationSessions++;
+			rejectedSipApplicationSessions.incrementAndGet();
             throw new IllegalStateException
                 ("could not create a new sip application session because there is currently too many active sip application sessions");
 		}
-		sipApplicationSessionCounter++;		
+		sipApplicationSessionCounter.incrementAndGet();		
 		MobicentsSipApplicationSession sipApplicationSession = new SipApplicationSessionImpl(key, sipContext);		
 		
 		return sipApplicationSession;
@@ -19,11 +19,14 @@
 
 package org.mobicents.servlet.sip.core.timers;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.mobicents.servlet.sip.core.SipContext;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedTask;
+import org.mobicents.servlet.sip.core.session.ConcurrencyControlUtils;
 import org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSession;
 import org.mobicents.servlet.sip.core.session.SipApplicationSessionEventType;
 
@@ -66,7 +69,23 @@ public class DefaultSasTimerTask implements SipApplicationSessionTimerTask {
 				sipApplicationSession.setExpirationTimerTask(expirationTimerTask);					
 				sipContext.getSipApplicationSessionTimerService().schedule(expirationTimerTask, sleep, TimeUnit.MILLISECONDS);
 			} else {
-				tryToExpire();
+				final Executor executionLane = sipApplicationSession.getExecutionLane();
+				if(executionLane != null) {
+					// expire on the session lane so that it doesn't race with messages or work already queued for the session
+					executionLane.execute(new Runnable() {
+						public void run() {
+							try {
+								if(getSipApplicationSession() != null) {
+									tryToExpire();
+								}
+							} catch (Throwable t) {
+								logger.error("Timer problem", t);
+							}
+						}
+					});
+				} else {
+					tryToExpire();
+				}
 			}
 		} catch (Throwable t) {
 			logger.error("Timer problem", t);
@@ -75,7 +94,24 @@ public class DefaultSasTimerTask implements SipApplicationSessionTimerTask {
 
 	private void tryToExpire() {
 		final SipContext sipContext = getSipApplicationSession().getSipContext();
-		sipContext.enterSipApp(getSipApplicationSession(), null, false, true);
+		final MobicentsSipApplicationSession expiringSipApplicationSession = getSipApplicationSession();
+		if(!ConcurrencyControlUtils.enterSipApp(sipContext, expiringSipApplicationSession, null, new ShardedTask() {
+				public Object getShardKey() {
+					return expiringSipApplicationSession.getKey().getId();
+				}
+				public void run() {
+					try {
+						if(getSipApplicationSession() != null) {
+							tryToExpire();
+						}
+					} catch (Throwable t) {
+						logger.error("Timer problem", t);
+					}
+				}
+			})) {
+			// the session is held by another task, expire again once it is released
+			return;
+		}
 		boolean batchStarted = sipContext.enterSipAppHa(true);
 		try {
 			getSipApplicationSession().setExpirationTimerTask(null);
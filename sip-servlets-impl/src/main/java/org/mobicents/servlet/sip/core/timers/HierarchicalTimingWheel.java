@@ -0,0 +1,539 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.timers;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.apache.log4j.Logger;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedTask;
+
+/**
+ * <p>
+ * Hierarchical timing wheel (Varghese and Lauck) used to schedule the very large number of timers 
+ * a SIP container has to manage : sip application session expiration, servlet timers and proxy Timer C.
+ * </p>
+ * 
+ * <p>
+ * Time is divided in ticks of a fixed duration and the wheel is made of {@link #LEVELS} levels of {@link #WHEEL_SIZE} slots,
+ * each slot of a level covering {@link #WHEEL_SIZE} times more ticks than a slot of the level below. A timeout is hashed 
+ * into the slot of the lowest level able to hold it and is cascaded down a level every time the lower level wraps around,
+ * the same way the Linux kernel timers are. Scheduling and cancelling are O(1) and, unlike a 
+ * {@link java.util.concurrent.ScheduledThreadPoolExecutor}, cancelled timeouts are unlinked right away so there is no need
+ * to purge the wheel. The price to pay is a precision bounded by the tick duration, which is fine for timers expressed in 
+ * seconds or minutes.
+ * </p>
+ * 
+ * <p>
+ * The wheel is only ever touched by its single tick thread, other threads hand over new and cancelled timeouts through
+ * lock free queues. The tick thread never runs the timer tasks itself, expired timeouts are handed over to the executor
+ * they were scheduled with (typically the dispatcher executor, so that a timer fires on the shard or lane of its session).
+ * </p>
+ * 
+ * <p>
+ * A single wheel is shared by all the applications of the container, see {@link #acquire()} and {@link #release()}.
+ * </p>
+ */
+public final class HierarchicalTimingWheel {
+	private static final Logger logger = Logger.getLogger(HierarchicalTimingWheel.class);
+	
+	public static final long DEFAULT_TICK_DURATION = 10;
+	public static final int LEVELS = 4;
+	public static final int WHEEL_BITS = 8;
+	public static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	// farthest tick a timeout can be hashed into, timeouts beyond it are parked in the last slot and re hashed when it expires
+	private static final long MAX_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+	
+	private static HierarchicalTimingWheel sharedWheel;
+	private static int sharedWheelReferences;
+	
+	private final String name;
+	private final long tickDuration;
+	private final Bucket[][] wheel;
+	private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<Timeout>();
+	private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<Timeout>();
+	private final long startTime;
+	private volatile boolean stopped;
+	private Thread tickThread;
+	// tick to be processed next, only accessed by the tick thread
+	private long currentTick;
+	
+	/**
+	 * @param name name of the tick thread
+	 * @param tickDuration duration of a tick in milliseconds
+	 */
+	public HierarchicalTimingWheel(String name, long tickDuration) {
+		if(tickDuration < 1) {
+			throw new IllegalArgumentException("the tick duration should be positive : " + tickDuration);
+		}
+		this.name = name;
+		this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+		wheel = new Bucket[LEVELS][WHEEL_SIZE];
+		for (int i = 0; i < LEVELS; i++) {
+			for (int j = 0; j < WHEEL_SIZE; j++) {
+				wheel[i][j] = new Bucket();
+			}
+		}
+		startTime = System.nanoTime();
+	}
+	
+	/**
+	 * Get a reference on the wheel shared by all applications, starting it if needed. 
+	 * Every call must be matched by a call to {@link #release()}.
+	 */
+	public static synchronized HierarchicalTimingWheel acquire() {
+		if(sharedWheel == null) {
+			sharedWheel = new HierarchicalTimingWheel("MSS-Timing-Wheel", DEFAULT_TICK_DURATION);
+			sharedWheel.start();
+		}
+		sharedWheelReferences++;
+		return sharedWheel;
+	}
+	
+	/**
+	 * Release a reference on the shared wheel, the wheel is stopped when it is not referenced anymore.
+	 */
+	public static synchronized void release() {
+		if(sharedWheel == null) {
+			return;
+		}
+		sharedWheelReferences--;
+		if(sharedWheelReferences <= 0) {
+			sharedWheel.stop();
+			sharedWheel = null;
+			sharedWheelReferences = 0;
+		}
+	}
+	
+	public synchronized void start() {
+		if(tickThread != null) {
+			return;
+		}
+		tickThread = new Thread(new Runnable() {
+			public void run() {
+				tickLoop();
+			}
+		}, name);
+		tickThread.setDaemon(true);
+		tickThread.start();
+		if(logger.isInfoEnabled()) {
+			logger.info("Started timing wheel " + name + " with a tick of " + TimeUnit.NANOSECONDS.toMillis(tickDuration) + " ms");
+		}
+	}
+	
+	public synchronized void stop() {
+		stopped = true;
+		if(tickThread != null) {
+			tickThread.interrupt();
+			tickThread = null;
+		}
+		if(logger.isInfoEnabled()) {
+			logger.info("Stopped timing wheel " + name);
+		}
+	}
+	
+	public boolean isStopped() {
+		return stopped;
+	}
+	
+	/**
+	 * Schedule a one shot timeout
+	 * @param task the task to run once the delay has elapsed
+	 * @param delay the delay in milliseconds
+	 * @param executor executor the task will be handed over to
+	 * @param shardKey key used to dispatch the task to the executor, may be null
+	 */
+	public Timeout schedule(Runnable task, long delay, Executor executor, Object shardKey) {
+		return schedule(task, delay, 0, false, executor, shardKey);
+	}
+	
+	/**
+	 * Schedule a timeout 
+	 * @param task the task to run once the delay has elapsed
+	 * @param delay the delay in milliseconds
+	 * @param period the period in milliseconds of a repeating timeout or 0 for a one shot timeout
+	 * @param fixedDelay whether the period is counted from the end of the previous execution or from its scheduled time
+	 * @param executor executor the task will be handed over to
+	 * @param shardKey key used to dispatch the task to the executor, may be null
+	 */
+	public Timeout schedule(Runnable task, long delay, long period, boolean fixedDelay, Executor executor, Object shardKey) {
+		if(stopped) {
+			throw new RejectedExecutionException("timing wheel " + name + " is stopped");
+		}
+		final Timeout timeout = new Timeout(this, task, executor, shardKey, 
+				TimeUnit.MILLISECONDS.toNanos(period), fixedDelay);
+		timeout.deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(delay, 0));
+		pendingTimeouts.offer(timeout);
+		return timeout;
+	}
+	
+	/**
+	 * @return the number of timeouts waiting to be hashed into the wheel
+	 */
+	public int getPendingTimeouts() {
+		return pendingTimeouts.size();
+	}
+	
+	private void tickLoop() {
+		while(!stopped) {
+			final long tickTime = currentTick * tickDuration;
+			long sleep = tickTime - (System.nanoTime() - startTime);
+			if(sleep > 0) {
+				try {
+					Thread.sleep(TimeUnit.NANOSECONDS.toMillis(sleep + 999999));
+				} catch (InterruptedException e) {
+					if(stopped) {
+						break;
+					}
+				}
+				continue;
+			}
+			processNextTick();
+		}
+		pendingTimeouts.clear();
+		cancelledTimeouts.clear();
+	}
+	
+	private void processNextTick() {
+		try {
+			transferCancelledTimeouts();
+			transferPendingTimeouts();
+			processTick();
+		} catch (Throwable t) {
+			logger.error("Unexpected problem while processing tick " + currentTick + " of timing wheel " + name, t);
+		}
+		currentTick++;
+	}
+	
+	/**
+	 * Processes all the ticks up to the given one on the calling thread, regardless of the time elapsed.
+	 * Only meant to drive a wheel that was not started, in tests.
+	 * @param tick the last tick to process
+	 */
+	void advanceTo(long tick) {
+		while(currentTick <= tick) {
+			processNextTick();
+		}
+	}
+	
+	private void transferCancelledTimeouts() {
+		Timeout timeout;
+		while((timeout = cancelledTimeouts.poll()) != null) {
+			if(timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+	
+	private void transferPendingTimeouts() {
+		Timeout timeout;
+		while((timeout = pendingTimeouts.poll()) != null) {
+			if(timeout.state == Timeout.ST_INIT) {
+				// round up so that a timeout never fires before its deadline
+				hash(timeout, (timeout.deadline + tickDuration - 1) / tickDuration);
+			}
+		}
+	}
+	
+	private void hash(Timeout timeout, long expirationTick) {
+		timeout.expirationTick = expirationTick;
+		long ticks = expirationTick - currentTick;
+		if(ticks < 0) {
+			// already expired, fire it on this tick
+			ticks = 0;
+			expirationTick = currentTick;
+		} else if(ticks > MAX_TICKS) {
+			ticks = MAX_TICKS;
+			expirationTick = currentTick + MAX_TICKS;
+		}
+		int level = 0;
+		while(level < LEVELS - 1 && ticks >= (1L << (WHEEL_BITS * (level + 1)))) {
+			level++;
+		}
+		wheel[level][(int) ((expirationTick >>> (WHEEL_BITS * level)) & WHEEL_MASK)].add(timeout);
+	}
+	
+	private void processTick() {
+		final int index = (int) (currentTick & WHEEL_MASK);
+		if(index == 0) {
+			// the lowest level wrapped around, cascade the timeouts of the upper levels down
+			for (int level = 1; level < LEVELS; level++) {
+				final int levelIndex = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+				cascade(wheel[level][levelIndex]);
+				if(levelIndex != 0) {
+					break;
+				}
+			}
+		}
+		final Bucket bucket = wheel[0][index];
+		Timeout timeout;
+		while((timeout = bucket.poll()) != null) {
+			if(timeout.expirationTick > currentTick) {
+				// parked timeout beyond the wheel range
+				hash(timeout, timeout.expirationTick);
+			} else {
+				timeout.expire();
+			}
+		}
+	}
+	
+	private void cascade(Bucket bucket) {
+		Timeout timeout;
+		while((timeout = bucket.poll()) != null) {
+			hash(timeout, timeout.expirationTick);
+		}
+	}
+	
+	private void rehash(Timeout timeout) {
+		// called from the tick thread for fixed rate timeouts
+		hash(timeout, (timeout.deadline + tickDuration - 1) / tickDuration);
+	}
+	
+	private long now() {
+		return System.nanoTime() - startTime;
+	}
+	
+	/**
+	 * Doubly linked list of the timeouts hashed into a slot, only accessed by the tick thread
+	 */
+	private static final class Bucket {
+		private Timeout head;
+		private Timeout tail;
+		
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			timeout.prev = tail;
+			timeout.next = null;
+			if(tail == null) {
+				head = timeout;
+			} else {
+				tail.next = timeout;
+			}
+			tail = timeout;
+		}
+		
+		void remove(Timeout timeout) {
+			if(timeout.bucket != this) {
+				return;
+			}
+			if(timeout.prev == null) {
+				head = timeout.next;
+			} else {
+				timeout.prev.next = timeout.next;
+			}
+			if(timeout.next == null) {
+				tail = timeout.prev;
+			} else {
+				timeout.next.prev = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+		
+		Timeout poll() {
+			final Timeout timeout = head;
+			if(timeout != null) {
+				remove(timeout);
+			}
+			return timeout;
+		}
+	}
+	
+	/**
+	 * Handle on a timeout scheduled in the wheel. It can be used as a {@link ScheduledFuture} to cancel the timeout, 
+	 * know how long remains before it expires or wait for its task to complete. As with a {@link java.util.concurrent.ScheduledThreadPoolExecutor}, 
+	 * waiting on a repeating timeout only returns once it is cancelled.
+	 */
+	public static final class Timeout implements ScheduledFuture<Object>, ShardedTask {
+		private static final int ST_INIT = 0;
+		private static final int ST_CANCELLED = 1;
+		private static final int ST_EXPIRED = 2;
+		private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER = 
+				AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+		
+		private final HierarchicalTimingWheel timingWheel;
+		private final Runnable task;
+		private final Executor executor;
+		private final Object shardKey;
+		private final long period;
+		private final boolean fixedDelay;
+		private volatile int state = ST_INIT;
+		// released once the task of a one shot timeout completed or the timeout is cancelled
+		private final CountDownLatch completion = new CountDownLatch(1);
+		private volatile Throwable failure;
+		// deadline in nanoseconds since the wheel started
+		private volatile long deadline;
+		// wheel bookkeeping, only accessed by the tick thread
+		private long expirationTick;
+		private Bucket bucket;
+		private Timeout prev;
+		private Timeout next;
+		
+		private Timeout(HierarchicalTimingWheel timingWheel, Runnable task, Executor executor, Object shardKey, long period, boolean fixedDelay) {
+			this.timingWheel = timingWheel;
+			this.task = task;
+			this.executor = executor;
+			this.shardKey = shardKey;
+			this.period = period;
+			this.fixedDelay = fixedDelay;
+		}
+		
+		public Runnable getTask() {
+			return task;
+		}
+		
+		public Object getShardKey() {
+			return shardKey;
+		}
+		
+		// called from the tick thread
+		private void expire() {
+			if(period <= 0) {
+				if(!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+					return;
+				}
+			} else if(state != ST_INIT) {
+				return;
+			} else if(!fixedDelay) {
+				// fixed rate, the next execution is due one period after this one was scheduled
+				deadline += period;
+				timingWheel.rehash(this);
+			}
+			if(executor == null) {
+				run();
+				return;
+			}
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				logger.warn("Timer task " + task + " couldn't be executed, it has been rejected", e);
+				if(period <= 0) {
+					failure = e;
+					completion.countDown();
+				}
+			}
+		}
+		
+		/**
+		 * Runs the task of this timeout, not meant to be called by anything else than the wheel executor.
+		 */
+		public void run() {
+			try {
+				task.run();
+			} catch (Throwable t) {
+				logger.error("Timer task " + task + " failed", t);
+				failure = t;
+			} finally {
+				if(period <= 0) {
+					completion.countDown();
+				} else if(fixedDelay && state == ST_INIT && !timingWheel.stopped) {
+					// fixed delay, the next execution is due one period after this one completed
+					deadline = timingWheel.now() + period;
+					timingWheel.pendingTimeouts.offer(this);
+				}
+			}
+		}
+		
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if(!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+				return false;
+			}
+			timingWheel.cancelledTimeouts.offer(this);
+			completion.countDown();
+			return true;
+		}
+		
+		public boolean isCancelled() {
+			return state == ST_CANCELLED;
+		}
+		
+		public boolean isDone() {
+			return state != ST_INIT;
+		}
+		
+		public boolean isExpired() {
+			return state == ST_EXPIRED;
+		}
+		
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(deadline - timingWheel.now(), TimeUnit.NANOSECONDS);
+		}
+		
+		public int compareTo(Delayed o) {
+			if(o == this) {
+				return 0;
+			}
+			final long diff = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+			return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+		}
+		
+		/**
+		 * Waits for the task of this timeout to complete
+		 * @return null once the task completed
+		 * @throws CancellationException if the timeout was cancelled
+		 * @throws ExecutionException if the task failed or was rejected by its executor
+		 */
+		public Object get() throws InterruptedException, ExecutionException {
+			completion.await();
+			return getResult();
+		}
+		
+		/**
+		 * Waits at most the given time for the task of this timeout to complete
+		 * @return null once the task completed
+		 * @throws CancellationException if the timeout was cancelled
+		 * @throws ExecutionException if the task failed or was rejected by its executor
+		 * @throws TimeoutException if the task didn't complete in time
+		 */
+		public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if(!completion.await(timeout, unit)) {
+				throw new TimeoutException("Timer task " + task + " didn't complete in " + timeout + " " + unit);
+			}
+			return getResult();
+		}
+		
+		private Object getResult() throws ExecutionException {
+			if(state == ST_CANCELLED) {
+				throw new CancellationException("Timer task " + task + " was cancelled");
+			}
+			if(failure != null) {
+				throw new ExecutionException(failure);
+			}
+			return null;
+		}
+		
+		@Override
+		public String toString() {
+			return "Timeout[task=" + task + ", delay=" + getDelay(TimeUnit.MILLISECONDS) + "ms, state=" + state + "]";
+		}
+	}
+}
@@ -19,8 +19,10 @@
 
 package org.mobicents.servlet.sip.core.timers;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledFuture;
 
 import javax.servlet.sip.TimerListener;
@@ -28,6 +30,8 @@ import javax.servlet.sip.TimerListener;
 import org.apache.log4j.Logger;
 import org.mobicents.servlet.sip.core.SipContext;
 import org.mobicents.servlet.sip.core.SipManager;
+import org.mobicents.servlet.sip.core.dispatchers.ShardedTask;
+import org.mobicents.servlet.sip.core.session.ConcurrencyControlUtils;
 import org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSession;
 import org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSessionKey;
 
@@ -115,6 +119,11 @@ public class ServletTimerImpl implements MobicentsServletTimer, Runnable {
 	 * there may be a dead lock.
 	 */
 	private final Object TIMER_LOCK = new Object();
+	
+	/**
+	 * Journal of the timer service, set only if this timer is persistent
+	 */
+	private ServletTimerJournal journal;
 
 	/**
 	 * Constructor for non-repeating timer.
@@ -176,8 +185,10 @@ public class ServletTimerImpl implements MobicentsServletTimer, Runnable {
 	 */
 	public void cancel(boolean mayInterruptIfRunning, boolean updateAppSessionReadyToInvalidateState) {
 		MobicentsSipApplicationSession appSessionToCancelThisTimersFrom = null;
+		boolean canceled = false;
 		synchronized (TIMER_LOCK) {
 			if (future != null) {
+				canceled = true;
 				// need to force cancel to get rid of
 				// the task which is currently scheduled
 				future.cancel(mayInterruptIfRunning);
@@ -191,6 +202,13 @@ public class ServletTimerImpl implements MobicentsServletTimer, Runnable {
 				info = null;
 			}
 		}
+		if (canceled && journal != null) {
+			try {
+				journal.timerCanceled(id);
+			} catch (IOException e) {
+				logger.error("Couldn't journal the cancellation of the persistent servlet timer " + id, e);
+			}
+		}
 		if (appSessionToCancelThisTimersFrom != null && updateAppSessionReadyToInvalidateState) {
 			if(logger.isDebugEnabled()) {
 				logger.debug("removing servlet timer " + id + " from sip application session " + appSessionToCancelThisTimersFrom + " and updating its ready to invalidate state " + updateAppSessionReadyToInvalidateState);
@@ -246,6 +264,18 @@ public class ServletTimerImpl implements MobicentsServletTimer, Runnable {
 
 	}
 
+	void setJournal(ServletTimerJournal journal) {
+		this.journal = journal;
+	}
+	
+	boolean isFixedDelay() {
+		return fixedDelay;
+	}
+	
+	boolean isRepeatingTimer() {
+		return isRepeatingTimer;
+	}
+
 	public void setFuture(ScheduledFuture<?> f) {
 		synchronized (TIMER_LOCK) {
 			this.future = f;
@@ -282,6 +312,21 @@ public class ServletTimerImpl implements MobicentsServletTimer, Runnable {
 	public void run() {
 
 		final MobicentsSipApplicationSession sipApplicationSession = getApplicationSession();
+		final Executor executionLane = sipApplicationSession.getExecutionLane();
+		if(executionLane != null) {
+			// the timer thread only hands the expiration over to the session lane so that
+			// it runs in order with the other messages and work targeting the same session
+			executionLane.execute(new Runnable() {
+				public void run() {
+					fire(sipApplicationSession);
+				}
+			});
+		} else {
+			fire(sipApplicationSession);
+		}
+	}
+	
+	private void fire(final MobicentsSipApplicationSession sipApplicationSession) {
 		SipContext sipContext = sipApplicationSession.getSipContext();
 		
 		if(logger.isDebugEnabled()) {
@@ -289,10 +334,25 @@ public class ServletTimerImpl implements MobicentsServletTimer, Runnable {
 		}
 		
 		boolean batchStarted = false;
+		boolean resubmitted = false;
 		ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
 		try {
 			sipContext.enterSipContext();	
-			sipContext.enterSipApp(sipApplicationSession, null, false, true);
+			if(!ConcurrencyControlUtils.enterSipApp(sipContext, sipApplicationSession, null, new ShardedTask() {
+					public Object getShardKey() {
+						return sipApplicationSession.getKey().getId();
+					}
+					public void run() {
+						fire(sipApplicationSession);
+					}
+				})) {
+				// the session is held by another task, fire again once it is released
+				if(logger.isDebugEnabled()) {
+					logger.debug("sip application session " + sipApplicationSession.getKey() + " busy, Servlet Timer " + id + " will run again");
+				}
+				resubmitted = true;
+				return;
+			}
 			batchStarted = sipContext.enterSipAppHa(true);
 			if(isCanceled==false){
 			    listener.timeout(this);
@@ -304,7 +364,9 @@ public class ServletTimerImpl implements MobicentsServletTimer, Runnable {
 		} finally {		
 			try {
 				sipContext.exitSipContext(oldClassLoader);
-				if (isRepeatingTimer) {
+				if(resubmitted) {
+					// nothing was entered nor fired
+				} else if (isRepeatingTimer) {
 					estimateNextExecution();
 				} else {
 					// this non-repeating timer is now "ready"
@@ -316,8 +378,10 @@ public class ServletTimerImpl implements MobicentsServletTimer, Runnable {
 					logger.debug("Servlet Timer " + id + " for sip application session " + sipApplicationSession + " ended");
 				}
 			} finally {
-				sipContext.exitSipAppHa(null, null, batchStarted);
-				sipContext.exitSipApp(sipApplicationSession, null);
+				if(!resubmitted) {
+					sipContext.exitSipAppHa(null, null, batchStarted);
+					sipContext.exitSipApp(sipApplicationSession, null);
+				}
 			}
 		}
 
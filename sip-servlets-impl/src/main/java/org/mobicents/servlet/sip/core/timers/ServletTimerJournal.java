@@ -0,0 +1,444 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.timers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.mobicents.servlet.sip.core.session.SipApplicationSessionKey;
+import org.mobicents.servlet.sip.utils.ExternalizationUtils;
+
+/**
+ * Append-only journal of the persistent servlet timers of an application, read back on restart to reschedule them.<br/>
+ * The creation of a timer and its cancellation are appended as records to a memory mapped file, so journaling a timer
+ * costs a copy in memory, the file being forced to disk by {@link #flush()}. Each record is prefixed by its length and checksum 
+ * so that a record partially written when the process died is ignored on restart.<br/>
+ * The journal is compacted on {@link #open()} and by {@link #flush()} once most of its records are obsolete, 
+ * by rewriting the creation records of the timers still alive.<br/>
+ * The journal is opened under an exclusive lock on a file next to it, so that two timer services 
+ * sharing the same journal directory, in the same process or not, can't both write to it.
+ */
+public class ServletTimerJournal {
+	private static final Logger logger = Logger.getLogger(ServletTimerJournal.class);
+	
+	/**
+	 * Directory where the journals of the persistent servlet timers are kept, one file per application
+	 */
+	public static final String JOURNAL_DIR_PROPERTY = "org.mobicents.servlet.sip.timers.journalDir";
+	private static final String JOURNAL_DIRECTORY_NAME = "sip-timers-journal";
+	public static final String JOURNAL_DIR = getJournalDirectory(System.getProperties()).getPath();
+	
+	/**
+	 * The journals have to survive restarts and must not be shared with other servers, 
+	 * so they are kept under the data directory of the server rather than under java.io.tmpdir.
+	 * 
+	 * @param systemProperties the system properties of the server
+	 * @return the directory set through the {@link #JOURNAL_DIR_PROPERTY} system property, or a directory 
+	 * of the data directory of the JBoss server, of the work directory of the Tomcat server or of the working directory otherwise
+	 */
+	static File getJournalDirectory(Properties systemProperties) {
+		String journalDirectoryPath = systemProperties.getProperty(JOURNAL_DIR_PROPERTY);
+		if(journalDirectoryPath != null) {
+			return new File(journalDirectoryPath);
+		}
+		String serverDataDirectory = systemProperties.getProperty("jboss.server.data.dir");
+		if(serverDataDirectory != null) {
+			return new File(serverDataDirectory, JOURNAL_DIRECTORY_NAME);
+		}
+		String catalinaBase = systemProperties.getProperty("catalina.base");
+		if(catalinaBase != null) {
+			return new File(new File(catalinaBase, "work"), JOURNAL_DIRECTORY_NAME);
+		}
+		return new File(new File(systemProperties.getProperty("user.dir"), "work"), JOURNAL_DIRECTORY_NAME);
+	}
+	
+	private static final int MAPPED_REGION_SIZE = 1024 * 1024;
+	// compacting a small journal is not worth it
+	private static final int COMPACTION_MIN_RECORDS = 10000;
+	private static final int RECORD_HEADER_SIZE = 8;
+	
+	private static final byte TIMER_CREATED = 1;
+	private static final byte TIMER_CANCELED = 2;
+	
+	private final File file;
+	private FileChannel channel;
+	private MappedByteBuffer region;
+	// offset in the file of the mapped region
+	private long regionOffset;
+	private int records;
+	private boolean dirty;
+	private boolean closed;
+	private FileChannel lockChannel;
+	private FileLock lock;
+	// creation records of the timers alive, in creation order
+	private final Map<String, byte[]> liveTimers = new LinkedHashMap<String, byte[]>();
+	
+	/**
+	 * Timer read back from the journal
+	 */
+	public static final class JournaledTimer {
+		private final String id;
+		private final SipApplicationSessionKey sipApplicationSessionKey;
+		private final byte[] info;
+		private final long firstExecutionTime;
+		private final long period;
+		private final boolean fixedDelay;
+		private final boolean repeating;
+		
+		JournaledTimer(String id, SipApplicationSessionKey sipApplicationSessionKey, byte[] info, long firstExecutionTime, 
+				long period, boolean fixedDelay, boolean repeating) {
+			this.id = id;
+			this.sipApplicationSessionKey = sipApplicationSessionKey;
+			this.info = info;
+			this.firstExecutionTime = firstExecutionTime;
+			this.period = period;
+			this.fixedDelay = fixedDelay;
+			this.repeating = repeating;
+		}
+		public String getId() {
+			return id;
+		}
+		public SipApplicationSessionKey getSipApplicationSessionKey() {
+			return sipApplicationSessionKey;
+		}
+		/**
+		 * @return the java serialized form of the info of the timer, null if the timer has no info
+		 */
+		public byte[] getInfo() {
+			return info;
+		}
+		public long getFirstExecutionTime() {
+			return firstExecutionTime;
+		}
+		public long getPeriod() {
+			return period;
+		}
+		public boolean isFixedDelay() {
+			return fixedDelay;
+		}
+		public boolean isRepeating() {
+			return repeating;
+		}
+	}
+	
+	public ServletTimerJournal(File file) {
+		this.file = file;
+	}
+	
+	/**
+	 * Locks the journal, reads it and compacts it. Nothing gets journaled until the journal is open.
+	 * 
+	 * @return the timers that were alive when the journal was last written to
+	 * @throws IOException if the journal can't be read or is locked by another timer service
+	 */
+	public synchronized List<JournaledTimer> open() throws IOException {
+		if(closed) {
+			throw new IOException("The servlet timer journal " + file + " is closed");
+		}
+		if(lock == null) {
+			lock();
+		}
+		if(file.exists()) {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+			try {
+				FileChannel readChannel = randomAccessFile.getChannel();
+				MappedByteBuffer content = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+				CRC32 crc = new CRC32();
+				while(content.remaining() >= RECORD_HEADER_SIZE) {
+					int length = content.getInt();
+					int checksum = content.getInt();
+					if(length <= 0 || length > content.remaining()) {
+						// end of the journal, the rest of the mapped region was never written to
+						break;
+					}
+					byte[] record = new byte[length];
+					content.get(record);
+					crc.reset();
+					crc.update(record, 0, length);
+					if((int) crc.getValue() != checksum) {
+						logger.warn("Ignoring the end of the servlet timer journal " + file + " from a corrupted record");
+						break;
+					}
+					apply(record);
+				}
+			} finally {
+				randomAccessFile.close();
+			}
+		}
+		List<JournaledTimer> timers = new ArrayList<JournaledTimer>(liveTimers.size());
+		for (byte[] record : liveTimers.values()) {
+			timers.add(readTimer(record));
+		}
+		if(file.exists()) {
+			compact();
+		}
+		if(logger.isInfoEnabled()) {
+			logger.info(timers.size() + " persistent servlet timers read from " + file);
+		}
+		return timers;
+	}
+	
+	private void lock() throws IOException {
+		File directory = file.getParentFile();
+		if(directory != null && !directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Couldn't create the directory " + directory + " of the servlet timer journal");
+		}
+		// the journal itself is replaced when compacted, the lock is taken on a file that stays
+		FileChannel channel = new RandomAccessFile(file.getPath() + ".lock", "rw").getChannel();
+		FileLock fileLock = null;
+		try {
+			fileLock = channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			// already locked by this process
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		if(fileLock == null) {
+			channel.close();
+			throw new IOException("The servlet timer journal " + file + " is used by another timer service, " + 
+					"each server needs its own " + JOURNAL_DIR_PROPERTY + " directory");
+		}
+		lockChannel = channel;
+		lock = fileLock;
+	}
+	
+	private void apply(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		byte type = in.readByte();
+		String id = ExternalizationUtils.readString(in);
+		if(type == TIMER_CREATED) {
+			liveTimers.put(id, record);
+		} else {
+			liveTimers.remove(id);
+		}
+	}
+	
+	private static JournaledTimer readTimer(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		in.readByte();
+		String id = ExternalizationUtils.readString(in);
+		SipApplicationSessionKey sipApplicationSessionKey = SipApplicationSessionKey.readFrom(in);
+		long firstExecutionTime = in.readLong();
+		long period = in.readLong();
+		boolean fixedDelay = in.readBoolean();
+		boolean repeating = in.readBoolean();
+		byte[] info = ExternalizationUtils.readBytes(in);
+		return new JournaledTimer(id, sipApplicationSessionKey, info, firstExecutionTime, period, fixedDelay, repeating);
+	}
+	
+	/**
+	 * Journals the creation of a persistent timer
+	 * 
+	 * @param info the java serialized form of the info of the timer, can be null
+	 */
+	public void timerCreated(String id, SipApplicationSessionKey sipApplicationSessionKey, byte[] info, 
+			long firstExecutionTime, long period, boolean fixedDelay, boolean repeating) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + (info == null ? 0 : info.length));
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(TIMER_CREATED);
+		ExternalizationUtils.writeString(out, id);
+		sipApplicationSessionKey.writeTo(out);
+		out.writeLong(firstExecutionTime);
+		out.writeLong(period);
+		out.writeBoolean(fixedDelay);
+		out.writeBoolean(repeating);
+		ExternalizationUtils.writeBytes(out, info);
+		out.flush();
+		byte[] record = bytes.toByteArray();
+		synchronized (this) {
+			if(closed || lock == null) {
+				return;
+			}
+			append(record);
+			liveTimers.put(id, record);
+		}
+	}
+	
+	/**
+	 * Journals the cancellation of a persistent timer, be it by the application or because it expired
+	 */
+	public void timerCanceled(String id) throws IOException {
+		synchronized (this) {
+			if(closed || !liveTimers.containsKey(id)) {
+				return;
+			}
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(TIMER_CANCELED);
+		ExternalizationUtils.writeString(out, id);
+		out.flush();
+		byte[] record = bytes.toByteArray();
+		synchronized (this) {
+			if(closed || liveTimers.remove(id) == null) {
+				return;
+			}
+			append(record);
+		}
+	}
+	
+	private void append(byte[] record) throws IOException {
+		int size = RECORD_HEADER_SIZE + record.length;
+		if(region == null || region.remaining() < size) {
+			mapNextRegion(size);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record, 0, record.length);
+		region.putInt(record.length);
+		region.putInt((int) crc.getValue());
+		region.put(record);
+		records++;
+		dirty = true;
+	}
+	
+	private void mapNextRegion(int minSize) throws IOException {
+		if(channel == null) {
+			File directory = file.getParentFile();
+			if(directory != null && !directory.exists() && !directory.mkdirs()) {
+				throw new IOException("Couldn't create the directory " + directory + " of the servlet timer journal");
+			}
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			regionOffset = channel.size();
+		} else {
+			region.force();
+			regionOffset += region.position();
+		}
+		// mapping past the end of the file grows it, the zeroes left at the end are read back as the end of the journal
+		region = channel.map(FileChannel.MapMode.READ_WRITE, regionOffset, Math.max(MAPPED_REGION_SIZE, minSize));
+	}
+	
+	/**
+	 * Forces the records appended so far to disk and compacts the journal if most of its records are obsolete
+	 */
+	public synchronized void flush() throws IOException {
+		if(closed || lock == null || !dirty) {
+			return;
+		}
+		if(records >= COMPACTION_MIN_RECORDS && liveTimers.size() * 2 < records) {
+			compact();
+		} else {
+			region.force();
+		}
+		dirty = false;
+	}
+	
+	/**
+	 * Rewrites the journal with the creation records of the timers alive only
+	 */
+	private void compact() throws IOException {
+		File compacted = new File(file.getPath() + ".compacted");
+		FileChannel compactedChannel = new RandomAccessFile(compacted, "rw").getChannel();
+		try {
+			compactedChannel.truncate(0);
+			CRC32 crc = new CRC32();
+			for (byte[] record : liveTimers.values()) {
+				crc.reset();
+				crc.update(record, 0, record.length);
+				ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+				header.putInt(record.length);
+				header.putInt((int) crc.getValue());
+				header.flip();
+				while(header.hasRemaining()) {
+					compactedChannel.write(header);
+				}
+				ByteBuffer body = ByteBuffer.wrap(record);
+				while(body.hasRemaining()) {
+					compactedChannel.write(body);
+				}
+			}
+			compactedChannel.force(true);
+		} finally {
+			compactedChannel.close();
+		}
+		closeChannel();
+		if(!compacted.renameTo(file) && (!file.delete() || !compacted.renameTo(file))) {
+			throw new IOException("Couldn't replace the servlet timer journal " + file + " by its compacted version " + compacted);
+		}
+		records = liveTimers.size();
+		if(logger.isDebugEnabled()) {
+			logger.debug("servlet timer journal " + file + " compacted to " + records + " timers");
+		}
+	}
+	
+	private void closeChannel() throws IOException {
+		if(channel != null) {
+			long end = regionOffset + region.position();
+			region.force();
+			region = null;
+			try {
+				// drop the zeroes past the last record, not possible on some platforms while the region is still mapped
+				channel.truncate(end);
+			} catch (IOException e) {
+				if(logger.isDebugEnabled()) {
+					logger.debug("Couldn't truncate the servlet timer journal " + file, e);
+				}
+			}
+			channel.close();
+			channel = null;
+		}
+	}
+	
+	public synchronized void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		try {
+			closeChannel();
+		} finally {
+			if(lockChannel != null) {
+				// closing the channel releases the lock
+				lockChannel.close();
+				lockChannel = null;
+				lock = null;
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of persistent timers alive
+	 */
+	public synchronized int getTimers() {
+		return liveTimers.size();
+	}
+	
+	@Override
+	public String toString() {
+		return "ServletTimerJournal[" + file + "]";
+	}
+}
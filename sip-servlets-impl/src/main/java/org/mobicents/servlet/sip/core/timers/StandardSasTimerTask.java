@@ -23,6 +23,7 @@
 package org.mobicents.servlet.sip.core.timers;
 
 import java.util.TimerTask;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
@@ -67,7 +68,23 @@ public class StandardSasTimerTask extends TimerTask implements SipApplicationSes
 				sipApplicationSession.setExpirationTimerTask(expirationTimerTask);					
 				sipContext.getSipApplicationSessionTimerService().schedule(expirationTimerTask, sleep, TimeUnit.MILLISECONDS);
 			} else {
-				tryToExpire();
+				final Executor executionLane = sipApplicationSession.getExecutionLane();
+				if(executionLane != null) {
+					// expire on the session lane so that it doesn't race with messages or work already queued for the session
+					executionLane.execute(new Runnable() {
+						public void run() {
+							try {
+								if(getSipApplicationSession() != null) {
+									tryToExpire();
+								}
+							} catch (Throwable t) {
+								logger.error("Timer problem", t);
+							}
+						}
+					});
+				} else {
+					tryToExpire();
+				}
 			}
 		} catch (Throwable t) {
 			logger.error("Timer problem", t);
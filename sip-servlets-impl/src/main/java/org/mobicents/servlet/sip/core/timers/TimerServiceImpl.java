@@ -16,7 +16,16 @@
  */
 package org.mobicents.servlet.sip.core.timers;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.util.List;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -26,8 +35,10 @@ import javax.servlet.sip.SipApplicationSession;
 import javax.servlet.sip.TimerListener;
 
 import org.apache.log4j.Logger;
+import org.mobicents.servlet.sip.core.SipContext;
 import org.mobicents.servlet.sip.core.SipService;
 import org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSession;
+import org.mobicents.servlet.sip.core.session.SipApplicationSessionKey;
 import org.mobicents.servlet.sip.utils.NamingThreadFactory;
 
 public class TimerServiceImpl implements SipServletTimerService {
@@ -38,9 +49,24 @@ public class TimerServiceImpl implements SipServletTimerService {
 	
 	public static final int SCHEDULER_THREAD_POOL_DEFAULT_SIZE = 4;
 	
+	/**
+	 * Maximum number of overdue persistent timers fired per second when they are restored on startup, 
+	 * so that the timers which should have fired while the server was down don't all fire at once
+	 */
+	public static final int PERSISTENT_TIMERS_RESTORE_RATE = Integer.getInteger("org.mobicents.servlet.sip.timers.restoreRate", 100);
+	private static final int PERSISTENT_TIMERS_RESTORE_BATCH_SIZE = 1000;
+	private static final long PERSISTENT_TIMERS_FLUSH_PERIOD = 1000;
+	
 	private transient ScheduledThreadPoolExecutor scheduledExecutor;
+	private transient SipService sipService;
+	private transient String applicationName;
+	private transient ServletTimerJournal journal;
 	
 	public TimerServiceImpl(SipService sipService, String applicationName) {		
+		this.sipService = sipService;
+		this.applicationName = applicationName;
+		journal = new ServletTimerJournal(new File(ServletTimerJournal.JOURNAL_DIR, 
+				applicationName.replaceAll("[^A-Za-z0-9._-]", "_") + ".journal"));
 		scheduledExecutor = new ScheduledThreadPoolExecutor(SCHEDULER_THREAD_POOL_DEFAULT_SIZE,new NamingThreadFactory(applicationName + "_sip_default_sas_timer_service"));
 		int purgePeriod = sipService.getCanceledTimerTasksPurgePeriod();
 		if(purgePeriod > 0) {
@@ -124,6 +150,10 @@ public class TimerServiceImpl implements SipServletTimerService {
 	private ServletTimerImpl createTimerLocaly(TimerListener listener, long delay,
 			boolean isPersistent, Serializable info, MobicentsSipApplicationSession sipApplicationSession) {				
 		ServletTimerImpl servletTimer = new ServletTimerImpl(info, delay, listener, sipApplicationSession);
+		// journaled before being scheduled so that its expiry can't be journaled before its creation
+		if (isPersistent) {
+			persist(servletTimer);
+		} 
 		
 		if(logger.isDebugEnabled()) {
 			logger.debug("Scheduling Timer "+ servletTimer.getId() +" to expire in " + delay + " ms");
@@ -133,9 +163,6 @@ public class TimerServiceImpl implements SipServletTimerService {
 		servletTimer.setFuture(future);
 //		sipApplicationSession.timerScheduled(st);
 		sipApplicationSession.addServletTimer(servletTimer);
-		if (isPersistent) {
-			persist(servletTimer);
-		} 
 		return servletTimer;
 	}
 	/**
@@ -154,6 +181,10 @@ public class TimerServiceImpl implements SipServletTimerService {
 			Serializable info, MobicentsSipApplicationSession sipApplicationSession) {		
 		final ServletTimerImpl servletTimer = new ServletTimerImpl(
 				info, delay, fixedDelay, period, listener, sipApplicationSession);
+		// journaled before being scheduled so that its expiry can't be journaled before its creation
+		if (isPersistent) {			
+			persist(servletTimer);
+		} 
 		ScheduledFuture<?> future = null;
 		if (fixedDelay) {
 			if(logger.isDebugEnabled()) {
@@ -173,9 +204,6 @@ public class TimerServiceImpl implements SipServletTimerService {
 		servletTimer.setFuture(future);
 //		sipApplicationSession.timerScheduled(servletTimer);
 		sipApplicationSession.addServletTimer(servletTimer);
-		if (isPersistent) {			
-			persist(servletTimer);
-		} 
 		return servletTimer;
 	}
 
@@ -184,12 +212,170 @@ public class TimerServiceImpl implements SipServletTimerService {
 	 * @param st
 	 */
 	private void persist(ServletTimerImpl st) {
-		// TODO - implement persistance
+		byte[] info = null;
+		try {
+			if(st.getInfo() != null) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				out.writeObject(st.getInfo());
+				out.close();
+				info = bytes.toByteArray();
+			}
+			journal.timerCreated(st.getId(), (SipApplicationSessionKey) st.getApplicationSession().getKey(), info, 
+					st.scheduledExecutionTime(), st.getPeriod(), st.isFixedDelay(), st.isRepeatingTimer());
+			st.setJournal(journal);
+		} catch (IOException e) {
+			logger.error("Couldn't journal the persistent servlet timer " + st.getId() + ", it will not survive a restart", e);
+		}
+	}
+	
+	/**
+	 * Reschedules the persistent timers read back from the journal, once the application is deployed
+	 */
+	private void restore(final List<ServletTimerJournal.JournaledTimer> timers, final int from, final long restoreStartTime, final int overdueFrom) {
+		SipContext sipContext = sipService.getSipApplicationDispatcher().findSipApplication(applicationName);
+		if(sipContext == null) {
+			// the timer service is started before the application is added to the dispatcher
+			scheduledExecutor.schedule(new Runnable() {
+				public void run() {
+					restore(timers, from, System.currentTimeMillis(), overdueFrom);
+				}
+			}, 1, TimeUnit.SECONDS);
+			return;
+		}
+		TimerListener listener = sipContext.getListeners().getTimerListener();
+		if(listener == null) {
+			logger.warn("No Timer listeners have been configured for the application " + applicationName + 
+					", the " + (timers.size() - from) + " persistent servlet timers left to restore are discarded");
+			for (int i = from; i < timers.size(); i++) {
+				discard(timers.get(i).getId());
+			}
+			return;
+		}
+		final int to = Math.min(timers.size(), from + PERSISTENT_TIMERS_RESTORE_BATCH_SIZE);
+		long now = System.currentTimeMillis();
+		int overdue = overdueFrom;
+		for (int i = from; i < to; i++) {
+			ServletTimerJournal.JournaledTimer timer = timers.get(i);
+			try {
+				long delay = getRestoreDelay(timer, now, restoreStartTime, overdue);
+				if(!timer.isRepeating() && timer.getFirstExecutionTime() < now) {
+					overdue++;
+				}
+				restore(sipContext, listener, timer, delay, now);
+			} catch (Exception e) {
+				logger.error("Couldn't restore the persistent servlet timer " + timer.getId() + " of the application " + applicationName, e);
+				discard(timer.getId());
+			}
+		}
+		if(to < timers.size()) {
+			final int overdueTo = overdue;
+			// let the other tasks of the executor run between batches
+			scheduledExecutor.execute(new Runnable() {
+				public void run() {
+					restore(timers, to, restoreStartTime, overdueTo);
+				}
+			});
+		} else if(logger.isInfoEnabled()) {
+			logger.info(timers.size() + " persistent servlet timers restored for the application " + applicationName);
+		}
+	}
+	
+	/**
+	 * @param restoreStartTime time at which the overdue timers start firing
+	 * @param overdueIndex number of one shot timers restored so far that expired while the server was down
+	 * @return the delay after which a timer read back from the journal has to fire
+	 */
+	static long getRestoreDelay(ServletTimerJournal.JournaledTimer timer, long now, long restoreStartTime, int overdueIndex) {
+		long delay = timer.getFirstExecutionTime() - now;
+		if(delay < 0) {
+			if(timer.isRepeating()) {
+				// resume at the next period slot
+				delay = timer.getPeriod() - (-delay % timer.getPeriod());
+			} else {
+				// spread the timers which expired while the server was down
+				delay = Math.max(0, restoreStartTime + overdueIndex * 1000L / PERSISTENT_TIMERS_RESTORE_RATE - now);
+			}
+		}
+		return delay;
+	}
+	
+	private void restore(SipContext sipContext, TimerListener listener, ServletTimerJournal.JournaledTimer timer, long delay, long now) 
+			throws IOException, ClassNotFoundException {
+		MobicentsSipApplicationSession sipApplicationSession = sipContext.getSipManager().getSipApplicationSession(timer.getSipApplicationSessionKey(), true);
+		long expirationTime = sipApplicationSession.getExpirationTimeInternal();
+		if(expirationTime > 0 && expirationTime < now + delay) {
+			sipApplicationSession.setExpires((int) (delay / 60000) + 1);
+		}
+		Serializable info = null;
+		if(timer.getInfo() != null) {
+			ObjectInputStream in = new ContextObjectInputStream(new ByteArrayInputStream(timer.getInfo()), sipContext.getSipContextClassLoader());
+			try {
+				info = (Serializable) in.readObject();
+			} finally {
+				in.close();
+			}
+		}
+		ServletTimerImpl servletTimer = null;
+		if(timer.isRepeating()) {
+			servletTimer = new ServletTimerImpl(info, delay, timer.isFixedDelay(), timer.getPeriod(), listener, sipApplicationSession);
+		} else {
+			servletTimer = new ServletTimerImpl(info, delay, listener, sipApplicationSession);
+		}
+		// the timer keeps its id and its record in the journal
+		servletTimer.id = timer.getId();
+		servletTimer.setJournal(journal);
+		ScheduledFuture<?> future = null;
+		if(!timer.isRepeating()) {
+			future = scheduledExecutor.schedule(servletTimer, delay, TimeUnit.MILLISECONDS);
+		} else if(timer.isFixedDelay()) {
+			future = scheduledExecutor.scheduleWithFixedDelay(servletTimer, delay, timer.getPeriod(), TimeUnit.MILLISECONDS);
+		} else {
+			future = scheduledExecutor.scheduleAtFixedRate(servletTimer, delay, timer.getPeriod(), TimeUnit.MILLISECONDS);
+		}
+		servletTimer.setFuture(future);
+		sipApplicationSession.addServletTimer(servletTimer);
+		if(logger.isDebugEnabled()) {
+			logger.debug("Restored persistent Timer " + servletTimer.getId() + " to expire in " + delay + " ms");
+		}
+	}
+	
+	private void discard(String timerId) {
+		try {
+			journal.timerCanceled(timerId);
+		} catch (IOException e) {
+			logger.error("Couldn't journal the cancellation of the persistent servlet timer " + timerId, e);
+		}
+	}
+	
+	/**
+	 * Resolves the classes of the info of the persistent timers with the class loader of the application
+	 */
+	private static final class ContextObjectInputStream extends ObjectInputStream {
+		private final ClassLoader classLoader;
+		
+		ContextObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+			super(in);
+			this.classLoader = classLoader;
+		}
 		
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false, classLoader);
+			} catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
 	}
 	
 	public void stop() {
 		scheduledExecutor.shutdownNow();
+		try {
+			journal.close();
+		} catch (IOException e) {
+			logger.error("Couldn't close the persistent servlet timer journal " + journal, e);
+		}
 		if(logger.isInfoEnabled()) {
 			logger.info("Stopped timer service "+ this);
 		}
@@ -197,6 +383,27 @@ public class TimerServiceImpl implements SipServletTimerService {
 
 	public void start() {
 		scheduledExecutor.prestartAllCoreThreads();		
+		try {
+			final List<ServletTimerJournal.JournaledTimer> timers = journal.open();
+			if(!timers.isEmpty()) {
+				scheduledExecutor.execute(new Runnable() {
+					public void run() {
+						restore(timers, 0, System.currentTimeMillis(), 0);
+					}
+				});
+			}
+		} catch (IOException e) {
+			logger.error("Couldn't read the persistent servlet timer journal " + journal + ", the persistent timers are not restored", e);
+		}
+		scheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					journal.flush();
+				} catch (Exception e) {
+					logger.error("failed to flush the persistent servlet timer journal " + journal, e);
+				}
+			}
+		}, PERSISTENT_TIMERS_FLUSH_PERIOD, PERSISTENT_TIMERS_FLUSH_PERIOD, TimeUnit.MILLISECONDS);
 	}
 
 	public boolean isStarted() {		
@@ -0,0 +1,240 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.timers;
+
+import java.io.Serializable;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.sip.ServletTimer;
+import javax.servlet.sip.SipApplicationSession;
+import javax.servlet.sip.TimerListener;
+
+import org.apache.log4j.Logger;
+import org.mobicents.servlet.sip.core.SipApplicationDispatcher;
+import org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSession;
+
+/**
+ * <p>
+ * Timer service backed by the {@link HierarchicalTimingWheel} shared by all the applications of the container. 
+ * It can be used as sip application session timer service, proxy timer service and servlet timer service, 
+ * instead of having every application start its own set of timer threads.
+ * </p>
+ * 
+ * <p>
+ * Timer tasks are not run on the wheel thread but handed over to the sip application dispatcher executor, 
+ * keyed by their sip application session so that they run on the same shard (or lane) as the messages of the session.
+ * </p>
+ * 
+ * <p>
+ * It is selected by setting the sasTimerServiceImplementationType and/or proxyTimerServiceImplementationType 
+ * attributes of the sip service to "Wheel".
+ * </p>
+ */
+public class TimingWheelTimerService implements SipApplicationSessionTimerService, ProxyTimerService, SipServletTimerService {
+	private static final long serialVersionUID = 1L;
+	private static final Logger logger = Logger.getLogger(TimingWheelTimerService.class);
+	
+	public static final String IMPLEMENTATION_TYPE = "Wheel";
+	
+	private final String applicationName;
+	private transient SipApplicationDispatcher sipApplicationDispatcher;
+	private transient volatile HierarchicalTimingWheel timingWheel;
+	private transient AtomicBoolean started = new AtomicBoolean(false);
+	private transient ConcurrentMap<TimerTask, ScheduledFuture<?>> proxyTimeouts = new ConcurrentHashMap<TimerTask, ScheduledFuture<?>>();
+	private transient Executor executor = new Executor() {
+		public void execute(Runnable task) {
+			if(!started.get()) {
+				if(logger.isDebugEnabled()) {
+					logger.debug("timer service for application " + applicationName + " is stopped, discarding timer task " + task);
+				}
+				return;
+			}
+			sipApplicationDispatcher.getAsynchronousExecutor().execute(task);
+		}
+	};
+	
+	public TimingWheelTimerService(SipApplicationDispatcher sipApplicationDispatcher, String applicationName) {
+		this.sipApplicationDispatcher = sipApplicationDispatcher;
+		this.applicationName = applicationName;
+	}
+	
+	private HierarchicalTimingWheel getTimingWheel() {
+		final HierarchicalTimingWheel wheel = timingWheel;
+		if(wheel == null) {
+			throw new IllegalStateException("timer service for application " + applicationName + " is not started");
+		}
+		return wheel;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.timers.SipApplicationSessionTimerService#createSipApplicationSessionTimerTask(org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSession)
+	 */
+	public SipApplicationSessionTimerTask createSipApplicationSessionTimerTask(MobicentsSipApplicationSession sipApplicationSession) {
+		return new DefaultSasTimerTask(sipApplicationSession);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.timers.SipApplicationSessionTimerService#schedule(org.mobicents.servlet.sip.core.timers.SipApplicationSessionTimerTask, long, java.util.concurrent.TimeUnit)
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public SipApplicationSessionTimerTask schedule(SipApplicationSessionTimerTask expirationTimerTask, long delay, TimeUnit unit) {
+		final MobicentsSipApplicationSession sipApplicationSession = expirationTimerTask.getSipApplicationSession();
+		if(logger.isDebugEnabled()) {
+			logger.debug("Scheduling sip application session "+ sipApplicationSession.getKey() +" to expire in " + (unit.toMillis(delay) / (double) 1000 / (double) 60) + " minutes");
+		}
+		final ScheduledFuture future = getTimingWheel().schedule(expirationTimerTask, unit.toMillis(delay), executor, sipApplicationSession.getKey().getId());
+		((DefaultSasTimerTask)expirationTimerTask).setScheduledFuture(future);
+		return expirationTimerTask;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.timers.SipApplicationSessionTimerService#cancel(org.mobicents.servlet.sip.core.timers.SipApplicationSessionTimerTask)
+	 */
+	public boolean cancel(SipApplicationSessionTimerTask expirationTimerTask) {
+		final ScheduledFuture<MobicentsSipApplicationSession> future = ((DefaultSasTimerTask)expirationTimerTask).getScheduledFuture();
+		if(future == null) {
+			if(logger.isDebugEnabled()) {
+				logger.debug("expiration timer future is null, thus cannot be Cancelled");
+			}
+			return false;
+		}
+		final boolean cancelled = future.cancel(false);
+		if(logger.isDebugEnabled()) {
+			logger.debug("expiration timer on sip application session " + expirationTimerTask.getSipApplicationSession().getKey() + " Cancelled : " + cancelled);
+		}
+		return cancelled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.timers.ProxyTimerService#schedule(java.util.TimerTask, long)
+	 */
+	public void schedule(final TimerTask task, long delay) {
+		final ScheduledFuture<?> future = getTimingWheel().schedule(new Runnable() {
+			public void run() {
+				proxyTimeouts.remove(task);
+				task.run();
+			}
+		}, delay, executor, null);
+		proxyTimeouts.put(task, future);
+		if(future.isDone()) {
+			// fired before it could be registered
+			proxyTimeouts.remove(task, future);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.mobicents.servlet.sip.core.timers.ProxyTimerService#cancel(java.util.TimerTask)
+	 */
+	public void cancel(TimerTask task) {
+		task.cancel();
+		final ScheduledFuture<?> future = proxyTimeouts.remove(task);
+		if(future != null) {
+			future.cancel(false);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see javax.servlet.sip.TimerService#createTimer(javax.servlet.sip.SipApplicationSession, long, boolean, java.io.Serializable)
+	 */
+	public ServletTimer createTimer(SipApplicationSession appSession, long delay, boolean isPersistent, Serializable info) {
+		final MobicentsSipApplicationSession sipApplicationSession = checkSipApplicationSession(appSession);
+		final TimerListener listener = sipApplicationSession.getSipContext().getListeners().getTimerListener();
+		final ServletTimerImpl servletTimer = new ServletTimerImpl(info, delay, listener, sipApplicationSession);
+		if(logger.isDebugEnabled()) {
+			logger.debug("Scheduling Timer "+ servletTimer.getId() +" to expire in " + delay + " ms");
+		}
+		servletTimer.setFuture(getTimingWheel().schedule(servletTimer, delay, executor, sipApplicationSession.getKey().getId()));
+		sipApplicationSession.addServletTimer(servletTimer);
+		return servletTimer;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see javax.servlet.sip.TimerService#createTimer(javax.servlet.sip.SipApplicationSession, long, long, boolean, boolean, java.io.Serializable)
+	 */
+	public ServletTimer createTimer(SipApplicationSession appSession, long delay, long period, boolean fixedDelay, boolean isPersistent, Serializable info) {
+		if (period < 1) {
+			throw new IllegalArgumentException(
+					"Period should be greater than 0");
+		}
+		final MobicentsSipApplicationSession sipApplicationSession = checkSipApplicationSession(appSession);
+		final TimerListener listener = sipApplicationSession.getSipContext().getListeners().getTimerListener();
+		final ServletTimerImpl servletTimer = new ServletTimerImpl(info, delay, fixedDelay, period, listener, sipApplicationSession);
+		if(logger.isDebugEnabled()) {
+			logger.debug("Scheduling Timer "+ servletTimer.getId() +" to expire in " + delay + " ms" + 
+					(fixedDelay ? " with fixed delay of " : " at fixed rate of ") + period);
+		}
+		servletTimer.setFuture(getTimingWheel().schedule(servletTimer, delay, period, fixedDelay, executor, sipApplicationSession.getKey().getId()));
+		sipApplicationSession.addServletTimer(servletTimer);
+		return servletTimer;
+	}
+	
+	private MobicentsSipApplicationSession checkSipApplicationSession(SipApplicationSession appSession) {
+		final MobicentsSipApplicationSession sipApplicationSession = (MobicentsSipApplicationSession) appSession;
+		if (sipApplicationSession.isValid() == false) {
+			throw new IllegalStateException("Sip application session has been invalidated!!!");
+		}
+		if (!sipApplicationSession.hasTimerListener()) {
+			throw new IllegalStateException("No Timer listeners have been configured for this application ");
+		}
+		return sipApplicationSession;
+	}
+
+	public void start() {
+		if(started.compareAndSet(false, true)) {
+			timingWheel = HierarchicalTimingWheel.acquire();
+			if(logger.isInfoEnabled()) {
+				logger.info("Started timer service "+ this);
+			}
+		}
+	}
+
+	public void stop() {
+		if(started.compareAndSet(true, false)) {
+			timingWheel = null;
+			HierarchicalTimingWheel.release();
+			proxyTimeouts.clear();
+			if(logger.isInfoEnabled()) {
+				logger.info("Stopped timer service "+ this);
+			}
+		}
+	}
+
+	public boolean isStarted() {
+		return started.get();
+	}
+	
+	@Override
+	public String toString() {
+		return "TimingWheelTimerService[" + applicationName + "]";
+	}
+}
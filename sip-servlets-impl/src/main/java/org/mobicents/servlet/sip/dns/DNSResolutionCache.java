@@ -0,0 +1,246 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.dns;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Bounded cache of DNS resolutions, evicting the least recently used entries once full.
+ * 
+ * A resolution is served from the cache until its own time to live, given by the {@link Resolver} 
+ * and typically the TTL of the DNS records it was made from, expires. It is then still served, 
+ * while stale, for a short grace period during which it gets resolved again on a background thread 
+ * so that the signalling threads don't pay the lookup latency. Past the grace period, or on a miss, 
+ * the resolution is done by the calling thread.
+ * 
+ * @param <V> the type of the resolutions cached, expected to be immutable
+ */
+public class DNSResolutionCache<V> {
+	private static final Logger logger = Logger.getLogger(DNSResolutionCache.class);
+	
+	// shared by all the caches, the thread goes away when there is nothing to refresh
+	private static final ThreadPoolExecutor REFRESH_EXECUTOR;
+	static {
+		REFRESH_EXECUTOR = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(1024), new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "MSS-DNS-Refresher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		REFRESH_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * Performs the actual DNS resolution for a given key
+	 */
+	public interface Resolver<V> {
+		V resolve(String key);
+		
+		/**
+		 * @return time (in milliseconds) during which the resolution can be served from the cache, 
+		 * typically the TTL of the DNS records it was made from, 0 or less for it not to be cached
+		 */
+		long getTimeToLive(String key, V value);
+	}
+	
+	private final boolean enabled;
+	private final long staleTimeToLive;
+	private final Map<String, Entry<V>> entries;
+	
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong lookups = new AtomicLong();
+	private final AtomicLong lookupsTime = new AtomicLong();
+	
+	/**
+	 * @param staleTimeToLive time (in milliseconds) after expiration during which a resolution is still served while being refreshed
+	 * @param maxSize maximum number of resolutions kept, 0 or less to disable the cache
+	 */
+	public DNSResolutionCache(long staleTimeToLive, final int maxSize) {
+		this.enabled = maxSize > 0;
+		this.staleTimeToLive = Math.max(0, staleTimeToLive);
+		this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+	
+	/**
+	 * @return the resolution cached for the key, refreshed in the background if stale, 
+	 * or null if there is none in which case the caller is expected to go through {@link #get(String, Resolver)}
+	 */
+	public V getIfCached(final String key, final Resolver<V> resolver) {
+		if(!enabled) {
+			return null;
+		}
+		long now = currentTimeMillis();
+		final Entry<V> entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+		if(entry != null) {
+			if(now < entry.expirationTime) {
+				hits.incrementAndGet();
+				return entry.value;
+			}
+			if(now < entry.expirationTime + staleTimeToLive) {
+				hits.incrementAndGet();
+				refresh(key, entry, resolver);
+				return entry.value;
+			}
+		}
+		return null;
+	}
+	
+	public V get(final String key, final Resolver<V> resolver) {
+		if(!enabled) {
+			misses.incrementAndGet();
+			return resolve(key, resolver);
+		}
+		long now = currentTimeMillis();
+		final Entry<V> entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+		if(entry != null) {
+			if(now < entry.expirationTime) {
+				hits.incrementAndGet();
+				return entry.value;
+			}
+			if(now < entry.expirationTime + staleTimeToLive) {
+				hits.incrementAndGet();
+				refresh(key, entry, resolver);
+				return entry.value;
+			}
+		}
+		misses.incrementAndGet();
+		V value = resolve(key, resolver);
+		put(key, value, resolver);
+		return value;
+	}
+	
+	private void refresh(final String key, final Entry<V> entry, final Resolver<V> resolver) {
+		if(!entry.refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			REFRESH_EXECUTOR.execute(new Runnable() {
+				public void run() {
+					try {
+						put(key, resolve(key, resolver), resolver);
+					} catch (RuntimeException e) {
+						entry.refreshing.set(false);
+						if(logger.isDebugEnabled()) {
+							logger.debug("Couldn't refresh the DNS resolution of " + key + ", keeping the stale one", e);
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			entry.refreshing.set(false);
+		}
+	}
+	
+	private V resolve(String key, Resolver<V> resolver) {
+		long start = System.nanoTime();
+		try {
+			return resolver.resolve(key);
+		} finally {
+			lookups.incrementAndGet();
+			lookupsTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+	
+	private void put(String key, V value, Resolver<V> resolver) {
+		long timeToLive = resolver.getTimeToLive(key, value);
+		synchronized (entries) {
+			if(timeToLive > 0) {
+				entries.put(key, new Entry<V>(value, currentTimeMillis() + timeToLive));
+			} else {
+				entries.remove(key);
+			}
+		}
+	}
+	
+	// overridden by the tests to control the expirations
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+	
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+	
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	public long getHits() {
+		return hits.get();
+	}
+	
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/**
+	 * @return the number of DNS resolutions actually performed, be it on a miss or on a refresh
+	 */
+	public long getLookups() {
+		return lookups.get();
+	}
+	
+	/**
+	 * @return the cumulated time (in nanoseconds) spent in DNS resolutions
+	 */
+	public long getLookupsTime() {
+		return lookupsTime.get();
+	}
+	
+	private static final class Entry<V> {
+		final V value;
+		final long expirationTime;
+		final AtomicBoolean refreshing = new AtomicBoolean();
+		
+		Entry(V value, long expirationTime) {
+			this.value = value;
+			this.expirationTime = expirationTime;
+		}
+	}
+}
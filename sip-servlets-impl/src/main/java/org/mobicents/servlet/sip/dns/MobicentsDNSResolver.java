@@ -23,11 +23,21 @@
 package org.mobicents.servlet.sip.dns;
 
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.sip.SipURI;
 import javax.servlet.sip.URI;
 import javax.sip.SipFactory;
@@ -39,6 +49,19 @@ import org.mobicents.javax.servlet.sip.dns.DNSResolver;
 import org.mobicents.servlet.sip.address.AddressImpl.ModifiableRule;
 import org.mobicents.servlet.sip.address.SipURIImpl;
 import org.mobicents.servlet.sip.address.URIImpl;
+import org.xbill.DNS.Address;
+import org.xbill.DNS.Cache;
+import org.xbill.DNS.Credibility;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRset;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.SetResponse;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
 
 /**
  * @author jean.deruelle@gmail.com
@@ -48,8 +71,108 @@ public class MobicentsDNSResolver implements DNSResolver {
         private static final Logger logger = Logger.getLogger(MobicentsDNSResolver.class
             .getName());
         
+	/**
+	 * Time (in milliseconds) during which a DNS resolution is served from the cache when the TTL of the DNS records 
+	 * it was made from is not known, as for IP addresses or names mapped locally
+	 */
+	public static final long DNS_CACHE_TTL = Long.getLong("org.mobicents.servlet.sip.dns.cacheTtl", 60000L);
+	/**
+	 * Upper bound (in milliseconds) of the TTL of the DNS records a resolution is cached for
+	 */
+	public static final long DNS_CACHE_MAX_TTL = Long.getLong("org.mobicents.servlet.sip.dns.cacheMaxTtl", 3600000L);
+	/**
+	 * Time (in milliseconds) during which a DNS resolution that didn't find anything is served from the cache
+	 */
+	public static final long DNS_CACHE_NEGATIVE_TTL = Long.getLong("org.mobicents.servlet.sip.dns.cacheNegativeTtl", 5000L);
+	/**
+	 * Time (in milliseconds) after its expiration during which a DNS resolution is still served while refreshed in the background
+	 */
+	public static final long DNS_CACHE_STALE_TTL = Long.getLong("org.mobicents.servlet.sip.dns.cacheStaleTtl", 5000L);
+	/**
+	 * Maximum number of DNS resolutions cached, for each type of resolution, 0 to disable the cache
+	 */
+	public static final int DNS_CACHE_MAX_SIZE = Integer.getInteger("org.mobicents.servlet.sip.dns.cacheMaxSize", 1000);
+	/**
+	 * Number of threads doing the DNS lookups of the requests sent asynchronously
+	 */
+	public static final int DNS_RESOLVER_THREADS = Integer.getInteger("org.mobicents.servlet.sip.dns.resolverThreads", 4);
+	
+	// shared by all the resolvers, the threads go away when there is nothing to resolve
+	private static final ThreadPoolExecutor RESOLVER_EXECUTOR;
+	static {
+		RESOLVER_EXECUTOR = new ThreadPoolExecutor(DNS_RESOLVER_THREADS, DNS_RESOLVER_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(4096), new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "MSS-DNS-Resolver");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		RESOLVER_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * Notified of the outcome of {@link MobicentsDNSResolver#locateHops(javax.sip.address.URI, HopsListener)}
+	 */
+	public interface HopsListener {
+		/**
+		 * @param hops the hops to try, or null if none could be found
+		 */
+		void onHopsLocated(Queue<Hop> hops);
+		
+		void onHopsLocationFailed(Exception e);
+	}
+        
 	private DNSServerLocator dnsServerLocator;
         private AddressFactory createAddressFactory;
+	private final DNSResolutionCache<List<Hop>> hopsCache = new DNSResolutionCache<List<Hop>>(DNS_CACHE_STALE_TTL, DNS_CACHE_MAX_SIZE);
+	private final DNSResolutionCache<Set<String>> hostsCache = new DNSResolutionCache<Set<String>>(DNS_CACHE_STALE_TTL, DNS_CACHE_MAX_SIZE);
+	
+	private final DNSResolutionCache.Resolver<List<Hop>> hopsResolver = new DNSResolutionCache.Resolver<List<Hop>>() {
+		public List<Hop> resolve(String uri) {
+			try {
+				// resolving from the key rather than from the uri passed by the caller 
+				// since the caller may modify it while it gets refreshed in the background
+				return toList(dnsServerLocator.locateHops(createAddressFactory.createURI(uri)));
+			} catch (ParseException e) {
+				throw new IllegalArgumentException("Couldn't parse the uri " + uri + " to resolve", e);
+			}
+		}
+		
+		public long getTimeToLive(String uri, List<Hop> hops) {
+			if(hops.isEmpty()) {
+				return DNS_CACHE_NEGATIVE_TTL;
+			}
+			String host = getHost(uri);
+			List<String> names = new ArrayList<String>();
+			names.add(host);
+			// the SRV records looked up when there is no NAPTR record for the host
+			names.add("_sips._tcp." + host);
+			names.add("_sip._tcp." + host);
+			names.add("_sip._udp." + host);
+			names.add("_sip._sctp." + host);
+			return getRecordsTimeToLive(names);
+		}
+	};
+	
+	private final DNSResolutionCache.Resolver<Set<String>> hostsResolver = new DNSResolutionCache.Resolver<Set<String>>() {
+		public Set<String> resolve(String host) {
+			Set<String> ipAddresses = new HashSet<String>();
+			Queue<Hop> hops = dnsServerLocator.resolveHostByAandAAAALookup(host, -1, null);
+			if(hops != null) {
+				for (Hop hop : hops) {
+					ipAddresses.add(hop.getHost());
+				}
+			}
+			return Collections.unmodifiableSet(ipAddresses);
+		}
+		
+		public long getTimeToLive(String host, Set<String> ipAddresses) {
+			if(ipAddresses.isEmpty()) {
+				return DNS_CACHE_NEGATIVE_TTL;
+			}
+			return getRecordsTimeToLive(Collections.singletonList(host));
+		}
+	};
 
 	public MobicentsDNSResolver(DNSServerLocator dnsServerLocator) {
 		this.dnsServerLocator = dnsServerLocator;
@@ -81,14 +204,197 @@ public class MobicentsDNSResolver implements DNSResolver {
 
 	@Override
 	public Set<String> resolveHost(String host) {
-		Set<String> ipAddresses = new CopyOnWriteArraySet<String>();
-		Queue<Hop> hops = dnsServerLocator.resolveHostByAandAAAALookup(host, -1, null);
-		if(hops != null) {
-			for (Hop hop : hops) {
-				ipAddresses.add(hop.getHost());
+		return new CopyOnWriteArraySet<String>(hostsCache.get(host, hostsResolver));
+	}
+	
+	/**
+	 * Locates the hops to try in turn for the uri in parameter as per RFC 3263, 
+	 * going through the resolution cache
+	 * 
+	 * @param uri the uri for which the DNS lookups have to be done
+	 * @return the hops to try, or null if none could be found
+	 */
+	public Queue<Hop> locateHops(javax.sip.address.URI uri) {
+		if(createAddressFactory == null) {
+			return dnsServerLocator.locateHops(uri);
+		}
+		List<Hop> hops = hopsCache.get(getHopsCacheKey(uri), hopsResolver);
+		if(hops.isEmpty()) {
+			return null;
+		}
+		// the callers consume the hops while failing over
+		return new LinkedList<Hop>(hops);
+	}
+	
+	/**
+	 * Locates the hops to try in turn for the uri in parameter as per RFC 3263 without blocking the calling thread. 
+	 * The listener is notified from the calling thread if the resolution is cached, from one of the resolver threads otherwise.
+	 * 
+	 * @param uri the uri for which the DNS lookups have to be done, it should not be modified by the caller afterwards
+	 * @param listener notified of the hops found
+	 */
+	public void locateHops(final javax.sip.address.URI uri, final HopsListener listener) {
+		if(createAddressFactory != null) {
+			List<Hop> hops = hopsCache.getIfCached(getHopsCacheKey(uri), hopsResolver);
+			if(hops != null) {
+				listener.onHopsLocated(hops.isEmpty() ? null : new LinkedList<Hop>(hops));
+				return;
+			}
+		}
+		try {
+			RESOLVER_EXECUTOR.execute(new Runnable() {
+				public void run() {
+					Queue<Hop> hops = null;
+					try {
+						hops = locateHops(uri);
+					} catch (RuntimeException e) {
+						listener.onHopsLocationFailed(e);
+						return;
+					}
+					listener.onHopsLocated(hops);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			listener.onHopsLocationFailed(e);
+		}
+	}
+	
+	/**
+	 * The hops only depend on the scheme, host, port, transport and maddr of the uri, 
+	 * as well as on the user part of the telephone numbers looked up through ENUM, 
+	 * so the other parts are left out of the key for requests to the same destination to share their resolution. 
+	 * The key is itself a uri since it is what gets resolved.
+	 */
+	static String getHopsCacheKey(javax.sip.address.URI uri) {
+		if(!(uri instanceof javax.sip.address.SipURI)) {
+			return uri.toString();
+		}
+		javax.sip.address.SipURI sipURI = (javax.sip.address.SipURI) uri;
+		boolean telephoneNumber = "phone".equalsIgnoreCase(sipURI.getUserParam());
+		StringBuilder key = new StringBuilder(sipURI.getScheme().toLowerCase()).append(':');
+		if(telephoneNumber && sipURI.getUser() != null) {
+			key.append(sipURI.getUser()).append('@');
+		}
+		key.append(sipURI.getHost().toLowerCase());
+		if(sipURI.getPort() > 0) {
+			key.append(':').append(sipURI.getPort());
+		}
+		if(sipURI.getTransportParam() != null) {
+			key.append(";transport=").append(sipURI.getTransportParam().toLowerCase());
+		}
+		if(sipURI.getMAddrParam() != null) {
+			key.append(";maddr=").append(sipURI.getMAddrParam().toLowerCase());
+		}
+		if(telephoneNumber) {
+			key.append(";user=phone");
+		}
+		return key.toString();
+	}
+	
+	// host of a key built by getHopsCacheKey, the maddr taking precedence as it does for the resolution
+	private static String getHost(String key) {
+		int maddrIndex = key.indexOf(";maddr=");
+		if(maddrIndex != -1) {
+			int end = key.indexOf(';', maddrIndex + 1);
+			return key.substring(maddrIndex + ";maddr=".length(), end == -1 ? key.length() : end);
+		}
+		int start = key.indexOf('@') + 1;
+		if(start == 0) {
+			start = key.indexOf(':') + 1;
+		}
+		int end = key.indexOf(';', start);
+		String hostPort = key.substring(start, end == -1 ? key.length() : end);
+		if(hostPort.startsWith("[")) {
+			return hostPort.substring(0, hostPort.indexOf(']') + 1);
+		}
+		int portIndex = hostPort.indexOf(':');
+		return portIndex == -1 ? hostPort : hostPort.substring(0, portIndex);
+	}
+	
+	/**
+	 * @return the time (in milliseconds) a resolution made from the DNS records of the names in parameter can be cached for, 
+	 * that is the lowest TTL of those records and of the records they point to, as found in the dnsjava cache the lookups went through
+	 */
+	private static long getRecordsTimeToLive(List<String> names) {
+		if(names.isEmpty() || names.get(0).startsWith("[") || Address.isDottedQuad(names.get(0))) {
+			return DNS_CACHE_TTL;
+		}
+		long ttl = Long.MAX_VALUE;
+		Cache cache = Lookup.getDefaultCache(DClass.IN);
+		for (String name : names) {
+			try {
+				ttl = Math.min(ttl, getRecordsTimeToLive(cache, Name.fromString(name, Name.root), 0));
+			} catch (TextParseException e) {
+				if(logger.isDebugEnabled()) {
+					logger.debug("Couldn't get the TTL of the DNS records of " + name, e);
+				}
+			}
+		}
+		if(ttl == Long.MAX_VALUE) {
+			// records not found in the cache, the names are likely mapped locally
+			return DNS_CACHE_TTL;
+		}
+		return Math.min(ttl * 1000, DNS_CACHE_MAX_TTL);
+	}
+	
+	private static final int[] RECORD_TYPES = new int[] {Type.NAPTR, Type.SRV, Type.A, Type.AAAA};
+	
+	private static long getRecordsTimeToLive(Cache cache, Name name, int depth) {
+		long ttl = Long.MAX_VALUE;
+		for (int type : RECORD_TYPES) {
+			SetResponse response = cache.lookupRecords(name, type, Credibility.NORMAL);
+			if(response == null || !response.isSuccessful()) {
+				continue;
+			}
+			for (RRset rrset : response.answers()) {
+				ttl = Math.min(ttl, rrset.getTTL());
+				// NAPTR -> SRV -> A/AAAA
+				if(depth < 2) {
+					Iterator<?> records = rrset.rrs();
+					while (records.hasNext()) {
+						Record record = (Record) records.next();
+						if(record instanceof NAPTRRecord) {
+							ttl = Math.min(ttl, getRecordsTimeToLive(cache, ((NAPTRRecord) record).getReplacement(), depth + 1));
+						} else if(record instanceof SRVRecord) {
+							ttl = Math.min(ttl, getRecordsTimeToLive(cache, ((SRVRecord) record).getTarget(), depth + 1));
+						}
+					}
+				}
 			}
 		}
-		return ipAddresses;
+		return ttl;
+	}
+	
+	private static List<Hop> toList(Queue<Hop> hops) {
+		if(hops == null || hops.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(new ArrayList<Hop>(hops));
+	}
+	
+	/**
+	 * @return the number of resolutions served from the resolution cache
+	 */
+	public long getDnsCacheHits() {
+		return hopsCache.getHits() + hostsCache.getHits();
+	}
+	
+	/**
+	 * @return the number of resolutions that could not be served from the resolution cache
+	 */
+	public long getDnsCacheMisses() {
+		return hopsCache.getMisses() + hostsCache.getMisses();
+	}
+	
+	/**
+	 * @return the average time (in milliseconds) spent performing the DNS lookups not served from the resolution cache
+	 */
+	public double getDnsAverageLookupTime() {
+		long lookups = hopsCache.getLookups() + hostsCache.getLookups();
+		if(lookups == 0) {
+			return 0;
+		}
+		return (hopsCache.getLookupsTime() + hostsCache.getLookupsTime()) / 1000000d / lookups;
 	}
 
         /* (non-Javadoc)
@@ -99,7 +405,7 @@ public class MobicentsDNSResolver implements DNSResolver {
             List<SipURI> uris = new CopyOnWriteArrayList();
             if (uri instanceof SipURIImpl && createAddressFactory != null) {
                 SipURIImpl uriImpl = (SipURIImpl) uri;
-                Queue<Hop> hops = dnsServerLocator.locateHops(uriImpl.getSipURI());
+                Queue<Hop> hops = locateHops(uriImpl.getSipURI());
                 if(hops != null) {
                     for (Hop hop : hops) {
                         javax.sip.address.SipURI createSipURI;
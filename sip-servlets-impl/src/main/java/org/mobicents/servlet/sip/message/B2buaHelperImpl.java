@@ -24,7 +24,6 @@ package org.mobicents.servlet.sip.message;
 
 import gov.nist.javax.sip.header.HeaderExt;
 import gov.nist.javax.sip.header.ims.PathHeader;
-import gov.nist.javax.sip.message.MessageExt;
 
 import java.io.Serializable;
 import java.text.ParseException;
@@ -125,7 +124,7 @@ public class B2buaHelperImpl implements MobicentsB2BUAHelper, Serializable {
 	//Map to handle linked sessions
 	private Map<MobicentsSipSessionKey, MobicentsSipSessionKey> sessionMap = null;	
 	//Map to handle linked derived sessions
-	private Map<String, String> derivedSessionMap = null;
+	private Map<String, MobicentsSipSessionKey> derivedSessionMap = null;
 
 	//Map to handle responses to original request and cancel on original request
 	// Issue 1550 http://code.google.com/p/mobicents/issues/detail?id=1550
@@ -139,7 +138,7 @@ public class B2buaHelperImpl implements MobicentsB2BUAHelper, Serializable {
 
 	public B2buaHelperImpl() {
 		sessionMap = new ConcurrentHashMap<MobicentsSipSessionKey, MobicentsSipSessionKey>();
-		derivedSessionMap = new ConcurrentHashMap<String, String>();
+		derivedSessionMap = new ConcurrentHashMap<String, MobicentsSipSessionKey>();
 		originalRequestMap = new ConcurrentHashMap<SipServletRequestImpl, SipServletRequestImpl>();
 	}
 	
@@ -160,21 +159,16 @@ public class B2buaHelperImpl implements MobicentsB2BUAHelper, Serializable {
 		
 		try {
 			final SipServletRequestImpl origRequestImpl = (SipServletRequestImpl) origRequest;
-			Request newRequest = (Request) origRequestImpl.message.clone();
-			((MessageExt)newRequest).setApplicationData(null);
-			//content should be copied too, so commented out
-//		 	newRequest.removeContent();				
-			//removing the via header from original request
-			newRequest.removeHeader(ViaHeader.NAME);	
+			// content should be copied too, it is shared with the original request.
+			// the via header from original request and the record route headers are not copied, this is a new call leg.
+			// The Call-ID is not copied either, a new one is created below
+			Request newRequest = JainSipUtils.cloneRequest((Request) origRequestImpl.getMessage(), ViaHeader.NAME, RecordRouteHeader.NAME, CallIdHeader.NAME);
 					
 			// Remove the route header ( will point to us ).
 			// commented as per issue 649
 //			newRequest.removeHeader(RouteHeader.NAME);
 //			String tag = Integer.toString((int) (Math.random()*1000));
 //			((FromHeader) newRequest.getHeader(FromHeader.NAME)).setParameter("tag", tag);
-			
-			// Remove the record route headers. This is a new call leg.
-			newRequest.removeHeader(RecordRouteHeader.NAME);			
 	
 			// Issue 1490 : http://code.google.com/p/mobicents/issues/detail?id=1490 
 			// B2buaHelper.createRequest does not decrement Max-forwards
@@ -214,7 +208,7 @@ public class B2buaHelperImpl implements MobicentsB2BUAHelper, Serializable {
 			
 			// cater to http://code.google.com/p/sipservlets/issues/detail?id=31 to be able to set the rport in applications
 			final SipApplicationDispatcher sipApplicationDispatcher = sipFactoryImpl.getSipApplicationDispatcher();
-			final String branch = JainSipUtils.createBranch(appSession.getKey().getId(),  sipApplicationDispatcher.getHashFromApplicationName(appSession.getKey().getApplicationName()));
+			final String branch = JainSipUtils.createBranch(sipApplicationDispatcher, appSession.getKey().getId(),  sipApplicationDispatcher.getHashFromApplicationName(appSession.getKey().getApplicationName()));
 			ViaHeader viaHeader = JainSipUtils.createViaHeader(
     				sipFactoryImpl.getSipNetworkInterfaceManager(), newRequest, branch, session.getOutboundInterface());
 			newRequest.addHeader(viaHeader);
@@ -225,6 +219,8 @@ public class B2buaHelperImpl implements MobicentsB2BUAHelper, Serializable {
 					null, 
 					null, 
 					JainSipUtils.DIALOG_CREATING_METHODS.contains(newRequest.getMethod()));			
+			origRequestImpl.setContentShared();
+			newSipServletRequest.setContentShared();
 			//JSR 289 Section 15.1.6	
 			newSipServletRequest.setRoutingDirective(SipApplicationRoutingDirective.CONTINUE, origRequest);			
 			
@@ -656,8 +652,8 @@ public class B2buaHelperImpl implements MobicentsB2BUAHelper, Serializable {
 				logger.debug(mobicentsSipSession + " has a parent session, it means we need to handle a forked case");
 			}
 			// Issue 2354 handling of forking
-			String linkedDerivedSessionId = derivedSessionMap.get(mobicentsSipSession.getId());
-			if(linkedDerivedSessionId == null) {	
+			MobicentsSipSessionKey linkedDerivedSessionKey = derivedSessionMap.get(mobicentsSipSession.getId());
+			if(linkedDerivedSessionKey == null) {	
 				SipServletRequestImpl originalSipServletRequestImpl = (SipServletRequestImpl) linkedSession.getSessionCreatingTransactionRequest();
 				
 				String newToTag = ApplicationRoutingHeaderComposer.getHash(sipFactoryImpl.getSipApplicationDispatcher(),sipSessionKey.getApplicationName(), sipSessionKey.getApplicationSessionId());
@@ -673,21 +669,17 @@ public class B2buaHelperImpl implements MobicentsB2BUAHelper, Serializable {
 				linkedSession.setSessionCreatingDialog(null);
 				linkedSession.setSessionCreatingTransactionRequest(clonedOriginalRequest);
 				
-				derivedSessionMap.put(mobicentsSipSession.getId(), linkedSession.getId());
-				derivedSessionMap.put(linkedSession.getId(), mobicentsSipSession.getId());
+				derivedSessionMap.put(mobicentsSipSession.getId(), sipSessionKey);
+				derivedSessionMap.put(linkedSession.getId(), mobicentsSipSession.getKey());
 			} else {
 				if(logger.isDebugEnabled()) {
-					logger.debug("derived session " + mobicentsSipSession + " has already a linked forked session " + linkedDerivedSessionId + " reusing it");
+					logger.debug("derived session " + mobicentsSipSession + " has already a linked forked session " + linkedDerivedSessionKey + " reusing it");
 				}
-				try {
-					sipSessionKey = SessionManagerUtil.parseSipSessionKey(linkedDerivedSessionId);
-					if(logger.isDebugEnabled()) {
-						logger.debug(" trying to find derived linked session with key " + sipSessionKey + " for session " + mobicentsSipSession);
-					}
-					linkedSession = sipManager.getSipSession(sipSessionKey, false, null, mobicentsSipSession.getSipApplicationSession());
-				} catch (ParseException e) {
-					logger.error("Couldn't parse linkedDerivedSessionId " + linkedDerivedSessionId + " linked to derived session " + mobicentsSipSession, e);
-				}				
+				sipSessionKey = linkedDerivedSessionKey;
+				if(logger.isDebugEnabled()) {
+					logger.debug(" trying to find derived linked session with key " + sipSessionKey + " for session " + mobicentsSipSession);
+				}
+				linkedSession = sipManager.getSipSession(sipSessionKey, false, null, mobicentsSipSession.getSipApplicationSession());
 			}
 		}
 		
@@ -873,13 +865,13 @@ public class B2buaHelperImpl implements MobicentsB2BUAHelper, Serializable {
 		} else if(logger.isDebugEnabled()) {
 			logger.debug("no sipsession for " + sipSessionKey + " to unlink");			
 		}
-		final String linkedDerivedSessionId = this.derivedSessionMap.get(sipSessionKey.toString());
-		if (linkedDerivedSessionId != null) {
+		final MobicentsSipSessionKey linkedDerivedSessionKey = this.derivedSessionMap.get(sipSessionKey.toString());
+		if (linkedDerivedSessionKey != null) {
 			SipSession linkedSipSession = getLinkedSession(session, checkSession);
 			this.derivedSessionMap.remove(sipSessionKey.toString());
-			this.derivedSessionMap.remove(linkedDerivedSessionId);
+			this.derivedSessionMap.remove(linkedDerivedSessionKey.toString());
 			if(logger.isDebugEnabled()) {
-				logger.debug("derived sipsession " + sipSessionKey.toString() + " unlinked from derived sip session " + linkedDerivedSessionId);
+				logger.debug("derived sipsession " + sipSessionKey.toString() + " unlinked from derived sip session " + linkedDerivedSessionKey);
 			}
 			if(linkedSipSession != null) {
 				// https://github.com/Mobicents/sip-servlets/issues/56
@@ -30,6 +30,7 @@ import java.text.ParseException;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javax.servlet.http.HttpSession;
 import javax.servlet.sip.ServletTimer;
@@ -48,6 +49,7 @@ import org.mobicents.servlet.sip.core.session.SipApplicationSessionEventType;
 import org.mobicents.servlet.sip.core.session.SipApplicationSessionKey;
 import org.mobicents.servlet.sip.core.timers.SipApplicationSessionTimerTask;
 import org.mobicents.servlet.sip.startup.StaticServiceHolder;
+import org.mobicents.servlet.sip.utils.ExternalizationUtils;
 
 /**
  * The purpose of this class is to be a facade to the real sip application session as well as a 
@@ -249,13 +251,17 @@ public class MobicentsSipApplicationSessionFacade implements
 
 	public void readExternal(ObjectInput arg0) throws IOException,
 			ClassNotFoundException {
-		String sipApplicationSessionId = arg0.readUTF();
 		SipApplicationSessionKey key = null;
-		try {
-			key = SessionManagerUtil.parseSipApplicationSessionKey(sipApplicationSessionId);
-		} catch (ParseException e) {
-			logger.error("Couldn't parse the following sip application session key " + sipApplicationSessionId, e);
-			throw new IllegalArgumentException("Couldn't parse the following sip application session key " + sipApplicationSessionId, e);
+		if(arg0.readBoolean()) {
+			key = SipApplicationSessionKey.readFrom(arg0);
+		} else {
+			String sipApplicationSessionId = ExternalizationUtils.readString(arg0);
+			try {
+				key = SessionManagerUtil.parseSipApplicationSessionKey(sipApplicationSessionId);
+			} catch (ParseException e) {
+				logger.error("Couldn't parse the following sip application session key " + sipApplicationSessionId, e);
+				throw new IllegalArgumentException("Couldn't parse the following sip application session key " + sipApplicationSessionId, e);
+			}
 		}
 		SipContext sipContext = StaticServiceHolder.sipStandardService
 				.getSipApplicationDispatcher().findSipApplication(key.getApplicationName());
@@ -265,7 +271,15 @@ public class MobicentsSipApplicationSessionFacade implements
 	}
 
 	public void writeExternal(ObjectOutput arg0) throws IOException {
-		arg0.writeUTF(sipApplicationSession.getId());
+		MobicentsSipApplicationSessionKey key = sipApplicationSession.getKey();
+		if(key instanceof SipApplicationSessionKey) {
+			// written field by field to avoid reparsing the key on the other end
+			arg0.writeBoolean(true);
+			((SipApplicationSessionKey) key).writeTo(arg0);
+		} else {
+			arg0.writeBoolean(false);
+			ExternalizationUtils.writeString(arg0, sipApplicationSession.getId());
+		}
 	}
 
 	public String getJvmRoute() {
@@ -334,9 +348,21 @@ public class MobicentsSipApplicationSessionFacade implements
 		sipApplicationSession.acquire();
 	}
 
+	public boolean tryAcquire() {
+		return sipApplicationSession.tryAcquire();
+	}
+
+	public void runOnRelease(Runnable callback) {
+		sipApplicationSession.runOnRelease(callback);
+	}
+
 	public void release() {
 		sipApplicationSession.release();
 	}
+
+	public Executor getExecutionLane() {
+		return sipApplicationSession.getExecutionLane();
+	}
 	
 	public boolean isOrphan() {
 		return sipApplicationSession.isOrphan();
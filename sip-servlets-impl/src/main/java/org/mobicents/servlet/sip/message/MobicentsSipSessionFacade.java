@@ -518,6 +518,14 @@ public class MobicentsSipSessionFacade implements MobicentsSipSession, Serializa
 		sipSession.acquire();
 	}
 
+	public boolean tryAcquire() {
+		return sipSession.tryAcquire();
+	}
+
+	public void runOnRelease(Runnable callback) {
+		sipSession.runOnRelease(callback);
+	}
+
 	public void release() {
 		sipSession.release();
 	}
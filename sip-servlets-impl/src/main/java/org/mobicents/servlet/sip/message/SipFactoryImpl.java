@@ -445,14 +445,14 @@ public class SipFactoryImpl implements MobicentsSipFactory,  Externalizable {
 			throw new IllegalStateException("original request's app session does not exists");
 		}			
 		final MobicentsSipSession originalSession = origRequestImpl.getSipSession();
-		final Request newRequest = (Request) origRequestImpl.message.clone();
+		final Request newRequest = (Request) origRequestImpl.getMessage().clone();
 		((MessageExt)newRequest).setApplicationData(null);
 		//removing the via header from original request
 		newRequest.removeHeader(ViaHeader.NAME);	
 		
 		// cater to http://code.google.com/p/sipservlets/issues/detail?id=31 to be able to set the rport in applications
 		final SipApplicationDispatcher sipApplicationDispatcher = getSipApplicationDispatcher();
-		final String branch = JainSipUtils.createBranch(originalAppSession.getKey().getId(),  sipApplicationDispatcher.getHashFromApplicationName(originalAppSession.getKey().getApplicationName()));
+		final String branch = JainSipUtils.createBranch(sipApplicationDispatcher, originalAppSession.getKey().getId(),  sipApplicationDispatcher.getHashFromApplicationName(originalAppSession.getKey().getApplicationName()));
 		ViaHeader viaHeader = JainSipUtils.createViaHeader(
 				getSipNetworkInterfaceManager(), newRequest, branch, null);
 		newRequest.addHeader(viaHeader);
@@ -821,7 +821,7 @@ public class SipFactoryImpl implements MobicentsSipFactory,  Externalizable {
 			
 			// cater to http://code.google.com/p/sipservlets/issues/detail?id=31 to be able to set the rport in applications
 			final SipApplicationDispatcher sipApplicationDispatcher = getSipApplicationDispatcher();
-			final String branch = JainSipUtils.createBranch(sipApplicationSessionKey.getId(),  sipApplicationDispatcher.getHashFromApplicationName(sipApplicationSessionKey.getApplicationName()));
+			final String branch = JainSipUtils.createBranch(sipApplicationDispatcher, sipApplicationSessionKey.getId(),  sipApplicationDispatcher.getHashFromApplicationName(sipApplicationSessionKey.getApplicationName()));
 			ViaHeader viaHeader = JainSipUtils.createViaHeader(
     				getSipNetworkInterfaceManager(), requestToWrap, branch, session.getOutboundInterface());
 			requestToWrap.addHeader(viaHeader);
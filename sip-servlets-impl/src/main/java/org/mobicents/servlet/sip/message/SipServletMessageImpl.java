@@ -21,19 +21,26 @@ package org.mobicents.servlet.sip.message;
 
 import gov.nist.javax.sip.header.HeaderExt;
 import gov.nist.javax.sip.header.SIPHeader;
+import gov.nist.javax.sip.message.SIPMessage;
+import gov.nist.javax.sip.parser.StringMsgParser;
 import gov.nist.javax.sip.stack.SIPTransaction;
 
 import java.io.ByteArrayOutputStream;
 import java.io.Externalizable;
 import java.io.IOException;
+import java.io.InvalidObjectException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -41,6 +48,7 @@ import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
@@ -74,6 +82,7 @@ import javax.sip.header.ExpiresHeader;
 import javax.sip.header.FromHeader;
 import javax.sip.header.Header;
 import javax.sip.header.HeaderAddress;
+import javax.sip.header.Parameters;
 import javax.sip.header.RequireHeader;
 import javax.sip.header.SupportedHeader;
 import javax.sip.header.ToHeader;
@@ -97,7 +106,9 @@ import org.mobicents.servlet.sip.core.session.MobicentsSipSession;
 import org.mobicents.servlet.sip.core.session.MobicentsSipSessionKey;
 import org.mobicents.servlet.sip.core.session.SessionManagerUtil;
 import org.mobicents.servlet.sip.core.session.SipApplicationSessionKey;
+import org.mobicents.servlet.sip.core.session.SipSessionKey;
 import org.mobicents.servlet.sip.startup.StaticServiceHolder;
+import org.mobicents.servlet.sip.utils.ExternalizationUtils;
 
 /**
  * Implementation of SipServletMessage
@@ -122,7 +133,17 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	public static final String REL100_OPTION_TAG = "100rel";
 //	private static final String HCOLON = " : ";
 	
-	protected Message message;
+	// version of the externalized form, written first so that a change of format is detected instead of misread
+	static final byte EXTERNALIZED_FORM_VERSION = 1;
+	// tags of the sip session key in the externalized form
+	static final byte SESSION_KEY_NONE = 0;
+	static final byte SESSION_KEY_BINARY = 1;
+	static final byte SESSION_KEY_STRING = 2;
+	
+	// null until the wire form of a deserialized message is parsed, use getMessage()
+	protected volatile Message message;
+	// wire form of a deserialized message, only parsed on first access since replicated messages are rarely used
+	private byte[] rawMessage;
 	protected SipFactoryImpl sipFactoryImpl;
 	protected MobicentsSipSessionKey sessionKey;
 	//lazy loaded and not serialized to avoid unecessary replication
@@ -169,6 +190,12 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	boolean orphan;
 	private String appSessionId;
 	
+	// parsed value and parameters of the parameterable headers of this message, keyed by header instance, see getParameterable
+	private transient Map<Header, ParsedParameterable> parsedParameterables;
+	
+	// whether the body of the message is shared with other messages, see JainSipUtils.cloneRequest and getWritableContent
+	private transient volatile boolean contentShared;
+	
 	// needed for externalizable
 	public SipServletMessageImpl () {}
 	
@@ -239,7 +266,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		checkCommitted();
 		AcceptLanguageHeader ach = SipFactoryImpl.headerFactory
 				.createAcceptLanguageHeader(locale);
-		message.addHeader(ach);
+		getMessage().addHeader(ach);
 
 	}
 
@@ -284,9 +311,9 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 			Header h = SipFactoryImpl.headerFactory.createHeader(nameToAdd, addr.toString());
 
 			if (first) {
-				this.message.addFirst(h);
+				getMessage().addFirst(h);
 			} else {
-				this.message.addLast(h);
+				getMessage().addLast(h);
 			}
 		} catch (Exception e) {
 			throw new IllegalArgumentException("Error adding header", e);
@@ -314,20 +341,20 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 			// Fix to Issue 1015 by alexander.kozlov.IV			
 			if(JainSipUtils.SINGLETON_HEADER_NAMES.contains(name)) {
 				Header header = SipFactory.getInstance().createHeaderFactory().createHeader(nameToAdd, value);
-				this.message.setHeader(header);				
+				getMessage().setHeader(header);				
 			} else {	
 				// Dealing with Allow:INVITE, ACK, CANCEL, OPTIONS, BYE kind of values
 				if(JainSipUtils.LIST_HEADER_NAMES.contains(name)) {
 					List<Header> headers = SipFactory.getInstance().createHeaderFactory()
 						.createHeaders(name + ":" + value);
 					for (Header header : headers) {
-						this.message.addHeader(header);
+						getMessage().addHeader(header);
 					}
 				} else {
 					// Extension Header: those cannot be lists. See jain sip issue 270
 					Header header = SipFactory.getInstance().createHeaderFactory()
 						.createHeader(name, value);
-					this.message.addLast(header);
+					getMessage().addLast(header);
 				}				
 			}
 		} catch (Exception ex) {
@@ -349,7 +376,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		try {
 			Header header = SipFactory.getInstance().createHeaderFactory()
 				.createHeader(name, value);
-			this.message.setHeader(header);				
+			getMessage().setHeader(header);				
 		} catch (Exception e) {
 			throw new IllegalArgumentException("Error creating header!", e);
 		}
@@ -392,9 +419,9 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 			Header header = SipFactoryImpl.headerFactory.createHeader(nameToAdd,
 					body);
 			if (first)
-				this.message.addFirst(header);
+				getMessage().addFirst(header);
 			else
-				this.message.addLast(header);
+				getMessage().addLast(header);
 		} catch (Exception ex) {
 			throw new IllegalArgumentException("Illegal args supplied", ex);
 		}
@@ -409,7 +436,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		// must interpreted to determine the preferred language of the client.
 		Locale preferredLocale = null;
 		float q = 0;
-		Iterator<Header> it = (Iterator<Header>) this.message
+		Iterator<Header> it = (Iterator<Header>) getMessage()
 			.getHeaders(AcceptLanguageHeader.NAME);
 		while (it.hasNext()) {
 			AcceptLanguageHeader alh = (AcceptLanguageHeader) it.next();
@@ -432,7 +459,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 */
 	public Iterator<Locale> getAcceptLanguages() {
 		LinkedList<Locale> ll = new LinkedList<Locale>();
-		Iterator<Header> it = (Iterator<Header>) this.message
+		Iterator<Header> it = (Iterator<Header>) getMessage()
 				.getHeaders(AcceptLanguageHeader.NAME);
 		while (it.hasNext()) {
 			AcceptLanguageHeader alh = (AcceptLanguageHeader) it.next();
@@ -462,7 +489,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 //					+ "] cant be parsed to address, wrong content type!!!");
 //		}
 		String nameToSearch = getCorrectHeaderName(hName);
-		ListIterator<Header> headers = (ListIterator<Header>) this.message
+		ListIterator<Header> headers = (ListIterator<Header>) getMessage()
 				.getHeaders(nameToSearch);
 		ListIterator<Header> lit = headers;
 
@@ -479,7 +506,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 					throw new ServletParseException("Bad address " + first);
 				}
 			} else {
-				Parameterable parametrable = createParameterable(first, first.getName(), message instanceof Request);
+				Parameterable parametrable = getParameterable(first, first.getName());
 				try {
 					logger.debug("parametrable Value " + parametrable.getValue());					
 					if(this.isCommitted()) {
@@ -514,7 +541,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		LinkedList<Address> retval = new LinkedList<Address>();
 		String nameToSearch = getCorrectHeaderName(hName);
 
-		for (Iterator<Header> it = this.message.getHeaders(nameToSearch); it
+		for (Iterator<Header> it = getMessage().getHeaders(nameToSearch); it
 				.hasNext();) {
 			Header header = (Header) it.next();
 			if (header instanceof HeaderAddress) {
@@ -527,7 +554,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 					throw new ServletParseException("Bad header", ex);
 				}
 			}  else {
-				Parameterable parametrable = createParameterable(header, header.getName(), message instanceof Request);
+				Parameterable parametrable = getParameterable(header, header.getName());
 				try {
 					AddressImpl addressImpl = new AddressImpl(SipFactoryImpl.addressFactory.createAddress(parametrable.getValue()), ((ParameterableHeaderImpl)parametrable).getInternalParameters(), getModifiableRule(hName));
 					retval.add(addressImpl);
@@ -587,7 +614,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 				orphan = true;
 				sessionKey = SessionManagerUtil.getSipSessionKey(
 						SessionManagerUtil.getSipApplicationSessionKey(applicationName, getAppSessionId(), null).getId(),
-						applicationName, message, false);
+						applicationName, getMessage(), false);
 			}
 		}
 		if(applicationName != null && sessionKey != null) {
@@ -634,7 +661,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 */
 	public String getCallId() {
 
-		CallIdHeader id = (CallIdHeader) this.message
+		CallIdHeader id = (CallIdHeader) getMessage()
 				.getHeader(getCorrectHeaderName(CallIdHeader.NAME));
 		if (id != null)
 			return id.getCallId();
@@ -648,11 +675,11 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 */
 	public String getCharacterEncoding() {
 
-		if (this.message.getContentEncoding() != null) {
-			return this.message.getContentEncoding().getEncoding();
+		if (getMessage().getContentEncoding() != null) {
+			return getMessage().getContentEncoding().getEncoding();
 		} else {
 			ContentTypeHeader cth = (ContentTypeHeader)
-				this.message.getHeader(ContentTypeHeader.NAME);
+				getMessage().getHeader(ContentTypeHeader.NAME);
 			if(cth == null) return null;
 			return cth.getParameter("charset");
 		}
@@ -664,19 +691,19 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 */
 	public Object getContent() throws IOException, UnsupportedEncodingException {
 		ContentTypeHeader contentTypeHeader = (ContentTypeHeader) 
- 			this.message.getHeader(ContentTypeHeader.NAME);
+ 			getMessage().getHeader(ContentTypeHeader.NAME);
 		if(contentTypeHeader != null && logger.isDebugEnabled()) {
 			logger.debug("Content type " + contentTypeHeader.getContentType());
 			logger.debug("Content sub type " + contentTypeHeader.getContentSubType());
 		}		
 		if(contentTypeHeader!= null && CONTENT_TYPE_TEXT.equals(contentTypeHeader.getContentType())) {
 			String content = null;
-			if(message.getRawContent() != null) {
+			if(getMessage().getRawContent() != null) {
 				String charset = this.getCharacterEncoding();
 				if(charset == null) {
-					content = new String(message.getRawContent());	
+					content = new String(getMessage().getRawContent());	
 				} else {
-					content = new String(message.getRawContent(), charset);
+					content = new String(getMessage().getRawContent(), charset);
 				}
 			} else {
 				content = "";
@@ -684,14 +711,14 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 			return content;
 		} else if(contentTypeHeader!= null && CONTENT_TYPE_MULTIPART.equals(contentTypeHeader.getContentType())) {
 			try {
-				return new MimeMultipart(new ByteArrayDataSource(message.getRawContent(), 
+				return new MimeMultipart(new ByteArrayDataSource(getMessage().getRawContent(), 
 						contentTypeHeader.toString().replaceAll(ContentTypeHeader.NAME+": ", "")));
 			} catch (MessagingException e) {
 				logger.warn("Problem with multipart message.", e);
-				return this.message.getRawContent();
+				return getWritableContent();
 			}
 		} else {
-			return this.message.getRawContent();
+			return getWritableContent();
 		}
 	}
 
@@ -773,8 +800,8 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 * @see javax.servlet.sip.SipServletMessage#getContentLanguage()
 	 */
 	public Locale getContentLanguage() {
-		if (this.message.getContentLanguage() != null)
-			return this.message.getContentLanguage().getContentLanguage();
+		if (getMessage().getContentLanguage() != null)
+			return getMessage().getContentLanguage().getContentLanguage();
 		else
 			return null;
 	}
@@ -784,8 +811,8 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 * @see javax.servlet.sip.SipServletMessage#getContentLength()
 	 */
 	public int getContentLength() {
-		if (this.message.getContentLength() != null) {
-			return this.message.getContentLength().getContentLength();
+		if (getMessage().getContentLength() != null) {
+			return getMessage().getContentLength().getContentLength();
 		} else {
 			return 0;
 		}
@@ -796,7 +823,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 * @see javax.servlet.sip.SipServletMessage#getContentType()
 	 */
 	public String getContentType() {
-		ContentTypeHeader cth = (ContentTypeHeader) this.message
+		ContentTypeHeader cth = (ContentTypeHeader) getMessage()
 				.getHeader(getCorrectHeaderName(ContentTypeHeader.NAME));
 		if (cth != null) {
 			// Fix For Issue http://code.google.com/p/mobicents/issues/detail?id=2659
@@ -815,8 +842,8 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 * @see javax.servlet.sip.SipServletMessage#getExpires()
 	 */
 	public int getExpires() {
-		if (this.message.getExpires() != null)
-			return this.message.getExpires().getExpires();
+		if (getMessage().getExpires() != null)
+			return getMessage().getExpires().getExpires();
 		else
 			return -1;
 	}
@@ -826,7 +853,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 * @see javax.servlet.sip.SipServletMessage#getFrom()
 	 */
 	public Address getFrom() {
-		FromHeader from = (FromHeader) this.message
+		FromHeader from = (FromHeader) getMessage()
 				.getHeader(getCorrectHeaderName(FromHeader.NAME));
 //		AddressImpl address = new AddressImpl(from.getAddress(), AddressImpl.getParameters((Parameters)from), ModifiableRule.From);
 		// https://code.google.com/p/sipservlets/issues/detail?id=245
@@ -845,8 +872,8 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 
 		String nameToSearch = getCorrectHeaderName(name);
 		String value = null;
-		if (this.message.getHeader(nameToSearch) != null) {
-			value = ((SIPHeader) this.message.getHeader(nameToSearch))
+		if (getMessage().getHeader(nameToSearch) != null) {
+			value = ((SIPHeader) getMessage().getHeader(nameToSearch))
 					.getValue();
 		}
 //		if(logger.isDebugEnabled()) {
@@ -868,7 +895,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 * @see javax.servlet.sip.SipServletMessage#getHeaderNames()
 	 */
 	public Iterator<String> getHeaderNames() {
-		return this.message.getHeaderNames();
+		return getMessage().getHeaderNames();
 	}
 
 	/*
@@ -877,20 +904,17 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 */
 	public ListIterator<String> getHeaders(String name) {
 		String nameToSearch = getCorrectHeaderName(name);
-		ArrayList<String> result = new ArrayList<String>();
 
 		try {
-			ListIterator<Header> list = this.message.getHeaders(nameToSearch);
-			while (list != null && list.hasNext()) {
-				Header h = list.next();
-				result.add(((SIPHeader)h).getHeaderValue());
+			ListIterator<Header> list = getMessage().getHeaders(nameToSearch);
+			if(list != null) {
+				return new HeaderValueListIterator(list);
 			}
 		} catch (Exception e) {
 			logger.fatal("Couldnt fetch headers, original name[" + name
 					+ "], name searched[" + nameToSearch + "]", e);
-			return result.listIterator();
 		}
-		return result.listIterator();
+		return Collections.<String>emptyList().listIterator();
 	}
 
 	/*
@@ -900,8 +924,8 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 */
 	public final String getMethod() {
 		if(method == null) {
-			method = message instanceof Request ? ((Request) message).getMethod()
-				: ((CSeqHeader) message.getHeader(CSeqHeader.NAME)).getMethod();
+			method = getMessage() instanceof Request ? ((Request) getMessage()).getMethod()
+				: ((CSeqHeader) getMessage().getHeader(CSeqHeader.NAME)).getMethod();
 		}
 		return method;
 	}
@@ -919,7 +943,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 
 		String nameToSearch = getCorrectHeaderName(name);
 
-		Header h = this.message.getHeader(nameToSearch);
+		Header h = getMessage().getHeader(nameToSearch);
 		
 		if(!isParameterable(name)) {
 			throw new ServletParseException(name + " header is not parameterable !");
@@ -929,7 +953,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 			return null;
 		}
 		
-		return createParameterable(h, getFullHeaderName(name), message instanceof Request);
+		return getParameterable(h, getFullHeaderName(name));
 	}
 
 	/*
@@ -939,14 +963,14 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	public ListIterator<Parameterable> getParameterableHeaders(String name)
 			throws ServletParseException {
 
-		ListIterator<Header> headers = this.message
+		ListIterator<Header> headers = getMessage()
 				.getHeaders(getCorrectHeaderName(name));
 
 		ArrayList<Parameterable> result = new ArrayList<Parameterable>();
 
+		String hName = getFullHeaderName(name);
 		while (headers != null && headers.hasNext())
-			result.add(createParameterable(headers.next(),
-					getFullHeaderName(name), message instanceof Request));
+			result.add(getParameterable(headers.next(), hName));
 
 		if(!isParameterable(name)) {
 			throw new ServletParseException(name + " header is not parameterable !");
@@ -969,12 +993,40 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 * @see javax.servlet.sip.SipServletMessage#getRawContent()
 	 */
 	public byte[] getRawContent() throws IOException {		
-		if (message != null)
-			return message.getRawContent();
+		if (getMessage() != null)
+			return getWritableContent();
 		else
 			return null;
 	}
 	
+	/**
+	 * Marks the body of this message as shared with a copy made by 
+	 * {@link JainSipUtils#cloneRequest(Request, String...)}, so that it gets copied 
+	 * before being handed out for writing.
+	 */
+	public void setContentShared() {
+		contentShared = true;
+	}
+	
+	/**
+	 * Returns the body of the message so that it can be handed out to applications, which may write into it.
+	 * If the body is shared with other messages this message gets its own copy first, so that writes
+	 * don't leak to them.
+	 * 
+	 * @return the body of the message, owned by this message only, or null if it has none
+	 */
+	private byte[] getWritableContent() {
+		final Message message = getMessage();
+		final byte[] content = message.getRawContent();
+		if(content == null || !contentShared) {
+			return content;
+		}
+		final byte[] ownContent = content.clone();
+		((SIPMessage) message).setMessageContent(ownContent);
+		contentShared = false;
+		return ownContent;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1009,10 +1061,10 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 				return ((SIPTransaction)getTransaction()).getPeerAddress();
 			}
 		} else {
-			ViaHeader via = (ViaHeader) message.getHeader(ViaHeader.NAME);
+			ViaHeader via = (ViaHeader) getMessage().getHeader(ViaHeader.NAME);
 			// https://code.google.com/p/sipservlets/issues/detail?id=137
 			boolean isExternal = sipFactoryImpl.getSipApplicationDispatcher().isViaHeaderExternal(via);
-			if(message instanceof Request && !isExternal) {
+			if(getMessage() instanceof Request && !isExternal) {
 			    // locally generated messages should return null as per Javadoc
 			    return null;
 			}
@@ -1038,10 +1090,10 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 				port = ((SIPTransaction)getTransaction()).getPeerPort();
 			}
 		} else {
-			ViaHeader via = (ViaHeader) message.getHeader(ViaHeader.NAME);
+			ViaHeader via = (ViaHeader) getMessage().getHeader(ViaHeader.NAME);
 			// https://code.google.com/p/sipservlets/issues/detail?id=137
             boolean isExternal = sipFactoryImpl.getSipApplicationDispatcher().isViaHeaderExternal(via);
-            if(message instanceof Request && !isExternal) {
+            if(getMessage() instanceof Request && !isExternal) {
                 // locally generated messages should return -1 as per Javadoc
                 return -1;
             }
@@ -1099,7 +1151,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		MobicentsSipSession session = getSipSession();
 		if (session == null && create) {
 			MobicentsSipApplicationSession sipApplicationSessionImpl = (MobicentsSipApplicationSession)getSipApplicationSession(create);
-			MobicentsSipSessionKey sessionKey = SessionManagerUtil.getSipSessionKey(sipApplicationSessionImpl.getKey().getId(), currentApplicationName, message, false);
+			MobicentsSipSessionKey sessionKey = SessionManagerUtil.getSipSessionKey(sipApplicationSessionImpl.getKey().getId(), currentApplicationName, getMessage(), false);
 			session = sipApplicationSessionImpl.getSipContext().getSipManager().getSipSession(sessionKey, create,
 					sipFactoryImpl, sipApplicationSessionImpl);
 			session.setSessionCreatingTransactionRequest(this);
@@ -1200,7 +1252,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 * @see javax.servlet.sip.SipServletMessage#getTo()
 	 */
 	public Address getTo() {
-		ToHeader to = (ToHeader) this.message
+		ToHeader to = (ToHeader) getMessage()
 			.getHeader(getCorrectHeaderName(ToHeader.NAME));
 		// return new AddressImpl(to.getAddress(), AddressImpl.getParameters((Parameters)to), ModifiableRule.To);
 		// https://code.google.com/p/sipservlets/issues/detail?id=245
@@ -1233,7 +1285,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 * @see javax.servlet.sip.SipServletMessage#isSecure()
 	 */
 	public boolean isSecure() {		
-		return ListeningPoint.TLS.equalsIgnoreCase(JainSipUtils.findTransport(message));
+		return ListeningPoint.TLS.equalsIgnoreCase(JainSipUtils.findTransport(getMessage()));
 	}
 
 	/*
@@ -1286,7 +1338,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 
 		String nameToSearch = getCorrectHeaderName(hName);
 
-		this.message.removeHeader(nameToSearch);
+		getMessage().removeHeader(nameToSearch);
 
 	}
 	
@@ -1306,7 +1358,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 
 		String nameToRemove = getCorrectHeaderName(hName);
 		try {
-			message.removeHeader(nameToRemove);			
+			getMessage().removeHeader(nameToRemove);			
 		} catch (Exception ex) {
 			throw new IllegalArgumentException("Illegal args supplied ", ex);
 		}
@@ -1327,7 +1379,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		AcceptLanguageHeader alh = SipFactoryImpl.headerFactory
 				.createAcceptLanguageHeader(locale);
 
-		this.message.setHeader(alh);
+		getMessage().setHeader(alh);
 	}
 
 	/*
@@ -1365,7 +1417,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		try {
 			h = SipFactoryImpl.headerFactory.createHeader(headerNameToAdd, addr
 					.toString());
-			this.message.setHeader(h);
+			getMessage().setHeader(h);
 		} catch (ParseException e) {
 			logger.error("Parsing problem while setting address header with name "
 					+ name + " and address "+ addr, e);			
@@ -1390,7 +1442,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		new String("testEncoding".getBytes(),enc);
 		checkCommitted();
 		try {			
-			this.message.setContentEncoding(SipFactoryImpl.headerFactory
+			getMessage().setContentEncoding(SipFactoryImpl.headerFactory
 					.createContentEncodingHeader(enc));
 		} catch (Exception ex) {
 			throw new UnsupportedEncodingException(enc);
@@ -1413,7 +1465,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		
 		if(contentType != null && contentType.length() > 0) {
 			this.addHeader(ContentTypeHeader.NAME, contentType);
-			ContentTypeHeader contentTypeHeader = (ContentTypeHeader)this.message.getHeader(ContentTypeHeader.NAME);			
+			ContentTypeHeader contentTypeHeader = (ContentTypeHeader)getMessage().getHeader(ContentTypeHeader.NAME);			
 			String charset = this.getCharacterEncoding();
 			try {		
 			    // https://code.google.com/p/sipservlets/issues/detail?id=169
@@ -1422,7 +1474,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 					Multipart multipart = (Multipart) content;
 					OutputStream os = new ByteArrayOutputStream();
 					multipart.writeTo(os);
-					this.message.setContent(os.toString(), contentTypeHeader);
+					getMessage().setContent(os.toString(), contentTypeHeader);
 				} else {
 					Object tmpContent = content;
 					if(tmpContent instanceof String  && charset != null) {
@@ -1430,7 +1482,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 						new String("testEncoding".getBytes(charset));
 						tmpContent = new String(((String)tmpContent).getBytes());
 					}
-					this.message.setContent(content, contentTypeHeader);
+					getMessage().setContent(content, contentTypeHeader);
 				}
 			} catch (UnsupportedEncodingException uee) {
 				throw uee;
@@ -1469,7 +1521,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		checkCommitted();
 		ContentLanguageHeader contentLanguageHeader = 
 			SipFactoryImpl.headerFactory.createContentLanguageHeader(locale);
-		this.message.setContentLanguage(contentLanguageHeader);
+		getMessage().setContentLanguage(contentLanguageHeader);
 	}
 	
 	/*
@@ -1481,7 +1533,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		checkCommitted();
 		try {
 			ContentLengthHeader h = SipFactoryImpl.headerFactory.createContentLengthHeader(len);
-			this.message.setHeader(h);
+			getMessage().setHeader(h);
 		} catch (InvalidArgumentException e) {
 			throw new IllegalStateException("Impossible to set a content length lower than 0", e);
 		}
@@ -1497,9 +1549,9 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		String name = getCorrectHeaderName(ContentTypeHeader.NAME);
 		try {
 			Header h = SipFactoryImpl.headerFactory.createHeader(name, type);
-			this.message
+			getMessage()
 					.removeHeader(getCorrectHeaderName(ContentTypeHeader.NAME));
-			this.message.addHeader(h);
+			getMessage().addHeader(h);
 		} catch (ParseException e) {
 			logger.error("Error while setting content type header !!!", e);
 		}
@@ -1515,7 +1567,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 			ExpiresHeader expiresHeader = 
 				SipFactoryImpl.headerFactory.createExpiresHeader(seconds);			
 			expiresHeader.setExpires(seconds);
-			this.message.setExpires(expiresHeader);
+			getMessage().setExpires(expiresHeader);
 		} catch (Exception e) {
 			throw new IllegalArgumentException("Error setting expiration header!", e);
 		}
@@ -1540,17 +1592,17 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		try {
 			// Dealing with Allow:INVITE, ACK, CANCEL, OPTIONS, BYE kind of headers
 			if(JainSipUtils.LIST_HEADER_NAMES.contains(name)) {
-				this.message.removeHeader(name);
+				getMessage().removeHeader(name);
 				List<Header> headers = SipFactory.getInstance().createHeaderFactory()
 					.createHeaders(name + ":" + value);
 				for (Header header : headers) {
-					this.message.addHeader(header);
+					getMessage().addHeader(header);
 				}
 			} else {
 				// dealing with non list headers and extension header
 				Header header = SipFactory.getInstance().createHeaderFactory()
 					.createHeader(name, value);
-				this.message.setHeader(header);
+				getMessage().setHeader(header);
 			}
 		} catch (Exception e) {
 			throw new IllegalArgumentException("Error creating header!", e);
@@ -1596,7 +1648,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 			throw new IllegalArgumentException(name + " is a system header !");
 		}
 		try {
-			this.message.setHeader(SipFactoryImpl.headerFactory.createHeader(name, param.toString()));
+			getMessage().setHeader(SipFactoryImpl.headerFactory.createHeader(name, param.toString()));
 		} catch (ParseException e) {
 			throw new IllegalArgumentException("Impossible to set this parameterable header", e);
 		}
@@ -1724,10 +1776,8 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 */
 	protected static String getFullHeaderName(String headerName) {
 
-		String fullName = null;
-		if (JainSipUtils.HEADER_COMPACT_2_FULL_NAMES_MAPPINGS.containsKey(headerName)) {
-			fullName = JainSipUtils.HEADER_COMPACT_2_FULL_NAMES_MAPPINGS.get(headerName);
-		} else {
+		String fullName = JainSipUtils.HEADER_COMPACT_2_FULL_NAMES_MAPPINGS.get(headerName);
+		if (fullName == null) {
 			fullName = headerName;
 		}
 		if (logger.isDebugEnabled())
@@ -1748,10 +1798,8 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 */
 	public static String getCompactName(String headerName) {
 
-		String compactName = null;
-		if (JainSipUtils.HEADER_COMPACT_2_FULL_NAMES_MAPPINGS.containsKey(headerName)) {
-			compactName = JainSipUtils.HEADER_COMPACT_2_FULL_NAMES_MAPPINGS.get(headerName);
-		} else {
+		String compactName = JainSipUtils.HEADER_COMPACT_2_FULL_NAMES_MAPPINGS.get(headerName);
+		if (compactName == null) {
 			// This can be null if there is no mapping!!!
 			compactName = JainSipUtils.HEADER_FULL_TO_COMPACT_NAMES_MAPPINGS.get(headerName);
 		}
@@ -1809,7 +1857,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 */
 	@Override
 	public String toString() {
-		return this.message.toString();
+		return getMessage().toString();
 	}
 
 	public TransactionApplicationData getTransactionApplicationData() {
@@ -1817,8 +1865,41 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	}
 
 	public Message getMessage() {
+		final Message parsedMessage = message;
+		if(parsedMessage == null) {
+			// rawMessage is only safely read under the lock, parseRawMessage checks both fields again
+			return parseRawMessage();
+		}
+		return parsedMessage;
+	}
+	
+	private synchronized Message parseRawMessage() {
+		if(message == null && rawMessage != null) {
+			try {
+				message = new StringMsgParser().parseSIPMessage(rawMessage, true, false, null);
+			} catch (ParseException e) {
+				throw new IllegalArgumentException("Message " + new String(rawMessage, StandardCharsets.UTF_8) + " previously serialized could not be reparsed", e);
+			}
+			rawMessage = null;
+		}
 		return message;
 	}
+	
+	/**
+	 * @return the wire form of the message, without parsing it if it was deserialized and never accessed since
+	 */
+	private synchronized byte[] getRawMessage() {
+		if(message == null) {
+			return rawMessage;
+		}
+		final ViaHeader viaHeader = (ViaHeader) message.getHeader(ViaHeader.NAME);
+		if(viaHeader == null) {
+			// request created by the application and not sent yet, the byte encoding requires a via
+			return message.toString().getBytes(StandardCharsets.UTF_8);
+		}
+		// the transport of the topmost via is passed so that the encoding doesn't rewrite it
+		return ((SIPMessage) message).encodeAsBytes(viaHeader.getTransport());
+	}
 
 	public Dialog getDialog() {
 		if (this.dialog != null) {
@@ -1854,6 +1935,82 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		return count;
 	}
 
+	/**
+	 * Creates the parameterable view of a header of this message, the header is only parsed the first time, 
+	 * later calls for the same header instance copy the value and parameters parsed the first time 
+	 * as long as the parameters of the header didn't change since, the parameterables returned writing them through.
+	 * The returned parameterable is always a new instance since its value can be modified by the application.
+	 */
+	protected Parameterable getParameterable(Header header, String hName)
+			throws ServletParseException {
+		Map<Header, ParsedParameterable> parsed = parsedParameterables;
+		if(parsed == null) {
+			parsed = Collections.synchronizedMap(new IdentityHashMap<Header, ParsedParameterable>(4));
+			parsedParameterables = parsed;
+		}
+		ParsedParameterable parsedParameterable = parsed.get(header);
+		if(parsedParameterable == null || !hasParameters(header, parsedParameterable.headerParameters)) {
+			ParameterableHeaderImpl parameterable = (ParameterableHeaderImpl) createParameterable(header, hName, getMessage() instanceof Request);
+			// keep our own copy, detached from the header, since the application can modify the one returned
+			parsed.put(header, new ParsedParameterable(new ParameterableHeaderImpl(null, parameterable.getValue(), 
+					parameterable.getInternalParameters(), parameterable.getModifiableRule()), getHeaderParameters(header)));
+			return parameterable;
+		}
+		ParameterableHeaderImpl template = parsedParameterable.template;
+		return new ParameterableHeaderImpl(header, template.getValue(), 
+				template.getInternalParameters(), template.getModifiableRule());
+	}
+	
+	/**
+	 * @return the parameters of the header as jain sip holds them, null if it doesn't have any
+	 */
+	private static Map<String, String> getHeaderParameters(Header header) {
+		if(!(header instanceof Parameters)) {
+			return null;
+		}
+		Parameters parameters = (Parameters) header;
+		Map<String, String> headerParameters = new HashMap<String, String>();
+		for (Iterator<?> names = parameters.getParameterNames(); names.hasNext();) {
+			String name = (String) names.next();
+			headerParameters.put(name, parameters.getParameter(name));
+		}
+		return headerParameters;
+	}
+	
+	/**
+	 * @return true if the header holds exactly the parameters in argument, compared in place to avoid copying them on each lookup
+	 */
+	private static boolean hasParameters(Header header, Map<String, String> headerParameters) {
+		if(!(header instanceof Parameters)) {
+			return headerParameters == null;
+		}
+		if(headerParameters == null) {
+			return false;
+		}
+		Parameters parameters = (Parameters) header;
+		int count = 0;
+		for (Iterator<?> names = parameters.getParameterNames(); names.hasNext();) {
+			String name = (String) names.next();
+			String value = parameters.getParameter(name);
+			String parsedValue = headerParameters.get(name);
+			if(parsedValue == null ? (value != null || !headerParameters.containsKey(name)) : !parsedValue.equals(value)) {
+				return false;
+			}
+			count++;
+		}
+		return count == headerParameters.size();
+	}
+	
+	private static final class ParsedParameterable {
+		final ParameterableHeaderImpl template;
+		final Map<String, String> headerParameters;
+		
+		ParsedParameterable(ParameterableHeaderImpl template, Map<String, String> headerParameters) {
+			this.template = template;
+			this.headerParameters = headerParameters;
+		}
+	}
+	
 	protected static Parameterable createParameterable(Header header, String hName, boolean isRequest)
 			throws ServletParseException {
 		String whole = header.toString();
@@ -2076,7 +2233,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		if(sipTransaction != null) {
 			return sipTransaction.getHost();
 		} else {
-			final String transport = JainSipUtils.findTransport(message);
+			final String transport = JainSipUtils.findTransport(getMessage());
 			final MobicentsExtendedListeningPoint listeningPoint = sipFactoryImpl.getSipNetworkInterfaceManager().findMatchingListeningPoint(transport, false);		
 			return listeningPoint.getHost(true);
 		}		
@@ -2091,7 +2248,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		if(sipTransaction != null) {
 			return sipTransaction.getPort();
 		} else {
-			final String transport = JainSipUtils.findTransport(message);
+			final String transport = JainSipUtils.findTransport(getMessage());
 			final MobicentsExtendedListeningPoint listeningPoint = sipFactoryImpl.getSipNetworkInterfaceManager().findMatchingListeningPoint(transport, false);		
 			return listeningPoint.getPort();
 		}
@@ -2139,50 +2296,56 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 */
 	public void readExternal(ObjectInput in) throws IOException,
 			ClassNotFoundException {		
+		final byte version = in.readByte();
+		if(version != EXTERNALIZED_FORM_VERSION) {
+			throw new InvalidObjectException("Unsupported externalized form version " + version + " for a SIP message, expected " + EXTERNALIZED_FORM_VERSION);
+		}
 		sipFactoryImpl = (SipFactoryImpl) in.readObject();
-		String sessionKeyString = in.readUTF();
-		if (sessionKeyString.length() > 0) {
-			try {
-				sessionKey = SessionManagerUtil.parseSipSessionKey(sessionKeyString);
-			} catch (ParseException e) {
-				throw new IllegalArgumentException("SIP Sesion Key " + sessionKeyString + " previously serialized could not be reparsed", e);
-			}
+		switch (in.readByte()) {
+			case SESSION_KEY_BINARY:
+				sessionKey = SipSessionKey.readFrom(in);
+				break;
+			case SESSION_KEY_STRING:
+				String sessionKeyString = ExternalizationUtils.readString(in);
+				try {
+					sessionKey = SessionManagerUtil.parseSipSessionKey(sessionKeyString);
+				} catch (ParseException e) {
+					throw new IllegalArgumentException("SIP Sesion Key " + sessionKeyString + " previously serialized could not be reparsed", e);
+				}
+				break;
+			default:
+				break;
 		}
 		int attributesSize = in.readInt();
 		if(attributesSize > 0) {
-			Object[][] attributesArray = (Object[][] )in.readObject();
-			attributes = new ConcurrentHashMap<String, Object>();
+			attributes = new ConcurrentHashMap<String, Object>(attributesSize);
 			for (int i = 0; i < attributesSize; i++) {
-				String key = (String) attributesArray[0][i];
-				Object value = attributesArray[1][i];
+				String key = ExternalizationUtils.readString(in);
+				Object value = in.readObject();
 				attributes.put(key, value);
 			}
 		}
 		if(in.readBoolean()) {
 			transactionApplicationData = (TransactionApplicationData) in.readObject();
 		}
-		headerForm = HeaderForm.valueOf(in.readUTF());
-		currentApplicationName = in.readUTF();
-		if(currentApplicationName.equals("")) {
-			currentApplicationName = null;
-		}
+		headerForm = HeaderForm.values()[in.readByte()];
+		currentApplicationName = ExternalizationUtils.readString(in);
 		isMessageSent = in.readBoolean();
 		if(ReplicationStrategy.EarlyDialog == StaticServiceHolder.sipStandardService.getReplicationStrategy()) {
-			transactionId = in.readUTF();
+			transactionId = ExternalizationUtils.readString(in);
 			if (logger.isDebugEnabled()) {
 				logger.debug("readExternal transactionId = " + transactionId);
 			}
 			if(transactionId != null) {
-				if(transactionId.equals("")) {
-					transactionId = null;
-				} else { 
-					transactionType = in.readBoolean();
-					if (logger.isDebugEnabled()) {
-						logger.debug("readExternal transactionType = " + transactionType);
-					}
+				transactionType = in.readBoolean();
+				if (logger.isDebugEnabled()) {
+					logger.debug("readExternal transactionType = " + transactionType);
 				}
 			}
 		}
+		// parsed on first access, see getMessage()
+		message = null;
+		rawMessage = ExternalizationUtils.readBytes(in);
 	}
 	
 	/*
@@ -2190,26 +2353,30 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	 * @see java.io.Externalizable#writeExternal(java.io.ObjectOutput)
 	 */
 	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeByte(EXTERNALIZED_FORM_VERSION);
 		out.writeObject(sipFactoryImpl);
-		if(sessionKey != null) {
-			out.writeUTF(sessionKey.toString());
+		MobicentsSipSessionKey externalizedSessionKey = sessionKey;
+		if(externalizedSessionKey == null && sipSession != null) {
+			externalizedSessionKey = sipSession.getKey();
+		}
+		if(externalizedSessionKey instanceof SipSessionKey) {
+			// written field by field to avoid reparsing the key on the other end
+			out.writeByte(SESSION_KEY_BINARY);
+			((SipSessionKey) externalizedSessionKey).writeTo(out);
+		} else if(externalizedSessionKey != null) {
+			out.writeByte(SESSION_KEY_STRING);
+			ExternalizationUtils.writeString(out, externalizedSessionKey.toString());
 		} else {
-			if (null == sipSession) {
-				out.writeUTF("");
-			} else {
-				out.writeUTF(sipSession.getId());
-			}
+			out.writeByte(SESSION_KEY_NONE);
 		}
 		if(attributes != null && attributes.size() > 0) {
-			out.writeInt(attributes.size());
-			Object[][] attributesArray = new Object[2][attributes.size()];
-			int i = 0;
-			for (Entry<String, Object> entry : attributes.entrySet()) {
-				attributesArray [0][i] = entry.getKey(); 
-				attributesArray [1][i] = entry.getValue();
-				i++;
-			}		
-			out.writeObject(attributesArray);
+			// snapshot the attributes so that the size written matches the entries written
+			List<Entry<String, Object>> attributesEntries = new ArrayList<Entry<String,Object>>(attributes.entrySet());
+			out.writeInt(attributesEntries.size());
+			for (Entry<String, Object> entry : attributesEntries) {
+				ExternalizationUtils.writeString(out, entry.getKey());
+				out.writeObject(entry.getValue());
+			}
 		} else {
 			out.writeInt(0);
 		}
@@ -2219,30 +2386,27 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		} else {
 			out.writeBoolean(false);
 		}
-		out.writeUTF(headerForm.toString());
-		if(currentApplicationName != null) {
-			out.writeUTF(currentApplicationName);
-		} else {
-			out.writeUTF("");
-		}
+		out.writeByte(headerForm.ordinal());
+		ExternalizationUtils.writeString(out, currentApplicationName);
 		out.writeBoolean(isMessageSent);		
 		if(ReplicationStrategy.EarlyDialog == StaticServiceHolder.sipStandardService.getReplicationStrategy()) {
 			if (logger.isDebugEnabled()) {
 				logger.debug("writeExternal transaction = " + transaction);
 			}
 			if(transaction == null) {
-				out.writeUTF("");
+				ExternalizationUtils.writeString(out, null);
 			} else {
 				if (logger.isDebugEnabled()) {
 					logger.debug("writeExternal transactionId = " + transaction.getBranchId() + " transactionType " + (transaction instanceof ServerTransaction));
 				}
-				out.writeUTF(transaction.getBranchId());
+				ExternalizationUtils.writeString(out, transaction.getBranchId());
 				out.writeBoolean(transaction instanceof ServerTransaction);
 			}
 		}
-		out.writeUTF(message.toString());
+		ExternalizationUtils.writeBytes(out, getRawMessage());
 	}
 
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
 	 */
@@ -2250,7 +2414,7 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((message == null) ? 0 : message.hashCode());
+		result = prime * result + ((getMessage() == null) ? 0 : getMessage().hashCode());
 		return result;
 	}
 
@@ -2266,10 +2430,10 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 		if (getClass() != obj.getClass())
 			return false;
 		SipServletMessageImpl other = (SipServletMessageImpl) obj;
-		if (message == null) {
-			if (other.message != null)
+		if (getMessage() == null) {
+			if (other.getMessage() != null)
 				return false;
-		} else if (!message.equals(other.message))
+		} else if (!getMessage().equals(other.getMessage()))
                     return false;
 		return true;
 	}
@@ -2322,4 +2486,68 @@ public abstract class SipServletMessageImpl implements MobicentsSipServletMessag
 	public boolean isMessageSent() {
         return isMessageSent;
     }
+	
+	/**
+	 * Read only list iterator over a snapshot of the values of headers of the underlying message, 
+	 * as required by SipServletMessage.getHeaders the returned values can't be modified through it. 
+	 * The values are copied when it is created so the headers added, removed or modified afterwards don't show through it.
+	 */
+	static final class HeaderValueListIterator implements ListIterator<String> {
+		private final String[] values;
+		private int cursor;
+		
+		HeaderValueListIterator(ListIterator<Header> headers) {
+			String[] snapshot = new String[2];
+			int size = 0;
+			while (headers.hasNext()) {
+				if(size == snapshot.length) {
+					snapshot = Arrays.copyOf(snapshot, size << 1);
+				}
+				snapshot[size++] = ((SIPHeader) headers.next()).getHeaderValue();
+			}
+			this.values = size == snapshot.length ? snapshot : Arrays.copyOf(snapshot, size);
+		}
+		
+		public boolean hasNext() {
+			return cursor < values.length;
+		}
+		
+		public String next() {
+			if(cursor >= values.length) {
+				throw new NoSuchElementException();
+			}
+			return values[cursor++];
+		}
+		
+		public boolean hasPrevious() {
+			return cursor > 0;
+		}
+		
+		public String previous() {
+			if(cursor <= 0) {
+				throw new NoSuchElementException();
+			}
+			return values[--cursor];
+		}
+		
+		public int nextIndex() {
+			return cursor;
+		}
+		
+		public int previousIndex() {
+			return cursor - 1;
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException("headers can't be modified through the iterator returned by getHeaders");
+		}
+		
+		public void set(String e) {
+			throw new UnsupportedOperationException("headers can't be modified through the iterator returned by getHeaders");
+		}
+		
+		public void add(String e) {
+			throw new UnsupportedOperationException("headers can't be modified through the iterator returned by getHeaders");
+		}
+	}
 }
@@ -46,6 +46,7 @@ import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.ServletInputStream;
 import javax.servlet.sip.Address;
@@ -55,6 +56,7 @@ import javax.servlet.sip.Parameterable;
 import javax.servlet.sip.Proxy;
 import javax.servlet.sip.SipServletRequest;
 import javax.servlet.sip.SipServletResponse;
+import javax.servlet.sip.SipSession;
 import javax.servlet.sip.SipSession.State;
 import javax.servlet.sip.SipURI;
 import javax.servlet.sip.TooManyHopsException;
@@ -96,6 +98,8 @@ import javax.sip.message.Response;
 import org.apache.log4j.Logger;
 import org.mobicents.ext.javax.sip.dns.DNSAwareRouter;
 import org.mobicents.ext.javax.sip.dns.DNSServerLocator;
+import org.mobicents.javax.servlet.sip.SipServletRequestSendCallback;
+import org.mobicents.javax.servlet.sip.dns.DNSResolver;
 import org.mobicents.servlet.sip.JainSipUtils;
 import org.mobicents.servlet.sip.SipConnector;
 import org.mobicents.servlet.sip.address.AddressImpl;
@@ -120,6 +124,8 @@ import org.mobicents.servlet.sip.core.session.MobicentsSipApplicationSessionKey;
 import org.mobicents.servlet.sip.core.session.MobicentsSipSession;
 import org.mobicents.servlet.sip.core.session.MobicentsSipSessionKey;
 import org.mobicents.servlet.sip.core.session.SipRequestDispatcher;
+import org.mobicents.servlet.sip.core.session.SipSessionAsyncTask;
+import org.mobicents.servlet.sip.dns.MobicentsDNSResolver;
 import org.mobicents.servlet.sip.proxy.ProxyImpl;
 import org.mobicents.servlet.sip.security.AuthInfoEntry;
 import org.mobicents.servlet.sip.security.AuthInfoImpl;
@@ -179,6 +185,8 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	private boolean isFinalResponseGenerated;
 	
 	private boolean is1xxResponseGenerated;	
+	// set while the request is being sent through sendAsynchronously, until its callback is notified
+	private final transient AtomicBoolean sendInFlight = new AtomicBoolean();
 	
 	private transient boolean isReadOnly;		
 	
@@ -238,7 +246,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		}
 		
 		if(hName.equalsIgnoreCase(ContactHeader.NAME)) {
-			Request request = (Request) this.message;
+			Request request = (Request) getMessage();
 	
 			String method = request.getMethod();
 			if (method.equals(Request.REGISTER)) {
@@ -253,9 +261,9 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 
 	public SipServletRequest createCancel() {
 		checkReadOnly();
-		if (!((Request) message).getMethod().equals(Request.INVITE)) {
+		if (!((Request) getMessage()).getMethod().equals(Request.INVITE)) {
 			throw new IllegalStateException(
-					"Cannot create CANCEL for non invite " + message);
+					"Cannot create CANCEL for non invite " + getMessage());
 		}
 		if (super.getTransaction() == null
 				|| super.getTransaction() instanceof ServerTransaction)
@@ -309,11 +317,11 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		if(validate) {
 			if (transaction == null) {
 				throw new IllegalStateException(
-					"Cannot create a response for request " + message + " transaction is null, a final error response has probably already been sent");
+					"Cannot create a response for request " + getMessage() + " transaction is null, a final error response has probably already been sent");
 			}
 			if(transaction instanceof ClientTransaction) {
 				throw new IllegalStateException(
-					"Cannot create a response for request " + message + " not a server transaction " + transaction);
+					"Cannot create a response for request " + getMessage() + " not a server transaction " + transaction);
 			}
 		}
 		try {
@@ -474,7 +482,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	}
 
 	public int getMaxForwards() {
-		return ((MaxForwardsHeader) ((Request) message)
+		return ((MaxForwardsHeader) ((Request) getMessage())
 				.getHeader(MaxForwardsHeader.NAME)).getMaxForwards();
 	}
 
@@ -523,7 +531,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		final MobicentsSipSession session = getSipSession();
 		if (session.getB2buaHelper() != null ) throw new IllegalStateException("Cannot proxy request");
 		
-		final MaxForwardsHeader mfHeader = (MaxForwardsHeader)this.message.getHeader(MaxForwardsHeader.NAME);
+		final MaxForwardsHeader mfHeader = (MaxForwardsHeader)getMessage().getHeader(MaxForwardsHeader.NAME);
 		if(mfHeader.getMaxForwards()<=0) {
 			try {
 				this.createResponse(Response.TOO_MANY_HOPS, "Too many hops").send();
@@ -563,7 +571,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	 * {@inheritDoc}
 	 */
 	public URI getRequestURI() {
-		Request request = (Request) super.message;
+		Request request = (Request) getMessage();
 		if (request.getRequestURI() instanceof javax.sip.address.SipURI)
 			return new SipURIImpl((javax.sip.address.SipURI) request
 					.getRequestURI(), ModifiableRule.Modifiable);
@@ -607,6 +615,9 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		if(isMessageSent || getTransaction() instanceof ServerTransaction) {
 			throw new IllegalStateException("Message already sent or incoming message");
 		}
+		if(sendInFlight.get()) {
+			throw new IllegalStateException("Message already being sent asynchronously");
+		}
 	}
 	
 	/**
@@ -614,7 +625,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	 */
 	public void pushPath(Address uri) {
 		checkReadOnly();
-		if(!Request.REGISTER.equalsIgnoreCase(((Request)message).getMethod())) {
+		if(!Request.REGISTER.equalsIgnoreCase(((Request)getMessage()).getMethod())) {
 			throw new IllegalStateException("Cannot push a Path on a non REGISTER request !");
 		}
 		if(uri.getURI() instanceof TelURL) {
@@ -627,7 +638,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		try {
 			javax.sip.header.Header p = SipFactoryImpl.headerFactory
 					.createHeader(PathHeader.NAME, uri.toString());
-			this.message.addFirst(p);
+			getMessage().addFirst(p);
 		} catch (Exception e) {
 			logger.error("Error while pushing path [" + uri + "]");
 			throw new IllegalArgumentException("Error pushing path ", e);
@@ -681,7 +692,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 				javax.sip.header.Header p = SipFactoryImpl.headerFactory
 						.createRouteHeader(SipFactoryImpl.addressFactory
 								.createAddress(sipUri));
-				this.message.addFirst(p);
+				getMessage().addFirst(p);
 			} catch (SipException e) {
 				logger.error("Error while pushing route [" + sipUri + "]");
 				throw new IllegalArgumentException("Error pushing route ", e);
@@ -691,7 +702,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	
 	public void setMaxForwards(int n) {
 		checkReadOnly();
-		MaxForwardsHeader mfh = (MaxForwardsHeader) this.message
+		MaxForwardsHeader mfh = (MaxForwardsHeader) getMessage()
 				.getHeader(MaxForwardsHeader.NAME);
 		try {
 			if (mfh != null) {
@@ -710,7 +721,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	 */
 	public void setRequestURI(URI uri) {
 		checkReadOnly();
-		Request request = (Request) message;
+		Request request = (Request) getMessage();
 		URIImpl uriImpl = (URIImpl) uri;
 		javax.sip.address.URI wrappedUri = uriImpl.getURI();
 		request.setRequestURI(wrappedUri);
@@ -893,7 +904,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 				return ((SIPTransaction)getTransaction()).getPeerAddress();
 			}
 		} else {
-			ViaHeader via = (ViaHeader) message.getHeader(ViaHeader.NAME);
+			ViaHeader via = (ViaHeader) getMessage().getHeader(ViaHeader.NAME);
 			if(via == null) {
 				return null;
 			} else {
@@ -915,7 +926,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	}
 
 	public String getScheme() {
-		return ((Request)message).getRequestURI().getScheme();
+		return ((Request)getMessage()).getRequestURI().getScheme();
 	}
 
 	public String getServerName() {
@@ -948,7 +959,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		// Cope with com.bea.sipservlet.tck.agents.api.javax_servlet_sip.SipServletMessageTest.testSend101 
 		// make sure a message received cannot be sent out
 		checkMessageState();
-		final Request request = (Request) super.message;
+		final Request request = (Request) getMessage();
 		final String requestMethod = getMethod();
 		final SipApplicationDispatcher sipApplicationDispatcher = sipFactoryImpl.getSipApplicationDispatcher();
 		final MobicentsSipSession session = getSipSession();
@@ -964,32 +975,17 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 					hop = inviteTxAppData.getHops().peek();
 				}
 			} else {
-				javax.sip.address.URI uriToResolve =  request.getRequestURI();
-				RouteHeader routeHeader = (RouteHeader) request.getHeader(RouteHeader.NAME);
-				if(routeHeader != null) {					
-					uriToResolve = routeHeader.getAddress().getURI();
-				} else {
-					// RFC5626 - see if we are to find a flow for this request.
-					// Note: we should do this even if the "uriToResolve" is coming
-					// from a route header but since we currently have not implemented
-					// the correct things for a proxy scenario, only do it for UAS
-					// scenarios. At least this will minimize the potential for messing
-					// up right now...
-					uriToResolve = resolveSipOutbound(uriToResolve);
-				}
+				javax.sip.address.URI uriToResolve = getUriToResolve(request);
 				String uriToResolveTransport = ((javax.sip.address.SipURI)uriToResolve).getTransportParam(); 
-				boolean transportParamModified = false;
-				if(session.getProxy() == null && session.getTransport() != null && uriToResolve.isSipURI() && uriToResolveTransport  == null &&
-						// no need to modify the Request URI for UDP which is the default transport
-						!session.getTransport().equalsIgnoreCase(ListeningPoint.UDP)) {					
-					try {
-						((javax.sip.address.SipURI)uriToResolve).setTransportParam(session.getTransport());
-						transportParamModified = true;
-					} catch (ParseException e) {
-						// nothing to do here, will never happen
-					}
+				boolean transportParamModified = setSessionTransport(session, uriToResolve);
+				Queue<Hop> hops = null;
+				DNSResolver dnsResolver = sipApplicationDispatcher.getDNSResolver();
+				if(dnsResolver instanceof MobicentsDNSResolver) {
+					// going through the resolution cache
+					hops = ((MobicentsDNSResolver) dnsResolver).locateHops(uriToResolve);
+				} else {
+					hops = dnsServerLocator.locateHops(uriToResolve);
 				}
-				Queue<Hop> hops = dnsServerLocator.locateHops(uriToResolve);
 				if(transportParamModified) {
 					// Issue http://code.google.com/p/sipservlets/issues/detail?id=186
 					// Resetting the transport to what is was before the modification to avoid modifying the route set
@@ -1003,16 +999,168 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 						}
 					}
 				}
-				if(hops != null && hops.size() > 0) {
-					// RFC 3263 support don't remove the current hop, it will be the one to reuse for CANCEL and ACK to non 2xx transactions
-					hop = hops.peek();
-					transactionApplicationData.setHops(hops);				
-				}
+				send(hops);
+				return;
+			}
+		}
+		send(hop);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.mobicents.javax.servlet.sip.SipServletRequestExt#sendAsynchronously(org.mobicents.javax.servlet.sip.SipServletRequestSendCallback)
+	 */
+	public void sendAsynchronously(final SipServletRequestSendCallback callback) {
+		if(callback == null) {
+			throw new NullPointerException("the callback is null");
+		}
+		checkReadOnly();
+		checkMessageState();
+		final Request request = (Request) getMessage();
+		final SipApplicationDispatcher sipApplicationDispatcher = sipFactoryImpl.getSipApplicationDispatcher();
+		final DNSResolver dnsResolver = sipApplicationDispatcher.getDNSResolver();
+		if(sipApplicationDispatcher.getDNSServerLocator() == null || Request.CANCEL.equals(getMethod()) || 
+				!(dnsResolver instanceof MobicentsDNSResolver)) {
+			// no DNS lookup to wait for
+			try {
+				send();
+			} catch (IOException e) {
+				callback.onSendFailure(this, e);
+				return;
 			}
+			callback.onSent(this);
+			return;
+		}
+		final MobicentsSipSession session = getSipSession();
+		// the uri is resolved from another thread so we work on a copy, leaving the route set and request URI untouched
+		final javax.sip.address.URI uriToResolve = (javax.sip.address.URI) getUriToResolve(request).clone();
+		setSessionTransport(session, uriToResolve);
+		if(!sendInFlight.compareAndSet(false, true)) {
+			throw new IllegalStateException("Message already being sent asynchronously");
+		}
+		final Thread callingThread = Thread.currentThread();
+		try {
+			((MobicentsDNSResolver) dnsResolver).locateHops(uriToResolve, new MobicentsDNSResolver.HopsListener() {
+				public void onHopsLocated(final Queue<Hop> hops) {
+					if(Thread.currentThread() == callingThread) {
+						// resolution was cached, we can send right away
+						sendAsynchronously(hops, callback);
+						return;
+					}
+					scheduleSendCallback(session, hops, null, callback);
+				}
+				
+				public void onHopsLocationFailed(final Exception e) {
+					if(logger.isDebugEnabled()) {
+						logger.debug("Couldn't locate the hops for " + uriToResolve, e);
+					}
+					scheduleSendCallback(session, null, e, callback);
+				}
+			});
+		} catch (RuntimeException e) {
+			// the lookup couldn't even be started
+			notifySendFailure(callback, e);
+		}
+	}
+	
+	/**
+	 * Sends the request with the hops located, or notifies the failure to locate them, from a task scheduled against the sip session.
+	 * The callback is notified of a failure if the task can't be scheduled or if the sip session is gone by the time it runs.
+	 */
+	private void scheduleSendCallback(MobicentsSipSession session, final Queue<Hop> hops, final Exception hopsLocationFailure, 
+			final SipServletRequestSendCallback callback) {
+		try {
+			session.scheduleAsynchronousWork(new SipSessionAsyncTask.DiscardableWork() {
+				private static final long serialVersionUID = 1L;
+
+				public void doAsynchronousWork(SipSession sipSession) {
+					if(hopsLocationFailure != null) {
+						notifySendFailure(callback, hopsLocationFailure);
+					} else {
+						sendAsynchronously(hops, callback);
+					}
+				}
+				
+				public void discarded() {
+					notifySendFailure(callback, new IllegalStateException("The SipSession of the request has been invalidated before it could be sent"));
+				}
+			});
+		} catch (RuntimeException e) {
+			// rejected by the executor or the session is already invalidated
+			notifySendFailure(callback, e);
+		}
+	}
+	
+	private void sendAsynchronously(Queue<Hop> hops, SipServletRequestSendCallback callback) {
+		try {
+			send(hops);
+		} catch (IOException e) {
+			notifySendFailure(callback, e);
+			return;
+		} catch (RuntimeException e) {
+			notifySendFailure(callback, e);
+			return;
+		}
+		sendInFlight.set(false);
+		callback.onSent(this);
+	}
+	
+	private void notifySendFailure(SipServletRequestSendCallback callback, Exception e) {
+		// the request can be sent again from the callback
+		sendInFlight.set(false);
+		callback.onSendFailure(this, e);
+	}
+	
+	private void send(Queue<Hop> hops) throws IOException {
+		Hop hop = null;
+		if(hops != null && hops.size() > 0) {
+			// RFC 3263 support don't remove the current hop, it will be the one to reuse for CANCEL and ACK to non 2xx transactions
+			hop = hops.peek();
+			transactionApplicationData.setHops(hops);				
 		}
 		send(hop);
 	}
 	
+	/**
+	 * @return the uri to do the RFC 3263 DNS lookups on to send the request
+	 */
+	private javax.sip.address.URI getUriToResolve(Request request) {
+		javax.sip.address.URI uriToResolve =  request.getRequestURI();
+		RouteHeader routeHeader = (RouteHeader) request.getHeader(RouteHeader.NAME);
+		if(routeHeader != null) {					
+			uriToResolve = routeHeader.getAddress().getURI();
+		} else {
+			// RFC5626 - see if we are to find a flow for this request.
+			// Note: we should do this even if the "uriToResolve" is coming
+			// from a route header but since we currently have not implemented
+			// the correct things for a proxy scenario, only do it for UAS
+			// scenarios. At least this will minimize the potential for messing
+			// up right now...
+			uriToResolve = resolveSipOutbound(uriToResolve);
+		}
+		return uriToResolve;
+	}
+	
+	/**
+	 * Sets the transport of the session on the uri to resolve if it has none, so that the DNS lookups are done for that transport
+	 * 
+	 * @return true if the uri has been modified
+	 */
+	private boolean setSessionTransport(MobicentsSipSession session, javax.sip.address.URI uriToResolve) {
+		String uriToResolveTransport = ((javax.sip.address.SipURI)uriToResolve).getTransportParam(); 
+		if(session.getProxy() == null && session.getTransport() != null && uriToResolve.isSipURI() && uriToResolveTransport  == null &&
+				// no need to modify the Request URI for UDP which is the default transport
+				!session.getTransport().equalsIgnoreCase(ListeningPoint.UDP)) {					
+			try {
+				((javax.sip.address.SipURI)uriToResolve).setTransportParam(session.getTransport());
+				return true;
+			} catch (ParseException e) {
+				// nothing to do here, will never happen
+			}
+		}
+		return false;
+	}
+	
 	
 	/**
 	 * Check to see if the uri to resolve contains a "ob" parameter and if so, try
@@ -1047,7 +1195,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	}
 	
 	public void send(Hop hop) throws IOException {
-		final Request request = (Request) super.message;
+		final Request request = (Request) getMessage();
 		final String requestMethod = getMethod();
 		final MobicentsSipSession session = getSipSession();
 		final String sessionTransport = session.getTransport();
@@ -1060,7 +1208,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		    }
 			// Because proxy decides transport in different way, it allows inbound and outbound transport to be different.
 			if(session != null && session.getProxy() == null) {
-				((MessageExt)message).setApplicationData(session.getTransport());			
+				((MessageExt)getMessage()).setApplicationData(session.getTransport());			
 			}		
 			
 			if(Request.CANCEL.equals(requestMethod)) {
@@ -1101,7 +1249,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 			//Issue http://code.google.com/p/mobicents/issues/detail?id=3144
 			//Store the transport of the resolved hop to be used later
 			if(hop != null) {
-				((MessageExt)message).setApplicationData(hop.getTransport());
+				((MessageExt)getMessage()).setApplicationData(hop.getTransport());
 			}
 			
 			// adding via header and update via branch if null
@@ -1404,8 +1552,8 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 				}
 
 				message = (Request) request.clone();
-                message.removeFirst(ViaHeader.NAME);
-                message.removeFirst(ContactHeader.NAME);
+                getMessage().removeFirst(ViaHeader.NAME);
+                getMessage().removeFirst(ContactHeader.NAME);
 				setTransaction(null);
 
 				if(ex.getCause() != null && ex.getCause() instanceof IOException) {				
@@ -1449,7 +1597,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	 */
 	private void checkViaHeaderAddition(Hop hop) throws ParseException {
 		final SipNetworkInterfaceManager sipNetworkInterfaceManager = sipFactoryImpl.getSipNetworkInterfaceManager();		
-		final Request request = (Request) super.message;
+		final Request request = (Request) getMessage();
 		final MobicentsSipSession session = getSipSession();
 		final MobicentsSipApplicationSession sipApplicationSession = session.getSipApplicationSession();
 		final MobicentsProxy proxy = session.getProxy();
@@ -1471,18 +1619,18 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 				// Issue 					
 				viaHeader = JainSipUtils.createViaHeader(
 						sipNetworkInterfaceManager, request, null, session.getOutboundInterface());
-				message.addHeader(viaHeader);
+				getMessage().addHeader(viaHeader);
 				if(logger.isDebugEnabled()) {
 			    	logger.debug("Added via Header" + viaHeader);
 			    }
 		    }
 		}
 		if(viaHeader.getBranch() == null) {
-			final String branch = JainSipUtils.createBranch(sipApplicationSession.getKey().getId(),  sipFactoryImpl.getSipApplicationDispatcher().getHashFromApplicationName(session.getKey().getApplicationName()));			
+			final String branch = JainSipUtils.createBranch(sipFactoryImpl.getSipApplicationDispatcher(), sipApplicationSession.getKey().getId(),  sipFactoryImpl.getSipApplicationDispatcher().getHashFromApplicationName(session.getKey().getApplicationName()));			
 			viaHeader.setBranch(branch);
 		}
 		// https://github.com/Mobicents/sip-servlets/issues/62 modify the Via transport to match either the hop, the route or the request URI transport
-		String transportFromRouteOrRequestUri = JainSipUtils.findRouteOrRequestUriTransport((Request) message);
+		String transportFromRouteOrRequestUri = JainSipUtils.findRouteOrRequestUriTransport((Request) getMessage());
 		String hopTransport = null;
 		if(hop != null) {
 			hopTransport = hop.getTransport();
@@ -1517,7 +1665,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 			throws ParseException, InvalidArgumentException {
 		
 		final SipConnector sipConnector = mobicentsExtendedListeningPoint.getSipConnector();
-		final Request request = (Request) super.message;	
+		final Request request = (Request) getMessage();	
 		ViaHeader viaHeader = (ViaHeader) request.getHeader(ViaHeader.NAME);
 				
 		if(sipConnector != null) {
@@ -1644,7 +1792,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 			throws ParseException {
 		
 		final SipNetworkInterfaceManager sipNetworkInterfaceManager = sipFactoryImpl.getSipNetworkInterfaceManager();
-		final Request request = (Request) super.message;
+		final Request request = (Request) getMessage();
 		final String requestMethod = getMethod();
 		final MobicentsSipSession session = getSipSession();
 		final MobicentsProxy proxy = session.getProxy();
@@ -1756,7 +1904,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 					// therefore constitutes a new SIP transaction).  
 					ViaHeader viaHeader = (ViaHeader) getMessage().getHeader(ViaHeader.NAME);
 					viaHeader.removeParameter("branch");
-					message = (Message) message.clone();
+					message = (Message) getMessage().clone();
 					if(logger.isDebugEnabled()) {
 						logger.debug("sending request " + getMessage() + " to next hop " + nextHop + " discovered through RFC3263 mechanisms.");
 					}
@@ -1787,7 +1935,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 			final MobicentsExtendedListeningPoint matchingListeningPoint)
 			throws ParseException, SipException {
 		
-		final Request request = (Request) super.message;			
+		final Request request = (Request) getMessage();			
 		final MobicentsSipSession session = getSipSession();
 		final MobicentsSipApplicationSession sipApplicationSession = session.getSipApplicationSession();
 		
@@ -1856,7 +2004,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	 * @throws NullPointerException 
 	 */
 	private void addInfoForRoutingBackToContainer(SipApplicationRouterInfo routerInfo, String applicationSessionId, String applicationName) throws ParseException, SipException {		
-		final Request request = (Request) super.message;
+		final Request request = (Request) getMessage();
 		final javax.sip.address.SipURI sipURI = JainSipUtils.createRecordRouteURI(
 				sipFactoryImpl.getSipNetworkInterfaceManager(), 
 				request);
@@ -2084,27 +2232,27 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		String realm = responseAuthHeader.getRealm();
 		
 		ListIterator<Header> authHeaderIterator = 
-			message.getHeaders(AuthorizationHeader.NAME);
+			getMessage().getHeaders(AuthorizationHeader.NAME);
 		if(authHeaderIterator.hasNext()) {
-			message.removeHeader(AuthorizationHeader.NAME);
+			getMessage().removeHeader(AuthorizationHeader.NAME);
 			while(authHeaderIterator.hasNext()) {
 				AuthorizationHeader wwwAuthHeader = 
 					(AuthorizationHeader) authHeaderIterator.next();
 				if(realm != null && !realm.equalsIgnoreCase(wwwAuthHeader.getRealm())) {
-					message.addHeader(wwwAuthHeader);
+					getMessage().addHeader(wwwAuthHeader);
 				}
 			}
 		}
 		
 		authHeaderIterator = 
-			message.getHeaders(ProxyAuthorizationHeader.NAME);
+			getMessage().getHeaders(ProxyAuthorizationHeader.NAME);
 		if(authHeaderIterator.hasNext()) {
-			message.removeHeader(ProxyAuthorizationHeader.NAME);
+			getMessage().removeHeader(ProxyAuthorizationHeader.NAME);
 			while(authHeaderIterator.hasNext()) {
 				ProxyAuthorizationHeader proxyAuthHeader = 
 					(ProxyAuthorizationHeader) authHeaderIterator.next();
 				if(realm != null && !realm.equalsIgnoreCase(proxyAuthHeader.getRealm())) {
-					message.addHeader(proxyAuthHeader);
+					getMessage().addHeader(proxyAuthHeader);
 				}
 			}	
 		}
@@ -2117,7 +2265,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 			String password,
 			String uri) {
 		
-		int nc = generateNcFromMessage(message);
+		int nc = generateNcFromMessage(getMessage());
 
 		AuthorizationHeader authorization = getSipSession().getSipApplicationSession().getSipContext().getDigestAuthenticator().getAuthorizationHeader(
 				getMethod(),
@@ -2129,7 +2277,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 				wwwAuthHeader.getNonce(),
 				nc);
 		
-		message.addHeader(authorization);
+		getMessage().addHeader(authorization);
 	}
 
 	/**
@@ -2393,16 +2541,16 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
                 logger.trace("ACK request trying to return the Via address as we don't have a transaction");
             }
             // replaced because wasn't giving correct info for ACK
-            if(message == null || ((SIPRequest)message).getPeerPacketSourceAddress() == null) {
+            if(getMessage() == null || ((SIPRequest)getMessage()).getPeerPacketSourceAddress() == null) {
                 return null;
             }
-            return ((SIPRequest)message).getPeerPacketSourceAddress().getHostAddress();
-        } else if (message != null && 
-                message instanceof SIPRequest && 
-                ((SIPRequest)message).getPeerPacketSourceAddress() != null ) {
+            return ((SIPRequest)getMessage()).getPeerPacketSourceAddress().getHostAddress();
+        } else if (getMessage() != null && 
+                getMessage() instanceof SIPRequest && 
+                ((SIPRequest)getMessage()).getPeerPacketSourceAddress() != null ) {
             //https://github.com/Mobicents/jain-sip/issues/42
             //take advantage of new message methods to extract addr from msg            
-            return ((SIPRequest)message).getPeerPacketSourceAddress().getHostAddress();
+            return ((SIPRequest)getMessage()).getPeerPacketSourceAddress().getHostAddress();
         } else if(getTransaction() != null) {
             if(logger.isTraceEnabled()) {
                 logger.trace("transaction not null, returning packet source ip address");
@@ -2416,7 +2564,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
             if(logger.isTraceEnabled()) {
                 logger.trace("transaction null, returning top via ip address");
             }
-			ViaHeader via = (ViaHeader) message.getHeader(ViaHeader.NAME);
+			ViaHeader via = (ViaHeader) getMessage().getHeader(ViaHeader.NAME);
 			if(via == null ||
 					// https://github.com/Mobicents/sip-servlets/issues/47
 					// check if the via is container generated, if it is then it means 
@@ -2440,15 +2588,15 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
                 logger.trace("ACK request trying to return the Via port as we don't have a transaction");
             }
             // replaced because wasn't giving correct info for ACK
-            if(message == null ) {
+            if(getMessage() == null ) {
                 return -1;
             }
-            return ((SIPRequest)message).getPeerPacketSourcePort();
-        } else if (message != null && 
-                message instanceof SIPRequest ) {
+            return ((SIPRequest)getMessage()).getPeerPacketSourcePort();
+        } else if (getMessage() != null && 
+                getMessage() instanceof SIPRequest ) {
             //https://github.com/Mobicents/jain-sip/issues/42
             //take advantage of new message methods to extract port from msg
-            return ((SIPRequest)message).getPeerPacketSourcePort();
+            return ((SIPRequest)getMessage()).getPeerPacketSourcePort();
         } else if(getTransaction() != null) {
             if(logger.isTraceEnabled()) {
                 logger.trace("transaction not null, returning packet source port");
@@ -2462,7 +2610,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
             if(logger.isTraceEnabled()) {
                 logger.trace("transaction null, returning top via port");
             }
-			ViaHeader via = (ViaHeader) message.getHeader(ViaHeader.NAME);
+			ViaHeader via = (ViaHeader) getMessage().getHeader(ViaHeader.NAME);
 			if(via == null ||
 					// https://github.com/Mobicents/sip-servlets/issues/47
 					// check if the via is container generated, if it is then it means 
@@ -2483,7 +2631,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		if(getTransaction() != null) {
 			return ((SIPTransaction)getTransaction()).getTransport();
 		} else {
-			ViaHeader via = (ViaHeader) message.getHeader(ViaHeader.NAME);
+			ViaHeader via = (ViaHeader) getMessage().getHeader(ViaHeader.NAME);
 			if(via == null ||
 					// https://github.com/Mobicents/sip-servlets/issues/47
 					// check if the via is container generated, if it is then it means 
@@ -2529,12 +2677,6 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 	public void readExternal(ObjectInput in) throws IOException,
 			ClassNotFoundException {
 		super.readExternal(in);
-		String messageString = in.readUTF();
-		try {
-			message = SipFactoryImpl.messageFactory.createRequest(messageString);
-		} catch (ParseException e) {
-			throw new IllegalArgumentException("Message " + messageString + " previously serialized could not be reparsed", e);
-		}
 		boolean isLinkedRequestSerialized = in.readBoolean();
 		if (isLinkedRequestSerialized) {
 			linkedRequest = (SipServletRequestImpl) in.readObject();
@@ -2614,7 +2756,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		
 		// First check for WWWAuthentication headers
 		ListIterator authHeaderIterator = 
-			message.getHeaders(AuthorizationHeader.NAME);
+			getMessage().getHeaders(AuthorizationHeader.NAME);
 		while(authHeaderIterator.hasNext()) {
 			AuthorizationHeader wwwAuthHeader = 
 				(AuthorizationHeader) authHeaderIterator.next();
@@ -2623,7 +2765,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 			if(authInfoEntry != null) {
 				
 				if(nc < 0) {
-					nc = generateNcFromMessage(message);
+					nc = generateNcFromMessage(getMessage());
 				}
 				String nextNonce = null;
 				if(useNextNonce) {
@@ -2650,7 +2792,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 		
 		// Now check for Proxy-Authentication
 		authHeaderIterator = 
-			message.getHeaders(ProxyAuthorizationHeader.NAME);
+			getMessage().getHeaders(ProxyAuthorizationHeader.NAME);
 		while(authHeaderIterator.hasNext()) {
 			ProxyAuthorizationHeader proxyAuthHeader = 
 				(ProxyAuthorizationHeader) authHeaderIterator.next();
@@ -2660,7 +2802,7 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 			if(authInfoEntry != null) { 
 				
 				if(nc < 0) {
-					nc = generateNcFromMessage(message);
+					nc = generateNcFromMessage(getMessage());
 				}
 				String nextNonce = null;
 				if(useNextNonce) {
@@ -2684,17 +2826,17 @@ public abstract class SipServletRequestImpl extends SipServletMessageImpl implem
 			}
 		}
 		
-		message.removeHeader(AuthorizationHeader.NAME);
-		message.removeHeader(ProxyAuthorizationHeader.NAME);
+		getMessage().removeHeader(AuthorizationHeader.NAME);
+		getMessage().removeHeader(ProxyAuthorizationHeader.NAME);
 		
 		for(Header header : authorizationHeaders) {
-			message.addHeader(header);
+			getMessage().addHeader(header);
 		}
 	}
 
 	// Issue 2354 : need to clone the original request to create the forked response
 	public Object clone() {
-		SipServletRequestImpl sipServletRequestImpl = (SipServletRequestImpl) sipFactoryImpl.getMobicentsSipServletMessageFactory().createSipServletRequest((Request)message, sipSession, getTransaction(), null, createDialog);
+		SipServletRequestImpl sipServletRequestImpl = (SipServletRequestImpl) sipFactoryImpl.getMobicentsSipServletMessageFactory().createSipServletRequest((Request)getMessage(), sipSession, getTransaction(), null, createDialog);
 		sipServletRequestImpl.setLinkedRequest(linkedRequest);
 		sipServletRequestImpl.setPoppedRoute(poppedRouteHeader);
 		sipServletRequestImpl.setSubscriberURI(subscriberURI);
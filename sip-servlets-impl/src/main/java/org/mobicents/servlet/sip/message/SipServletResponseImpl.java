@@ -134,7 +134,7 @@ public abstract class SipServletResponseImpl extends SipServletMessageImpl imple
 	 * @return the response
 	 */
 	public Response getResponse() {
-		return (Response) message;
+		return (Response) getMessage();
 	}
 	
 	@Override
@@ -169,7 +169,7 @@ public abstract class SipServletResponseImpl extends SipServletMessageImpl imple
 		}
 
 		if(hName.equalsIgnoreCase(ContactHeader.NAME)) {
-			Response sipResponse = (Response) this.message;
+			Response sipResponse = (Response) getMessage();
 	
 			String method = ((CSeqHeader) sipResponse.getHeader(CSeqHeader.NAME))
 					.getMethod();
@@ -278,7 +278,7 @@ public abstract class SipServletResponseImpl extends SipServletMessageImpl imple
 			prackRequest.removeHeader(ViaHeader.NAME);
 			// cater to http://code.google.com/p/sipservlets/issues/detail?id=31 to be able to set the rport in applications
 			final SipApplicationDispatcher sipApplicationDispatcher = sipFactoryImpl.getSipApplicationDispatcher();
-			final String branch = JainSipUtils.createBranch(session.getSipApplicationSession().getKey().getId(),  sipApplicationDispatcher.getHashFromApplicationName(session.getSipApplicationSession().getKey().getApplicationName()));
+			final String branch = JainSipUtils.createBranch(sipApplicationDispatcher, session.getSipApplicationSession().getKey().getId(),  sipApplicationDispatcher.getHashFromApplicationName(session.getSipApplicationSession().getKey().getApplicationName()));
 			ViaHeader viaHeader = JainSipUtils.createViaHeader(
     				sipFactoryImpl.getSipNetworkInterfaceManager(), prackRequest, branch, session.getOutboundInterface());
 			prackRequest.addHeader(viaHeader);
@@ -534,10 +534,10 @@ public abstract class SipServletResponseImpl extends SipServletMessageImpl imple
 				response.addHeader(rseqHeader);
 			}
 			if(logger.isDebugEnabled()) {
-				logger.debug("sending response "+ this.message);
+				logger.debug("sending response "+ getMessage());
 			}
 			if(originalRequest == null && proxy != null) {
-				String txid = ((ViaHeader) message.getHeader(ViaHeader.NAME)).getBranch();
+				String txid = ((ViaHeader) getMessage().getHeader(ViaHeader.NAME)).getBranch();
 				TransactionApplicationData tad = (TransactionApplicationData) proxy.getTransactionMap().get(txid);
 				if(logger.isDebugEnabled()) {
 					logger.debug("Trying to recover lost transaction for proxy: " + txid);
@@ -628,20 +628,20 @@ public abstract class SipServletResponseImpl extends SipServletMessageImpl imple
 				Thread.currentThread().setContextClassLoader(cl);
 				if(transaction == null) {
 					if(logger.isDebugEnabled()) {
-						logger.debug("Sending response statelessly " + message);
+						logger.debug("Sending response statelessly " + getMessage());
 					}
 					final String transport = JainSipUtils.findTransport(((SipServletRequestImpl)this.getRequest()).getMessage());
 					final SipProvider sipProvider = sipFactoryImpl.getSipNetworkInterfaceManager().findMatchingListeningPoint(
 							transport, false).getSipProvider();
-					sipProvider.sendResponse((Response)this.message);
+					sipProvider.sendResponse((Response)getMessage());
 				} else if(sendReliably) {
 					if(logger.isDebugEnabled()) {
-						logger.debug("Sending response reliably " + message);
+						logger.debug("Sending response reliably " + getMessage());
 					}
-					dialog.sendReliableProvisionalResponse((Response)this.message);
+					dialog.sendReliableProvisionalResponse((Response)getMessage());
 				} else {
 					if(logger.isDebugEnabled()) {
-						logger.debug("Sending response " + message + " through tx " + transaction);
+						logger.debug("Sending response " + getMessage() + " through tx " + transaction);
 					}
 					if(proxy != null && transaction.getDialog() != null && transaction instanceof SIPServerTransaction) {
 						// http://code.google.com/p/mobicents/issues/detail?id=2939 : Application Chaining and multiple protocols usage issue						
@@ -650,8 +650,8 @@ public abstract class SipServletResponseImpl extends SipServletMessageImpl imple
 						// so we nullify the dialog for that tx which is fine since we are a proxy application
 						((SIPServerTransaction) transaction).setDialog(null, null);
 					}
-					transaction.sendResponse( (Response)this.message );
-					sipFactoryImpl.getSipApplicationDispatcher().updateResponseStatistics((Response)this.message, false);
+					transaction.sendResponse( (Response)getMessage() );
+					sipFactoryImpl.getSipApplicationDispatcher().updateResponseStatistics((Response)getMessage(), false);
 					if(dialog != null) {
 						// we need to set the dialog again because it's possible that when the dialog
 						// was created it was in null state thus no dialog id so we need to reset it to trigger
@@ -670,7 +670,7 @@ public abstract class SipServletResponseImpl extends SipServletMessageImpl imple
 			if(e.getCause() != null && e.getCause() instanceof IOException) {
 				throw (IOException) e.getCause();
 			}
-			throw new IllegalStateException("an exception occured when sending the response " + message, e);
+			throw new IllegalStateException("an exception occured when sending the response " + getMessage(), e);
 		}
 	}
 	/*
@@ -780,7 +780,7 @@ public abstract class SipServletResponseImpl extends SipServletMessageImpl imple
 
 	public void setOriginalRequest(SipServletRequestImpl originalRequest) {
 		if(logger.isDebugEnabled()) {
-			logger.debug("original request set to " + originalRequest + " for response " + message);
+			logger.debug("original request set to " + originalRequest + " for response " + getMessage());
 		}
 		this.originalRequest = originalRequest;
 	}
@@ -805,7 +805,7 @@ public abstract class SipServletResponseImpl extends SipServletMessageImpl imple
 	 */
 	public void setCharacterEncoding(String enc) {		
 		try {			
-			this.message.setContentEncoding(SipFactoryImpl.headerFactory
+			getMessage().setContentEncoding(SipFactoryImpl.headerFactory
 					.createContentEncodingHeader(enc));
 		} catch (Exception ex) {
 			throw new IllegalArgumentException("Encoding " + enc + " not valid", ex);
@@ -827,12 +827,6 @@ public abstract class SipServletResponseImpl extends SipServletMessageImpl imple
 	public void readExternal(ObjectInput in) throws IOException,
 			ClassNotFoundException {
 		super.readExternal(in);
-		String messageString = in.readUTF();
-		try {
-			message = SipFactoryImpl.messageFactory.createResponse(messageString);
-		} catch (ParseException e) {
-			throw new IllegalArgumentException("Message " + messageString + " previously serialized could not be reparsed", e);
-		}
 		boolean isOriginalRequestSerialized = in.readBoolean();
 		if (isOriginalRequestSerialized) {
 			originalRequest = (SipServletRequestImpl) in.readObject();
@@ -19,6 +19,9 @@
 
 package org.mobicents.servlet.sip.message;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Queue;
 import java.util.Set;
@@ -33,7 +36,9 @@ import javax.sip.address.Hop;
 import org.apache.log4j.Logger;
 import org.mobicents.servlet.sip.core.message.MobicentsTransactionApplicationData;
 import org.mobicents.servlet.sip.core.session.MobicentsSipSessionKey;
+import org.mobicents.servlet.sip.core.session.SipSessionKey;
 import org.mobicents.servlet.sip.proxy.ProxyBranchImpl;
+import org.mobicents.servlet.sip.utils.ExternalizationUtils;
 
 /**
  * A container for holding branch specific data.
@@ -44,12 +49,13 @@ public class TransactionApplicationData implements Serializable, MobicentsTransa
 
 	private static final long serialVersionUID = 9170581635026591070L;
 	private static final Logger logger = Logger.getLogger(TransactionApplicationData.class);
-	private AtomicBoolean messageCleanedUp; 
-	private ProxyBranchImpl proxyBranch;	
-	private SipServletMessageImpl sipServletMessage;
-	private String method;
-	private MobicentsSipSessionKey sipSessionKey;
-	private Set<SipServletResponseImpl> sipServletResponses;
+	// the fields below are replicated through writeObject / readObject in a compact form
+	private transient AtomicBoolean messageCleanedUp; 
+	private transient ProxyBranchImpl proxyBranch;	
+	private transient SipServletMessageImpl sipServletMessage;
+	private transient String method;
+	private transient MobicentsSipSessionKey sipSessionKey;
+	private transient Set<SipServletResponseImpl> sipServletResponses;
 	private transient Transaction transaction;
 	private transient String initialRemoteHostAddress;
 	private transient int initialRemotePort;
@@ -297,6 +303,51 @@ public class TransactionApplicationData implements Serializable, MobicentsTransa
 		return hops;
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeBoolean(messageCleanedUp.get());
+		out.writeObject(proxyBranch);
+		out.writeObject(sipServletMessage);
+		ExternalizationUtils.writeString(out, method);
+		if(sipSessionKey instanceof SipSessionKey) {
+			out.writeBoolean(true);
+			((SipSessionKey) sipSessionKey).writeTo(out);
+		} else {
+			out.writeBoolean(false);
+			out.writeObject(sipSessionKey);
+		}
+		Set<SipServletResponseImpl> responses = sipServletResponses;
+		if(responses == null) {
+			out.writeInt(-1);
+		} else {
+			SipServletResponseImpl[] responsesArray = responses.toArray(new SipServletResponseImpl[responses.size()]);
+			out.writeInt(responsesArray.length);
+			for (SipServletResponseImpl sipServletResponse : responsesArray) {
+				out.writeObject(sipServletResponse);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		messageCleanedUp = new AtomicBoolean(in.readBoolean());
+		proxyBranch = (ProxyBranchImpl) in.readObject();
+		sipServletMessage = (SipServletMessageImpl) in.readObject();
+		method = ExternalizationUtils.readString(in);
+		if(in.readBoolean()) {
+			sipSessionKey = SipSessionKey.readFrom(in);
+		} else {
+			sipSessionKey = (MobicentsSipSessionKey) in.readObject();
+		}
+		int responsesSize = in.readInt();
+		if(responsesSize >= 0) {
+			sipServletResponses = new CopyOnWriteArraySet<SipServletResponseImpl>();
+			for (int i = 0; i < responsesSize; i++) {
+				sipServletResponses.add((SipServletResponseImpl) in.readObject());
+			}
+		}
+	}
+
 //	public void readExternal(ObjectInput in) throws IOException,
 //			ClassNotFoundException {
 //		sipServletMessage = (SipServletMessageImpl) in.readObject();
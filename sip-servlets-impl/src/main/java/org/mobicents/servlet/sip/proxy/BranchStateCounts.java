@@ -0,0 +1,86 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.proxy;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.mobicents.servlet.sip.proxy.ProxyBranchImpl.BranchState;
+
+/**
+ * Number of branches of a proxy in each {@link BranchState}.
+ * <p>
+ * Branches change state on the dispatcher threads (responses, cancel) as well as on the proxy timer threads (timeouts),
+ * so both the counters and the state each branch is counted under are updated atomically. A branch being moved to
+ * another state while it is removed still leaves the counters right since increments and decrements commute.
+ */
+final class BranchStateCounts {
+	private static final AtomicReferenceFieldUpdater<ProxyBranchImpl, BranchState> ACCOUNTED_STATE = 
+			AtomicReferenceFieldUpdater.newUpdater(ProxyBranchImpl.class, BranchState.class, "accountedState");
+	
+	private final AtomicIntegerArray counts = new AtomicIntegerArray(BranchState.values().length);
+	
+	/**
+	 * Starts counting the branch under its current state.
+	 */
+	void add(ProxyBranchImpl branch) {
+		final BranchState state = branch.getState();
+		if(ACCOUNTED_STATE.compareAndSet(branch, null, state)) {
+			counts.incrementAndGet(state.ordinal());
+			// the branch may have changed state while it was being added
+			update(branch);
+		}
+	}
+	
+	/**
+	 * Stops counting the branch.
+	 */
+	void remove(ProxyBranchImpl branch) {
+		final BranchState state = ACCOUNTED_STATE.getAndSet(branch, null);
+		if(state != null) {
+			counts.decrementAndGet(state.ordinal());
+		}
+	}
+	
+	/**
+	 * Moves the branch to the counter of its current state, does nothing if the branch isn't counted.
+	 */
+	void update(ProxyBranchImpl branch) {
+		BranchState previousState;
+		while((previousState = branch.accountedState) != null) {
+			final BranchState state = branch.getState();
+			if(state == previousState) {
+				return;
+			}
+			if(ACCOUNTED_STATE.compareAndSet(branch, previousState, state)) {
+				counts.decrementAndGet(previousState.ordinal());
+				counts.incrementAndGet(state.ordinal());
+				// check again : the state read may have been overtaken by a change already accounted by another thread
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of branches in the given state
+	 */
+	int get(BranchState state) {
+		return counts.get(state.ordinal());
+	}
+}
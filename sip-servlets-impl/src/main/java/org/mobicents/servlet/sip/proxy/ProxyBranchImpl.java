@@ -120,6 +120,8 @@ public class ProxyBranchImpl implements MobicentsProxyBranch, Externalizable {
 	private boolean isAddToPath;
 	private transient List<ProxyBranch> recursedBranches;
 	private boolean waitingForPrack;
+	// state this branch is currently counted under in its proxy, null if the proxy doesn't account for it, see BranchStateCounts
+	transient volatile BranchState accountedState;
 	// https://telestax.atlassian.net/browse/MSS-153 not needing to store it
 //	public transient ViaHeader viaHeader;
 	
@@ -132,6 +134,24 @@ public class ProxyBranchImpl implements MobicentsProxyBranch, Externalizable {
 	 */
 	public transient List<TransactionRequest> ongoingTransactions = new LinkedList<TransactionRequest>();
 	
+	/**
+	 * States a branch goes through, the proxy keeps a count of its branches in each of them
+	 * so that it doesn't have to walk all its branches on each response or timeout.
+	 */
+	static enum BranchState {
+		// not started yet
+		Untried,
+		// started and waiting for a final response
+		Started,
+		// cancelled after being started, the final response is still expected
+		Cancelling,
+		// a final response has been received
+		Final,
+		TimedOut,
+		// cancelled before being started
+		Cancelled
+	}
+	
 	public static class TransactionRequest {
 		public TransactionRequest(String branch, SipServletRequestImpl request) {
 			this.branchId = branch;
@@ -172,12 +192,14 @@ public class ProxyBranchImpl implements MobicentsProxyBranch, Externalizable {
 		// custom headers and push routes here. Later when we actually proxy the request we
 		// will clone this request (with it's custome headers and routes), but we will override
 		// the modified RR and Path parameters (as defined in the spec).
-		Request cloned = (Request)originalRequest.getMessage().clone();
-		((MessageExt)cloned).setApplicationData(null);
+		// The body is shared with the original request, only the headers are copied for each branch
+		Request cloned = JainSipUtils.cloneRequest((Request)originalRequest.getMessage());
 		this.outgoingRequest = (SipServletRequestImpl) proxy.getSipFactoryImpl().getMobicentsSipServletMessageFactory().createSipServletRequest(
 				cloned,
 				this.originalRequest.getSipSession(),
 				null, null, false);
+		this.originalRequest.setContentShared();
+		this.outgoingRequest.setContentShared();
 	}
 	
 	/* (non-Javadoc)
@@ -256,12 +278,14 @@ public class ProxyBranchImpl implements MobicentsProxyBranch, Externalizable {
 
 				}
 				canceled = true;
+				updateState();
 			}
 			if(!this.isStarted() &&
 					(outgoingRequest.getMethod().equalsIgnoreCase(Request.INVITE) ||
 							// https://code.google.com/p/sipservlets/issues/detail?id=253
 							outgoingRequest.getMethod().equalsIgnoreCase(Request.PRACK))) {
 				canceled = true;	
+				updateState();
 			}
 		}
 		catch(Exception e) {
@@ -382,6 +406,26 @@ public class ProxyBranchImpl implements MobicentsProxyBranch, Externalizable {
 	
 	public void setResponse(MobicentsSipServletResponse response) {
 		lastResponse = (SipServletResponseImpl) response;
+		updateState();
+	}
+	
+	BranchState getState() {
+		if(!started) {
+			return canceled ? BranchState.Cancelled : BranchState.Untried;
+		}
+		if(timedOut) {
+			return BranchState.TimedOut;
+		}
+		if(lastResponse != null && lastResponse.getStatus() >= Response.OK) {
+			return BranchState.Final;
+		}
+		return canceled ? BranchState.Cancelling : BranchState.Started;
+	}
+	
+	private void updateState() {
+		if(proxy != null) {
+			proxy.onBranchStateChanged(this);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -484,6 +528,7 @@ public class ProxyBranchImpl implements MobicentsProxyBranch, Externalizable {
 		}
 		
 		started = true;
+		updateState();
 		forwardRequest(cloned, false);		
 	}
 
@@ -501,6 +546,8 @@ public class ProxyBranchImpl implements MobicentsProxyBranch, Externalizable {
 				request,
 				null,
 				null, null, false);
+		// the body is shared with the request the branch proxied
+		clonedRequest.setContentShared();
 		
 		if(subsequent) {
 			clonedRequest.setRoutingState(RoutingState.SUBSEQUENT);
@@ -905,7 +952,7 @@ public class ProxyBranchImpl implements MobicentsProxyBranch, Externalizable {
 
 		ViaHeader viaHeader = (ViaHeader) clonedRequest.getHeader(ViaHeader.NAME);
 		try {
-			final String branch = JainSipUtils.createBranch(
+			final String branch = JainSipUtils.createBranch(sipApplicationDispatcher,
 					sipSession.getKey().getApplicationSessionId(),  
 					sipApplicationDispatcher.getHashFromApplicationName(sipSession.getKey().getApplicationName()));			
 			viaHeader.setBranch(branch);
@@ -1001,6 +1048,7 @@ public class ProxyBranchImpl implements MobicentsProxyBranch, Externalizable {
 				cancel1xxTimer();
 			}
 			this.timedOut = true;
+			updateState();
 			if(originalRequest != null) {
 			List<ProxyBranchListener> proxyBranchListeners = originalRequest.getSipSession().getSipApplicationSession().getSipContext().getListeners().getProxyBranchListeners();
 			if(proxyBranchListeners != null) {
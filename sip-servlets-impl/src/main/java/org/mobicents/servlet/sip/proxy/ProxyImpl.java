@@ -121,6 +121,10 @@ public class ProxyImpl implements MobicentsProxy, Externalizable {
 	private final transient Map<String, TransactionApplicationData> transactionMap = new ConcurrentHashMap<String, TransactionApplicationData>();
 	
 	private transient Map<URI, ProxyBranchImpl> proxyBranches;
+	// number of branches in each ProxyBranchImpl.BranchState, kept up to date by the branches on each transition
+	private final transient BranchStateCounts branchStateCounts = new BranchStateCounts();
+	// whether the losing branches have been cancelled since the last branch was added
+	private transient boolean losingBranchesCancelled;
 	private boolean started; 
 	private boolean ackReceived = false;
 	// https://telestax.atlassian.net/browse/MSS-153 removing can use start flag to optimize memory usage
@@ -324,7 +328,7 @@ public class ProxyImpl implements MobicentsProxy, Externalizable {
 			branch.setRecordRoute(recordRoutingEnabled);
 			branch.setRecurse(recurse);
 			list.add(branch);
-			this.proxyBranches.put(target, branch);
+			addProxyBranch(target, branch);
 		}
 		return list;
 	}
@@ -457,7 +461,7 @@ public class ProxyImpl implements MobicentsProxy, Externalizable {
 			final ProxyBranchImpl branch = new ProxyBranchImpl((URI) uri, this);
 			branch.setRecordRoute(recordRoutingEnabled);
 			branch.setRecurse(recurse);
-			this.proxyBranches.put(uri, branch);
+			addProxyBranch(uri, branch);
 		}
 		startProxy();
 	}
@@ -479,7 +483,7 @@ public class ProxyImpl implements MobicentsProxy, Externalizable {
 		final ProxyBranchImpl branch = new ProxyBranchImpl(uri, this);
 		branch.setRecordRoute(recordRoutingEnabled);
 		branch.setRecurse(recurse);
-		this.proxyBranches.put(uri, branch);
+		addProxyBranch(uri, branch);
 		startProxy();
 
 	}
@@ -647,11 +651,13 @@ public class ProxyImpl implements MobicentsProxy, Externalizable {
 		// Cancel all others if 2xx or 6xx 10.2.4 and it's not a retransmission
 		if(!isNoCancel && response.getTransaction() != null) {
 			if(this.getParallel()) {
-				if( (status >= 200 && status < 300) 
-					|| (status >= 600 && status < 700) ) { 
+				if( ((status >= 200 && status < 300) 
+					|| (status >= 600 && status < 700)) && !losingBranchesCancelled) { 
 					if(logger.isDebugEnabled())
 						logger.debug("Cancelling all other branches in this proxy");
+					// the losing branches are cancelled in one go, later 2xx or 6xx on this fork don't need to walk them again
 					cancelAllExcept(branch, null, null, null, false);
+					losingBranchesCancelled = true;
 				}
 			}
 		}
@@ -677,7 +683,7 @@ public class ProxyImpl implements MobicentsProxy, Externalizable {
 				final ProxyBranchImpl recurseBranch = new ProxyBranchImpl(contactURI, this);
 				recurseBranch.setRecordRoute(recordRoutingEnabled);
 				recurseBranch.setRecurse(recurse);
-				this.proxyBranches.put(contactURI, recurseBranch);
+				addProxyBranch(contactURI, recurseBranch);
 				branch.addRecursedBranch(branch);
 				if(parallel) {
 					recurseBranch.start();
@@ -786,29 +792,33 @@ public class ProxyImpl implements MobicentsProxy, Externalizable {
 	
 	public boolean allResponsesHaveArrived()
 	{
-		for(final MobicentsProxyBranch pbi: this.proxyBranches.values())
-		{
-			final SipServletResponse response = pbi.getResponse();
-			
-			// The unstarted branches still haven't got a chance to get response
-			// Issue http://code.google.com/p/mobicents/issues/detail?id=2461 adding !isCancelled
-			if(!pbi.isStarted() && !pbi.isCanceled()) { 
-				return false;
-			}
-			
-			if(pbi.isStarted() && !pbi.isTimedOut()
-					// Issue http://code.google.com/p/mobicents/issues/detail?id=2461 adding !isCancelled
-					// Issue https://code.google.com/p/sipservlets/issues/detail?id=283 fixing !isCancelled for parallel branches, 
-					// we should wait for best reponse from all branches
-					&& (!parallel && !pbi.isCanceled() || parallel) )
-			{
-				if(response == null || 						// if there is no response yet
-					response.getStatus() < Response.OK) {	// or if the response if not final
-					return false;							// then we should wait more
-				}
-			}
+		// The unstarted branches still haven't got a chance to get response
+		// Issue http://code.google.com/p/mobicents/issues/detail?id=2461 cancelled unstarted branches are not waited for
+		// Issue https://code.google.com/p/sipservlets/issues/detail?id=283 for parallel branches, 
+		// we should wait for best reponse from all branches, even the cancelled ones
+		return branchStateCounts.get(ProxyBranchImpl.BranchState.Untried) == 0
+			&& branchStateCounts.get(ProxyBranchImpl.BranchState.Started) == 0
+			&& (!parallel || branchStateCounts.get(ProxyBranchImpl.BranchState.Cancelling) == 0);
+	}
+	
+	void onBranchStateChanged(ProxyBranchImpl branch) {
+		branchStateCounts.update(branch);
+	}
+	
+	private void addProxyBranch(URI uri, ProxyBranchImpl branch) {
+		final ProxyBranchImpl previousBranch = proxyBranches.put(uri, branch);
+		if(previousBranch != null) {
+			branchStateCounts.remove(previousBranch);
 		}
-		return true;
+		branchStateCounts.add(branch);
+		losingBranchesCancelled = false;
+	}
+	
+	private void clearProxyBranches() {
+		for(ProxyBranchImpl proxyBranch : proxyBranches.values()) {
+			branchStateCounts.remove(proxyBranch);
+		}
+		proxyBranches.clear();
 	}
 	
 	public void sendFinalResponse(MobicentsSipServletResponse response,
@@ -916,7 +926,7 @@ public class ProxyImpl implements MobicentsProxy, Externalizable {
 					
 					proxiedResponse.send();	
 					bestResponseSent = proxiedResponse.getStatus();
-					proxyBranches.clear();
+					clearProxyBranches();
 					originalRequest = null;
 					// not needed cleanup in the finally clause will do it
 //					bestBranch = null;
@@ -67,11 +67,11 @@ public class ProxyUtils {
 	public static Request createProxiedRequest(SipServletRequestImpl originalRequest, ProxyBranchImpl proxyBranch, URI destination, SipURI outboundInterface, SipURI routeRecord, SipURI path)
 	{
 		try {
-			final Request clonedRequest = (Request) originalRequest.getMessage().clone();
+			final Request clonedRequest = JainSipUtils.cloneRequest((Request) originalRequest.getMessage());
+			originalRequest.setContentShared();
 			final String method = clonedRequest.getMethod();
 			final ProxyImpl proxy = (ProxyImpl) proxyBranch.getProxy(); 
 			final SipFactoryImpl sipFactoryImpl = proxy.getSipFactoryImpl();
-			((MessageExt)clonedRequest).setApplicationData(null);
 
 
 			String outboundTransport = null;
@@ -256,7 +256,7 @@ public class ProxyUtils {
 						logger.debug("reusing original branch id " + branchId);
 					}
 				} else {
-					branchId = JainSipUtils.createBranch(sipAppKey.getId(),  appName);
+					branchId = JainSipUtils.createBranch(sipFactoryImpl.getSipApplicationDispatcher(), sipAppKey.getId(),  appName);
 				}
 				viaHeader = JainSipUtils.createViaHeader(
 						sipFactoryImpl.getSipNetworkInterfaceManager(), clonedRequest, branchId, null);
@@ -278,7 +278,7 @@ public class ProxyUtils {
 						logger.debug("reusing original branch id " + branchId);
 					}
 				} else {
-					branchId = JainSipUtils.createBranch(sipAppKey.getId(),  appName);
+					branchId = JainSipUtils.createBranch(sipFactoryImpl.getSipApplicationDispatcher(), sipAppKey.getId(),  appName);
 				}
 
 				viaHeader = SipFactoryImpl.headerFactory.createViaHeader(
@@ -0,0 +1,123 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.rfc5626;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mobicents.servlet.sip.core.HopImpl;
+
+/**
+ * Flows known to this edge proxy, keyed by their flow token, so that requests routed back to a UA over its flow
+ * are resolved with a single lookup instead of decoding and verifying the token each time. Flows that have not been
+ * used for the idle timeout are dropped and will be decoded again if they come back.
+ * <p>
+ * Flows are kept in least recently used order : idle flows are dropped from the head of the map without scanning
+ * the flows still in use, and the least recently used flow makes room for a new one when the registry is full.
+ */
+public class FlowRegistry {
+
+	public static final long FLOW_IDLE_TIMEOUT = Long.getLong("org.mobicents.servlet.sip.rfc5626.flowIdleTimeout", 3600000L);
+	public static final int FLOW_REGISTRY_SIZE = Integer.getInteger("org.mobicents.servlet.sip.rfc5626.flowRegistrySize", 100000);
+
+	private final long idleTimeout;
+	// access ordered, guarded by itself
+	private final LinkedHashMap<String, Flow> flows;
+
+	public FlowRegistry() {
+		this(FLOW_IDLE_TIMEOUT, FLOW_REGISTRY_SIZE);
+	}
+
+	public FlowRegistry(long idleTimeout, final int maxSize) {
+		if(maxSize < 1) {
+			throw new IllegalArgumentException("the flow registry size should be positive : " + maxSize);
+		}
+		this.idleTimeout = idleTimeout;
+		this.flows = new LinkedHashMap<String, Flow>(Math.min(maxSize, 1024), 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Flow> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the hop to the remote end of the flow, or null if the flow is unknown or has been idle for too long.
+	 */
+	public HopImpl get(String flowToken) {
+		long now = currentTimeMillis();
+		synchronized (flows) {
+			Flow flow = flows.get(flowToken);
+			if(flow == null) {
+				return null;
+			}
+			if(now - flow.lastUsed > idleTimeout) {
+				flows.remove(flowToken);
+				return null;
+			}
+			flow.lastUsed = now;
+			return flow.hop;
+		}
+	}
+
+	public void register(String flowToken, HopImpl hop) {
+		long now = currentTimeMillis();
+		synchronized (flows) {
+			purge(now);
+			flows.put(flowToken, new Flow(hop, now));
+		}
+	}
+
+	public int size() {
+		synchronized (flows) {
+			return flows.size();
+		}
+	}
+
+	/**
+	 * Drops the idle flows, which are all at the head of the map since it is in least recently used order.
+	 */
+	private void purge(long now) {
+		Iterator<Flow> it = flows.values().iterator();
+		while(it.hasNext()) {
+			if(now - it.next().lastUsed <= idleTimeout) {
+				return;
+			}
+			it.remove();
+		}
+	}
+
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	private static final class Flow {
+		final HopImpl hop;
+		long lastUsed;
+
+		Flow(HopImpl hop, long lastUsed) {
+			this.hop = hop;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
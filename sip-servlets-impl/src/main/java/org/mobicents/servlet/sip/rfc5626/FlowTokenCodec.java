@@ -0,0 +1,305 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.rfc5626;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import org.mobicents.servlet.sip.core.HopImpl;
+
+/**
+ * Encodes and decodes RFC 5626 flow tokens following the example algorithm of Section 5.2 :
+ * the token is the base64 (URL safe alphabet, no padding) of HMAC-SHA1-80(K, S) followed by S, where S is
+ * <pre>
+ *      1 byte     transport enumeration, bit 4 set for an IPv6 local address, bit 5 for an IPv6 remote address
+ *      4/16 bytes local address
+ *      2 bytes    local port
+ *      4/16 bytes remote address
+ *      2 bytes    remote port
+ * </pre>
+ * which gives a 31 characters token for IPv4 flows.
+ * <p>
+ * The key K is generated when the class is loaded. Each thread uses its own <code>Mac</code> since instances
+ * are not thread safe.
+ */
+public final class FlowTokenCodec {
+
+	private static final String ALGORITHM = "HmacSHA1";
+	private static final int HMAC_LENGTH = 10;
+	private static final int LOCAL_IPV6 = 0x10;
+	private static final int REMOTE_IPV6 = 0x20;
+	private static final int TRANSPORT_MASK = 0x0F;
+
+	private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+	private static final byte[] DECODE_TABLE = new byte[128];
+
+	static {
+		for(int i = 0; i < DECODE_TABLE.length; i++) {
+			DECODE_TABLE[i] = -1;
+		}
+		for(int i = 0; i < ALPHABET.length; i++) {
+			DECODE_TABLE[ALPHABET[i]] = (byte) i;
+		}
+	}
+
+	private static final SecretKey KEY;
+
+	static {
+		try {
+			KeyGenerator keyGenerator = KeyGenerator.getInstance(ALGORITHM);
+			// 20 octet key * 8 bits
+			keyGenerator.init(20 * 8);
+			KEY = keyGenerator.generateKey();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Couldn't find algorithm " + ALGORITHM, e);
+		}
+	}
+
+	private static final ThreadLocal<Mac> MAC = new ThreadLocal<Mac>() {
+		@Override
+		protected Mac initialValue() {
+			try {
+				Mac mac = Mac.getInstance(ALGORITHM);
+				mac.init(KEY);
+				return mac;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException("Couldn't initialize " + ALGORITHM, e);
+			}
+		}
+	};
+
+	/**
+	 * Transports a flow can be established over.
+	 */
+	public enum FlowTransport {
+		UDP, TCP, TLS, SCTP, WS, WSS;
+
+		private static final FlowTransport[] VALUES = values();
+
+		public static FlowTransport fromString(String transport) {
+			for(FlowTransport flowTransport : VALUES) {
+				if(flowTransport.name().equalsIgnoreCase(transport)) {
+					return flowTransport;
+				}
+			}
+			throw new IllegalArgumentException("Unsupported flow transport " + transport);
+		}
+	}
+
+	private FlowTokenCodec() {
+	}
+
+	/**
+	 * Builds the flow token identifying the flow the request was received on.
+	 *
+	 * @throws IllegalArgumentException if the transport is not supported or an address is not an IP address
+	 */
+	public static String encode(String transport, String localAddress, int localPort, String remoteAddress, int remotePort) {
+		byte[] local = toAddressBytes(localAddress);
+		byte[] remote = toAddressBytes(remoteAddress);
+		int flags = FlowTransport.fromString(transport).ordinal();
+		if(local.length == 16) {
+			flags |= LOCAL_IPV6;
+		}
+		if(remote.length == 16) {
+			flags |= REMOTE_IPV6;
+		}
+
+		byte[] token = new byte[HMAC_LENGTH + 1 + local.length + 2 + remote.length + 2];
+		int offset = HMAC_LENGTH;
+		token[offset++] = (byte) flags;
+		System.arraycopy(local, 0, token, offset, local.length);
+		offset += local.length;
+		token[offset++] = (byte) (localPort >> 8);
+		token[offset++] = (byte) localPort;
+		System.arraycopy(remote, 0, token, offset, remote.length);
+		offset += remote.length;
+		token[offset++] = (byte) (remotePort >> 8);
+		token[offset] = (byte) remotePort;
+
+		Mac mac = MAC.get();
+		mac.update(token, HMAC_LENGTH, token.length - HMAC_LENGTH);
+		System.arraycopy(mac.doFinal(), 0, token, 0, HMAC_LENGTH);
+		return encodeBase64(token);
+	}
+
+	/**
+	 * Verifies the flow token and returns the hop to the remote end of the flow it identifies.
+	 *
+	 * @throws IncorrectFlowIdentifierException if the token is malformed or has been tampered with
+	 */
+	public static HopImpl decode(String flowToken) throws IncorrectFlowIdentifierException {
+		byte[] token = decodeBase64(flowToken);
+		if(token == null || token.length < HMAC_LENGTH + 1) {
+			throw new IncorrectFlowIdentifierException("malformed flow token " + flowToken);
+		}
+		int flags = token[HMAC_LENGTH] & 0xFF;
+		int localLength = (flags & LOCAL_IPV6) != 0 ? 16 : 4;
+		int remoteLength = (flags & REMOTE_IPV6) != 0 ? 16 : 4;
+		int transport = flags & TRANSPORT_MASK;
+		if(token.length != HMAC_LENGTH + 1 + localLength + 2 + remoteLength + 2 || transport >= FlowTransport.VALUES.length) {
+			throw new IncorrectFlowIdentifierException("malformed flow token " + flowToken);
+		}
+
+		Mac mac = MAC.get();
+		mac.update(token, HMAC_LENGTH, token.length - HMAC_LENGTH);
+		byte[] hmac = mac.doFinal();
+		int difference = 0;
+		for(int i = 0; i < HMAC_LENGTH; i++) {
+			difference |= hmac[i] ^ token[i];
+		}
+		if(difference != 0) {
+			throw new IncorrectFlowIdentifierException("hmac of flow token " + flowToken + " is different from the recomputed hmac");
+		}
+
+		int offset = HMAC_LENGTH + 1 + localLength + 2;
+		String remoteAddress = toAddressString(token, offset, remoteLength);
+		offset += remoteLength;
+		int remotePort = ((token[offset] & 0xFF) << 8) | (token[offset + 1] & 0xFF);
+		return new HopImpl(remoteAddress, remotePort, FlowTransport.VALUES[transport].name());
+	}
+
+	private static byte[] toAddressBytes(String address) {
+		byte[] ipv4 = parseIPv4(address);
+		if(ipv4 != null) {
+			return ipv4;
+		}
+		if(address.indexOf(':') < 0) {
+			throw new IllegalArgumentException(address + " is not an IP address");
+		}
+		String literal = address;
+		if(literal.charAt(0) == '[') {
+			literal = literal.substring(1, literal.length() - 1);
+		}
+		try {
+			// IPv6 literals are parsed without any name resolution
+			return InetAddress.getByName(literal).getAddress();
+		} catch (UnknownHostException e) {
+			throw new IllegalArgumentException(address + " is not an IP address", e);
+		}
+	}
+
+	private static byte[] parseIPv4(String address) {
+		byte[] bytes = new byte[4];
+		int octet = 0;
+		int value = 0;
+		int digits = 0;
+		for(int i = 0; i < address.length(); i++) {
+			char c = address.charAt(i);
+			if(c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				if(++digits > 3 || value > 255) {
+					return null;
+				}
+			} else if(c == '.' && digits > 0 && octet < 3) {
+				bytes[octet++] = (byte) value;
+				value = 0;
+				digits = 0;
+			} else {
+				return null;
+			}
+		}
+		if(octet != 3 || digits == 0) {
+			return null;
+		}
+		bytes[3] = (byte) value;
+		return bytes;
+	}
+
+	private static String toAddressString(byte[] token, int offset, int length) {
+		if(length == 4) {
+			StringBuilder address = new StringBuilder(15);
+			address.append(token[offset] & 0xFF).append('.')
+				.append(token[offset + 1] & 0xFF).append('.')
+				.append(token[offset + 2] & 0xFF).append('.')
+				.append(token[offset + 3] & 0xFF);
+			return address.toString();
+		}
+		byte[] ipv6 = new byte[16];
+		System.arraycopy(token, offset, ipv6, 0, 16);
+		try {
+			return InetAddress.getByAddress(ipv6).getHostAddress();
+		} catch (UnknownHostException e) {
+			// can't happen with a 16 bytes address
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String encodeBase64(byte[] data) {
+		char[] chars = new char[(data.length * 8 + 5) / 6];
+		int index = 0;
+		int i = 0;
+		for(; i + 2 < data.length; i += 3) {
+			int bits = ((data[i] & 0xFF) << 16) | ((data[i + 1] & 0xFF) << 8) | (data[i + 2] & 0xFF);
+			chars[index++] = ALPHABET[(bits >> 18) & 0x3F];
+			chars[index++] = ALPHABET[(bits >> 12) & 0x3F];
+			chars[index++] = ALPHABET[(bits >> 6) & 0x3F];
+			chars[index++] = ALPHABET[bits & 0x3F];
+		}
+		int remaining = data.length - i;
+		if(remaining > 0) {
+			int bits = (data[i] & 0xFF) << 16;
+			if(remaining == 2) {
+				bits |= (data[i + 1] & 0xFF) << 8;
+			}
+			chars[index++] = ALPHABET[(bits >> 18) & 0x3F];
+			chars[index++] = ALPHABET[(bits >> 12) & 0x3F];
+			if(remaining == 2) {
+				chars[index] = ALPHABET[(bits >> 6) & 0x3F];
+			}
+		}
+		return new String(chars);
+	}
+
+	private static byte[] decodeBase64(String data) {
+		int length = data.length();
+		if(length % 4 == 1) {
+			return null;
+		}
+		byte[] bytes = new byte[length * 6 / 8];
+		int bits = 0;
+		int bitCount = 0;
+		int index = 0;
+		for(int i = 0; i < length; i++) {
+			char c = data.charAt(i);
+			int value = c < DECODE_TABLE.length ? DECODE_TABLE[c] : -1;
+			if(value < 0) {
+				return null;
+			}
+			bits = (bits << 6) | value;
+			bitCount += 6;
+			if(bitCount >= 8) {
+				bitCount -= 8;
+				bytes[index++] = (byte) (bits >> bitCount);
+			}
+		}
+		if((bits & ((1 << bitCount) - 1)) != 0) {
+			// the unused low bits of the last character are always 0, a token is only valid in its canonical form
+			return null;
+		}
+		return bytes;
+	}
+}
@@ -24,16 +24,9 @@ package org.mobicents.servlet.sip.rfc5626;
 
 import gov.nist.javax.sip.header.ims.PathHeader;
 
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
-import java.util.Arrays;
 import java.util.ListIterator;
-import java.util.StringTokenizer;
 
-import javax.crypto.KeyGenerator;
-import javax.crypto.Mac;
-import javax.crypto.SecretKey;
 import javax.sip.SipException;
 import javax.sip.address.Hop;
 import javax.sip.address.SipURI;
@@ -43,7 +36,6 @@ import javax.sip.header.RouteHeader;
 import javax.sip.header.ViaHeader;
 import javax.sip.message.Request;
 
-import org.apache.commons.codec.binary.Base64;
 import org.apache.log4j.Logger;
 import org.mobicents.servlet.sip.JainSipUtils;
 import org.mobicents.servlet.sip.core.HopImpl;
@@ -61,24 +53,7 @@ public class RFC5626Helper {
 	
 	private static final Logger logger = Logger.getLogger(ProxyBranchImpl.class);
 	
-	private static final String ALGORITHM = "HmacSHA1";
-	private static Mac mac = null;
-	private static SecretKey secretKey = null; 
-    	
-	static{
-		try {
-			KeyGenerator keyGenerator = KeyGenerator.getInstance(ALGORITHM);
-			// 20 octet key * 8 bits	
-			keyGenerator.init(20 * 8);
-	        secretKey = keyGenerator.generateKey();
-			mac = Mac.getInstance(ALGORITHM);
-			mac.init(secretKey);
-		} catch (NoSuchAlgorithmException e) {
-			logger.error("Couldn't find algorithm " + ALGORITHM, e);
-		} catch (InvalidKeyException e) {
-			logger.error("Invalid Key " + secretKey, e);
-		}
-	}
+	private static final FlowRegistry flowRegistry = new FlowRegistry();
 	
 	public static void checkRequest(ProxyBranchImpl proxyBranch, Request request, SipServletRequestImpl originalRequest) throws IncorrectFlowIdentifierException {
 		if(!((ProxyImpl)proxyBranch.getProxy()).getSipOutboundSupport()) {
@@ -105,6 +80,9 @@ public class RFC5626Helper {
 					PathHeader pathHeader = (PathHeader) request.getHeader(PathHeader.NAME);
 					javax.sip.address.SipURI pathURI = (javax.sip.address.SipURI) pathHeader.getAddress().getURI();
 					String flowToken = generateFlowToken(originalRequest);
+					if(flowToken == null) {
+						return;
+					}
 					try {
 						pathURI.setUser(flowToken);					
 						pathURI.setParameter(MessageDispatcher.SIP_OUTBOUND_PARAM_OB, null);
@@ -216,35 +194,16 @@ public class RFC5626Helper {
 	   If the HMAC is not correct, the request has been tampered with.
 	 */
 	private static HopImpl decodeFlowToken(String user) throws IncorrectFlowIdentifierException {
-		if(logger.isDebugEnabled()) {
-			logger.debug("Decoding RFC 5626 Flow token " + user);
-		}		
-		byte[] byteConcat = Base64.decodeBase64(user.getBytes());
-		if(logger.isDebugEnabled()) {
-			logger.debug("Decoding RFC 5626 Flow token byteContact after base64 decoding is " + new String(byteConcat).trim());
-		}
-		String concatenation = new String(byteConcat);
-		int indexOfSlash = concatenation.indexOf("/");
-		String hmac = concatenation.substring(0, indexOfSlash);
-		String arrayS = concatenation.substring(indexOfSlash + 1, concatenation.length());
-		if(logger.isDebugEnabled()) {
-			logger.debug("Decoding RFC 5626 Flow token recomputing hmac of array S " + arrayS);
+		HopImpl hop = flowRegistry.get(user);
+		if(hop != null) {
+			return hop;
 		}
-		byte[] recomputedHmac = mac.doFinal(arrayS.trim().getBytes());
 		if(logger.isDebugEnabled()) {
-			logger.debug("Decoding RFC 5626 Flow token recomputed Hmac" + recomputedHmac);
-		}
-		recomputedHmac = new String(recomputedHmac).trim().getBytes();
-		if(!Arrays.equals(hmac.trim().getBytes(),recomputedHmac)) {
-			throw new IncorrectFlowIdentifierException("hmac " + hmac + " is different from the recomputed hmac " + new String(recomputedHmac).trim());
+			logger.debug("Decoding RFC 5626 Flow token " + user);
 		}
-		StringTokenizer stringTokenizer = new StringTokenizer(arrayS, "_");
-		String transport = stringTokenizer.nextToken();
-		stringTokenizer.nextToken();
-		stringTokenizer.nextToken();
-		String initialRemoteAddress = stringTokenizer.nextToken();
-		int initialRemotePort = Integer.parseInt(stringTokenizer.nextToken());
-		return new HopImpl(initialRemoteAddress, initialRemotePort, transport);
+		hop = FlowTokenCodec.decode(user);
+		flowRegistry.register(user, hop);
+		return hop;
 	}
 
 	/* 
@@ -260,38 +219,20 @@ public class RFC5626Helper {
       [RFC4648], and used as the flow identifier.  When using IPv4
       addresses, this will result in a 32-octet identifier.*/
 	private static String generateFlowToken(SipServletRequestImpl request) {
-		StringBuffer arrayS = new StringBuffer();
-		arrayS.append(request.getTransport());
-		arrayS.append("_");
-		arrayS.append(request.getLocalAddr());
-		arrayS.append("_");
-		arrayS.append(request.getLocalPort());
-		arrayS.append("_");
-		arrayS.append(request.getInitialRemoteAddr());
-		arrayS.append("_");
-		arrayS.append(request.getInitialRemotePort());
-		if(logger.isDebugEnabled()) {
-			logger.debug("Generating RFC 5626 Flow token from " + arrayS);
-		}
-		byte[] byteArrayS = arrayS.toString().trim().getBytes();
-		byte[] hmac = mac.doFinal(byteArrayS);
-		if(logger.isDebugEnabled()) {
-			logger.debug("Generating RFC 5626 Flow token hmac is " + new String(hmac).trim());
-		}
-		hmac = new String(hmac).trim().getBytes();
-		byte[] concatDelimiter = "/".getBytes();
-		byte[] byteConcat = new byte[hmac.length + concatDelimiter.length + byteArrayS.length];
-		System.arraycopy(hmac, 0, byteConcat, 0, hmac.length);		
-		System.arraycopy(concatDelimiter, 0, byteConcat, hmac.length, concatDelimiter.length);
-		System.arraycopy(byteArrayS, 0, byteConcat, hmac.length + concatDelimiter.length, byteArrayS.length);
-		if(logger.isDebugEnabled()) {
-			logger.debug("Generating RFC 5626 Flow token byteContact before base64 encoding is " + new String(byteConcat).trim());
+		String flowToken = null;
+		try {
+			flowToken = FlowTokenCodec.encode(request.getTransport(), request.getLocalAddr(), request.getLocalPort(),
+					request.getInitialRemoteAddr(), request.getInitialRemotePort());
+		} catch (IllegalArgumentException e) {
+			logger.error("Impossible to generate a RFC 5626 Flow token for " + request.getTransport() + " flow from "
+					+ request.getInitialRemoteAddr() + ":" + request.getInitialRemotePort(), e);
+			return null;
 		}
-		// does not result in a 32 octet id though...
-		byte[] base64Encoded = Base64.encodeBase64(byteConcat);
 		if(logger.isDebugEnabled()) {
-			logger.debug("Generating RFC 5626 Flow token byteContact after base64 encoding is " + new String(base64Encoded).trim());
+			logger.debug("Generated RFC 5626 Flow token " + flowToken);
 		}
-		return new String(base64Encoded).trim();
+		flowRegistry.register(flowToken, new HopImpl(request.getInitialRemoteAddr(), request.getInitialRemotePort(),
+				FlowTokenCodec.FlowTransport.fromString(request.getTransport()).name()));
+		return flowToken;
 	}
 }
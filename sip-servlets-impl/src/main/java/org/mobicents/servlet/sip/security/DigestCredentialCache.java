@@ -0,0 +1,111 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.security;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional cache, in front of the realm or users store, of the credentials (typically HA1 = MD5(username:realm:password))
+ * the digest authenticators verify responses against. Entries expire after a TTL so that credential changes are picked
+ * up; a TTL of 0 (the default) disables the cache.
+ *
+ * @param <V> the cached credential
+ */
+public class DigestCredentialCache<V> {
+
+	public static final long CREDENTIAL_CACHE_TTL = Long.getLong("org.mobicents.servlet.sip.security.digest.credentialCacheTtl", 0L);
+	public static final int CREDENTIAL_CACHE_SIZE = Integer.getInteger("org.mobicents.servlet.sip.security.digest.credentialCacheSize", 1000);
+
+	private final long ttl;
+	private final int maxSize;
+	private final ConcurrentHashMap<String, Entry<V>> credentials = new ConcurrentHashMap<String, Entry<V>>();
+
+	public DigestCredentialCache() {
+		this(CREDENTIAL_CACHE_TTL, CREDENTIAL_CACHE_SIZE);
+	}
+
+	public DigestCredentialCache(long ttl, int maxSize) {
+		this.ttl = ttl;
+		this.maxSize = maxSize;
+	}
+
+	public boolean isEnabled() {
+		return ttl > 0 && maxSize > 0;
+	}
+
+	public V get(String userName, String realmName) {
+		if(!isEnabled()) {
+			return null;
+		}
+		String key = key(userName, realmName);
+		Entry<V> entry = credentials.get(key);
+		if(entry == null) {
+			return null;
+		}
+		if(entry.expiresAt < System.currentTimeMillis()) {
+			credentials.remove(key, entry);
+			return null;
+		}
+		return entry.value;
+	}
+
+	public void put(String userName, String realmName, V value) {
+		if(!isEnabled() || value == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if(credentials.size() >= maxSize) {
+			Iterator<Map.Entry<String, Entry<V>>> it = credentials.entrySet().iterator();
+			while(it.hasNext()) {
+				if(it.next().getValue().expiresAt < now) {
+					it.remove();
+				}
+			}
+			if(credentials.size() >= maxSize) {
+				return;
+			}
+		}
+		credentials.put(key(userName, realmName), new Entry<V>(value, now + ttl));
+	}
+
+	public void invalidate(String userName, String realmName) {
+		credentials.remove(key(userName, realmName));
+	}
+
+	public void clear() {
+		credentials.clear();
+	}
+
+	private static String key(String userName, String realmName) {
+		return userName + ":" + realmName;
+	}
+
+	private static final class Entry<V> {
+		final V value;
+		final long expiresAt;
+
+		Entry(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
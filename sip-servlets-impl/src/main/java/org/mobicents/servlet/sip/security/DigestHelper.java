@@ -0,0 +1,84 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.security;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Per-thread MD5 digests for the SIP digest authenticators.
+ * <p>
+ * <code>MessageDigest</code> instances are not thread safe, so the authenticators used to share a single instance
+ * guarded by a monitor, which serialized every authentication of the container on the same lock. Each thread now
+ * keeps its own instance.
+ */
+public final class DigestHelper {
+
+	private static final char[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+
+	private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("MD5");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	};
+
+	private DigestHelper() {
+	}
+
+	/**
+	 * Returns the MD5 digest of the calling thread, reset and ready for use.
+	 */
+	public static MessageDigest md5() {
+		MessageDigest digest = MD5.get();
+		digest.reset();
+		return digest;
+	}
+
+	/**
+	 * Returns the MD5 digest of the given bytes.
+	 */
+	public static byte[] md5(byte[] data) {
+		return md5().digest(data);
+	}
+
+	/**
+	 * Returns the lower case hexadecimal MD5 digest of the given string, H(data) in rfc2617 terms.
+	 */
+	public static String md5Hex(String data) {
+		return toHex(md5(data.getBytes()));
+	}
+
+	/**
+	 * Converts the given bytes to a lower case hexadecimal string.
+	 */
+	public static String toHex(byte[] data) {
+		char[] chars = new char[data.length * 2];
+		for (int i = 0; i < data.length; i++) {
+			chars[i * 2] = HEX[(data[i] >> 4) & 0x0F];
+			chars[i * 2 + 1] = HEX[data[i] & 0x0F];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.security;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded table of the digest nonces issued by this node, tracking the highest nonce-count the client used with each
+ * of them.
+ * <p>
+ * It lets a client keep authenticating with the same nonce (incrementing nc as rfc2617 requires) instead of going
+ * through a 401/407 round trip for each request, while a request replaying a nonce-count that was already accepted is
+ * rejected. Nonces the table does not know about (issued by another node of the cluster, before a restart, or evicted
+ * because the table was full) are stale, the client is challenged again with a nonce of this node.
+ * <p>
+ * When the table is full, the oldest nonces are evicted first since they are the first to expire.
+ */
+public class DigestNonceTable {
+
+	public static final long NONCE_VALIDITY = Long.getLong("org.mobicents.servlet.sip.security.digest.nonceValidity", 300000L);
+	public static final int NONCE_TABLE_SIZE = Integer.getInteger("org.mobicents.servlet.sip.security.digest.nonceTableSize", 10000);
+
+	public enum NonceState {
+		/** The nonce and nonce-count can be used */
+		Valid,
+		/** The nonce expired or is unknown to this node, the client has to be challenged again */
+		Stale,
+		/** The nonce-count was already used with this nonce */
+		Replayed
+	}
+
+	private final long validity;
+	private final int maxSize;
+	private final ConcurrentHashMap<String, NonceEntry> nonces;
+	// nonces in the order they were issued, so that the oldest one is evicted without scanning the table
+	private final Queue<String> issueOrder = new ConcurrentLinkedQueue<String>();
+
+	public DigestNonceTable() {
+		this(NONCE_VALIDITY, NONCE_TABLE_SIZE);
+	}
+
+	public DigestNonceTable(long validity, int maxSize) {
+		if(maxSize < 1) {
+			throw new IllegalArgumentException("the nonce table size should be positive : " + maxSize);
+		}
+		this.validity = validity;
+		this.maxSize = maxSize;
+		this.nonces = new ConcurrentHashMap<String, NonceEntry>(Math.min(maxSize, 1024));
+	}
+
+	/**
+	 * Records a nonce that has just been sent in a challenge, evicting the oldest nonces if the table is full.
+	 */
+	public void issued(String nonce) {
+		long now = currentTimeMillis();
+		if(nonces.put(nonce, new NonceEntry(now + validity, 0)) == null) {
+			issueOrder.offer(nonce);
+		}
+		evict(now);
+	}
+
+	/**
+	 * Checks, without consuming it, whether the given nonce-count can be used with the nonce.
+	 * A missing nonce-count (no qop) makes the nonce single use.
+	 */
+	public NonceState check(String nonce, String nc) {
+		NonceEntry entry = nonces.get(nonce);
+		if(entry == null || entry.expiresAt < currentTimeMillis()) {
+			return NonceState.Stale;
+		}
+		long count = parseNonceCount(nc);
+		if(count < 0 || count <= entry.lastNonceCount.get()) {
+			return NonceState.Replayed;
+		}
+		return NonceState.Valid;
+	}
+
+	/**
+	 * Consumes the nonce-count once the request carrying it has been authenticated.
+	 *
+	 * @return false if a concurrent request consumed the same or a higher nonce-count first, 
+	 * or if the nonce was evicted in the meantime
+	 */
+	public boolean accept(String nonce, String nc) {
+		long count = parseNonceCount(nc);
+		if(count < 0) {
+			return false;
+		}
+		NonceEntry entry = nonces.get(nonce);
+		if(entry == null) {
+			return false;
+		}
+		AtomicLong last = entry.lastNonceCount;
+		long current = last.get();
+		while(count > current) {
+			if(last.compareAndSet(current, count)) {
+				return true;
+			}
+			current = last.get();
+		}
+		return false;
+	}
+
+	public int size() {
+		return nonces.size();
+	}
+
+	/**
+	 * Removes the oldest nonces while they are expired or the table is over its size.
+	 */
+	private void evict(long now) {
+		String eldest;
+		while((eldest = issueOrder.peek()) != null) {
+			NonceEntry entry = nonces.get(eldest);
+			if(entry != null && entry.expiresAt >= now && nonces.size() <= maxSize) {
+				return;
+			}
+			// another thread may have evicted it first
+			if(issueOrder.remove(eldest)) {
+				nonces.remove(eldest);
+			}
+		}
+	}
+
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	private static long parseNonceCount(String nc) {
+		if(nc == null) {
+			return 1;
+		}
+		try {
+			return Long.parseLong(nc, 16);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static final class NonceEntry {
+		final long expiresAt;
+		final AtomicLong lastNonceCount;
+
+		NonceEntry(long expiresAt, long lastNonceCount) {
+			this.expiresAt = expiresAt;
+			this.lastNonceCount = new AtomicLong(lastNonceCount);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding helpers used by the Externalizable implementations replicated or persisted by the container.
+ * 
+ * Strings and byte arrays are written length-prefixed (a negative length standing for null), which unlike
+ * {@link DataOutput#writeUTF(String)} has no 64KB limit and avoids the modified UTF-8 conversion. 
+ */
+public final class ExternalizationUtils {
+
+	private ExternalizationUtils() {}
+
+	public static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+		if(bytes == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	public static byte[] readBytes(DataInput in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	public static void writeString(DataOutput out, String string) throws IOException {
+		writeBytes(out, string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static String readString(DataInput in) throws IOException {
+		byte[] bytes = readBytes(in);
+		if(bytes == null) {
+			return null;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Creates virtual threads on the JDKs supporting them.<br/>
+ * The container is compiled against older JDKs, so the virtual thread builder API is looked up by reflection 
+ * and {@link #isSupported()} returns false when it is not available.
+ */
+public final class VirtualThreads {
+	private static final Logger logger = Logger.getLogger(VirtualThreads.class);
+	
+	private static final Method OF_VIRTUAL;
+	private static final Method NAME;
+	private static final Method FACTORY;
+	
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			name = builderClass.getMethod("name", String.class, long.class);
+			factory = builderClass.getMethod("factory");
+		} catch (Exception e) {
+			if(logger.isDebugEnabled()) {
+				logger.debug("Virtual threads are not supported by this JVM", e);
+			}
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+	}
+	
+	private VirtualThreads() {
+	}
+	
+	/**
+	 * @return true if the JVM supports virtual threads
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+	
+	/**
+	 * @param baseName prefix of the name of the threads, followed by a counter
+	 * @return a factory of virtual threads
+	 * @throws UnsupportedOperationException if the JVM doesn't support virtual threads
+	 */
+	public static ThreadFactory newThreadFactory(String baseName) {
+		if(OF_VIRTUAL == null) {
+			throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+		}
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			builder = NAME.invoke(builder, baseName, 0L);
+			return (ThreadFactory) FACTORY.invoke(builder);
+		} catch (Exception e) {
+			throw new UnsupportedOperationException("Couldn't create a virtual thread factory", e);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class GenericUtilsTest extends TestCase {
+
+	public GenericUtilsTest(String testName) {
+		super(testName);
+	}
+
+	public void testConvertToHex() {
+		assertEquals("00017f80ff", GenericUtils.convertToHex(new byte[] {0x00, 0x01, 0x7f, (byte) 0x80, (byte) 0xff}));
+		assertEquals("", GenericUtils.convertToHex(new byte[0]));
+	}
+
+	public void testHashStringIsTruncatedSha() throws Exception {
+		String fullHash = GenericUtils.convertToHex(MessageDigest.getInstance("SHA").digest("click2call".getBytes()));
+
+		assertEquals(40, fullHash.length());
+		// odd lengths stop in the middle of a byte
+		for(int length : new int[] {0, 1, 7, 8, 39, 40}) {
+			assertEquals(fullHash.substring(0, length), GenericUtils.hashString("click2call", length));
+		}
+		assertEquals(fullHash, GenericUtils.hashString("click2call", 100));
+	}
+
+	public void testHashStringIsRepeatable() {
+		// the per thread digest is reset between the calls
+		String hash = GenericUtils.hashString("click2call", 8);
+		GenericUtils.hashString("another application", 8);
+
+		assertEquals(hash, GenericUtils.hashString("click2call", 8));
+	}
+
+	public void testHashStringFromManyThreads() throws Exception {
+		final String expected = GenericUtils.hashString("click2call", 40);
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<String> wrong = new AtomicReference<String>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i = 0; i < 8; i++) {
+			final String other = "application" + i;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for(int j = 0; j < 5000; j++) {
+						GenericUtils.hashString(other, 8);
+						String hash = GenericUtils.hashString("click2call", 40);
+						if(!expected.equals(hash)) {
+							wrong.compareAndSet(null, hash);
+						}
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		start.countDown();
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		assertNull("wrong hash " + wrong.get(), wrong.get());
+	}
+}
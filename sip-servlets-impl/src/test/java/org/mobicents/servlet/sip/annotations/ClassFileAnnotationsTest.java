@@ -0,0 +1,165 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.annotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+
+import javax.servlet.sip.annotation.SipApplicationKey;
+import javax.servlet.sip.annotation.SipListener;
+import javax.servlet.sip.annotation.SipServlet;
+
+import junit.framework.TestCase;
+
+public class ClassFileAnnotationsTest extends TestCase {
+	
+	/**
+	 * Annotation with all the kinds of element values, to be skipped by the parser
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@interface Described {
+		String text();
+		long number();
+		ElementType type();
+		Class<?> type2();
+		Retention nested();
+		String[] tags();
+	}
+	
+	@Described(text = "servlet", number = Long.MAX_VALUE, type = ElementType.TYPE, type2 = String.class, 
+			nested = @Retention(RetentionPolicy.CLASS), tags = {"a", "b"})
+	@SipServlet(name = "annotated", loadOnStartup = 1)
+	public static class AnnotatedServlet {
+		// 8 bytes constants take two entries of the constant pool
+		static final long LONG_CONSTANT = 0x123456789ABCDEFL;
+		static final double DOUBLE_CONSTANT = Math.E;
+		
+		@Described(text = "field", number = 1, type = ElementType.FIELD, type2 = int.class, 
+				nested = @Retention(RetentionPolicy.SOURCE), tags = {})
+		String field = "value";
+		
+		long compute() {
+			return LONG_CONSTANT + (long) DOUBLE_CONSTANT;
+		}
+	}
+	
+	public static class InheritingServlet extends AnnotatedServlet {
+	}
+	
+	@SipListener(applicationName = "app")
+	public static class Listener {
+	}
+	
+	public static class ApplicationKey {
+		@SipApplicationKey
+		public static String key(Object request) {
+			return "key";
+		}
+		
+		public void other() {
+		}
+	}
+	
+	public static class NotAnnotated implements Runnable {
+		final float f = 1.5f;
+		
+		public void run() {
+		}
+	}
+	
+	public ClassFileAnnotationsTest(String testName) {
+		super(testName);
+	}
+	
+	static byte[] classFile(Class<?> clazz) throws IOException {
+		InputStream inputStream = clazz.getResourceAsStream("/" + clazz.getName().replace('.', '/') + ".class");
+		assertNotNull(clazz.getName(), inputStream);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			inputStream.close();
+		}
+	}
+	
+	static ClassFileAnnotations read(Class<?> clazz) throws IOException {
+		return ClassFileAnnotations.read(new ByteArrayInputStream(classFile(clazz)));
+	}
+	
+	public void testSipServletWithOtherAnnotationsAndWideConstants() throws IOException {
+		ClassFileAnnotations annotations = read(AnnotatedServlet.class);
+		assertEquals(AnnotatedServlet.class.getName(), annotations.getClassName());
+		assertNull(annotations.getSuperClassName());
+		assertEquals(ClassFileAnnotations.SIP_SERVLET, annotations.getFlags());
+	}
+	
+	public void testSuperClassOfInheritingClass() throws IOException {
+		ClassFileAnnotations annotations = read(InheritingServlet.class);
+		assertEquals(InheritingServlet.class.getName(), annotations.getClassName());
+		assertEquals(AnnotatedServlet.class.getName(), annotations.getSuperClassName());
+		// inherited annotations are resolved by the scanner, not found in the class file
+		assertEquals(0, annotations.getFlags());
+	}
+	
+	public void testSipListener() throws IOException {
+		assertEquals(ClassFileAnnotations.SIP_LISTENER, read(Listener.class).getFlags());
+	}
+	
+	public void testSipApplicationKeyOnMethod() throws IOException {
+		assertEquals(ClassFileAnnotations.SIP_APPLICATION_KEY, read(ApplicationKey.class).getFlags());
+	}
+	
+	public void testNotAnnotated() throws IOException {
+		ClassFileAnnotations annotations = read(NotAnnotated.class);
+		assertEquals(NotAnnotated.class.getName(), annotations.getClassName());
+		assertNull(annotations.getSuperClassName());
+		assertEquals(0, annotations.getFlags());
+	}
+	
+	public void testNotAClassFile() {
+		try {
+			ClassFileAnnotations.read(new ByteArrayInputStream("PK not a class".getBytes()));
+			fail("not a class file");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+	
+	public void testTruncatedClassFile() throws IOException {
+		byte[] classFile = classFile(AnnotatedServlet.class);
+		try {
+			ClassFileAnnotations.read(new ByteArrayInputStream(Arrays.copyOf(classFile, classFile.length / 2)));
+			fail("truncated class file");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
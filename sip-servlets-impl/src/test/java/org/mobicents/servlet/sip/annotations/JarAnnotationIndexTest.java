@@ -0,0 +1,151 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.annotations;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import junit.framework.TestCase;
+
+public class JarAnnotationIndexTest extends TestCase {
+	
+	private File directory;
+	
+	public JarAnnotationIndexTest(String testName) {
+		super(testName);
+	}
+	
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("jar-annotation-index", "");
+		assertTrue(directory.delete());
+		assertTrue(directory.mkdirs());
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		delete(directory);
+	}
+	
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if(files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+	
+	private File jar(String name, Class<?>... classes) throws IOException {
+		File jar = new File(directory, name);
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			for (Class<?> clazz : classes) {
+				out.putNextEntry(new JarEntry(clazz.getName().replace('.', '/') + ".class"));
+				out.write(ClassFileAnnotationsTest.classFile(clazz));
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+		return jar;
+	}
+	
+	private static Map<String, ClassFileAnnotations> byName(List<ClassFileAnnotations> classes) {
+		Map<String, ClassFileAnnotations> byName = new HashMap<String, ClassFileAnnotations>();
+		for (ClassFileAnnotations classFileAnnotations : classes) {
+			byName.put(classFileAnnotations.getClassName(), classFileAnnotations);
+		}
+		return byName;
+	}
+	
+	private static void write(File file, String content) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+	
+	public void testOnlyClassesOfInterestIndexed() throws IOException {
+		File jar = jar("app.jar", ClassFileAnnotationsTest.AnnotatedServlet.class, ClassFileAnnotationsTest.InheritingServlet.class, 
+				ClassFileAnnotationsTest.Listener.class, ClassFileAnnotationsTest.NotAnnotated.class);
+		
+		Map<String, ClassFileAnnotations> classes = byName(JarAnnotationIndex.getClasses(jar, null));
+		
+		assertEquals(3, classes.size());
+		assertEquals(ClassFileAnnotations.SIP_SERVLET, classes.get(ClassFileAnnotationsTest.AnnotatedServlet.class.getName()).getFlags());
+		assertEquals(ClassFileAnnotationsTest.AnnotatedServlet.class.getName(), 
+				classes.get(ClassFileAnnotationsTest.InheritingServlet.class.getName()).getSuperClassName());
+		assertEquals(ClassFileAnnotations.SIP_LISTENER, classes.get(ClassFileAnnotationsTest.Listener.class.getName()).getFlags());
+		assertFalse(classes.containsKey(ClassFileAnnotationsTest.NotAnnotated.class.getName()));
+	}
+	
+	public void testIndexStoredUnderDigestAndReused() throws IOException {
+		File jar = jar("app.jar", ClassFileAnnotationsTest.AnnotatedServlet.class, ClassFileAnnotationsTest.Listener.class);
+		File indexDirectory = new File(directory, "index");
+		
+		List<ClassFileAnnotations> scanned = JarAnnotationIndex.getClasses(jar, indexDirectory);
+		String digest = JarAnnotationIndex.digest(jar);
+		assertEquals(64, digest.length());
+		File indexFile = new File(indexDirectory, digest + ".idx");
+		assertTrue(indexFile.isFile());
+		
+		// the index is read instead of the jar as long as it was written for the same digest
+		write(indexFile, "# sip annotations index v2 " + digest + "\n2 org.example.Indexed -\n");
+		Map<String, ClassFileAnnotations> indexed = byName(JarAnnotationIndex.getClasses(jar, indexDirectory));
+		assertEquals(1, indexed.size());
+		assertEquals(ClassFileAnnotations.SIP_LISTENER, indexed.get("org.example.Indexed").getFlags());
+		
+		// an index written for another jar is not trusted
+		write(indexFile, "# sip annotations index v2 " + digest.replace(digest.charAt(0), digest.charAt(0) == '0' ? '1' : '0') + 
+				"\n2 org.example.Indexed -\n");
+		assertEquals(byName(scanned).keySet(), byName(JarAnnotationIndex.getClasses(jar, indexDirectory)).keySet());
+	}
+	
+	public void testModifiedJarScannedAgain() throws IOException {
+		File indexDirectory = new File(directory, "index");
+		File jar = jar("app.jar", ClassFileAnnotationsTest.AnnotatedServlet.class);
+		String digest = JarAnnotationIndex.digest(jar);
+		assertEquals(1, JarAnnotationIndex.getClasses(jar, indexDirectory).size());
+		
+		jar = jar("app.jar", ClassFileAnnotationsTest.AnnotatedServlet.class, ClassFileAnnotationsTest.Listener.class);
+		assertFalse(digest.equals(JarAnnotationIndex.digest(jar)));
+		assertEquals(2, JarAnnotationIndex.getClasses(jar, indexDirectory).size());
+		assertEquals(2, indexDirectory.listFiles().length);
+	}
+	
+	public void testIndexDirectoryUnderWorkDirectory() {
+		File workDirectory = new File(directory, "work");
+		assertEquals(new File(workDirectory, "sip-annotations-index"), JarAnnotationIndex.getIndexDirectory(workDirectory));
+		assertNull(JarAnnotationIndex.getIndexDirectory(null));
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import junit.framework.TestCase;
+
+public class ApplicationRoutingHeaderComposerTest extends TestCase {
+
+	private static final String SERVER_ID_HASH = "4f3a";
+	private static final String APP_NAME = "click2call";
+	private static final String APP_NAME_HASH = "9bc1";
+
+	private SipApplicationDispatcher sipApplicationDispatcher;
+
+	public ApplicationRoutingHeaderComposerTest(String testName) {
+		super(testName);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		sipApplicationDispatcher = (SipApplicationDispatcher) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {SipApplicationDispatcher.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if("getApplicationServerIdHash".equals(method.getName())) {
+					return SERVER_ID_HASH;
+				}
+				if("getApplicationNameFromHash".equals(method.getName())) {
+					return APP_NAME_HASH.equals(args[0]) ? APP_NAME : null;
+				}
+				if("getHashFromApplicationName".equals(method.getName())) {
+					return APP_NAME.equals(args[0]) ? APP_NAME_HASH : null;
+				}
+				if("getTagHashMaxLength".equals(method.getName())) {
+					return 8;
+				}
+				if("getIdentifierGenerator".equals(method.getName())) {
+					return new DefaultIdentifierGenerator();
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	public void testTagWithoutApplicationSessionId() {
+		String[] tuple = ApplicationRoutingHeaderComposer.getAppNameAndSessionId(sipApplicationDispatcher, 
+				"12345678_" + SERVER_ID_HASH + "_" + APP_NAME_HASH);
+
+		assertEquals(SERVER_ID_HASH, tuple[0]);
+		assertEquals(APP_NAME, tuple[1]);
+		assertNull(tuple[2]);
+	}
+
+	public void testTagWithApplicationSessionId() {
+		String[] tuple = ApplicationRoutingHeaderComposer.getAppNameAndSessionId(sipApplicationDispatcher, 
+				"12345678_" + SERVER_ID_HASH + "_" + APP_NAME_HASH + "_a1b2c3");
+
+		assertEquals(SERVER_ID_HASH, tuple[0]);
+		assertEquals(APP_NAME, tuple[1]);
+		assertEquals("a1b2c3", tuple[2]);
+	}
+
+	public void testTagOfAForeignServer() {
+		String[] tuple = ApplicationRoutingHeaderComposer.getAppNameAndSessionId(sipApplicationDispatcher, 
+				"12345678_beef_" + APP_NAME_HASH + "_a1b2c3");
+
+		assertEquals("beef", tuple[0]);
+		assertNull(tuple[1]);
+		assertNull(tuple[2]);
+	}
+
+	public void testTagWithoutApplicationRouting() {
+		for(String tag : new String[] {null, "12345678", "12345678_" + SERVER_ID_HASH, "12345678_" + SERVER_ID_HASH + "__"}) {
+			String[] tuple = ApplicationRoutingHeaderComposer.getAppNameAndSessionId(sipApplicationDispatcher, tag);
+
+			assertNull(tag, tuple[0]);
+			assertNull(tag, tuple[1]);
+			assertNull(tag, tuple[2]);
+		}
+	}
+
+	public void testUnknownApplicationHash() {
+		try {
+			ApplicationRoutingHeaderComposer.getAppNameAndSessionId(sipApplicationDispatcher, 
+					"12345678_" + SERVER_ID_HASH + "_dead");
+			fail("an unknown application hash should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testHashIsParsedBack() {
+		String tag = ApplicationRoutingHeaderComposer.getHash(sipApplicationDispatcher, APP_NAME, "a1b2c3");
+		String[] tuple = ApplicationRoutingHeaderComposer.getAppNameAndSessionId(sipApplicationDispatcher, tag);
+
+		assertEquals(SERVER_ID_HASH, tuple[0]);
+		assertEquals(APP_NAME, tuple[1]);
+		assertEquals("a1b2c3", tuple[2]);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class DefaultIdentifierGeneratorTest extends TestCase {
+
+	private static final int THREADS = 8;
+	private static final int BRANCHES_PER_THREAD = 10000;
+
+	public DefaultIdentifierGeneratorTest(String testName) {
+		super(testName);
+	}
+
+	public void testBranchValuesAreUniqueAcrossThreads() throws Exception {
+		final DefaultIdentifierGenerator identifierGenerator = new DefaultIdentifierGenerator();
+		final Set<String> branches = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<String> duplicate = new AtomicReference<String>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i = 0; i < THREADS; i++) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for(int j = 0; j < BRANCHES_PER_THREAD; j++) {
+						String branch = identifierGenerator.generateBranchValue();
+						if(!branches.add(branch)) {
+							duplicate.compareAndSet(null, branch);
+						}
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		start.countDown();
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		assertNull("duplicate branch " + duplicate.get(), duplicate.get());
+		assertEquals(THREADS * BRANCHES_PER_THREAD, branches.size());
+	}
+
+	public void testBranchValuesDifferAcrossGenerators() {
+		// each generator stands for a node of the cluster
+		assertFalse(new DefaultIdentifierGenerator().generateBranchValue().equals(new DefaultIdentifierGenerator().generateBranchValue()));
+	}
+
+	public void testBranchValueHasNoSeparator() {
+		String branch = new DefaultIdentifierGenerator().generateBranchValue();
+
+		assertEquals(-1, branch.indexOf('_'));
+		assertTrue(branch, branch.matches("[0-9a-z.]+"));
+	}
+
+	public void testTagValuesAreUniqueAcrossThreads() throws Exception {
+		final DefaultIdentifierGenerator identifierGenerator = new DefaultIdentifierGenerator();
+		final Set<String> tags = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		final AtomicReference<String> invalid = new AtomicReference<String>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i = 0; i < THREADS; i++) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					for(int j = 0; j < 1000; j++) {
+						String tag = identifierGenerator.generateTagValue(8);
+						if(tag.length() == 0 || tag.length() > 8 || tag.indexOf('_') >= 0) {
+							invalid.compareAndSet(null, tag);
+						}
+						tags.add(tag);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		assertNull("invalid tag " + invalid.get(), invalid.get());
+		// 8 random digits, a handful of collisions at most out of 8000 values
+		assertTrue(tags.size() > THREADS * 1000 - 10);
+	}
+}
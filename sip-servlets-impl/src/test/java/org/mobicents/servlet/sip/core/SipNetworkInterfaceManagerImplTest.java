@@ -0,0 +1,120 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.core.SipNetworkInterfaceManagerImpl.ListeningPointKey;
+import org.mobicents.servlet.sip.core.SipNetworkInterfaceManagerImpl.ResolvedListeningPoint;
+
+public class SipNetworkInterfaceManagerImplTest extends TestCase {
+
+	private static final String HOSTNAME = "unknown.example.org";
+
+	private SipNetworkInterfaceManagerImpl sipNetworkInterfaceManager;
+	private MobicentsExtendedListeningPoint listeningPoint;
+
+	public SipNetworkInterfaceManagerImplTest(String testName) {
+		super(testName);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// without DNS server locator the hostnames never resolve
+		SipApplicationDispatcher sipApplicationDispatcher = (SipApplicationDispatcher) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {SipApplicationDispatcher.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if("getDNSServerLocator".equals(method.getName())) {
+					return null;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+		sipNetworkInterfaceManager = new SipNetworkInterfaceManagerImpl(sipApplicationDispatcher);
+		listeningPoint = (MobicentsExtendedListeningPoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {MobicentsExtendedListeningPoint.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if("toString".equals(method.getName())) {
+					return "listening point";
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	public void testUnresolvedHostnameIsCachedWithTheCurrentGeneration() {
+		assertNull(sipNetworkInterfaceManager.findMatchingListeningPoint(HOSTNAME, 5060, "udp"));
+
+		ResolvedListeningPoint resolvedListeningPoint = sipNetworkInterfaceManager.resolvedListeningPointsCacheMap.get(key());
+		assertNotNull(resolvedListeningPoint);
+		assertNull(resolvedListeningPoint.listeningPoint);
+		assertEquals(sipNetworkInterfaceManager.listeningPointsGeneration.get(), resolvedListeningPoint.generation);
+	}
+
+	public void testCachedResolutionIsUsedWithinTheSameGeneration() {
+		long now = System.currentTimeMillis();
+		sipNetworkInterfaceManager.cacheResolvedListeningPoint(key(), listeningPoint, now, sipNetworkInterfaceManager.listeningPointsGeneration.get());
+
+		assertSame(listeningPoint, sipNetworkInterfaceManager.findMatchingListeningPoint(HOSTNAME, 5060, "udp"));
+	}
+
+	public void testListeningPointsChangeClearsTheResolutions() {
+		long generation = sipNetworkInterfaceManager.listeningPointsGeneration.get();
+		sipNetworkInterfaceManager.cacheResolvedListeningPoint(key(), listeningPoint, System.currentTimeMillis(), generation);
+
+		sipNetworkInterfaceManager.listeningPointsChanged();
+
+		assertEquals(generation + 1, sipNetworkInterfaceManager.listeningPointsGeneration.get());
+		assertTrue(sipNetworkInterfaceManager.resolvedListeningPointsCacheMap.isEmpty());
+		assertNull(sipNetworkInterfaceManager.findMatchingListeningPoint(HOSTNAME, 5060, "udp"));
+	}
+
+	public void testResolutionFromAPreviousGenerationIsNotCached() {
+		// the lookup started before the listening points changed and finishes after
+		long generation = sipNetworkInterfaceManager.listeningPointsGeneration.get();
+		sipNetworkInterfaceManager.listeningPointsChanged();
+
+		sipNetworkInterfaceManager.cacheResolvedListeningPoint(key(), listeningPoint, System.currentTimeMillis(), generation);
+
+		assertTrue(sipNetworkInterfaceManager.resolvedListeningPointsCacheMap.isEmpty());
+	}
+
+	public void testResolutionCachedFromAPreviousGenerationIsNotUsed() {
+		// the lookup checked the generation right before the listening points changed and cached after the clear
+		long generation = sipNetworkInterfaceManager.listeningPointsGeneration.get();
+		sipNetworkInterfaceManager.listeningPointsChanged();
+		sipNetworkInterfaceManager.resolvedListeningPointsCacheMap.put(key(), 
+				new ResolvedListeningPoint(listeningPoint, System.currentTimeMillis() + SipNetworkInterfaceManagerImpl.RESOLUTION_CACHE_TTL, generation));
+
+		assertNull(sipNetworkInterfaceManager.findMatchingListeningPoint(HOSTNAME, 5060, "udp"));
+		// and replaced by a resolution made against the current listening points
+		assertEquals(sipNetworkInterfaceManager.listeningPointsGeneration.get(), 
+				sipNetworkInterfaceManager.resolvedListeningPointsCacheMap.get(key()).generation);
+	}
+
+	private static ListeningPointKey key() {
+		return new ListeningPointKey(HOSTNAME, 5060, "udp");
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.descriptor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.servlet.sip.SipServletRequest;
+
+import junit.framework.TestCase;
+
+public class SipServletMappingIndexTest extends TestCase {
+	
+	private static final String[] METHODS = {"INVITE", "MESSAGE", "REGISTER", "OPTIONS"};
+	private static final String[] USERS = {"alice", "bob", "ALICE", "carol", null};
+	private static final String[] HOSTS = {"example.com", "EXAMPLE.com", "example.org", null};
+	
+	/**
+	 * Values of the variables extracted from the request, counting the extractions.
+	 */
+	static class RequestValues implements InvocationHandler {
+		final Map<String, String> values = new HashMap<String, String>();
+		int extractions;
+		
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if("getHeader".equals(method.getName())) {
+				extractions++;
+				return values.get(args[0]);
+			}
+			if("toString".equals(method.getName())) {
+				return values.toString();
+			}
+			throw new UnsupportedOperationException(method.getName());
+		}
+	}
+	
+	static SipServletRequest request(RequestValues requestValues) {
+		return (SipServletRequest) Proxy.newProxyInstance(SipServletMappingIndexTest.class.getClassLoader(), 
+				new Class<?>[] {SipServletRequest.class}, requestValues);
+	}
+	
+	static SipServletRequest request(String method, String user, String host) {
+		RequestValues requestValues = new RequestValues();
+		requestValues.values.put("request.method", method);
+		requestValues.values.put("request.uri.user", user);
+		requestValues.values.put("request.uri.host", host);
+		return request(requestValues);
+	}
+	
+	static class Equals implements EqualsMatchingRule {
+		final String varName;
+		final String value;
+		final boolean ignoreCase;
+		
+		Equals(String varName, String value, boolean ignoreCase) {
+			this.varName = varName;
+			this.value = value;
+			this.ignoreCase = ignoreCase;
+		}
+		
+		public boolean matches(SipServletRequest request) {
+			if (!ignoreCase) {
+				return value.equals(getValue(request));
+			}
+			return value.equalsIgnoreCase(getValue(request));
+		}
+		
+		public String getExpression() {
+			return "(" + varName + (ignoreCase ? " ~= " : " == ") + value + ")";
+		}
+		
+		public String getVarName() {
+			return varName;
+		}
+		
+		public String getExpectedValue() {
+			return value;
+		}
+		
+		public boolean isIgnoreCase() {
+			return ignoreCase;
+		}
+		
+		public String getValue(SipServletRequest request) {
+			return request.getHeader(varName);
+		}
+	}
+	
+	static class And implements AndMatchingRule {
+		final List<MatchingRule> criteria;
+		
+		And(MatchingRule... criteria) {
+			this.criteria = Arrays.asList(criteria);
+		}
+		
+		public boolean matches(SipServletRequest request) {
+			for (MatchingRule criterion : criteria) {
+				if(!criterion.matches(request)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		public String getExpression() {
+			return criteria.toString();
+		}
+		
+		public List<MatchingRule> getCriteria() {
+			return criteria;
+		}
+	}
+	
+	/**
+	 * Rule the index can't see into
+	 */
+	static class Exists implements MatchingRule {
+		final String varName;
+		
+		Exists(String varName) {
+			this.varName = varName;
+		}
+		
+		public boolean matches(SipServletRequest request) {
+			return request.getHeader(varName) != null;
+		}
+		
+		public String getExpression() {
+			return "(" + varName + " exists)";
+		}
+	}
+	
+	static class Mapping implements MobicentsSipServletMapping {
+		String servletName;
+		MatchingRule matchingRule;
+		
+		Mapping(String servletName, MatchingRule matchingRule) {
+			this.servletName = servletName;
+			this.matchingRule = matchingRule;
+		}
+		
+		public String getServletName() {
+			return servletName;
+		}
+		
+		public void setServletName(String servletName) {
+			this.servletName = servletName;
+		}
+		
+		public MatchingRule getMatchingRule() {
+			return matchingRule;
+		}
+		
+		public void setMatchingRule(MatchingRule matchingRule) {
+			this.matchingRule = matchingRule;
+		}
+		
+		@Override
+		public String toString() {
+			return servletName + " " + matchingRule.getExpression();
+		}
+	}
+	
+	public SipServletMappingIndexTest(String testName) {
+		super(testName);
+	}
+	
+	private static MobicentsSipServletMapping linearScan(List<MobicentsSipServletMapping> mappings, SipServletRequest request) {
+		for (MobicentsSipServletMapping mapping : mappings) {
+			if(mapping.getMatchingRule().matches(request)) {
+				return mapping;
+			}
+		}
+		return null;
+	}
+	
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+	
+	private static MatchingRule randomRule(Random random, int depth) {
+		switch (random.nextInt(depth > 1 ? 4 : 5)) {
+		case 0:
+			return new Equals("request.method", pick(random, METHODS), random.nextBoolean());
+		case 1:
+			String user = pick(random, USERS);
+			return new Equals("request.uri.user", user == null ? "dave" : user, random.nextBoolean());
+		case 2:
+			String host = pick(random, HOSTS);
+			return new Equals("request.uri.host", host == null ? "example.net" : host, random.nextBoolean());
+		case 3:
+			return new Exists(random.nextBoolean() ? "request.uri.user" : "request.uri.host");
+		default:
+			int size = 1 + random.nextInt(3);
+			MatchingRule[] criteria = new MatchingRule[size];
+			for (int i = 0; i < size; i++) {
+				criteria[i] = randomRule(random, depth + 1);
+			}
+			return new And(criteria);
+		}
+	}
+	
+	public void testFirstMatchIsTheOneOfTheLinearScan() {
+		Random random = new Random(42);
+		for (int application = 0; application < 200; application++) {
+			List<MobicentsSipServletMapping> mappings = new ArrayList<MobicentsSipServletMapping>();
+			int size = 1 + random.nextInt(12);
+			for (int i = 0; i < size; i++) {
+				mappings.add(new Mapping("servlet" + i, randomRule(random, 0)));
+			}
+			SipServletMappingIndex index = new SipServletMappingIndex();
+			for (String method : METHODS) {
+				for (String user : USERS) {
+					for (String host : HOSTS) {
+						SipServletRequest request = request(method, user, host);
+						assertSame(mappings + " " + request, linearScan(mappings, request), index.find(mappings, request));
+					}
+				}
+			}
+		}
+	}
+	
+	public void testVariablesExtractedOncePerLookup() {
+		List<MobicentsSipServletMapping> mappings = new ArrayList<MobicentsSipServletMapping>();
+		mappings.add(new Mapping("a", new And(new Equals("request.method", "INVITE", false), new Equals("request.uri.user", "alice", false))));
+		mappings.add(new Mapping("b", new And(new Equals("request.method", "INVITE", false), new Equals("request.uri.user", "bob", false))));
+		mappings.add(new Mapping("c", new And(new Equals("request.method", "INVITE", false), new Equals("request.uri.host", "example.com", true))));
+		mappings.add(new Mapping("d", new Equals("request.method", "INVITE", false)));
+		RequestValues requestValues = new RequestValues();
+		requestValues.values.put("request.method", "INVITE");
+		requestValues.values.put("request.uri.host", "example.org");
+		
+		MobicentsSipServletMapping found = new SipServletMappingIndex().find(mappings, request(requestValues));
+		
+		assertEquals("d", found.getServletName());
+		// request.method, request.uri.user and request.uri.host
+		assertEquals(3, requestValues.extractions);
+	}
+	
+	public void testIgnoreCaseIndexedAsEqualsIgnoreCase() {
+		// the dotted capital I is equal ignoring case to i, while its lower case form is "i" followed by a combining dot
+		String dottedCapitalI = "\u0130";
+		assertTrue("i".equalsIgnoreCase(dottedCapitalI));
+		assertEquals(SipServletMappingIndex.foldCase("i"), SipServletMappingIndex.foldCase(dottedCapitalI));
+		
+		List<MobicentsSipServletMapping> mappings = new ArrayList<MobicentsSipServletMapping>();
+		mappings.add(new Mapping("a", new Equals("request.uri.user", "al" + dottedCapitalI + "ce", true)));
+		SipServletRequest request = request("INVITE", "alice", null);
+		assertSame(linearScan(mappings, request), new SipServletMappingIndex().find(mappings, request));
+	}
+	
+	public void testRebuiltOnceMappingsAreAdded() {
+		List<MobicentsSipServletMapping> mappings = new ArrayList<MobicentsSipServletMapping>();
+		mappings.add(new Mapping("a", new Equals("request.method", "MESSAGE", false)));
+		SipServletMappingIndex index = new SipServletMappingIndex();
+		SipServletRequest request = request("INVITE", "alice", null);
+		assertNull(index.find(mappings, request));
+		
+		mappings.add(new Mapping("b", new Equals("request.method", "INVITE", false)));
+		index.invalidate();
+		assertEquals("b", index.find(mappings, request).getServletName());
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.dispatchers;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.mobicents.javax.servlet.CongestionControlEvent;
+
+public class QueueCongestionControlTest extends TestCase {
+	
+	private ShardedDispatcherExecutor executor;
+	private ShardedDispatcherExecutorTest.BlockingTask blockingTask;
+	
+	public QueueCongestionControlTest(String testName) {
+		super(testName);
+	}
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		executor = new ShardedDispatcherExecutor("test", 1, 1, 4, Thread.NORM_PRIORITY);
+		blockingTask = new ShardedDispatcherExecutorTest.BlockingTask();
+		executor.execute(blockingTask);
+		assertTrue(blockingTask.started.await(5, TimeUnit.SECONDS));
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		blockingTask.release.countDown();
+		executor.shutdownNow();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		super.tearDown();
+	}
+	
+	private CountDownLatch queueTasks(int numberOfTasks) {
+		final CountDownLatch done = new CountDownLatch(numberOfTasks);
+		for (int i = 0; i < numberOfTasks; i++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					done.countDown();
+				}
+			});
+		}
+		return done;
+	}
+	
+	public void testFullShardStartsAndDrainedShardStopsRejecting() throws Exception {
+		final QueueCongestionControl congestionControl = new QueueCongestionControl(executor, 2);
+		final CountDownLatch done = queueTasks(3);
+		assertNull(congestionControl.sample());
+		assertFalse(congestionControl.isRejecting());
+		
+		queueTasks(1);
+		assertEquals(4, executor.getPendingTasks());
+		final CongestionControlEvent startEvent = congestionControl.sample();
+		assertNotNull(startEvent);
+		assertEquals(CongestionControlEvent.Reason.Queue, startEvent.getReason());
+		assertTrue(congestionControl.isRejecting());
+		// no new event while the state doesn't change
+		assertNull(congestionControl.sample());
+		
+		blockingTask.release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		final long deadline = System.currentTimeMillis() + 5000;
+		while(executor.getPendingTasks() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		final CongestionControlEvent stopEvent = congestionControl.sample();
+		assertNotNull(stopEvent);
+		assertEquals(CongestionControlEvent.Reason.Queue, stopEvent.getReason());
+		assertFalse(congestionControl.isRejecting());
+	}
+	
+	public void testThresholdFollowsTheResizedShards() throws Exception {
+		final QueueCongestionControl congestionControl = new QueueCongestionControl(executor, 1);
+		queueTasks(2);
+		assertNull(congestionControl.sample());
+		
+		executor.setShardQueueSize(2);
+		assertEquals(2, executor.getShardQueueSize());
+		assertNotNull(congestionControl.sample());
+		assertTrue(congestionControl.isRejecting());
+	}
+	
+	public void testBackToNormalQueueSizeAtTheCapacityStillLetsTheShardsDrain() throws Exception {
+		final QueueCongestionControl congestionControl = new QueueCongestionControl(executor, 10);
+		queueTasks(4);
+		assertNotNull(congestionControl.sample());
+		// 4 queued tasks are not under the capacity, the back to normal queue size is capped under it
+		assertNull(congestionControl.sample());
+		assertTrue(congestionControl.isRejecting());
+	}
+	
+	public void testReset() throws Exception {
+		final QueueCongestionControl congestionControl = new QueueCongestionControl(executor, 2);
+		queueTasks(4);
+		assertNotNull(congestionControl.sample());
+		congestionControl.reset();
+		assertFalse(congestionControl.isRejecting());
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.dispatchers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.core.session.SessionExecutionLane;
+import org.mobicents.servlet.sip.utils.VirtualThreads;
+
+public class ShardedDispatcherExecutorTest extends TestCase {
+	
+	private ShardedDispatcherExecutor executor;
+	
+	public ShardedDispatcherExecutorTest(String testName) {
+		super(testName);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		if(executor != null) {
+			executor.shutdownNow();
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		}
+		super.tearDown();
+	}
+	
+	static class KeyedTask implements ShardedTask {
+		final Object key;
+		final Runnable runnable;
+		
+		KeyedTask(Object key, Runnable runnable) {
+			this.key = key;
+			this.runnable = runnable;
+		}
+		
+		public Object getShardKey() {
+			return key;
+		}
+		
+		public void run() {
+			runnable.run();
+		}
+	}
+	
+	/**
+	 * Occupies the single thread of a shard until released.
+	 */
+	static class BlockingTask implements Runnable {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		
+		public void run() {
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	public void testInvalidConfigurationIsRefused() {
+		try {
+			new ShardedDispatcherExecutor("test", 0, 1, 10, Thread.NORM_PRIORITY);
+			fail("0 shards should be refused");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new ShardedDispatcherExecutor("test", 1, 1, 0, Thread.NORM_PRIORITY);
+			fail("an empty queue should be refused");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new ShardedDispatcherExecutor("test", 1, 64, 10, Thread.NORM_PRIORITY, DispatcherExecutorMode.Virtual);
+			fail("several virtual threads per shard should be refused");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	public void testDispatcherExecutorModeIsCaseInsensitive() {
+		assertEquals(DispatcherExecutorMode.Virtual, DispatcherExecutorMode.fromString("Virtual"));
+		assertEquals(DispatcherExecutorMode.Virtual, DispatcherExecutorMode.fromString("virtual"));
+		assertEquals(DispatcherExecutorMode.Virtual, DispatcherExecutorMode.fromString(" VIRTUAL "));
+		assertEquals(DispatcherExecutorMode.Platform, DispatcherExecutorMode.fromString("platform"));
+		assertEquals(DispatcherExecutorMode.Platform, DispatcherExecutorMode.fromString(null));
+		assertEquals(DispatcherExecutorMode.Platform, DispatcherExecutorMode.fromString("green"));
+	}
+	
+	public void testVirtualShardsRunTheTasksOfASessionOneAtATime() throws Exception {
+		if(!VirtualThreads.isSupported()) {
+			return;
+		}
+		executor = new ShardedDispatcherExecutor("test", 4, 1, 10000, Thread.NORM_PRIORITY, DispatcherExecutorMode.Virtual);
+		final int tasks = 1000;
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		final AtomicInteger running = new AtomicInteger(0);
+		final AtomicBoolean overlapped = new AtomicBoolean(false);
+		final CountDownLatch done = new CountDownLatch(tasks);
+		for (int i = 0; i < tasks; i++) {
+			final int index = i;
+			executor.execute(new KeyedTask("sas-1", new Runnable() {
+				public void run() {
+					if(running.incrementAndGet() > 1) {
+						overlapped.set(true);
+					}
+					executed.add(index);
+					Thread.yield();
+					running.decrementAndGet();
+					done.countDown();
+				}
+			}));
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertFalse(overlapped.get());
+		for (int i = 0; i < tasks; i++) {
+			assertEquals(Integer.valueOf(i), executed.get(i));
+		}
+	}
+	
+	public void testTasksWithTheSameKeyRunOnOneShardInSubmissionOrder() throws Exception {
+		executor = new ShardedDispatcherExecutor("test", 4, 1, 10000, Thread.NORM_PRIORITY);
+		final int tasks = 1000;
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch done = new CountDownLatch(tasks);
+		for (int i = 0; i < tasks; i++) {
+			final int index = i;
+			executor.execute(new KeyedTask("sas-1", new Runnable() {
+				public void run() {
+					executed.add(index);
+					threads.add(Thread.currentThread().getName());
+					done.countDown();
+				}
+			}));
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < tasks; i++) {
+			assertEquals(Integer.valueOf(i), executed.get(i));
+			assertEquals(threads.get(0), threads.get(i));
+		}
+	}
+	
+	public void testDifferentKeysAreSpreadOverTheShards() throws Exception {
+		executor = new ShardedDispatcherExecutor("test", 4, 1, 10000, Thread.NORM_PRIORITY);
+		final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch done = new CountDownLatch(100);
+		for (int i = 0; i < 100; i++) {
+			executor.execute(new KeyedTask("sas-" + i, new Runnable() {
+				public void run() {
+					if(!threads.contains(Thread.currentThread().getName())) {
+						threads.add(Thread.currentThread().getName());
+					}
+					done.countDown();
+				}
+			}));
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(4, threads.size());
+	}
+	
+	public void testTasksRunOnDispatcherThreads() throws Exception {
+		executor = new ShardedDispatcherExecutor("test", 2, 1, 10, Thread.NORM_PRIORITY);
+		final AtomicBoolean dispatcherThread = new AtomicBoolean(false);
+		final CountDownLatch done = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+			public void run() {
+				dispatcherThread.set(ShardedDispatcherExecutor.isDispatcherThread());
+				done.countDown();
+			}
+		});
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertTrue(dispatcherThread.get());
+		assertFalse(ShardedDispatcherExecutor.isDispatcherThread());
+	}
+	
+	public void testFullShardRejectsInsteadOfRunningOnTheCaller() throws Exception {
+		executor = new ShardedDispatcherExecutor("test", 1, 1, 1, Thread.NORM_PRIORITY);
+		final BlockingTask blockingTask = new BlockingTask();
+		executor.execute(blockingTask);
+		assertTrue(blockingTask.started.await(5, TimeUnit.SECONDS));
+		final CountDownLatch queuedTaskDone = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+			public void run() {
+				queuedTaskDone.countDown();
+			}
+		});
+		assertEquals(1, executor.getPendingTasks());
+		
+		final AtomicBoolean ranOnCaller = new AtomicBoolean(false);
+		final Thread caller = Thread.currentThread();
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					ranOnCaller.set(Thread.currentThread() == caller);
+				}
+			});
+			fail("the task should have been rejected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		assertFalse(ranOnCaller.get());
+		assertEquals(1, executor.getShard(0).getRejectedTasks());
+		
+		blockingTask.release.countDown();
+		assertTrue(queuedTaskDone.await(5, TimeUnit.SECONDS));
+	}
+	
+	public void testRejectedLaneKeepsItsTasks() throws Exception {
+		executor = new ShardedDispatcherExecutor("test", 1, 1, 1, Thread.NORM_PRIORITY);
+		final BlockingTask blockingTask = new BlockingTask();
+		executor.execute(blockingTask);
+		assertTrue(blockingTask.started.await(5, TimeUnit.SECONDS));
+		final BlockingTask queuedTask = new BlockingTask();
+		executor.execute(queuedTask);
+		
+		final SessionExecutionLane lane = new SessionExecutionLane("lane", "sas-1", executor);
+		final AtomicInteger executed = new AtomicInteger(0);
+		final CountDownLatch done = new CountDownLatch(2);
+		final Runnable task = new Runnable() {
+			public void run() {
+				executed.incrementAndGet();
+				done.countDown();
+			}
+		};
+		// the shard is full, the lane is rejected but keeps its task
+		lane.execute(task);
+		assertEquals(1, lane.getPendingTasks());
+		assertEquals(1, executor.getShard(0).getRejectedTasks());
+		
+		blockingTask.release.countDown();
+		queuedTask.release.countDown();
+		assertTrue(queuedTask.started.await(5, TimeUnit.SECONDS));
+		lane.execute(task);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(2, executed.get());
+	}
+	
+	public void testShardQueueSizeCanBeChanged() throws Exception {
+		executor = new ShardedDispatcherExecutor("test", 1, 1, 1, Thread.NORM_PRIORITY);
+		final BlockingTask blockingTask = new BlockingTask();
+		executor.execute(blockingTask);
+		assertTrue(blockingTask.started.await(5, TimeUnit.SECONDS));
+		final CountDownLatch done = new CountDownLatch(2);
+		final Runnable task = new Runnable() {
+			public void run() {
+				done.countDown();
+			}
+		};
+		executor.execute(task);
+		executor.setShardQueueSize(2);
+		assertEquals(2, executor.getShardQueueSize());
+		executor.execute(task);
+		try {
+			executor.execute(task);
+			fail("the task should have been rejected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		assertEquals(0, executor.getShard(0).getRemainingCapacity());
+		blockingTask.release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+	
+	public void testAdmittedTasksAreQueuedAboveTheCapacity() throws Exception {
+		executor = new ShardedDispatcherExecutor("test", 1, 1, 1, Thread.NORM_PRIORITY);
+		final BlockingTask blockingTask = new BlockingTask();
+		executor.execute(blockingTask);
+		assertTrue(blockingTask.started.await(5, TimeUnit.SECONDS));
+		final CountDownLatch done = new CountDownLatch(2);
+		final Runnable task = new Runnable() {
+			public void run() {
+				done.countDown();
+			}
+		};
+		executor.execute(task);
+		executor.executeAdmitted(task);
+		assertEquals(2, executor.getPendingTasks());
+		assertEquals(0, executor.getShard(0).getRejectedTasks());
+		blockingTask.release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+	
+	public void testAdmittedTaskRunsOnAShardWithoutThread() throws Exception {
+		executor = new ShardedDispatcherExecutor("test", 1, 1, 1, Thread.NORM_PRIORITY);
+		final CountDownLatch done = new CountDownLatch(1);
+		executor.executeAdmitted(new Runnable() {
+			public void run() {
+				done.countDown();
+			}
+		});
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+	
+	public void testQueueMetrics() throws Exception {
+		executor = new ShardedDispatcherExecutor("test", 2, 1, 10, Thread.NORM_PRIORITY);
+		// pick a key per shard
+		final BlockingTask[] blockingTasks = new BlockingTask[2];
+		final String[] keys = new String[2];
+		for (int i = 0; keys[0] == null || keys[1] == null; i++) {
+			final String key = "sas-" + i;
+			final int shard = executor.selectShard(new KeyedTask(key, null));
+			if(keys[shard] == null) {
+				keys[shard] = key;
+			}
+		}
+		for (int i = 0; i < 2; i++) {
+			blockingTasks[i] = new BlockingTask();
+			executor.execute(new KeyedTask(keys[i], blockingTasks[i]));
+			assertTrue(blockingTasks[i].started.await(5, TimeUnit.SECONDS));
+		}
+		final Runnable noop = new Runnable() {
+			public void run() {
+			}
+		};
+		for (int i = 0; i < 3; i++) {
+			executor.execute(new KeyedTask(keys[1], noop));
+		}
+		executor.execute(new KeyedTask(keys[0], noop));
+		
+		assertEquals(4, executor.getPendingTasks());
+		assertEquals(1, executor.getQueueDepths()[0]);
+		assertEquals(3, executor.getQueueDepths()[1]);
+		assertSame(executor.getShard(1), executor.getMostCongestedShard());
+		assertEquals(7, executor.getMostCongestedShard().getRemainingCapacity());
+		
+		for (BlockingTask blockingTask : blockingTasks) {
+			blockingTask.release.countDown();
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(0, executor.getPendingTasks());
+		assertEquals(2, executor.getShard(0).getExecutedTasks());
+		assertEquals(4, executor.getShard(1).getExecutedTasks());
+	}
+}
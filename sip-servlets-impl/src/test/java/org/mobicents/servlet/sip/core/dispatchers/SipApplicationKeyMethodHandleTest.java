@@ -0,0 +1,113 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.dispatchers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.sip.SipServletRequest;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.core.SipContext;
+import org.mobicents.servlet.sip.message.SipServletRequestImpl;
+
+public class SipApplicationKeyMethodHandleTest extends TestCase {
+
+	private MethodHandle[] sipApplicationKeyMethodHandle;
+	private SipContext sipContext;
+
+	public SipApplicationKeyMethodHandleTest(String testName) {
+		super(testName);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		sipApplicationKeyMethodHandle = new MethodHandle[1];
+		sipContext = (SipContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {SipContext.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if("getSipContextClassLoader".equals(method.getName())) {
+					return SipApplicationKeyMethodHandleTest.class.getClassLoader();
+				}
+				if("getSipApplicationKeyMethodHandle".equals(method.getName())) {
+					return sipApplicationKeyMethodHandle[0];
+				}
+				if("setSipApplicationKeyMethodHandle".equals(method.getName())) {
+					sipApplicationKeyMethodHandle[0] = (MethodHandle) args[0];
+					return null;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	public void testKeyMethodOfAPublicServletClass() throws Exception {
+		Method appKeyMethod = PublicKeyServlet.class.getMethod("key", SipServletRequest.class);
+
+		assertEquals("public", MessageDispatcher.invokeSipApplicationKeyMethodHandle(sipContext, appKeyMethod, new SipServletRequestImpl()));
+		assertNotNull(sipApplicationKeyMethodHandle[0]);
+	}
+
+	public void testKeyMethodOfAPackagePrivateServletClass() throws Exception {
+		Method appKeyMethod = PackagePrivateKeyServlet.class.getMethod("key", SipServletRequest.class);
+
+		assertEquals("package-private", MessageDispatcher.invokeSipApplicationKeyMethodHandle(sipContext, appKeyMethod, new SipServletRequestImpl()));
+		assertNotNull(sipApplicationKeyMethodHandle[0]);
+	}
+
+	public void testMethodHandleIsResolvedOnce() throws Exception {
+		Method appKeyMethod = PackagePrivateKeyServlet.class.getMethod("key", SipServletRequest.class);
+		MessageDispatcher.invokeSipApplicationKeyMethodHandle(sipContext, appKeyMethod, new SipServletRequestImpl());
+		MethodHandle resolved = sipApplicationKeyMethodHandle[0];
+
+		assertEquals("package-private", MessageDispatcher.invokeSipApplicationKeyMethodHandle(sipContext, appKeyMethod, new SipServletRequestImpl()));
+		assertSame(resolved, sipApplicationKeyMethodHandle[0]);
+	}
+
+	public void testExceptionOfTheKeyMethodIsReported() throws Exception {
+		Method appKeyMethod = PublicKeyServlet.class.getMethod("failingKey", SipServletRequest.class);
+		try {
+			MessageDispatcher.invokeSipApplicationKeyMethodHandle(sipContext, appKeyMethod, new SipServletRequestImpl());
+			fail("DispatcherException expected");
+		} catch (DispatcherException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	public static class PublicKeyServlet {
+		public static String key(SipServletRequest request) {
+			return "public";
+		}
+
+		public static String failingKey(SipServletRequest request) {
+			throw new IllegalStateException("no key");
+		}
+	}
+
+	static class PackagePrivateKeyServlet {
+		public static String key(SipServletRequest request) {
+			return "package-private";
+		}
+	}
+}
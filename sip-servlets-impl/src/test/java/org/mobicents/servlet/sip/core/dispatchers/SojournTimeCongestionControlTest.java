@@ -0,0 +1,182 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.dispatchers;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.sip.message.Request;
+
+import junit.framework.TestCase;
+
+import org.mobicents.javax.servlet.CongestionControlEvent;
+
+public class SojournTimeCongestionControlTest extends TestCase {
+	
+	private static final long ABOVE_TARGET = TimeUnit.MILLISECONDS.toNanos(SojournTimeCongestionControl.TARGET_SOJOURN_TIME + 1);
+	private static final long BELOW_TARGET = TimeUnit.MILLISECONDS.toNanos(SojournTimeCongestionControl.TARGET_SOJOURN_TIME) / 2;
+	
+	private WaitTimeExecutor executor;
+	private SojournTimeCongestionControl congestionControl;
+	
+	public SojournTimeCongestionControlTest(String testName) {
+		super(testName);
+	}
+	
+	/**
+	 * Reports the minimum wait time set by the test instead of measuring it.
+	 */
+	static class WaitTimeExecutor extends ShardedDispatcherExecutor {
+		long minimumWaitTime;
+		long period;
+		
+		WaitTimeExecutor() {
+			super("test", 1, 1, 10, Thread.NORM_PRIORITY);
+		}
+		
+		@Override
+		public long pollMinimumWaitTime(long period) {
+			this.period = period;
+			return minimumWaitTime;
+		}
+	}
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		executor = new WaitTimeExecutor();
+		congestionControl = new SojournTimeCongestionControl(executor);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdownNow();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		super.tearDown();
+	}
+	
+	private CongestionControlEvent sample(long minimumWaitTime) {
+		executor.minimumWaitTime = minimumWaitTime;
+		return congestionControl.sample();
+	}
+	
+	public void testNoSheddingUnderTheTarget() {
+		for (int i = 0; i < 10; i++) {
+			assertNull(sample(BELOW_TARGET));
+		}
+		assertFalse(congestionControl.isShedding());
+		assertEquals(0d, congestionControl.getSheddingRatio());
+		assertFalse(congestionControl.shed(Request.INVITE));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(SojournTimeCongestionControl.INTERVAL), executor.period);
+		assertEquals(TimeUnit.NANOSECONDS.toMillis(BELOW_TARGET), congestionControl.getSojournTime());
+	}
+	
+	public void testSheddingIncreasesAndDecreasesGradually() {
+		CongestionControlEvent event = sample(ABOVE_TARGET);
+		assertNotNull(event);
+		assertEquals(CongestionControlEvent.Reason.Latency, event.getReason());
+		assertEquals(SojournTimeCongestionControl.SHEDDING_STEP, event.getSheddingRatio(), 1e-9);
+		assertTrue(congestionControl.isShedding());
+		
+		// only the transitions from and back to no shedding are notified
+		assertNull(sample(ABOVE_TARGET));
+		assertNull(sample(ABOVE_TARGET));
+		assertEquals(3 * SojournTimeCongestionControl.SHEDDING_STEP, congestionControl.getSheddingRatio(), 1e-9);
+		
+		assertNull(sample(BELOW_TARGET));
+		assertEquals(2 * SojournTimeCongestionControl.SHEDDING_STEP, congestionControl.getSheddingRatio(), 1e-9);
+		assertNull(sample(BELOW_TARGET));
+		event = sample(BELOW_TARGET);
+		assertNotNull(event);
+		assertEquals(0d, event.getSheddingRatio());
+		assertFalse(congestionControl.isShedding());
+		assertNull(sample(BELOW_TARGET));
+	}
+	
+	public void testSheddingRatioIsCapped() {
+		for (int i = 0; i < 100; i++) {
+			sample(ABOVE_TARGET);
+		}
+		assertEquals(1d, congestionControl.getSheddingRatio(), 1e-9);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(congestionControl.shed(Request.INVITE));
+			assertTrue(congestionControl.shed(Request.REGISTER));
+		}
+		// recovers one step at a time whatever how long the congestion lasted
+		sample(BELOW_TARGET);
+		assertEquals(1d - SojournTimeCongestionControl.SHEDDING_STEP, congestionControl.getSheddingRatio(), 1e-9);
+	}
+	
+	public void testInvitesAndRegistersAreShedFirst() {
+		for (int i = 0; i < 10; i++) {
+			sample(ABOVE_TARGET);
+		}
+		assertEquals(0.5d, congestionControl.getSheddingRatio(), 1e-9);
+		int shedInvites = 0;
+		int shedOptions = 0;
+		final int requests = 20000;
+		for (int i = 0; i < requests; i++) {
+			if(congestionControl.shed(Request.INVITE)) {
+				shedInvites++;
+			}
+			if(congestionControl.shed(Request.OPTIONS)) {
+				shedOptions++;
+			}
+		}
+		// half of the INVITEs and a quarter of the OPTIONS, with a generous margin for the randomness
+		assertTrue(shedInvites > requests * 0.45 && shedInvites < requests * 0.55);
+		assertTrue(shedOptions > requests * 0.20 && shedOptions < requests * 0.30);
+	}
+	
+	public void testStandingQueueOfABlockedShardIsDetected() throws Exception {
+		final ShardedDispatcherExecutor blockedExecutor = new ShardedDispatcherExecutor("test", 2, 1, 10, Thread.NORM_PRIORITY);
+		try {
+			final ShardedDispatcherExecutorTest.BlockingTask blockingTask = new ShardedDispatcherExecutorTest.BlockingTask();
+			blockedExecutor.execute(new ShardedDispatcherExecutorTest.KeyedTask("sas-1", blockingTask));
+			assertTrue(blockingTask.started.await(5, TimeUnit.SECONDS));
+			blockedExecutor.execute(new ShardedDispatcherExecutorTest.KeyedTask("sas-1", new Runnable() {
+				public void run() {
+				}
+			}));
+			final SojournTimeCongestionControl blockedCongestionControl = new SojournTimeCongestionControl(blockedExecutor);
+			// the first sample also consumes the wait time of the blocking task itself
+			blockedCongestionControl.sample();
+			// nothing ran on the blocked shard during the interval while a task is queued : it waited the whole interval
+			assertNotNull(blockedCongestionControl.sample());
+			assertEquals(SojournTimeCongestionControl.INTERVAL, blockedCongestionControl.getSojournTime());
+			blockingTask.release.countDown();
+		} finally {
+			blockedExecutor.shutdownNow();
+			blockedExecutor.awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+	
+	public void testReset() {
+		for (int i = 0; i < 5; i++) {
+			sample(ABOVE_TARGET);
+		}
+		assertTrue(congestionControl.isShedding());
+		congestionControl.reset();
+		assertFalse(congestionControl.isShedding());
+		assertFalse(congestionControl.shed(Request.INVITE));
+		// starts again from no shedding
+		assertNotNull(sample(ABOVE_TARGET));
+		assertEquals(SojournTimeCongestionControl.SHEDDING_STEP, congestionControl.getSheddingRatio(), 1e-9);
+	}
+}
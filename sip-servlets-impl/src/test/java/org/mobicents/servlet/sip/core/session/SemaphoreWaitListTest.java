@@ -0,0 +1,103 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.session;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class SemaphoreWaitListTest extends TestCase {
+	
+	private Semaphore semaphore;
+	private SemaphoreWaitList waitList;
+	
+	public SemaphoreWaitListTest(String testName) {
+		super(testName);
+	}
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		semaphore = new Semaphore(1);
+		waitList = new SemaphoreWaitList(semaphore);
+	}
+	
+	private Runnable counting(final AtomicInteger counter) {
+		return new Runnable() {
+			public void run() {
+				counter.incrementAndGet();
+			}
+		};
+	}
+	
+	public void testCallbackWaitsForTheRelease() {
+		final AtomicInteger runs = new AtomicInteger();
+		assertTrue(semaphore.tryAcquire());
+		waitList.add(counting(runs));
+		waitList.add(counting(runs));
+		assertEquals(0, runs.get());
+		assertEquals(2, waitList.size());
+		
+		semaphore.release();
+		waitList.onRelease();
+		assertEquals(2, runs.get());
+		assertEquals(0, waitList.size());
+	}
+	
+	public void testCallbackAddedAfterTheReleaseRunsRightAway() {
+		// the holder released the semaphore between the failed acquisition and the callback being added
+		final AtomicInteger runs = new AtomicInteger();
+		waitList.add(counting(runs));
+		assertEquals(1, runs.get());
+		assertEquals(0, waitList.size());
+	}
+	
+	public void testCallbackWaitingAgainIsNotRunTwiceByTheSameRelease() {
+		final AtomicInteger runs = new AtomicInteger();
+		assertTrue(semaphore.tryAcquire());
+		waitList.add(new Runnable() {
+			public void run() {
+				runs.incrementAndGet();
+				// the resumed work found the semaphore taken again
+				waitList.add(this);
+			}
+		});
+		semaphore.release();
+		assertTrue(semaphore.tryAcquire());
+		waitList.onRelease();
+		assertEquals(1, runs.get());
+		assertEquals(1, waitList.size());
+	}
+	
+	public void testFailingCallbackDoesntStopTheOthers() {
+		final AtomicInteger runs = new AtomicInteger();
+		assertTrue(semaphore.tryAcquire());
+		waitList.add(new Runnable() {
+			public void run() {
+				throw new IllegalStateException("expected");
+			}
+		});
+		waitList.add(counting(runs));
+		semaphore.release();
+		waitList.onRelease();
+		assertEquals(1, runs.get());
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.session;
+
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+public class SessionAliveTimeStatisticsTest extends TestCase {
+
+	private SessionAliveTimeStatistics statistics;
+
+	public SessionAliveTimeStatisticsTest(String testName) {
+		super(testName);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		statistics = new SessionAliveTimeStatistics();
+	}
+
+	public void testNoSessionRecorded() {
+		assertEquals(0, statistics.getCount());
+		assertEquals(0, statistics.getMaxAliveTime());
+		assertEquals(0, statistics.getAverageAliveTime());
+		assertEquals(0, statistics.getAliveTimePercentile(50));
+		assertEquals(0, statistics.getAliveTimePercentile(100));
+	}
+
+	public void testCountMaxAndAverageOfKnownLifetimes() {
+		for (int timeAlive = 1; timeAlive <= 100; timeAlive++) {
+			statistics.record(timeAlive);
+		}
+		assertEquals(100, statistics.getCount());
+		assertEquals(100, statistics.getMaxAliveTime());
+		// 5050 / 100
+		assertEquals(50, statistics.getAverageAliveTime());
+	}
+
+	public void testShortLifetimesHaveExactPercentiles() {
+		statistics.record(3);
+		statistics.record(5);
+		statistics.record(7);
+		statistics.record(11);
+		assertEquals(3, statistics.getAliveTimePercentile(0));
+		assertEquals(3, statistics.getAliveTimePercentile(25));
+		assertEquals(5, statistics.getAliveTimePercentile(50));
+		assertEquals(7, statistics.getAliveTimePercentile(75));
+		assertEquals(11, statistics.getAliveTimePercentile(100));
+	}
+
+	public void testLongLifetimePercentilesStayWithinTheBucketPrecision() {
+		for (int timeAlive = 1; timeAlive <= 100; timeAlive++) {
+			statistics.record(timeAlive);
+		}
+		assertPercentile(50, statistics.getAliveTimePercentile(50));
+		assertPercentile(90, statistics.getAliveTimePercentile(90));
+		assertPercentile(99, statistics.getAliveTimePercentile(99));
+		// never above the longest recorded alive time
+		assertEquals(100, statistics.getAliveTimePercentile(100));
+	}
+
+	public void testSingleOutlierIsOnlySeenByTheHighestPercentile() {
+		for (int i = 0; i < 99; i++) {
+			statistics.record(60);
+		}
+		statistics.record(3600);
+		assertPercentile(60, statistics.getAliveTimePercentile(50));
+		assertPercentile(60, statistics.getAliveTimePercentile(99));
+		assertEquals(3600, statistics.getAliveTimePercentile(100));
+		assertEquals(3600, statistics.getMaxAliveTime());
+		assertEquals((99 * 60 + 3600) / 100, statistics.getAverageAliveTime());
+	}
+
+	public void testNegativeLifetimeIsRecordedAsZero() {
+		statistics.record(-5);
+		assertEquals(1, statistics.getCount());
+		assertEquals(0, statistics.getMaxAliveTime());
+		assertEquals(0, statistics.getAverageAliveTime());
+		assertEquals(0, statistics.getAliveTimePercentile(100));
+	}
+
+	public void testInvalidPercentileIsRejected() {
+		try {
+			statistics.getAliveTimePercentile(101);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			statistics.getAliveTimePercentile(-1);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testResetClearsEverything() {
+		statistics.record(10);
+		statistics.record(1000);
+		statistics.reset();
+		assertEquals(0, statistics.getCount());
+		assertEquals(0, statistics.getMaxAliveTime());
+		assertEquals(0, statistics.getAverageAliveTime());
+		assertEquals(0, statistics.getAliveTimePercentile(100));
+	}
+
+	public void testSettersOverrideTheSummary() {
+		statistics.record(10);
+		statistics.record(30);
+		statistics.setCount(4);
+		statistics.setAverageAliveTime(25);
+		statistics.setMaxAliveTime(40);
+		assertEquals(4, statistics.getCount());
+		assertEquals(25, statistics.getAverageAliveTime());
+		assertEquals(40, statistics.getMaxAliveTime());
+	}
+
+	public void testEveryValueFallsInABucketCoveringIt() {
+		int[] values = {0, 1, 15, 16, 17, 31, 32, 33, 100, 1000, 65535, 65536, 1 << 30, Integer.MAX_VALUE};
+		for (int value : values) {
+			int index = SessionAliveTimeStatistics.bucketIndex(value);
+			assertTrue("bucket of " + value, index >= 0 && index < SessionAliveTimeStatistics.BUCKET_COUNT);
+			int highest = SessionAliveTimeStatistics.highestEquivalentValue(index);
+			assertTrue(highest + " should cover " + value, highest >= value);
+			assertTrue(highest + " too far from " + value, highest - value <= value / SessionAliveTimeStatistics.SUB_BUCKETS);
+		}
+		assertEquals(SessionAliveTimeStatistics.BUCKET_COUNT - 1, SessionAliveTimeStatistics.bucketIndex(Integer.MAX_VALUE));
+	}
+
+	public void testConcurrentRecording() throws Exception {
+		final int threads = 4;
+		final int recordsPerThread = 10000;
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] recorders = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final int timeAlive = (i + 1) * 10;
+			recorders[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < recordsPerThread; j++) {
+						statistics.record(timeAlive);
+					}
+				}
+			};
+			recorders[i].start();
+		}
+		start.countDown();
+		for (Thread recorder : recorders) {
+			recorder.join();
+		}
+		assertEquals(threads * recordsPerThread, statistics.getCount());
+		assertEquals(40, statistics.getMaxAliveTime());
+		// (10 + 20 + 30 + 40) / 4
+		assertEquals(25, statistics.getAverageAliveTime());
+		assertEquals(10, statistics.getAliveTimePercentile(25));
+		assertEquals(40, statistics.getAliveTimePercentile(100));
+	}
+
+	private static void assertPercentile(int expected, int actual) {
+		assertTrue(actual + " should not be below " + expected, actual >= expected);
+		assertTrue(actual + " too far from " + expected, actual - expected <= expected / SessionAliveTimeStatistics.SUB_BUCKETS);
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class SessionExecutionLaneTest extends TestCase {
+	
+	public SessionExecutionLaneTest(String testName) {
+		super(testName);
+	}
+	
+	/**
+	 * Worker pool keeping the submitted lanes so that the test decides when they run.
+	 */
+	static class ManualExecutor implements Executor {
+		final LinkedList<Runnable> submitted = new LinkedList<Runnable>();
+		boolean reject;
+		
+		public void execute(Runnable command) {
+			if(reject) {
+				throw new RejectedExecutionException("rejected");
+			}
+			submitted.add(command);
+		}
+		
+		void runNext() {
+			submitted.removeFirst().run();
+		}
+	}
+	
+	public void testTasksRunInSubmissionOrderWithoutOverlapping() throws Exception {
+		final ExecutorService workerPool = Executors.newFixedThreadPool(4);
+		try {
+			final SessionExecutionLane lane = new SessionExecutionLane("lane", "sas", workerPool);
+			final int tasks = 2000;
+			final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+			final AtomicInteger running = new AtomicInteger(0);
+			final AtomicInteger overlaps = new AtomicInteger(0);
+			final CountDownLatch done = new CountDownLatch(tasks);
+			for (int i = 0; i < tasks; i++) {
+				final int index = i;
+				lane.execute(new Runnable() {
+					public void run() {
+						if(running.incrementAndGet() > 1) {
+							overlaps.incrementAndGet();
+						}
+						executed.add(index);
+						running.decrementAndGet();
+						done.countDown();
+					}
+				});
+			}
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertEquals(0, overlaps.get());
+			for (int i = 0; i < tasks; i++) {
+				assertEquals(Integer.valueOf(i), executed.get(i));
+			}
+		} finally {
+			workerPool.shutdownNow();
+		}
+	}
+	
+	public void testLaneIsScheduledOnceWhileDraining() {
+		final ManualExecutor workerPool = new ManualExecutor();
+		final SessionExecutionLane lane = new SessionExecutionLane("lane", "sas", workerPool);
+		final AtomicInteger executed = new AtomicInteger(0);
+		final Runnable task = new Runnable() {
+			public void run() {
+				executed.incrementAndGet();
+			}
+		};
+		lane.execute(task);
+		lane.execute(task);
+		lane.execute(task);
+		assertEquals(1, workerPool.submitted.size());
+		assertEquals(3, lane.getPendingTasks());
+		assertFalse(lane.isIdle());
+		workerPool.runNext();
+		assertEquals(3, executed.get());
+		assertTrue(lane.isIdle());
+		assertTrue(workerPool.submitted.isEmpty());
+	}
+	
+	public void testDrainGivesTheLaneBackAfterMaxTasks() {
+		final ManualExecutor workerPool = new ManualExecutor();
+		final SessionExecutionLane lane = new SessionExecutionLane("lane", "sas", workerPool);
+		final AtomicInteger executed = new AtomicInteger(0);
+		for (int i = 0; i < SessionExecutionLane.MAX_TASKS_PER_DRAIN + 5; i++) {
+			lane.execute(new Runnable() {
+				public void run() {
+					executed.incrementAndGet();
+				}
+			});
+		}
+		workerPool.runNext();
+		assertEquals(SessionExecutionLane.MAX_TASKS_PER_DRAIN, executed.get());
+		// the lane rescheduled itself behind the other work of the pool for the remaining tasks
+		assertEquals(1, workerPool.submitted.size());
+		workerPool.runNext();
+		assertEquals(SessionExecutionLane.MAX_TASKS_PER_DRAIN + 5, executed.get());
+		assertTrue(lane.isIdle());
+	}
+	
+	public void testFailingTaskDoesNotStopTheLane() {
+		final ManualExecutor workerPool = new ManualExecutor();
+		final SessionExecutionLane lane = new SessionExecutionLane("lane", "sas", workerPool);
+		final AtomicInteger executed = new AtomicInteger(0);
+		lane.execute(new Runnable() {
+			public void run() {
+				throw new IllegalStateException("failing task");
+			}
+		});
+		lane.execute(new Runnable() {
+			public void run() {
+				executed.incrementAndGet();
+			}
+		});
+		workerPool.runNext();
+		assertEquals(1, executed.get());
+		assertTrue(lane.isIdle());
+	}
+	
+	public void testRejectedLaneIsRescheduledOnNextSubmission() {
+		final ManualExecutor workerPool = new ManualExecutor();
+		final SessionExecutionLane lane = new SessionExecutionLane("lane", "sas", workerPool);
+		final AtomicInteger executed = new AtomicInteger(0);
+		final Runnable task = new Runnable() {
+			public void run() {
+				executed.incrementAndGet();
+			}
+		};
+		workerPool.reject = true;
+		try {
+			lane.execute(task);
+			fail("the rejection of the worker pool should be propagated");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		workerPool.reject = false;
+		lane.execute(task);
+		assertEquals(1, workerPool.submitted.size());
+		workerPool.runNext();
+		assertEquals(2, executed.get());
+	}
+	
+	public void testOnRejectedLetsTheNextSubmissionRescheduleTheLane() {
+		final ManualExecutor workerPool = new ManualExecutor();
+		final SessionExecutionLane lane = new SessionExecutionLane("lane", "sas", workerPool);
+		final AtomicInteger executed = new AtomicInteger(0);
+		final Runnable task = new Runnable() {
+			public void run() {
+				executed.incrementAndGet();
+			}
+		};
+		lane.execute(task);
+		// the pool dropped the lane, as the dispatcher executor does when a shard queue is full
+		workerPool.submitted.clear();
+		lane.onRejected();
+		lane.execute(task);
+		assertEquals(1, workerPool.submitted.size());
+		workerPool.runNext();
+		assertEquals(2, executed.get());
+		assertTrue(lane.isIdle());
+	}
+	
+	public void testShardKeyIsTheApplicationSessionId() {
+		final SessionExecutionLane lane = new SessionExecutionLane("lane", "sas-id", new ManualExecutor());
+		assertEquals("sas-id", lane.getShardKey());
+	}
+}
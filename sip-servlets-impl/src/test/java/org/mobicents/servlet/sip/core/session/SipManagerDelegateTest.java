@@ -0,0 +1,133 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.session;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.http.HttpSession;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.core.SipContext;
+import org.mobicents.servlet.sip.message.SipFactoryImpl;
+
+public class SipManagerDelegateTest extends TestCase {
+
+	private SipManagerDelegate sipManagerDelegate;
+
+	public SipManagerDelegateTest(String testName) {
+		super(testName);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		sipManagerDelegate = new SipManagerDelegate() {
+			@Override
+			protected MobicentsSipSession getNewMobicentsSipSession(SipSessionKey key, SipFactoryImpl sipFactoryImpl, MobicentsSipApplicationSession mobicentsSipApplicationSession) {
+				return null;
+			}
+			@Override
+			protected MobicentsSipApplicationSession getNewMobicentsSipApplicationSession(SipApplicationSessionKey key, SipContext sipContext) {
+				return null;
+			}
+		};
+	}
+
+	public void testIndexedHttpSessionIsFound() {
+		SipApplicationSessionKey key = new SipApplicationSessionKey("sas-1", "app", null);
+		HttpSession httpSession = httpSession("http-1");
+		MobicentsSipApplicationSession sipApplicationSession = sipApplicationSession(key, httpSession);
+		sipManagerDelegate.sipApplicationSessions.put(key, sipApplicationSession);
+		sipManagerDelegate.addHttpSessionMapping(httpSession.getId(), key);
+
+		assertSame(sipApplicationSession, sipManagerDelegate.findSipApplicationSession(httpSession));
+	}
+
+	public void testHttpSessionOfAReplicatedSipApplicationSessionIsFoundAndIndexed() {
+		// replicated or activated sip application sessions never went through addHttpSession on this node
+		SipApplicationSessionKey otherKey = new SipApplicationSessionKey("sas-0", "app", null);
+		sipManagerDelegate.sipApplicationSessions.put(otherKey, sipApplicationSession(otherKey, httpSession("http-0")));
+		SipApplicationSessionKey key = new SipApplicationSessionKey("sas-1", "app", null);
+		HttpSession httpSession = httpSession("http-1");
+		MobicentsSipApplicationSession sipApplicationSession = sipApplicationSession(key, httpSession);
+		sipManagerDelegate.sipApplicationSessions.put(key, sipApplicationSession);
+		assertTrue(sipManagerDelegate.sipApplicationSessionKeysByHttpSessionId.isEmpty());
+
+		assertSame(sipApplicationSession, sipManagerDelegate.findSipApplicationSession(httpSession));
+		assertEquals(key, sipManagerDelegate.sipApplicationSessionKeysByHttpSessionId.get("http-1"));
+	}
+
+	public void testStaleIndexEntryFallsBackToTheSipApplicationSessionHoldingTheHttpSession() {
+		SipApplicationSessionKey staleKey = new SipApplicationSessionKey("sas-0", "app", null);
+		sipManagerDelegate.sipApplicationSessions.put(staleKey, sipApplicationSession(staleKey));
+		SipApplicationSessionKey key = new SipApplicationSessionKey("sas-1", "app", null);
+		HttpSession httpSession = httpSession("http-1");
+		MobicentsSipApplicationSession sipApplicationSession = sipApplicationSession(key, httpSession);
+		sipManagerDelegate.sipApplicationSessions.put(key, sipApplicationSession);
+		sipManagerDelegate.addHttpSessionMapping(httpSession.getId(), staleKey);
+
+		assertSame(sipApplicationSession, sipManagerDelegate.findSipApplicationSession(httpSession));
+		assertEquals(key, sipManagerDelegate.sipApplicationSessionKeysByHttpSessionId.get("http-1"));
+	}
+
+	public void testUnknownHttpSessionIsNotFound() {
+		SipApplicationSessionKey key = new SipApplicationSessionKey("sas-1", "app", null);
+		sipManagerDelegate.sipApplicationSessions.put(key, sipApplicationSession(key, httpSession("http-1")));
+
+		assertNull(sipManagerDelegate.findSipApplicationSession(httpSession("http-2")));
+		assertNull(sipManagerDelegate.sipApplicationSessionKeysByHttpSessionId.get("http-2"));
+	}
+
+	private static HttpSession httpSession(final String id) {
+		return (HttpSession) Proxy.newProxyInstance(SipManagerDelegateTest.class.getClassLoader(),
+				new Class<?>[] {HttpSession.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if("getId".equals(method.getName())) {
+					return id;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	private static MobicentsSipApplicationSession sipApplicationSession(final SipApplicationSessionKey key, HttpSession... httpSessions) {
+		final Set<String> httpSessionIds = new HashSet<String>();
+		for (HttpSession httpSession : httpSessions) {
+			httpSessionIds.add(httpSession.getId());
+		}
+		return (MobicentsSipApplicationSession) Proxy.newProxyInstance(SipManagerDelegateTest.class.getClassLoader(),
+				new Class<?>[] {MobicentsSipApplicationSession.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if("getKey".equals(method.getName())) {
+					return key;
+				}
+				if("findHttpSession".equals(method.getName())) {
+					return httpSessionIds.contains(args[0]) ? httpSession((String) args[0]) : null;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+}
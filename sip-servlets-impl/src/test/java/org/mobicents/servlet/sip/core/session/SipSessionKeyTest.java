@@ -0,0 +1,94 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class SipSessionKeyTest extends TestCase {
+
+	public SipSessionKeyTest(String testName) {
+		super(testName);
+	}
+
+	public void testKeyWithoutToTagRoundTrip() throws IOException {
+		SipSessionKey sipSessionKey = new SipSessionKey("from-tag", null, "call-id@127.0.0.1", "sas-id", "app");
+
+		SipSessionKey readKey = roundTrip(sipSessionKey);
+
+		assertEquals(sipSessionKey, readKey);
+		assertNull(readKey.getToTag());
+		assertFalse(readKey.isToTagInId());
+		assertEquals(sipSessionKey.toString(), readKey.toString());
+	}
+
+	public void testKeyWithToTagOutsideOfTheIdRoundTrip() throws IOException {
+		SipSessionKey sipSessionKey = new SipSessionKey("from-tag", null, "call-id@127.0.0.1", "sas-id", "app");
+		sipSessionKey.setToTag("to-tag", false);
+
+		SipSessionKey readKey = roundTrip(sipSessionKey);
+
+		assertEquals(sipSessionKey, readKey);
+		assertEquals("to-tag", readKey.getToTag());
+		assertFalse(readKey.isToTagInId());
+		assertEquals(sipSessionKey.toString(), readKey.toString());
+	}
+
+	public void testDerivedKeyWithToTagInTheIdRoundTrip() throws IOException {
+		SipSessionKey sipSessionKey = new SipSessionKey("from-tag", "to-tag", "call-id@127.0.0.1", "sas-id", "app");
+
+		SipSessionKey readKey = roundTrip(sipSessionKey);
+
+		assertEquals(sipSessionKey, readKey);
+		assertEquals("to-tag", readKey.getToTag());
+		assertTrue(readKey.isToTagInId());
+		assertEquals(sipSessionKey.toString(), readKey.toString());
+	}
+
+	public void testConsecutiveKeysAreReadBackInOrder() throws IOException {
+		SipSessionKey first = new SipSessionKey("from-1", null, "call-1", "sas-1", "app");
+		SipSessionKey second = new SipSessionKey("from-2", "to-2", "call-2", "sas-2", "app");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		first.writeTo(out);
+		second.writeTo(out);
+		out.writeInt(42);
+		out.flush();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(first, SipSessionKey.readFrom(in));
+		assertEquals(second, SipSessionKey.readFrom(in));
+		// the stream is left right after the keys
+		assertEquals(42, in.readInt());
+	}
+
+	private static SipSessionKey roundTrip(SipSessionKey sipSessionKey) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		sipSessionKey.writeTo(out);
+		out.flush();
+		return SipSessionKey.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.timers;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.core.timers.HierarchicalTimingWheel.Timeout;
+
+/**
+ * The deterministic tests drive a wheel that is not started through {@link HierarchicalTimingWheel#advanceTo(long)}, 
+ * with a tick of 10 ms, so a timeout of delay d ms is due on tick d / 10 or the one after.
+ */
+public class HierarchicalTimingWheelTest extends TestCase {
+	
+	private static final long TICK = 10;
+	
+	private HierarchicalTimingWheel wheel;
+	
+	public HierarchicalTimingWheelTest(String testName) {
+		super(testName);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		if(wheel != null) {
+			wheel.stop();
+		}
+		super.tearDown();
+	}
+	
+	static class CountingTask implements Runnable {
+		final AtomicInteger runs = new AtomicInteger(0);
+		
+		public void run() {
+			runs.incrementAndGet();
+		}
+	}
+	
+	private void assertFiresOnTick(long delay) {
+		wheel = new HierarchicalTimingWheel("test", TICK);
+		final CountingTask task = new CountingTask();
+		final Timeout timeout = wheel.schedule(task, delay, null, null);
+		final long dueTick = delay / TICK;
+		wheel.advanceTo(dueTick - 1);
+		assertEquals("timeout of " + delay + "ms fired too early", 0, task.runs.get());
+		assertFalse(timeout.isDone());
+		wheel.advanceTo(dueTick + 1);
+		assertEquals("timeout of " + delay + "ms didn't fire", 1, task.runs.get());
+		assertTrue(timeout.isExpired());
+	}
+	
+	public void testTimeoutOnTheFirstLevel() {
+		assertFiresOnTick(TICK * 100);
+	}
+	
+	public void testTimeoutCascadedFromTheSecondLevel() {
+		assertFiresOnTick(TICK * (HierarchicalTimingWheel.WHEEL_SIZE * 3 + 17));
+	}
+	
+	public void testTimeoutCascadedFromTheThirdLevel() {
+		assertFiresOnTick(TICK * (HierarchicalTimingWheel.WHEEL_SIZE * HierarchicalTimingWheel.WHEEL_SIZE * 2 + 
+				HierarchicalTimingWheel.WHEEL_SIZE * 5 + 3));
+	}
+	
+	public void testTimeoutCascadedFromTheFourthLevel() {
+		assertFiresOnTick(TICK * ((1L << (HierarchicalTimingWheel.WHEEL_BITS * 3)) + 
+				HierarchicalTimingWheel.WHEEL_SIZE * 7 + 11));
+	}
+	
+	public void testTimeoutsOfDifferentLevelsFireInOrder() {
+		wheel = new HierarchicalTimingWheel("test", TICK);
+		final long[] delays = new long[] {70000, 30, 2570, 655400, 2560, 12};
+		final CountingTask[] tasks = new CountingTask[delays.length];
+		for (int i = 0; i < delays.length; i++) {
+			tasks[i] = new CountingTask();
+			wheel.schedule(tasks[i], delays[i], null, null);
+		}
+		final long[] sortedDelays = delays.clone();
+		Arrays.sort(sortedDelays);
+		for (long delay : sortedDelays) {
+			final long dueTick = delay / TICK;
+			wheel.advanceTo(dueTick + 1);
+			for (int j = 0; j < delays.length; j++) {
+				if(delays[j] / TICK + 1 <= dueTick - 1) {
+					assertEquals(1, tasks[j].runs.get());
+				} else if(delays[j] / TICK >= dueTick + 2) {
+					assertEquals(0, tasks[j].runs.get());
+				}
+			}
+		}
+	}
+	
+	public void testCancelledTimeoutDoesNotFire() throws Exception {
+		wheel = new HierarchicalTimingWheel("test", TICK);
+		final CountingTask task = new CountingTask();
+		final Timeout timeout = wheel.schedule(task, TICK * 1000, null, null);
+		wheel.advanceTo(10);
+		assertTrue(timeout.cancel(false));
+		assertFalse(timeout.cancel(false));
+		wheel.advanceTo(1100);
+		assertEquals(0, task.runs.get());
+		assertTrue(timeout.isCancelled());
+		assertTrue(timeout.isDone());
+		try {
+			timeout.get();
+			fail("get should report the cancellation");
+		} catch (CancellationException e) {
+			// expected
+		}
+	}
+	
+	public void testFixedRateTimeoutIsRescheduled() throws Exception {
+		wheel = new HierarchicalTimingWheel("test", TICK);
+		final CountingTask task = new CountingTask();
+		final Timeout timeout = wheel.schedule(task, TICK * 10, TICK * 10, false, null, null);
+		wheel.advanceTo(5);
+		assertEquals(0, task.runs.get());
+		wheel.advanceTo(11);
+		assertEquals(1, task.runs.get());
+		// the next executions are due one period after the previous ones were scheduled
+		wheel.advanceTo(101);
+		assertEquals(10, task.runs.get());
+		// across a wrap of the first level
+		wheel.advanceTo(HierarchicalTimingWheel.WHEEL_SIZE * 2 + 1);
+		assertEquals((HierarchicalTimingWheel.WHEEL_SIZE * 2) / 10, task.runs.get());
+		assertFalse(timeout.isDone());
+		assertTrue(timeout.cancel(false));
+		final int runs = task.runs.get();
+		wheel.advanceTo(HierarchicalTimingWheel.WHEEL_SIZE * 4);
+		assertEquals(runs, task.runs.get());
+	}
+	
+	public void testFixedDelayTimeoutIsRescheduled() throws Exception {
+		wheel = new HierarchicalTimingWheel("test", 1);
+		wheel.start();
+		final CountDownLatch runs = new CountDownLatch(3);
+		final Timeout timeout = wheel.schedule(new Runnable() {
+			public void run() {
+				runs.countDown();
+			}
+		}, 5, 20, true, null, null);
+		assertTrue(runs.await(5, TimeUnit.SECONDS));
+		assertTrue(timeout.cancel(false));
+	}
+	
+	public void testGetWaitsForTheTaskToComplete() throws Exception {
+		wheel = new HierarchicalTimingWheel("test", 1);
+		wheel.start();
+		final CountingTask task = new CountingTask();
+		final long start = System.nanoTime();
+		final Timeout timeout = wheel.schedule(task, 50, null, null);
+		assertNull(timeout.get(5, TimeUnit.SECONDS));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+		assertEquals(1, task.runs.get());
+		assertFalse(timeout.cancel(false));
+		assertNull(timeout.get());
+	}
+	
+	public void testGetReportsTheTaskFailure() throws Exception {
+		wheel = new HierarchicalTimingWheel("test", TICK);
+		final IllegalStateException failure = new IllegalStateException("failing timer");
+		final Timeout timeout = wheel.schedule(new Runnable() {
+			public void run() {
+				throw failure;
+			}
+		}, TICK, null, null);
+		wheel.advanceTo(3);
+		try {
+			timeout.get(1, TimeUnit.SECONDS);
+			fail("get should report the failure");
+		} catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+	}
+	
+	public void testGetTimesOut() throws Exception {
+		wheel = new HierarchicalTimingWheel("test", TICK);
+		final Timeout timeout = wheel.schedule(new CountingTask(), TICK * 1000, null, null);
+		try {
+			timeout.get(10, TimeUnit.MILLISECONDS);
+			fail("get should time out");
+		} catch (TimeoutException e) {
+			// expected
+		}
+	}
+}
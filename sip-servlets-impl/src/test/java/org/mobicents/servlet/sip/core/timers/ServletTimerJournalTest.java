@@ -0,0 +1,189 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.timers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.core.session.SipApplicationSessionKey;
+
+public class ServletTimerJournalTest extends TestCase {
+	
+	private File directory;
+	private File file;
+	
+	public ServletTimerJournalTest(String testName) {
+		super(testName);
+	}
+	
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("servlet-timer-journal", "");
+		assertTrue(directory.delete());
+		file = new File(directory, "app.journal");
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = directory.listFiles();
+		if(files != null) {
+			for (File child : files) {
+				child.delete();
+			}
+		}
+		directory.delete();
+	}
+	
+	private static SipApplicationSessionKey key(String id) {
+		return new SipApplicationSessionKey(id, "app", null);
+	}
+	
+	public void testRoundTrip() throws IOException {
+		ServletTimerJournal journal = new ServletTimerJournal(file);
+		assertTrue(journal.open().isEmpty());
+		journal.timerCreated("one-shot", key("sas-1"), new byte[] {1, 2, 3}, 1000L, 0L, false, false);
+		journal.timerCreated("repeating", key("sas-2"), null, 2000L, 500L, true, true);
+		journal.timerCreated("canceled", key("sas-3"), null, 3000L, 0L, false, false);
+		journal.timerCanceled("canceled");
+		assertEquals(2, journal.getTimers());
+		journal.flush();
+		journal.close();
+		
+		journal = new ServletTimerJournal(file);
+		List<ServletTimerJournal.JournaledTimer> timers = journal.open();
+		journal.close();
+		assertEquals(2, timers.size());
+		
+		ServletTimerJournal.JournaledTimer oneShot = timers.get(0);
+		assertEquals("one-shot", oneShot.getId());
+		assertEquals(key("sas-1"), oneShot.getSipApplicationSessionKey());
+		assertEquals(3, oneShot.getInfo().length);
+		assertEquals(3, oneShot.getInfo()[2]);
+		assertEquals(1000L, oneShot.getFirstExecutionTime());
+		assertFalse(oneShot.isRepeating());
+		
+		ServletTimerJournal.JournaledTimer repeating = timers.get(1);
+		assertEquals("repeating", repeating.getId());
+		assertNull(repeating.getInfo());
+		assertEquals(2000L, repeating.getFirstExecutionTime());
+		assertEquals(500L, repeating.getPeriod());
+		assertTrue(repeating.isFixedDelay());
+		assertTrue(repeating.isRepeating());
+	}
+	
+	public void testCompactedOnOpen() throws IOException {
+		ServletTimerJournal journal = new ServletTimerJournal(file);
+		journal.open();
+		for (int i = 0; i < 100; i++) {
+			journal.timerCreated("timer-" + i, key("sas"), null, i, 0L, false, false);
+			if(i > 0) {
+				journal.timerCanceled("timer-" + i);
+			}
+		}
+		journal.close();
+		long length = file.length();
+		
+		journal = new ServletTimerJournal(file);
+		assertEquals(1, journal.open().size());
+		journal.close();
+		assertTrue(file.length() < length / 10);
+	}
+	
+	public void testTornRecordIgnored() throws IOException {
+		ServletTimerJournal journal = new ServletTimerJournal(file);
+		journal.open();
+		journal.timerCreated("kept", key("sas-1"), null, 1000L, 0L, false, false);
+		journal.close();
+		
+		// the process died while writing a record : its length is there but its checksum doesn't match
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.seek(randomAccessFile.length());
+			randomAccessFile.writeInt(16);
+			randomAccessFile.writeInt(0x12345678);
+			randomAccessFile.write(new byte[] {1, 0, 4, 'l', 'o', 's', 't', 0});
+			randomAccessFile.write(new byte[8]);
+		} finally {
+			randomAccessFile.close();
+		}
+		
+		journal = new ServletTimerJournal(file);
+		List<ServletTimerJournal.JournaledTimer> timers = journal.open();
+		assertEquals(1, timers.size());
+		assertEquals("kept", timers.get(0).getId());
+		// still usable after the torn record has been dropped
+		journal.timerCreated("after", key("sas-2"), null, 2000L, 0L, false, false);
+		journal.close();
+		
+		journal = new ServletTimerJournal(file);
+		assertEquals(2, journal.open().size());
+		journal.close();
+	}
+	
+	public void testLockedAgainstAnotherTimerService() throws IOException {
+		ServletTimerJournal journal = new ServletTimerJournal(file);
+		journal.open();
+		journal.timerCreated("timer", key("sas"), null, 1000L, 0L, false, false);
+		
+		ServletTimerJournal other = new ServletTimerJournal(file);
+		try {
+			other.open();
+			fail("the journal is locked");
+		} catch (IOException e) {
+			// expected
+		}
+		// nothing is journaled through a journal that couldn't be opened
+		other.timerCreated("other", key("sas"), null, 1000L, 0L, false, false);
+		assertEquals(0, other.getTimers());
+		
+		journal.close();
+		other = new ServletTimerJournal(file);
+		assertEquals(1, other.open().size());
+		other.close();
+	}
+	
+	public void testNothingJournaledBeforeOpen() throws IOException {
+		ServletTimerJournal journal = new ServletTimerJournal(file);
+		journal.timerCreated("timer", key("sas"), null, 1000L, 0L, false, false);
+		assertEquals(0, journal.getTimers());
+		assertFalse(file.exists());
+		journal.close();
+	}
+	
+	public void testJournalDirectory() {
+		Properties systemProperties = new Properties();
+		systemProperties.setProperty("user.dir", "/opt/mss");
+		assertEquals(new File("/opt/mss/work/sip-timers-journal"), ServletTimerJournal.getJournalDirectory(systemProperties));
+		
+		systemProperties.setProperty("catalina.base", "/opt/tomcat");
+		assertEquals(new File("/opt/tomcat/work/sip-timers-journal"), ServletTimerJournal.getJournalDirectory(systemProperties));
+		
+		systemProperties.setProperty("jboss.server.data.dir", "/opt/wildfly/standalone/data");
+		assertEquals(new File("/opt/wildfly/standalone/data/sip-timers-journal"), ServletTimerJournal.getJournalDirectory(systemProperties));
+		
+		systemProperties.setProperty(ServletTimerJournal.JOURNAL_DIR_PROPERTY, "/var/lib/mss/timers");
+		assertEquals(new File("/var/lib/mss/timers"), ServletTimerJournal.getJournalDirectory(systemProperties));
+	}
+}
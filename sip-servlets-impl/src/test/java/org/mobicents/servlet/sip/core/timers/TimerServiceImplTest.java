@@ -0,0 +1,60 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.core.timers;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.core.session.SipApplicationSessionKey;
+
+public class TimerServiceImplTest extends TestCase {
+	
+	private static final long NOW = 1000000L;
+	
+	public TimerServiceImplTest(String testName) {
+		super(testName);
+	}
+	
+	private static ServletTimerJournal.JournaledTimer oneShot(long firstExecutionTime) {
+		return new ServletTimerJournal.JournaledTimer("timer", new SipApplicationSessionKey("sas", "app", null), null, 
+				firstExecutionTime, 0L, false, false);
+	}
+	
+	public void testFutureTimerKeepsItsExpiration() {
+		assertEquals(5000L, TimerServiceImpl.getRestoreDelay(oneShot(NOW + 5000L), NOW, NOW, 0));
+		// whatever the number of overdue timers restored before it
+		assertEquals(5000L, TimerServiceImpl.getRestoreDelay(oneShot(NOW + 5000L), NOW, NOW, 300));
+	}
+	
+	public void testOverdueTimersSpreadByOverdueCount() {
+		long spacing = 1000L / TimerServiceImpl.PERSISTENT_TIMERS_RESTORE_RATE;
+		assertEquals(0L, TimerServiceImpl.getRestoreDelay(oneShot(NOW - 5000L), NOW, NOW, 0));
+		assertEquals(spacing, TimerServiceImpl.getRestoreDelay(oneShot(NOW - 5000L), NOW, NOW, 1));
+		assertEquals(10 * spacing, TimerServiceImpl.getRestoreDelay(oneShot(NOW - 1L), NOW, NOW, 10));
+		// later batches are spread from the start of the restoration, not from their own start
+		assertEquals(10 * spacing - 50L, TimerServiceImpl.getRestoreDelay(oneShot(NOW - 1L), NOW + 50L, NOW, 10));
+		assertEquals(0L, TimerServiceImpl.getRestoreDelay(oneShot(NOW - 1L), NOW + 100000L, NOW, 10));
+	}
+	
+	public void testOverdueRepeatingTimerResumesAtItsNextSlot() {
+		ServletTimerJournal.JournaledTimer repeating = new ServletTimerJournal.JournaledTimer("timer", 
+				new SipApplicationSessionKey("sas", "app", null), null, NOW - 2500L, 1000L, false, true);
+		assertEquals(500L, TimerServiceImpl.getRestoreDelay(repeating, NOW, NOW, 42));
+	}
+}
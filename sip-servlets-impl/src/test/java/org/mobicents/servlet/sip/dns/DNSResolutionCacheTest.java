@@ -0,0 +1,179 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.dns;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class DNSResolutionCacheTest extends TestCase {
+	
+	public DNSResolutionCacheTest(String testName) {
+		super(testName);
+	}
+	
+	/**
+	 * Cache whose clock is moved by the test.
+	 */
+	static class ManualClockCache extends DNSResolutionCache<String> {
+		volatile long now = 1000;
+		
+		ManualClockCache(long staleTimeToLive, int maxSize) {
+			super(staleTimeToLive, maxSize);
+		}
+		
+		@Override
+		long currentTimeMillis() {
+			return now;
+		}
+	}
+	
+	/**
+	 * Resolver answering "<key>#<resolution number>", with a time to live per key, 
+	 * and nothing for the keys starting with "unknown".
+	 */
+	static class CountingResolver implements DNSResolutionCache.Resolver<String> {
+		final AtomicInteger resolutions = new AtomicInteger();
+		final Map<String, Long> timesToLive = new HashMap<String, Long>();
+		long negativeTimeToLive = 10;
+		
+		public String resolve(String key) {
+			int resolution = resolutions.incrementAndGet();
+			if(key.startsWith("unknown")) {
+				return "";
+			}
+			return key + "#" + resolution;
+		}
+		
+		public long getTimeToLive(String key, String value) {
+			if(value.isEmpty()) {
+				return negativeTimeToLive;
+			}
+			Long timeToLive = timesToLive.get(key);
+			return timeToLive == null ? 100 : timeToLive;
+		}
+	}
+	
+	public void testServedFromCacheUntilItsTimeToLiveExpires() {
+		ManualClockCache cache = new ManualClockCache(0, 10);
+		CountingResolver resolver = new CountingResolver();
+		
+		assertEquals("a#1", cache.get("a", resolver));
+		cache.now += 99;
+		assertEquals("a#1", cache.get("a", resolver));
+		assertEquals("a#1", cache.getIfCached("a", resolver));
+		assertEquals(1, resolver.resolutions.get());
+		assertEquals(1, cache.getMisses());
+		assertEquals(2, cache.getHits());
+		
+		cache.now += 1;
+		assertNull(cache.getIfCached("a", resolver));
+		assertEquals("a#2", cache.get("a", resolver));
+		assertEquals(2, resolver.resolutions.get());
+		assertEquals(2, cache.getLookups());
+	}
+	
+	public void testTimeToLiveIsPerResolution() {
+		ManualClockCache cache = new ManualClockCache(0, 10);
+		CountingResolver resolver = new CountingResolver();
+		resolver.timesToLive.put("short", 10L);
+		resolver.timesToLive.put("long", 1000L);
+		
+		cache.get("short", resolver);
+		cache.get("long", resolver);
+		cache.now += 500;
+		assertNull(cache.getIfCached("short", resolver));
+		assertEquals("long#2", cache.getIfCached("long", resolver));
+	}
+	
+	public void testNegativeResolutionsUseTheirOwnTimeToLive() {
+		ManualClockCache cache = new ManualClockCache(0, 10);
+		CountingResolver resolver = new CountingResolver();
+		resolver.negativeTimeToLive = 5;
+		
+		assertEquals("", cache.get("unknown.example.com", resolver));
+		cache.now += 4;
+		assertEquals("", cache.get("unknown.example.com", resolver));
+		assertEquals(1, resolver.resolutions.get());
+		cache.now += 1;
+		cache.get("unknown.example.com", resolver);
+		assertEquals(2, resolver.resolutions.get());
+	}
+	
+	public void testResolutionNotCachedWithoutTimeToLive() {
+		ManualClockCache cache = new ManualClockCache(0, 10);
+		CountingResolver resolver = new CountingResolver();
+		resolver.timesToLive.put("a", 0L);
+		
+		cache.get("a", resolver);
+		cache.get("a", resolver);
+		assertEquals(2, resolver.resolutions.get());
+		assertEquals(0, cache.size());
+	}
+	
+	public void testStaleResolutionServedWhileRefreshedInTheBackground() throws InterruptedException {
+		ManualClockCache cache = new ManualClockCache(50, 10);
+		CountingResolver resolver = new CountingResolver();
+		
+		assertEquals("a#1", cache.get("a", resolver));
+		cache.now += 120;
+		// stale, served as is while resolved again
+		assertEquals("a#1", cache.get("a", resolver));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!"a#2".equals(cache.getIfCached("a", resolver)) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals("a#2", cache.getIfCached("a", resolver));
+		assertEquals(2, resolver.resolutions.get());
+		
+		// past the grace period the calling thread resolves
+		cache.now += 200;
+		assertNull(cache.getIfCached("a", resolver));
+		assertEquals("a#3", cache.get("a", resolver));
+	}
+	
+	public void testLeastRecentlyUsedEvictedOnceFull() {
+		ManualClockCache cache = new ManualClockCache(0, 2);
+		CountingResolver resolver = new CountingResolver();
+		
+		cache.get("a", resolver);
+		cache.get("b", resolver);
+		// a becomes the most recently used
+		cache.get("a", resolver);
+		cache.get("c", resolver);
+		assertEquals(2, cache.size());
+		assertNotNull(cache.getIfCached("a", resolver));
+		assertNull(cache.getIfCached("b", resolver));
+		assertNotNull(cache.getIfCached("c", resolver));
+	}
+	
+	public void testDisabledWithoutSize() {
+		ManualClockCache cache = new ManualClockCache(0, 0);
+		CountingResolver resolver = new CountingResolver();
+		
+		assertEquals("a#1", cache.get("a", resolver));
+		assertEquals("a#2", cache.get("a", resolver));
+		assertNull(cache.getIfCached("a", resolver));
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.getHits());
+	}
+}
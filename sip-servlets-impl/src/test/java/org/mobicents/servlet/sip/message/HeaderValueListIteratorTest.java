@@ -0,0 +1,140 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.message;
+
+import gov.nist.javax.sip.header.ExtensionHeaderImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import javax.sip.header.Header;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.message.SipServletMessageImpl.HeaderValueListIterator;
+
+public class HeaderValueListIteratorTest extends TestCase {
+
+	public HeaderValueListIteratorTest(String testName) {
+		super(testName);
+	}
+
+	public void testIteratesOverTheValuesInBothDirections() {
+		ListIterator<String> values = new HeaderValueListIterator(headers("a", "b", "c").listIterator());
+
+		assertFalse(values.hasPrevious());
+		assertEquals(0, values.nextIndex());
+		assertEquals("a", values.next());
+		assertEquals("b", values.next());
+		assertEquals("c", values.next());
+		assertFalse(values.hasNext());
+		assertEquals(2, values.previousIndex());
+		assertEquals("c", values.previous());
+		assertEquals("b", values.previous());
+		assertEquals("a", values.previous());
+		assertFalse(values.hasPrevious());
+	}
+
+	public void testNoHeader() {
+		ListIterator<String> values = new HeaderValueListIterator(new ArrayList<Header>().listIterator());
+
+		assertFalse(values.hasNext());
+		assertFalse(values.hasPrevious());
+		try {
+			values.next();
+			fail("NoSuchElementException expected");
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+	}
+
+	public void testMoreHeadersThanTheInitialSnapshotSize() {
+		ListIterator<String> values = new HeaderValueListIterator(headers("a", "b", "c", "d", "e").listIterator());
+
+		for (String expected : new String[] {"a", "b", "c", "d", "e"}) {
+			assertEquals(expected, values.next());
+		}
+		assertFalse(values.hasNext());
+	}
+
+	public void testHeadersModifiedAfterwardsDontShowThrough() {
+		List<Header> headers = headers("a", "b");
+		ListIterator<String> values = new HeaderValueListIterator(headers.listIterator());
+		assertEquals("a", values.next());
+
+		((ExtensionHeaderImpl) headers.get(1)).setValue("modified");
+		headers.add(header("added"));
+		headers.remove(0);
+
+		assertEquals("b", values.next());
+		assertFalse(values.hasNext());
+		assertEquals("b", values.previous());
+		assertEquals("a", values.previous());
+	}
+
+	public void testIteratorsAreIndependent() {
+		List<Header> headers = headers("a", "b");
+		ListIterator<String> first = new HeaderValueListIterator(headers.listIterator());
+		ListIterator<String> second = new HeaderValueListIterator(headers.listIterator());
+
+		assertEquals("a", first.next());
+		assertEquals("b", first.next());
+		assertEquals("a", second.next());
+	}
+
+	public void testValuesCantBeModified() {
+		ListIterator<String> values = new HeaderValueListIterator(headers("a").listIterator());
+		values.next();
+		try {
+			values.set("b");
+			fail("UnsupportedOperationException expected");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			values.add("b");
+			fail("UnsupportedOperationException expected");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			values.remove();
+			fail("UnsupportedOperationException expected");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	private static List<Header> headers(String... values) {
+		List<Header> headers = new ArrayList<Header>();
+		for (String value : values) {
+			headers.add(header(value));
+		}
+		return headers;
+	}
+
+	private static Header header(String value) {
+		ExtensionHeaderImpl header = new ExtensionHeaderImpl("X-Test");
+		header.setValue(value);
+		return header;
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.message;
+
+import gov.nist.javax.sip.address.HopImpl;
+import gov.nist.javax.sip.parser.StringMsgParser;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.sip.SipServletRequest;
+import javax.sip.address.Hop;
+
+import junit.framework.TestCase;
+
+import org.mobicents.ext.javax.sip.dns.DNSServerLocator;
+import org.mobicents.javax.servlet.sip.SipServletRequestSendCallback;
+import org.mobicents.javax.servlet.sip.SipSessionAsynchronousWork;
+import org.mobicents.servlet.sip.core.SipApplicationDispatcher;
+import org.mobicents.servlet.sip.core.session.MobicentsSipSession;
+import org.mobicents.servlet.sip.core.session.SipSessionAsyncTask;
+import org.mobicents.servlet.sip.dns.MobicentsDNSResolver;
+
+public class SendAsynchronouslyTest extends TestCase {
+
+	private static final String INVITE = 
+		"INVITE sip:bob@biloxi.example.com SIP/2.0\r\n" +
+		"Via: SIP/2.0/UDP 127.0.0.1:5070;branch=z9hG4bK-send-asynchronously\r\n" +
+		"Max-Forwards: 70\r\n" +
+		"Route: <sip:proxy.biloxi.example.com;lr>\r\n" +
+		"From: <sip:alice@127.0.0.1:5070>;tag=alice-tag\r\n" +
+		"To: <sip:bob@biloxi.example.com>\r\n" +
+		"Call-ID: send-asynchronously@127.0.0.1\r\n" +
+		"CSeq: 1 INVITE\r\n" +
+		"Contact: <sip:alice@127.0.0.1:5070>\r\n" +
+		"Content-Length: 0\r\n" +
+		"\r\n";
+
+	private enum SessionState {VALID, INVALIDATED, OVERLOADED}
+
+	private SessionState sessionState;
+	private MobicentsDNSResolver.HopsListener hopsListener;
+	private Hop sentHop;
+	private IOException sendFailure;
+	private RecordingCallback callback;
+	private SipServletRequestImpl request;
+
+	public SendAsynchronouslyTest(String testName) {
+		super(testName);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		sessionState = SessionState.VALID;
+		callback = new RecordingCallback();
+		final MobicentsDNSResolver dnsResolver = new MobicentsDNSResolver(null) {
+			@Override
+			public void locateHops(javax.sip.address.URI uri, HopsListener listener) {
+				// the test plays the resolver threads
+				hopsListener = listener;
+			}
+		};
+		final DNSServerLocator dnsServerLocator = (DNSServerLocator) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {DNSServerLocator.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+		SipApplicationDispatcher sipApplicationDispatcher = (SipApplicationDispatcher) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {SipApplicationDispatcher.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if("getDNSServerLocator".equals(method.getName())) {
+					return dnsServerLocator;
+				}
+				if("getDNSResolver".equals(method.getName())) {
+					return dnsResolver;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+		MobicentsSipSession sipSession = (MobicentsSipSession) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {MobicentsSipSession.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if("getProxy".equals(method.getName()) || "getTransport".equals(method.getName())) {
+					return null;
+				}
+				if("scheduleAsynchronousWork".equals(method.getName())) {
+					scheduleAsynchronousWork((SipSessionAsynchronousWork) args[0]);
+					return null;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+		SipFactoryImpl sipFactoryImpl = new SipFactoryImpl();
+		sipFactoryImpl.setSipApplicationDispatcher(sipApplicationDispatcher);
+
+		request = new SipServletRequestImpl() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void send(Hop hop) throws IOException {
+				if(sendFailure != null) {
+					throw sendFailure;
+				}
+				sentHop = hop;
+			}
+		};
+		request.sipFactoryImpl = sipFactoryImpl;
+		request.message = new StringMsgParser().parseSIPMessage(INVITE.getBytes(StandardCharsets.UTF_8), true, false, null);
+		request.setSipSession(sipSession);
+	}
+
+	private void scheduleAsynchronousWork(SipSessionAsynchronousWork work) {
+		switch (sessionState) {
+			case VALID:
+				work.doAsynchronousWork(null);
+				break;
+			case INVALIDATED:
+				// what SipSessionAsyncTask does when the session can't be found anymore
+				((SipSessionAsyncTask.DiscardableWork) work).discarded();
+				break;
+			default:
+				throw new RejectedExecutionException("overloaded");
+		}
+	}
+
+	public void testSentRightAwayWhenTheHopsAreCached() {
+		request.sendAsynchronously(callback);
+		Queue<Hop> hops = hops();
+
+		// resolution cached, the listener is notified from the calling thread
+		hopsListener.onHopsLocated(hops);
+
+		assertSame(hops.peek(), sentHop);
+		assertSame(request, callback.sent);
+		assertNull(callback.failure);
+	}
+
+	public void testSentOnceTheHopsAreLocated() throws Exception {
+		request.sendAsynchronously(callback);
+		final Queue<Hop> hops = hops();
+
+		locateFromAResolverThread(new Runnable() {
+			public void run() {
+				hopsListener.onHopsLocated(hops);
+			}
+		});
+
+		assertSame(hops.peek(), sentHop);
+		assertSame(request, callback.sent);
+		assertNull(callback.failure);
+	}
+
+	public void testRequestCantBeSentAgainWhileInFlight() throws IOException {
+		request.sendAsynchronously(callback);
+		try {
+			request.sendAsynchronously(new RecordingCallback());
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			request.send();
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	public void testFailureToLocateTheHopsIsNotified() throws Exception {
+		request.sendAsynchronously(callback);
+		final Exception dnsFailure = new IllegalStateException("dns failure");
+
+		locateFromAResolverThread(new Runnable() {
+			public void run() {
+				hopsListener.onHopsLocationFailed(dnsFailure);
+			}
+		});
+
+		assertNull(sentHop);
+		assertNull(callback.sent);
+		assertSame(dnsFailure, callback.failure);
+		// no longer in flight, it can be sent again
+		request.sendAsynchronously(new RecordingCallback());
+	}
+
+	public void testFailureToSendIsNotified() throws Exception {
+		sendFailure = new IOException("stack failure");
+		request.sendAsynchronously(callback);
+
+		locateFromAResolverThread(new Runnable() {
+			public void run() {
+				hopsListener.onHopsLocated(hops());
+			}
+		});
+
+		assertNull(callback.sent);
+		assertSame(sendFailure, callback.failure);
+	}
+
+	public void testInvalidatedSessionIsNotifiedAsAFailure() throws Exception {
+		sessionState = SessionState.INVALIDATED;
+		request.sendAsynchronously(callback);
+
+		locateFromAResolverThread(new Runnable() {
+			public void run() {
+				hopsListener.onHopsLocated(hops());
+			}
+		});
+
+		assertNull(sentHop);
+		assertNull(callback.sent);
+		assertTrue(callback.failure instanceof IllegalStateException);
+	}
+
+	public void testRejectedSchedulingIsNotifiedAsAFailure() throws Exception {
+		sessionState = SessionState.OVERLOADED;
+		request.sendAsynchronously(callback);
+
+		locateFromAResolverThread(new Runnable() {
+			public void run() {
+				hopsListener.onHopsLocated(hops());
+			}
+		});
+
+		assertNull(sentHop);
+		assertNull(callback.sent);
+		assertTrue(callback.failure instanceof RejectedExecutionException);
+	}
+
+	private static Queue<Hop> hops() {
+		Queue<Hop> hops = new LinkedList<Hop>();
+		hops.add(new HopImpl("192.168.0.20", 5060, "udp"));
+		return hops;
+	}
+
+	private static void locateFromAResolverThread(Runnable resolution) throws InterruptedException {
+		Thread resolverThread = new Thread(resolution);
+		resolverThread.start();
+		resolverThread.join();
+	}
+
+	private static final class RecordingCallback implements SipServletRequestSendCallback {
+		SipServletRequest sent;
+		Exception failure;
+
+		public void onSent(SipServletRequest request) {
+			sent = request;
+		}
+
+		public void onSendFailure(SipServletRequest request, Exception exception) {
+			failure = exception;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.message;
+
+import gov.nist.javax.sip.message.SIPMessage;
+import gov.nist.javax.sip.parser.StringMsgParser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.sip.message.Request;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.JainSipUtils;
+
+public class SharedContentTest extends TestCase {
+
+	private static final String SDP = "v=0\r\no=alice 1 1 IN IP4 127.0.0.1\r\ns=-\r\n";
+	private static final String INVITE = 
+		"INVITE sip:bob@biloxi.example.com SIP/2.0\r\n" +
+		"Via: SIP/2.0/UDP 127.0.0.1:5070;branch=z9hG4bK-shared-content\r\n" +
+		"Max-Forwards: 70\r\n" +
+		"From: <sip:alice@127.0.0.1:5070>;tag=alice-tag\r\n" +
+		"To: <sip:bob@biloxi.example.com>\r\n" +
+		"Call-ID: shared-content@127.0.0.1\r\n" +
+		"CSeq: 1 INVITE\r\n" +
+		"Contact: <sip:alice@127.0.0.1:5070>\r\n" +
+		"Content-Type: application/sdp\r\n" +
+		"Content-Length: " + SDP.length() + "\r\n" +
+		"\r\n" + SDP;
+
+	private SipServletRequestImpl originalRequest;
+	private SipServletRequestImpl branchRequest;
+	private SipServletRequestImpl siblingBranchRequest;
+
+	public SharedContentTest(String testName) {
+		super(testName);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		originalRequest = new SipServletRequestImpl();
+		originalRequest.message = new StringMsgParser().parseSIPMessage(INVITE.getBytes(StandardCharsets.UTF_8), true, false, null);
+		branchRequest = createBranch();
+		siblingBranchRequest = createBranch();
+	}
+
+	// copies the original request the way the proxy branches do
+	private SipServletRequestImpl createBranch() {
+		SipServletRequestImpl branch = new SipServletRequestImpl();
+		branch.message = JainSipUtils.cloneRequest((Request) originalRequest.message);
+		originalRequest.setContentShared();
+		branch.setContentShared();
+		return branch;
+	}
+
+	public void testBodyIsSharedUntilWritten() {
+		assertSame(originalRequest.message.getRawContent(), branchRequest.message.getRawContent());
+		assertSame(originalRequest.message.getRawContent(), siblingBranchRequest.message.getRawContent());
+	}
+
+	public void testBranchWriteDoesNotLeak() throws Exception {
+		byte[] content = branchRequest.getRawContent();
+		Arrays.fill(content, (byte) 'x');
+
+		assertEquals(SDP, new String(originalRequest.getRawContent(), StandardCharsets.UTF_8));
+		assertEquals(SDP, new String(siblingBranchRequest.getRawContent(), StandardCharsets.UTF_8));
+		// the branch keeps its own body from now on
+		assertSame(content, branchRequest.getRawContent());
+		assertSame(content, branchRequest.message.getRawContent());
+	}
+
+	public void testOriginalWriteDoesNotLeak() throws Exception {
+		byte[] content = originalRequest.getRawContent();
+		Arrays.fill(content, (byte) 'x');
+
+		assertEquals(SDP, new String(branchRequest.getRawContent(), StandardCharsets.UTF_8));
+		assertEquals(SDP, new String(siblingBranchRequest.getRawContent(), StandardCharsets.UTF_8));
+	}
+
+	public void testUnsharedBodyIsNotCopied() throws Exception {
+		SipServletRequestImpl request = new SipServletRequestImpl();
+		request.message = new StringMsgParser().parseSIPMessage(INVITE.getBytes(StandardCharsets.UTF_8), true, false, null);
+
+		assertSame(request.message.getRawContent(), request.getRawContent());
+	}
+
+	public void testApplicationDataIsNotCopied() {
+		// the application data of a request caches its transport, which the copy must compute again
+		((SIPMessage) originalRequest.message).setApplicationData("TCP");
+
+		assertNull(((SIPMessage) JainSipUtils.cloneRequest((Request) originalRequest.message)).getApplicationData());
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.servlet.sip.SipServletMessage.HeaderForm;
+import javax.sip.header.CallIdHeader;
+import javax.sip.message.Message;
+
+import junit.framework.TestCase;
+
+import org.mobicents.ha.javax.sip.ReplicationStrategy;
+import org.mobicents.servlet.sip.core.SipService;
+import org.mobicents.servlet.sip.core.session.SipSessionKey;
+import org.mobicents.servlet.sip.startup.StaticServiceHolder;
+import org.mobicents.servlet.sip.utils.ExternalizationUtils;
+
+public class SipServletMessageExternalizationTest extends TestCase {
+
+	private static final String CALL_ID = "externalization-test@127.0.0.1";
+	private static final String INVITE = 
+		"INVITE sip:bob@127.0.0.1:5080 SIP/2.0\r\n" +
+		"Via: SIP/2.0/UDP 127.0.0.1:5070;branch=z9hG4bK-externalization\r\n" +
+		"Max-Forwards: 70\r\n" +
+		"From: <sip:alice@127.0.0.1:5070>;tag=alice-tag\r\n" +
+		"To: <sip:bob@127.0.0.1:5080>\r\n" +
+		"Call-ID: " + CALL_ID + "\r\n" +
+		"CSeq: 1 INVITE\r\n" +
+		"Contact: <sip:alice@127.0.0.1:5070>\r\n" +
+		"Content-Length: 0\r\n" +
+		"\r\n";
+
+	private SipService previousSipService;
+
+	public SipServletMessageExternalizationTest(String testName) {
+		super(testName);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		previousSipService = StaticServiceHolder.sipStandardService;
+		StaticServiceHolder.sipStandardService = (SipService) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {SipService.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if("getReplicationStrategy".equals(method.getName())) {
+					return ReplicationStrategy.ConfirmedDialog;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		StaticServiceHolder.sipStandardService = previousSipService;
+		super.tearDown();
+	}
+
+	public void testUnsupportedVersionIsRejected() throws Exception {
+		byte[] externalized = externalizedRequest((byte) (SipServletMessageImpl.EXTERNALIZED_FORM_VERSION + 1), SipServletMessageImpl.SESSION_KEY_NONE, null);
+		try {
+			readRequest(externalized);
+			fail("InvalidObjectException expected");
+		} catch (InvalidObjectException e) {
+			// expected
+		}
+	}
+
+	public void testWithoutSessionKey() throws Exception {
+		SipServletRequestImpl request = readRequest(externalizedRequest(SipServletMessageImpl.EXTERNALIZED_FORM_VERSION, SipServletMessageImpl.SESSION_KEY_NONE, null));
+
+		assertNull(request.getSipSessionKey());
+		assertEquals(CALL_ID, callId(request));
+	}
+
+	public void testBinarySessionKey() throws Exception {
+		SipSessionKey sipSessionKey = new SipSessionKey("alice-tag", null, CALL_ID, "sas-id", "app");
+		sipSessionKey.setToTag("bob-tag", false);
+		SipServletRequestImpl request = readRequest(externalizedRequest(SipServletMessageImpl.EXTERNALIZED_FORM_VERSION, SipServletMessageImpl.SESSION_KEY_BINARY, sipSessionKey));
+
+		assertEquals(sipSessionKey, request.getSipSessionKey());
+		assertEquals("bob-tag", ((SipSessionKey) request.getSipSessionKey()).getToTag());
+		assertEquals(CALL_ID, callId(request));
+	}
+
+	public void testStringSessionKey() throws Exception {
+		SipSessionKey sipSessionKey = new SipSessionKey("alice-tag", null, CALL_ID, "sas-id", "app");
+		SipServletRequestImpl request = readRequest(externalizedRequest(SipServletMessageImpl.EXTERNALIZED_FORM_VERSION, SipServletMessageImpl.SESSION_KEY_STRING, sipSessionKey));
+
+		assertEquals(sipSessionKey, request.getSipSessionKey());
+		assertEquals(CALL_ID, callId(request));
+	}
+
+	public void testRoundTripWithoutReparsing() throws Exception {
+		SipSessionKey sipSessionKey = new SipSessionKey("alice-tag", null, CALL_ID, "sas-id", "app");
+		SipServletRequestImpl request = readRequest(externalizedRequest(SipServletMessageImpl.EXTERNALIZED_FORM_VERSION, SipServletMessageImpl.SESSION_KEY_BINARY, sipSessionKey));
+		assertNull(request.message);
+
+		SipServletRequestImpl replicated = readRequest(writeRequest(request));
+
+		// the wire form is passed along as is, the message is only parsed when accessed
+		assertNull(request.message);
+		assertEquals(sipSessionKey, replicated.getSipSessionKey());
+		assertEquals("app", replicated.getCurrentApplicationName());
+		assertEquals(HeaderForm.COMPACT, replicated.getHeaderForm());
+		assertEquals(CALL_ID, callId(replicated));
+	}
+
+	public void testRoundTripOfAParsedMessage() throws Exception {
+		SipServletRequestImpl request = readRequest(externalizedRequest(SipServletMessageImpl.EXTERNALIZED_FORM_VERSION, SipServletMessageImpl.SESSION_KEY_NONE, null));
+		Message message = request.getMessage();
+
+		SipServletRequestImpl replicated = readRequest(writeRequest(request));
+
+		assertEquals(message, replicated.getMessage());
+	}
+
+	public void testConcurrentFirstAccessesParseTheMessageOnce() throws Exception {
+		final SipServletRequestImpl request = readRequest(externalizedRequest(SipServletMessageImpl.EXTERNALIZED_FORM_VERSION, SipServletMessageImpl.SESSION_KEY_NONE, null));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Message>> messages = new ArrayList<Future<Message>>();
+			for (int i = 0; i < 16; i++) {
+				messages.add(executor.submit(new Callable<Message>() {
+					public Message call() {
+						return request.getMessage();
+					}
+				}));
+			}
+			Message message = request.getMessage();
+			assertNotNull(message);
+			for (Future<Message> future : messages) {
+				assertSame(message, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static String callId(SipServletMessageImpl sipServletMessage) {
+		return ((CallIdHeader) sipServletMessage.getMessage().getHeader(CallIdHeader.NAME)).getCallId();
+	}
+
+	private static SipServletRequestImpl readRequest(byte[] externalized) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(externalized));
+		SipServletRequestImpl request = new SipServletRequestImpl();
+		request.readExternal(in);
+		return request;
+	}
+
+	private static byte[] writeRequest(SipServletRequestImpl request) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		request.writeExternal(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the externalized form of a request the way another node would have written it
+	 */
+	private static byte[] externalizedRequest(byte version, byte sessionKeyTag, SipSessionKey sipSessionKey) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		// SipServletMessageImpl
+		out.writeByte(version);
+		out.writeObject(null);
+		out.writeByte(sessionKeyTag);
+		if(sessionKeyTag == SipServletMessageImpl.SESSION_KEY_BINARY) {
+			sipSessionKey.writeTo(out);
+		} else if(sessionKeyTag == SipServletMessageImpl.SESSION_KEY_STRING) {
+			ExternalizationUtils.writeString(out, sipSessionKey.toString());
+		}
+		out.writeInt(0);
+		out.writeBoolean(false);
+		out.writeByte(HeaderForm.COMPACT.ordinal());
+		ExternalizationUtils.writeString(out, "app");
+		out.writeBoolean(true);
+		ExternalizationUtils.writeBytes(out, INVITE.getBytes(StandardCharsets.UTF_8));
+		// SipServletRequestImpl
+		out.writeBoolean(false);
+		out.writeBoolean(true);
+		out.writeUTF("");
+		out.writeUTF("");
+		out.writeBoolean(false);
+		out.writeBoolean(true);
+		out.writeBoolean(false);
+		out.writeBoolean(false);
+		out.flush();
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.proxy.ProxyBranchImpl.BranchState;
+
+public class BranchStateCountsTest extends TestCase {
+	
+	private BranchStateCounts branchStateCounts;
+	
+	public BranchStateCountsTest(String testName) {
+		super(testName);
+	}
+	
+	/**
+	 * Branch whose state is set by the test.
+	 */
+	static class TestBranch extends ProxyBranchImpl {
+		private static final long serialVersionUID = 1L;
+		volatile BranchState state = BranchState.Untried;
+		
+		@Override
+		BranchState getState() {
+			return state;
+		}
+	}
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		branchStateCounts = new BranchStateCounts();
+	}
+	
+	private void assertCounts(int untried, int started, int cancelling, int finals, int timedOut, int cancelled) {
+		assertEquals(untried, branchStateCounts.get(BranchState.Untried));
+		assertEquals(started, branchStateCounts.get(BranchState.Started));
+		assertEquals(cancelling, branchStateCounts.get(BranchState.Cancelling));
+		assertEquals(finals, branchStateCounts.get(BranchState.Final));
+		assertEquals(timedOut, branchStateCounts.get(BranchState.TimedOut));
+		assertEquals(cancelled, branchStateCounts.get(BranchState.Cancelled));
+	}
+	
+	public void testTransitionsAreCounted() {
+		TestBranch first = new TestBranch();
+		TestBranch second = new TestBranch();
+		branchStateCounts.add(first);
+		branchStateCounts.add(second);
+		assertCounts(2, 0, 0, 0, 0, 0);
+		
+		first.state = BranchState.Started;
+		branchStateCounts.update(first);
+		second.state = BranchState.Cancelled;
+		branchStateCounts.update(second);
+		assertCounts(0, 1, 0, 0, 0, 1);
+		
+		first.state = BranchState.Cancelling;
+		branchStateCounts.update(first);
+		// updating without any change of state doesn't count it twice
+		branchStateCounts.update(first);
+		assertCounts(0, 0, 1, 0, 0, 1);
+		
+		first.state = BranchState.Final;
+		branchStateCounts.update(first);
+		assertCounts(0, 0, 0, 1, 0, 1);
+	}
+	
+	public void testRemovedBranchIsNoLongerCounted() {
+		TestBranch branch = new TestBranch();
+		branchStateCounts.add(branch);
+		branchStateCounts.remove(branch);
+		assertCounts(0, 0, 0, 0, 0, 0);
+		branch.state = BranchState.Started;
+		branchStateCounts.update(branch);
+		branchStateCounts.remove(branch);
+		assertCounts(0, 0, 0, 0, 0, 0);
+		// added again, as a replaced branch may be
+		branchStateCounts.add(branch);
+		branchStateCounts.add(branch);
+		assertCounts(0, 1, 0, 0, 0, 0);
+	}
+	
+	public void testConcurrentTransitions() throws Exception {
+		final int threads = 4;
+		final int rounds = 200;
+		final List<TestBranch> branches = new ArrayList<TestBranch>();
+		for (int i = 0; i < 100; i++) {
+			TestBranch branch = new TestBranch();
+			branch.state = BranchState.Started;
+			branches.add(branch);
+			branchStateCounts.add(branch);
+		}
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			// dispatcher and timer threads moving the same branches around
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int round = 0; round < rounds; round++) {
+							for (TestBranch branch : branches) {
+								synchronized (branch) {
+									branch.state = branch.state == BranchState.Started ? BranchState.Cancelling : BranchState.Started;
+								}
+								branchStateCounts.update(branch);
+							}
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		int started = 0;
+		for (TestBranch branch : branches) {
+			if(branch.state == BranchState.Started) {
+				started++;
+			}
+		}
+		assertCounts(0, started, branches.size() - started, 0, 0, 0);
+		
+		for (TestBranch branch : branches) {
+			branchStateCounts.remove(branch);
+		}
+		assertCounts(0, 0, 0, 0, 0, 0);
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.rfc5626;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.core.HopImpl;
+
+public class FlowRegistryTest extends TestCase {
+	
+	private static final long IDLE_TIMEOUT = 1000L;
+	
+	private long now = 1000000L;
+	
+	public FlowRegistryTest(String testName) {
+		super(testName);
+	}
+	
+	private FlowRegistry newFlowRegistry(int maxSize) {
+		return new FlowRegistry(IDLE_TIMEOUT, maxSize) {
+			@Override
+			long currentTimeMillis() {
+				return now;
+			}
+		};
+	}
+	
+	private static HopImpl hop(int port) {
+		return new HopImpl("10.0.0.1", port, "TCP");
+	}
+	
+	public void testIdleFlowsAreDropped() {
+		FlowRegistry flowRegistry = newFlowRegistry(10);
+		HopImpl hop = hop(5060);
+		flowRegistry.register("flow", hop);
+		now += IDLE_TIMEOUT;
+		assertSame(hop, flowRegistry.get("flow"));
+		// using the flow keeps it alive
+		now += IDLE_TIMEOUT;
+		assertSame(hop, flowRegistry.get("flow"));
+		now += IDLE_TIMEOUT + 1;
+		assertNull(flowRegistry.get("flow"));
+		assertEquals(0, flowRegistry.size());
+		assertNull(flowRegistry.get("unknown"));
+	}
+	
+	public void testIdleFlowsArePurgedOnRegistration() {
+		FlowRegistry flowRegistry = newFlowRegistry(10);
+		flowRegistry.register("idle-1", hop(1));
+		flowRegistry.register("idle-2", hop(2));
+		flowRegistry.register("used", hop(3));
+		now += IDLE_TIMEOUT / 2;
+		flowRegistry.get("used");
+		now += IDLE_TIMEOUT / 2 + 1;
+		flowRegistry.register("new", hop(4));
+		assertEquals(2, flowRegistry.size());
+		assertNotNull(flowRegistry.get("used"));
+		assertNotNull(flowRegistry.get("new"));
+	}
+	
+	public void testLeastRecentlyUsedFlowEvictedWhenFull() {
+		FlowRegistry flowRegistry = newFlowRegistry(3);
+		flowRegistry.register("flow-1", hop(1));
+		flowRegistry.register("flow-2", hop(2));
+		flowRegistry.register("flow-3", hop(3));
+		assertNotNull(flowRegistry.get("flow-1"));
+		// none of the flows is idle, the least recently used one makes room
+		flowRegistry.register("flow-4", hop(4));
+		assertEquals(3, flowRegistry.size());
+		assertNull(flowRegistry.get("flow-2"));
+		assertNotNull(flowRegistry.get("flow-1"));
+		assertNotNull(flowRegistry.get("flow-3"));
+		assertNotNull(flowRegistry.get("flow-4"));
+	}
+	
+	public void testFullRegistryStillRegistersNewFlows() {
+		FlowRegistry flowRegistry = newFlowRegistry(100);
+		for (int i = 0; i < 10000; i++) {
+			flowRegistry.register("flow-" + i, hop(i));
+			assertNotNull(flowRegistry.get("flow-" + i));
+		}
+		assertEquals(100, flowRegistry.size());
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.rfc5626;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.core.HopImpl;
+
+public class FlowTokenCodecTest extends TestCase {
+	
+	public FlowTokenCodecTest(String testName) {
+		super(testName);
+	}
+	
+	public void testIPv4RoundTrip() throws Exception {
+		String flowToken = FlowTokenCodec.encode("tcp", "10.0.0.1", 5060, "192.168.1.254", 49152);
+		assertEquals(31, flowToken.length());
+		HopImpl hop = FlowTokenCodec.decode(flowToken);
+		assertEquals("192.168.1.254", hop.getHost());
+		assertEquals(49152, hop.getPort());
+		assertEquals("TCP", hop.getTransport());
+	}
+	
+	public void testIPv6RoundTrip() throws Exception {
+		String flowToken = FlowTokenCodec.encode("WSS", "[2001:db8::1]", 443, "2001:db8::ff00:42:8329", 65535);
+		HopImpl hop = FlowTokenCodec.decode(flowToken);
+		assertEquals("2001:db8:0:0:0:ff00:42:8329", hop.getHost());
+		assertEquals(65535, hop.getPort());
+		assertEquals("WSS", hop.getTransport());
+		
+		// only the remote address being IPv6
+		hop = FlowTokenCodec.decode(FlowTokenCodec.encode("udp", "10.0.0.1", 5060, "::1", 5062));
+		assertEquals("0:0:0:0:0:0:0:1", hop.getHost());
+		assertEquals(5062, hop.getPort());
+		assertEquals("UDP", hop.getTransport());
+	}
+	
+	public void testTokenIsUrlSafe() {
+		for (int port = 0; port < 1000; port++) {
+			String flowToken = FlowTokenCodec.encode("TLS", "10.0.0.1", 5061, "10.0.0.2", port);
+			for (int i = 0; i < flowToken.length(); i++) {
+				char c = flowToken.charAt(i);
+				assertTrue(flowToken, Character.isLetterOrDigit(c) || c == '-' || c == '_');
+			}
+		}
+	}
+	
+	public void testTamperedTokenIsRejected() throws Exception {
+		String flowToken = FlowTokenCodec.encode("TCP", "10.0.0.1", 5060, "192.168.1.254", 49152);
+		for (int i = 0; i < flowToken.length(); i++) {
+			char[] tampered = flowToken.toCharArray();
+			tampered[i] = tampered[i] == 'A' ? 'B' : 'A';
+			try {
+				FlowTokenCodec.decode(new String(tampered));
+				fail("tampered character " + i + " of " + flowToken + " should be detected");
+			} catch (IncorrectFlowIdentifierException e) {
+				// expected
+			}
+		}
+	}
+	
+	public void testMalformedTokenIsRejected() {
+		String flowToken = FlowTokenCodec.encode("TCP", "10.0.0.1", 5060, "192.168.1.254", 49152);
+		String[] malformed = {"", "A", flowToken.substring(0, flowToken.length() - 4), flowToken + "AAAA", 
+				flowToken.replace(flowToken.charAt(3), '+'), "alice"};
+		for (String token : malformed) {
+			try {
+				FlowTokenCodec.decode(token);
+				fail(token + " should be rejected");
+			} catch (IncorrectFlowIdentifierException e) {
+				// expected
+			}
+		}
+	}
+	
+	public void testUnsupportedFlowsAreRefused() {
+		try {
+			FlowTokenCodec.encode("FOO", "10.0.0.1", 5060, "10.0.0.2", 5060);
+			fail("unsupported transport");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			FlowTokenCodec.encode("UDP", "10.0.0.1", 5060, "ua.example.com", 5060);
+			fail("not an IP address");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.servlet.sip.security;
+
+import junit.framework.TestCase;
+
+import org.mobicents.servlet.sip.security.DigestNonceTable.NonceState;
+
+public class DigestNonceTableTest extends TestCase {
+	
+	private static final long VALIDITY = 1000L;
+	
+	private long now = 1000000L;
+	private DigestNonceTable nonces;
+	
+	public DigestNonceTableTest(String testName) {
+		super(testName);
+	}
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		nonces = newNonceTable(10);
+	}
+	
+	private DigestNonceTable newNonceTable(int maxSize) {
+		return new DigestNonceTable(VALIDITY, maxSize) {
+			@Override
+			long currentTimeMillis() {
+				return now;
+			}
+		};
+	}
+	
+	public void testNonceCountsIncreaseWithTheSameNonce() {
+		nonces.issued("nonce");
+		assertEquals(NonceState.Valid, nonces.check("nonce", "00000001"));
+		assertTrue(nonces.accept("nonce", "00000001"));
+		assertEquals(NonceState.Valid, nonces.check("nonce", "00000002"));
+		assertTrue(nonces.accept("nonce", "00000002"));
+		// nc is hexadecimal
+		assertEquals(NonceState.Valid, nonces.check("nonce", "0000000a"));
+	}
+	
+	public void testReplayedNonceCountIsRejected() {
+		nonces.issued("nonce");
+		assertTrue(nonces.accept("nonce", "00000002"));
+		assertEquals(NonceState.Replayed, nonces.check("nonce", "00000002"));
+		assertEquals(NonceState.Replayed, nonces.check("nonce", "00000001"));
+		assertFalse(nonces.accept("nonce", "00000002"));
+		assertEquals(NonceState.Replayed, nonces.check("nonce", "garbage"));
+		assertFalse(nonces.accept("nonce", "garbage"));
+	}
+	
+	public void testNonceWithoutQopIsSingleUse() {
+		nonces.issued("nonce");
+		assertEquals(NonceState.Valid, nonces.check("nonce", null));
+		assertTrue(nonces.accept("nonce", null));
+		assertEquals(NonceState.Replayed, nonces.check("nonce", null));
+		assertFalse(nonces.accept("nonce", null));
+	}
+	
+	public void testConcurrentRequestsConsumeANonceCountOnce() {
+		nonces.issued("nonce");
+		// both checked before any of them is accepted
+		assertEquals(NonceState.Valid, nonces.check("nonce", "00000001"));
+		assertEquals(NonceState.Valid, nonces.check("nonce", "00000001"));
+		assertTrue(nonces.accept("nonce", "00000001"));
+		assertFalse(nonces.accept("nonce", "00000001"));
+	}
+	
+	public void testExpiredNonceIsStale() {
+		nonces.issued("nonce");
+		now += VALIDITY;
+		assertEquals(NonceState.Valid, nonces.check("nonce", "00000001"));
+		now++;
+		assertEquals(NonceState.Stale, nonces.check("nonce", "00000001"));
+	}
+	
+	public void testUnknownNonceIsStale() {
+		// issued by another node, before a restart, or forged
+		assertEquals(NonceState.Stale, nonces.check("unknown", "00000001"));
+		assertFalse(nonces.accept("unknown", "00000001"));
+		assertEquals(NonceState.Stale, nonces.check("unknown", "00000002"));
+		assertEquals(0, nonces.size());
+	}
+	
+	public void testOldestNonceEvictedWhenFull() {
+		nonces = newNonceTable(3);
+		for (int i = 0; i < 5; i++) {
+			nonces.issued("nonce-" + i);
+			now++;
+		}
+		assertEquals(3, nonces.size());
+		// evicted nonces are stale, not accepted as unknown ones used to be
+		assertEquals(NonceState.Stale, nonces.check("nonce-0", "00000001"));
+		assertEquals(NonceState.Stale, nonces.check("nonce-1", "00000001"));
+		for (int i = 2; i < 5; i++) {
+			assertEquals(NonceState.Valid, nonces.check("nonce-" + i, "00000001"));
+		}
+	}
+	
+	public void testExpiredNoncesEvictedWhenIssuing() {
+		nonces.issued("nonce-1");
+		nonces.issued("nonce-2");
+		now += VALIDITY + 1;
+		nonces.issued("nonce-3");
+		assertEquals(1, nonces.size());
+		assertEquals(NonceState.Valid, nonces.check("nonce-3", "00000001"));
+	}
+}
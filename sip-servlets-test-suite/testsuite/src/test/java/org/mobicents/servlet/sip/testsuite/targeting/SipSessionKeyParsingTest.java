@@ -106,7 +106,22 @@ public class SipSessionKeyParsingTest extends TestCase {
 				
 	}
 	
+	public void testDerivedKeyId() throws ParseException {
+		SipSessionKey sipSessionKey = new SipSessionKey("" + new Random().nextInt(10000000), null,  Utils.getInstance().generateCallIdentifier("" + System.getProperty("org.mobicents.testsuite.testhostaddr") + ""), "" + UUID.randomUUID(), "ApplicationNameTest");
+		String id = sipSessionKey.toString();
+		sipSessionKey.setToTag("" + new Random().nextInt(10000000), false);
+		assertEquals(id, sipSessionKey.toString());
+		assertNull(sipSessionKey.getIdToTag());
+		
+		String toTag = "" + new Random().nextInt(10000000);
+		sipSessionKey.setToTag(toTag, true);
+		assertTrue(sipSessionKey.isToTagInId());
+		assertEquals(toTag, SessionManagerUtil.parseSipSessionKey(sipSessionKey.toString()).getIdToTag());
+		assertEquals(sipSessionKey.getFromTag() + SessionManagerUtil.SESSION_KEY_SEPARATOR + sipSessionKey.getCallId(), SessionManagerUtil.getSipSessionHaKey(sipSessionKey));
+	}
+	
 	public void testEquals() {
-		EqualsVerifier.forClass(SipSessionKey.class).withOnlyTheseFields("applicationName", "applicationSessionId", "callId", "fromTag").verify();
+		EqualsVerifier.forClass(SipSessionKey.class).withOnlyTheseFields("applicationName", "applicationSessionId", "callId", "fromTag")
+			.withCachedHashCode("cachedHashCode", "calculateHashCode", new SipSessionKey("fromTag", null, "callId", "appSessionId", "ApplicationNameTest")).verify();
 	}
 }